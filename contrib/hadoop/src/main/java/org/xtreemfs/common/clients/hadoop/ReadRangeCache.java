@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+package org.xtreemfs.common.clients.hadoop;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Caches a few aligned ranges of a file for positional reads, e.g. of the footers and indexes of columnar file
+ * formats, which are read repeatedly in small pieces. The least recently used range is evicted if the cache is
+ * full. Thread-safe; the file is read outside of the cache by the caller.
+ */
+class ReadRangeCache {
+
+    private static class Range {
+
+        final long   offset;
+
+        final byte[] data;
+
+        final int    length;
+
+        Range(long offset, byte[] data, int length) {
+            this.offset = offset;
+            this.data = data;
+            this.length = length;
+        }
+    }
+
+    private final int               maxRanges;
+
+    private final int               rangeSize;
+
+    /**
+     * most recently used range first
+     */
+    private final LinkedList<Range> ranges;
+
+    ReadRangeCache(int maxRanges, int rangeSize) {
+        this.maxRanges = maxRanges;
+        this.rangeSize = rangeSize;
+        this.ranges = new LinkedList<Range>();
+    }
+
+    int getRangeSize() {
+        return rangeSize;
+    }
+
+    /**
+     * @return the offset of the range which contains the given position
+     */
+    long getRangeOffset(long position) {
+        return position - position % rangeSize;
+    }
+
+    /**
+     * Copies the requested part of the file from the cache.
+     *
+     * @return the number of bytes copied, which is less than "length" only if the file ends before, or -1 if the
+     *         requested part is not cached
+     */
+    synchronized int read(long position, byte[] bytes, int offset, int length) {
+        Iterator<Range> it = ranges.iterator();
+        while (it.hasNext()) {
+            Range r = it.next();
+            if (position < r.offset || position > r.offset + r.length) {
+                continue;
+            }
+
+            int available = (int) (r.offset + r.length - position);
+            if (available < length && r.length == rangeSize) {
+                // not at the end of the file, the rest is not cached
+                continue;
+            }
+
+            int bytesRead = Math.min(available, length);
+            System.arraycopy(r.data, (int) (position - r.offset), bytes, offset, bytesRead);
+            if (r != ranges.getFirst()) {
+                it.remove();
+                ranges.addFirst(r);
+            }
+            return bytesRead;
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a range that was read from the file.
+     *
+     * @param offset
+     *            offset of the range, as returned by {@link #getRangeOffset(long)}
+     * @param data
+     * @param length
+     *            number of valid bytes in "data", less than the range size if the file ends before
+     */
+    synchronized void put(long offset, byte[] data, int length) {
+        Iterator<Range> it = ranges.iterator();
+        while (it.hasNext()) {
+            if (it.next().offset == offset) {
+                it.remove();
+                break;
+            }
+        }
+        ranges.addFirst(new Range(offset, data, length));
+        if (ranges.size() > maxRanges) {
+            ranges.removeLast();
+        }
+    }
+}
@@ -8,9 +8,10 @@ package org.xtreemfs.common.clients.hadoop;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.ByteBuffer;
 
 import org.xtreemfs.common.libxtreemfs.FileHandle;
+import org.xtreemfs.foundation.buffer.BufferPool;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.UserCredentials;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.Stat;
@@ -18,6 +19,11 @@ import org.xtreemfs.pbrpc.generatedinterfaces.MRC.Stat;
 /**
  * 
  * Represents an Outputstream used when writing a file with HDFS.
+ * <p>
+ * If the write buffer is enabled, data is collected in (direct) buffers from the BufferPool, which are handed to
+ * the file handle without further copies once they are full. Buffers are aligned to file offsets which are
+ * multiples of the buffer size, so that each buffer covers whole objects if the buffer size is a multiple of the
+ * stripe size. The number of bytes in flight is bounded by the write-ahead of the asynchronous writes.
  */
 public class XtreemFSFileOutputStream extends OutputStream {
     private long            position = 0;
@@ -30,7 +36,10 @@ public class XtreemFSFileOutputStream extends OutputStream {
 
     private boolean         useBuffer;
 
-    private ByteBuffer      buffer;
+    private int             bufferSize;
+
+    // Buffer for data at "position" which has not been written yet, allocated on demand.
+    private ReusableBuffer  buffer;
     
     private boolean         closed;
 
@@ -47,9 +56,7 @@ public class XtreemFSFileOutputStream extends OutputStream {
         this.useBuffer = useBuffer;
         this.closed = false;
         
-        if (useBuffer) {
-            this.buffer = ByteBuffer.allocateDirect(bufferSize);
-        }
+        this.bufferSize = bufferSize;
 
         // Set position to end of file for append operation.
         if (append) {
@@ -104,40 +111,43 @@ public class XtreemFSFileOutputStream extends OutputStream {
             Logging.logMessage(Logging.LEVEL_DEBUG, this, "Closing file %s", fileName);
         }
 
-        if (useBuffer && buffer.position() > 0) {
+        if (buffer != null) {
             // If buffer has remaining content, write content to file.
-            byte[] bytesWriteToFile = flushBuffer();
-            fileHandle.write(userCredentials, bytesWriteToFile, bytesWriteToFile.length, position);
-            buffer = null;
+            writeBuffer();
         }
         super.close();
         fileHandle.close();
         closed = true;
     }
 
-    private synchronized void writeToBuffer(byte b[], int off, int len) throws IOException {
-        if (buffer.remaining() > len) {
-            // Write content to buffer.
-            buffer.put(b, off, len);
-        } else {
-            // Flush buffer and write content + last write request to file.
-            byte[] buffercontent = flushBuffer(); 
-            byte[] bytesWriteToFile = new byte[buffercontent.length + len];
-            System.arraycopy(buffercontent, 0, bytesWriteToFile, 0, buffercontent.length);
-            System.arraycopy(b, off, bytesWriteToFile, buffercontent.length, len);
-            int writtenBytes = fileHandle
-                    .write(userCredentials, bytesWriteToFile, bytesWriteToFile.length, position);
-            position += writtenBytes;
+    private void writeToBuffer(byte b[], int off, int len) throws IOException {
+        while (len > 0) {
+            if (buffer == null) {
+                // Align the end of the buffer to a multiple of the buffer size.
+                buffer = BufferPool.allocate(bufferSize - (int) (position % bufferSize));
+            }
+
+            int bytesToBuffer = Math.min(len, buffer.remaining());
+            buffer.put(b, off, bytesToBuffer);
+            off += bytesToBuffer;
+            len -= bytesToBuffer;
+
+            if (!buffer.hasRemaining()) {
+                writeBuffer();
+            }
         }
     }
-    
-    private byte[] flushBuffer() {
-        int bytesInBuffer = buffer.position();
-        buffer.clear();
-        byte[] buffercontent = new byte[bytesInBuffer];
-        buffer.get(buffercontent, 0, bytesInBuffer);
-        buffer.clear();
-        return buffercontent;
+
+    private void writeBuffer() throws IOException {
+        // Ownership of the buffer is transferred to the file handle.
+        ReusableBuffer data = buffer;
+        buffer = null;
+        int count = data.position();
+        if (count == 0) {
+            BufferPool.free(data);
+            return;
+        }
+        position += fileHandle.write(userCredentials, data, count, position);
     }
 
 }
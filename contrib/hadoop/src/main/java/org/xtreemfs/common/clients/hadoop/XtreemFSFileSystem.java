@@ -14,8 +14,10 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -27,7 +29,10 @@ import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.fs.RemoteIterator;
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.util.Progressable;
 import org.apache.hadoop.util.VersionInfo;
@@ -69,8 +74,11 @@ public class XtreemFSFileSystem extends FileSystem {
     private boolean             useWriteBuffer;
     private int                 readBufferSize;
     private int                 writeBufferSize;
+    private int                 rangeCacheEntries;
+    private int                 rangeCacheRangeSize;
     private Volume              defaultVolume;
     private static final int    STANDARD_DIR_PORT = 32638;
+    private static final int    LIST_REPLICAS_BATCH_SIZE = 1024;
     private static final int[]  MIN_HADOOP_VERSION = { 0, 0, 0 };
     private static final int[]  MAX_HADOOP_VERSION =
             { 2, Integer.MAX_VALUE, Integer.MAX_VALUE };
@@ -217,6 +225,11 @@ public class XtreemFSFileSystem extends FileSystem {
             useReadBuffer = false;
         }
 
+        // Ranges cached per input stream for small positional reads, e.g. of file footers and indexes.
+        // Disabled by default, as the cache does not see changes of the file by other writers.
+        rangeCacheEntries = conf.getInt("xtreemfs.io.rangecache.entries", 0);
+        rangeCacheRangeSize = conf.getInt("xtreemfs.io.rangecache.size", 64 * 1024);
+
         useWriteBuffer = conf.getBoolean("xtreemfs.io.buffer.write", false);
         writeBufferSize = conf.getInt("xtreemfs.io.buffer.size.write", 0);
         if (useWriteBuffer && writeBufferSize == 0) {
@@ -383,7 +396,7 @@ public class XtreemFSFileSystem extends FileSystem {
             Logging.logMessage(Logging.LEVEL_DEBUG, this, "Opening file %s", pathString);
         }
         return new FSDataInputStream(new XtreemFSInputStream(userCredentials, fileHandle, pathString, useReadBuffer,
-                readBufferSize, statistics));
+                readBufferSize, rangeCacheEntries, rangeCacheRangeSize, statistics));
     }
 
     @Override
@@ -505,8 +518,9 @@ public class XtreemFSFileSystem extends FileSystem {
             return deleteXtreemFSFile(pathString, xtreemfsVolume);
         }
         if (isXtreemFSDirectory(pathString, xtreemfsVolume)) {
+            // '..', '.' and one nested entry suffice to tell that the directory is not empty
             if (!recursive
-                    && xtreemfsVolume.readDir(userCredentials, pathString, 0, 0, true).getEntriesCount() > 2) {
+                    && xtreemfsVolume.readDir(userCredentials, pathString, 0, 3, true).getEntriesCount() > 2) {
                 throw new IOException("Attempted to non-recursively delete non-empty directory '" + pathString + "'");
             }
             
@@ -633,32 +647,129 @@ public class XtreemFSFileSystem extends FileSystem {
             }
         }
 
+        List<FileStatus> fileStatus = listXtreemFSDirectory(path, pathString, xtreemfsVolume, false);
+        return fileStatus.toArray(new FileStatus[fileStatus.size()]);
+    }
+
+    @Override
+    protected RemoteIterator<LocatedFileStatus> listLocatedStatus(Path path, PathFilter filter) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("path is null");
+        }
+
+        Volume xtreemfsVolume = getVolumeFromPath(path);
+        final String pathString = preparePath(path, xtreemfsVolume);
+
+        if (Logging.isDebug()) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, this, "ls with locations: " + pathString);
+        }
+
+        if (isXtreemFSDirectory(pathString, xtreemfsVolume) == false) {
+            // only available since Hadoop 2.x, which expects a FNE
+            throw new FileNotFoundException(pathString);
+        }
+
+        final List<LocatedFileStatus> located = new ArrayList<LocatedFileStatus>();
+        for (FileStatus status : listXtreemFSDirectory(path, pathString, xtreemfsVolume, true)) {
+            if (filter.accept(status.getPath())) {
+                located.add((LocatedFileStatus) status);
+            }
+        }
+
+        final Iterator<LocatedFileStatus> iterator = located.iterator();
+        return new RemoteIterator<LocatedFileStatus>() {
+
+            @Override
+            public boolean hasNext() throws IOException {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public LocatedFileStatus next() throws IOException {
+                if (!iterator.hasNext()) {
+                    throw new NoSuchElementException("No more entries in " + pathString);
+                }
+                return iterator.next();
+            }
+        };
+    }
+
+    /**
+     * Lists the entries of a directory. The replicas of all files are retrieved with one call to the MRC per
+     * {@link #LIST_REPLICAS_BATCH_SIZE} files instead of one call per file. If requested, the block locations
+     * of the files are added by returning {@link LocatedFileStatus} objects, which saves the
+     * {@link #getFileBlockLocations(FileStatus, long, long)} call per file when planning splits.
+     * 
+     * @param path
+     * @param pathString
+     *            path of the directory within the volume
+     * @param xtreemfsVolume
+     * @param withLocations
+     * @return the status of each entry except "." and ".."
+     * @throws IOException
+     */
+    private List<FileStatus> listXtreemFSDirectory(Path path, String pathString, Volume xtreemfsVolume,
+            boolean withLocations) throws IOException {
+        // readDir() lists large directories in chunks, each of which continues after the last entry of the
+        // previous one
         DirectoryEntries dirEntries = xtreemfsVolume.readDir(userCredentials, pathString, 0, 0, false);
         statistics.incrementLargeReadOps(1);
-        ArrayList<FileStatus> fileStatus = new ArrayList<FileStatus>(dirEntries.getEntriesCount() - 2);
+
+        List<DirectoryEntry> entries = new ArrayList<DirectoryEntry>(dirEntries.getEntriesCount());
+        List<String> filePaths = new ArrayList<String>();
         for (DirectoryEntry entry : dirEntries.getEntriesList()) {
             if (entry.getName().equals("..") || entry.getName().equals(".")) {
                 continue;
             }
+            entries.add(entry);
+            if (!isXtreemFSDirectory(entry.getStbuf())) {
+                filePaths.add(pathString + "/" + entry.getName());
+            }
+        }
+
+        List<Replicas> fileReplicas = new ArrayList<Replicas>(filePaths.size());
+        for (int i = 0; i < filePaths.size(); i += LIST_REPLICAS_BATCH_SIZE) {
+            fileReplicas.addAll(xtreemfsVolume.listReplicas(userCredentials,
+                    filePaths.subList(i, Math.min(i + LIST_REPLICAS_BATCH_SIZE, filePaths.size()))));
+        }
+
+        ArrayList<FileStatus> fileStatus = new ArrayList<FileStatus>(entries.size());
+        int fileIndex = 0;
+        for (DirectoryEntry entry : entries) {
             final Stat stat = entry.getStbuf();
             final boolean isDir = isXtreemFSDirectory(stat);
+            FileStatus status;
+            Replicas replicas = null;
             if (isDir) {
                 // for directories, set length, replication and blocksize to 0
-                fileStatus.add(new FileStatus(0, true, 0, 0, (long) (stat.getMtimeNs() / 1e6), (long) (stat
+                status = new FileStatus(0, true, 0, 0, (long) (stat.getMtimeNs() / 1e6), (long) (stat
                         .getAtimeNs() / 1e6), new FsPermission((short) stat.getMode()), stat.getUserId(), stat
-                        .getGroupId(), new Path(makeAbsolute(path), entry.getName())));
+                        .getGroupId(), new Path(makeAbsolute(path), entry.getName()));
             } else {
-                Replicas replicas = xtreemfsVolume.listReplicas(userCredentials,
-                        pathString + "/" + entry.getName());
-                
+                replicas = fileReplicas.get(fileIndex++);
+                if (replicas == null) {
+                    // the file has been deleted after the directory was read
+                    continue;
+                }
+
                 // for files, set blocksize to stripeSize of the first replica
-                fileStatus.add(new FileStatus(stat.getSize(), false, replicas.getReplicasCount(),
+                status = new FileStatus(stat.getSize(), false, replicas.getReplicasCount(),
                         replicas.getReplicas(0).getStripingPolicy().getStripeSize() * 1024, (long) (stat.getMtimeNs() / 1e6),
                         (long) (stat.getAtimeNs() / 1e6), new FsPermission((short) stat.getMode()), stat.getUserId(),
-                        stat.getGroupId(), new Path(makeAbsolute(path), entry.getName())));
+                        stat.getGroupId(), new Path(makeAbsolute(path), entry.getName()));
             }
+
+            if (withLocations) {
+                BlockLocation[] locations = null;
+                if (replicas != null) {
+                    locations = stat.getSize() == 0 ? new BlockLocation[0] : toBlockLocations(xtreemfsVolume
+                            .getStripeLocations(replicas, 0, stat.getSize()));
+                }
+                status = new LocatedFileStatus(status, locations);
+            }
+            fileStatus.add(status);
         }
-        return fileStatus.toArray(new FileStatus[fileStatus.size()]);
+        return fileStatus;
     }
 
     @Override
@@ -791,7 +902,10 @@ public class XtreemFSFileSystem extends FileSystem {
         String pathString = preparePath(file.getPath(), xtreemfsVolume);
         List<StripeLocation> stripeLocations = xtreemfsVolume.getStripeLocations(userCredentials, pathString, start,
                 length);
+        return toBlockLocations(stripeLocations);
+    }
 
+    private BlockLocation[] toBlockLocations(List<StripeLocation> stripeLocations) {
         BlockLocation[] result = new BlockLocation[stripeLocations.size()];
         for (int i = 0; i < result.length; ++i) {
             result[i] = new BlockLocation(stripeLocations.get(i).getUuids(), stripeLocations.get(i).getHostnames(),
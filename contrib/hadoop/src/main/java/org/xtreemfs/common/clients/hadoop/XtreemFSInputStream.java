@@ -8,6 +8,10 @@ package org.xtreemfs.common.clients.hadoop;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 
 import org.apache.hadoop.fs.FSInputStream;
 import org.apache.hadoop.fs.FileSystem.Statistics;
@@ -17,9 +21,71 @@ import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.UserCredentials;
 
 /**
  * Represents an InputStream user when reading a file with HDFS.
+ * <p>
+ * Positional reads do not synchronize on the stream and do not touch the read buffer, so that concurrent
+ * positional reads of e.g. columnar file formats are executed in parallel. Small positional reads are served
+ * from a {@link ReadRangeCache}, if enabled. Multiple ranges can be read at once with
+ * {@link #readVectored(List)}.
  */
 public class XtreemFSInputStream extends FSInputStream {
 
+    /**
+     * A part of the file to read with {@link XtreemFSInputStream#readVectored(List)}.
+     */
+    public static class ReadRange {
+
+        private final long   offset;
+
+        private final byte[] data;
+
+        private int          bytesRead;
+
+        public ReadRange(long offset, int length) {
+            this.offset = offset;
+            this.data = new byte[length];
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getLength() {
+            return data.length;
+        }
+
+        /**
+         * @return the data of the range, of which the first {@link #getBytesRead()} bytes are valid
+         */
+        public byte[] getData() {
+            return data;
+        }
+
+        /**
+         * @return the number of bytes read, which is less than the length if the file ends before
+         */
+        public int getBytesRead() {
+            return bytesRead;
+        }
+    }
+
+    /**
+     * Ranges of a vectored read are merged into a single read if they are at most this many bytes apart.
+     */
+    private static final int                   VECTORED_READ_MERGE_GAP       = 128 * 1024;
+
+    /**
+     * Ranges of a vectored read are not merged beyond this size.
+     */
+    private static final int                   VECTORED_READ_MAX_MERGED_SIZE = 2 * 1024 * 1024;
+
+    private static final Comparator<ReadRange> RANGE_OFFSET_ORDER            = new Comparator<ReadRange>() {
+
+        @Override
+        public int compare(ReadRange o1, ReadRange o2) {
+            return o1.offset < o2.offset ? -1 : (o1.offset == o2.offset ? 0 : 1);
+        }
+    };
+
     private long            position           = 0;
 
     // Used by the buffer to determine the position in the file.
@@ -41,8 +107,23 @@ public class XtreemFSInputStream extends FSInputStream {
     
     private boolean         closed;
 
+    // Caches small positional reads, null if disabled.
+    private ReadRangeCache  rangeCache;
+
     public XtreemFSInputStream(UserCredentials userCredentials, FileHandle fileHandle, String fileName,
             boolean useBuffer, int bufferSize, Statistics statistics) throws IOException {
+        this(userCredentials, fileHandle, fileName, useBuffer, bufferSize, 0, 0, statistics);
+    }
+
+    /**
+     * @param rangeCacheEntries
+     *            number of ranges cached for positional reads, 0 disables the cache
+     * @param rangeCacheRangeSize
+     *            size of the cached ranges, positional reads which span multiple ranges are not cached
+     */
+    public XtreemFSInputStream(UserCredentials userCredentials, FileHandle fileHandle, String fileName,
+            boolean useBuffer, int bufferSize, int rangeCacheEntries, int rangeCacheRangeSize, Statistics statistics)
+            throws IOException {
         this.userCredentials = userCredentials;
         this.fileHandle = fileHandle;
         this.fileName = fileName;
@@ -51,8 +132,13 @@ public class XtreemFSInputStream extends FSInputStream {
         this.closed = false;
         
         if (useBuffer) {
+            // The buffer holds the data from bufferFilePosition - limit to bufferFilePosition, i.e. it is empty.
             this.buffer = ByteBuffer.allocateDirect(bufferSize);
-            buffer.position(buffer.capacity());
+            buffer.limit(0);
+        }
+
+        if (rangeCacheEntries > 0 && rangeCacheRangeSize > 0) {
+            this.rangeCache = new ReadRangeCache(rangeCacheEntries, rangeCacheRangeSize);
         }
     }
 
@@ -60,8 +146,16 @@ public class XtreemFSInputStream extends FSInputStream {
     public synchronized void seek(long l) throws IOException {
         this.position = l;
         if (useBuffer) {
-            this.bufferFilePosition = l;
-            buffer.position(buffer.limit());
+            this.EOF = false;
+            // Keep the buffered data if the new position is within it.
+            long bufferStart = bufferFilePosition - buffer.limit();
+            if (l >= bufferStart && l < bufferFilePosition) {
+                buffer.position((int) (l - bufferStart));
+            } else {
+                // Drop the buffered data, so that it is not taken for data at the new position.
+                this.bufferFilePosition = l;
+                buffer.limit(0);
+            }
         }
     }
 
@@ -110,8 +204,14 @@ public class XtreemFSInputStream extends FSInputStream {
     }
 
     @Override
-    public synchronized int read(long position, byte[] bytes, int offset, int length) throws IOException {
-        int bytesRead = fileHandle.read(userCredentials, bytes, offset, length, position);
+    public int read(long position, byte[] bytes, int offset, int length) throws IOException {
+        int bytesRead = -1;
+        if (rangeCache != null) {
+            bytesRead = readFromRangeCache(position, bytes, offset, length);
+        }
+        if (bytesRead < 0) {
+            bytesRead = fileHandle.read(userCredentials, bytes, offset, length, position);
+        }
         if ((bytesRead == 0) && (length > 0)) {
             return -1;
         }
@@ -119,6 +219,53 @@ public class XtreemFSInputStream extends FSInputStream {
         return bytesRead;
     }
 
+    /**
+     * Reads multiple ranges of the file. Ranges which are close to each other are merged and read with a single
+     * request, which is split across the OSDs of a striped file. The ranges may overlap and need not be sorted.
+     * Like positional reads, vectored reads do not change the position of the stream.
+     * 
+     * @param ranges
+     * @throws IOException
+     */
+    public void readVectored(List<ReadRange> ranges) throws IOException {
+        List<ReadRange> sorted = new ArrayList<ReadRange>(ranges);
+        Collections.sort(sorted, RANGE_OFFSET_ORDER);
+
+        int first = 0;
+        while (first < sorted.size()) {
+            final long start = sorted.get(first).offset;
+            long end = start + sorted.get(first).data.length;
+            int last = first;
+            while (last + 1 < sorted.size()) {
+                ReadRange next = sorted.get(last + 1);
+                long mergedEnd = Math.max(end, next.offset + next.data.length);
+                if (next.offset - end > VECTORED_READ_MERGE_GAP
+                        || mergedEnd - start > VECTORED_READ_MAX_MERGED_SIZE) {
+                    break;
+                }
+                end = mergedEnd;
+                last++;
+            }
+
+            if (first == last) {
+                ReadRange range = sorted.get(first);
+                range.bytesRead = fileHandle.read(userCredentials, range.data, 0, range.data.length, range.offset);
+                statistics.incrementBytesRead(range.bytesRead);
+            } else {
+                byte[] merged = new byte[(int) (end - start)];
+                int bytesRead = fileHandle.read(userCredentials, merged, 0, merged.length, start);
+                for (int i = first; i <= last; i++) {
+                    ReadRange range = sorted.get(i);
+                    int rangeStart = (int) (range.offset - start);
+                    range.bytesRead = Math.max(0, Math.min(range.data.length, bytesRead - rangeStart));
+                    System.arraycopy(merged, rangeStart, range.data, 0, range.bytesRead);
+                    statistics.incrementBytesRead(range.bytesRead);
+                }
+            }
+            first = last + 1;
+        }
+    }
+
     @Override
     public synchronized int read(byte[] bytes) throws IOException {
         return read(bytes, 0, bytes.length);
@@ -146,6 +293,35 @@ public class XtreemFSInputStream extends FSInputStream {
         return fileHandle.getLastOSDAddress();
     }
 
+    /**
+     * Reads from the range cache. If the requested part is within a single range which is not cached yet, the
+     * whole range is read and added to the cache, unless the file ends within the range, as it may still grow.
+     * 
+     * @return the number of bytes read, or -1 if the requested part spans multiple ranges
+     */
+    private int readFromRangeCache(long position, byte[] bytes, int offset, int length) throws IOException {
+        int bytesRead = rangeCache.read(position, bytes, offset, length);
+        if (bytesRead >= 0) {
+            return bytesRead;
+        }
+
+        final int rangeSize = rangeCache.getRangeSize();
+        final long rangeOffset = rangeCache.getRangeOffset(position);
+        if (position + length > rangeOffset + rangeSize) {
+            return -1;
+        }
+
+        byte[] data = new byte[rangeSize];
+        int rangeLength = fileHandle.read(userCredentials, data, 0, rangeSize, rangeOffset);
+        if (rangeLength == rangeSize) {
+            rangeCache.put(rangeOffset, data, rangeLength);
+        }
+
+        bytesRead = (int) Math.max(0, Math.min(length, rangeOffset + rangeLength - position));
+        System.arraycopy(data, (int) (position - rangeOffset), bytes, offset, bytesRead);
+        return bytesRead;
+    }
+
     private int readFromBuffer(byte[] bytes, int offset, int length) throws IOException {
         if (EOF || length == 0) {
             return 0;
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+package org.xtreemfs.common.clients.hadoop;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ReadRangeCacheTest {
+
+    private static byte[] range(long offset, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (offset + i);
+        }
+        return data;
+    }
+
+    @Test
+    public void testReadAndEvict() {
+        ReadRangeCache cache = new ReadRangeCache(2, 16);
+        byte[] bytes = new byte[16];
+
+        assertEquals(32, cache.getRangeOffset(40));
+        assertEquals(-1, cache.read(40, bytes, 0, 4));
+
+        cache.put(32, range(32, 16), 16);
+        assertEquals(4, cache.read(40, bytes, 2, 4));
+        assertEquals((byte) 40, bytes[2]);
+        assertEquals((byte) 43, bytes[5]);
+
+        // the rest of the file beyond the range is not cached
+        assertEquals(-1, cache.read(44, bytes, 0, 8));
+
+        cache.put(0, range(0, 16), 16);
+        // use the first range, the second one is evicted next
+        assertEquals(1, cache.read(32, bytes, 0, 1));
+        cache.put(64, range(64, 16), 16);
+        assertEquals(-1, cache.read(0, bytes, 0, 1));
+        assertEquals(1, cache.read(32, bytes, 0, 1));
+        assertEquals(1, cache.read(64, bytes, 0, 1));
+    }
+
+    @Test
+    public void testEndOfFile() {
+        ReadRangeCache cache = new ReadRangeCache(2, 16);
+        byte[] bytes = new byte[16];
+
+        // the file ends at offset 20
+        cache.put(16, range(16, 4), 4);
+        assertEquals(2, cache.read(18, bytes, 0, 8));
+        assertEquals((byte) 19, bytes[1]);
+        assertEquals(0, cache.read(20, bytes, 0, 8));
+        assertEquals(-1, cache.read(21, bytes, 0, 8));
+    }
+
+}
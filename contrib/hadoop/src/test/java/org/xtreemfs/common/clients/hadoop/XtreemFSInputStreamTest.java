@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+package org.xtreemfs.common.clients.hadoop;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.apache.hadoop.fs.FileSystem.Statistics;
+import org.junit.Test;
+import org.xtreemfs.common.libxtreemfs.FileHandle;
+
+public class XtreemFSInputStreamTest {
+
+    private static final int FILE_SIZE = 1000;
+
+    /**
+     * Creates a file handle of a file of which each byte is the lower byte of its offset.
+     */
+    private static FileHandle createFileHandle(final int fileSize) {
+        return (FileHandle) Proxy.newProxyInstance(FileHandle.class.getClassLoader(),
+                new Class<?>[] { FileHandle.class }, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("read")) {
+                            byte[] data = (byte[]) args[1];
+                            int dataOffset = args.length == 5 ? (Integer) args[2] : 0;
+                            int count = (Integer) args[args.length - 2];
+                            long offset = (Long) args[args.length - 1];
+                            int bytesRead = (int) Math.max(0, Math.min(count, fileSize - offset));
+                            for (int i = 0; i < bytesRead; i++) {
+                                data[dataOffset + i] = (byte) (offset + i);
+                            }
+                            return bytesRead;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private static XtreemFSInputStream createStream(FileHandle fileHandle) throws Exception {
+        return new XtreemFSInputStream(null, fileHandle, "file", true, 64, new Statistics("xtreemfs"));
+    }
+
+    @Test
+    public void testSeekBackBeforeRead() throws Exception {
+        XtreemFSInputStream in = createStream(createFileHandle(FILE_SIZE));
+        in.seek(100);
+        in.seek(50);
+        assertEquals(50, in.read());
+        assertEquals(51, in.read());
+    }
+
+    @Test
+    public void testSeekBackAfterFarSeek() throws Exception {
+        XtreemFSInputStream in = createStream(createFileHandle(FILE_SIZE));
+        assertEquals(0, in.read());
+
+        // the buffer holds offsets 0 to 63, which must not be taken for data after the far seek
+        in.seek(500);
+        in.seek(10);
+        assertEquals(10, in.read());
+
+        in.seek(500);
+        assertEquals(500 & 0xFF, in.read());
+        in.seek(480);
+        assertEquals(480 & 0xFF, in.read());
+
+        // seeking within the buffered data
+        in.seek(485);
+        assertEquals(485 & 0xFF, in.read());
+        in.seek(FILE_SIZE);
+        assertEquals(-1, in.read());
+        in.seek(990);
+        assertEquals(990 & 0xFF, in.read());
+    }
+}
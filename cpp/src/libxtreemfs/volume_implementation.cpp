@@ -987,6 +987,15 @@ xtreemfs::pbrpc::DirectoryEntries* VolumeImplementation::ReadDir(
     DirectoryEntries* dentries = static_cast<DirectoryEntries*>(
         response->response());
 
+    // Continue the next chunk after the last returned entry, so that the MRC
+    // does not need to skip all seen entries. MRCs of older releases do not
+    // return a continuation key.
+    if (dentries->has_continuation_key()) {
+      rq.set_continuation_key(dentries->continuation_key());
+    } else {
+      rq.clear_continuation_key();
+    }
+
     // Process request and free memory.
     if (current_offset == offset) {
       // First chunk
@@ -1009,6 +1018,7 @@ xtreemfs::pbrpc::DirectoryEntries* VolumeImplementation::ReadDir(
       break;
     }
   }
+  result->clear_continuation_key();
 
   // TODO(mberlin): Merge possible pending file size updates of files into
   //                the stat entries of listed files.
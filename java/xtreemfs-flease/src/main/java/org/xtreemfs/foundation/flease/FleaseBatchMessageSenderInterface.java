@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.foundation.flease;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+import org.xtreemfs.foundation.flease.comm.FleaseMessage;
+
+/**
+ * A sender which is able to transfer several messages for the same recipient at once. The messages must be
+ * delivered to the recipient's {@link FleaseStage#receiveMessages(List)}, e.g. by serializing them with
+ * {@link FleaseMessage#serializeBatch}.
+ */
+public interface FleaseBatchMessageSenderInterface extends FleaseMessageSenderInterface {
+
+    public void sendMessages(List<FleaseMessage> messages, InetSocketAddress recipient);
+
+}
@@ -55,6 +55,16 @@ public class FleaseConfig {
 
     private final boolean debugPrintMessages;
 
+    /**
+     * maximum number of messages sent to the same acceptor as one batch, 0 or 1 disables batching
+     */
+    private final int maxBatchSize;
+
+    /**
+     * number of threads the cells are distributed across
+     */
+    private final int numPartitions;
+
     public FleaseConfig(int leaseTimeout_ms, int dmax_ms,
                     int messageTimeout_ms, InetSocketAddress endpoint,
                     String identity, int maxRetries) {
@@ -72,6 +82,21 @@ public class FleaseConfig {
                     int messageTimeout_ms, InetSocketAddress endpoint,
                     String identity, int maxRetries, boolean sendLearnMessages,
                     int toNotification_ms, boolean debugPrintMessages) {
+        this(leaseTimeout_ms, dmax_ms, messageTimeout_ms, endpoint, identity, maxRetries, sendLearnMessages, toNotification_ms, debugPrintMessages, 0);
+    }
+
+    public FleaseConfig(int leaseTimeout_ms, int dmax_ms,
+                    int messageTimeout_ms, InetSocketAddress endpoint,
+                    String identity, int maxRetries, boolean sendLearnMessages,
+                    int toNotification_ms, boolean debugPrintMessages, int maxBatchSize) {
+        this(leaseTimeout_ms, dmax_ms, messageTimeout_ms, endpoint, identity, maxRetries, sendLearnMessages, toNotification_ms, debugPrintMessages, maxBatchSize, 1);
+    }
+
+    public FleaseConfig(int leaseTimeout_ms, int dmax_ms,
+                    int messageTimeout_ms, InetSocketAddress endpoint,
+                    String identity, int maxRetries, boolean sendLearnMessages,
+                    int toNotification_ms, boolean debugPrintMessages, int maxBatchSize,
+                    int numPartitions) {
 
         this.maxLeaseTimeout_ms = leaseTimeout_ms;
         this.dmax_ms = dmax_ms;
@@ -91,6 +116,8 @@ public class FleaseConfig {
         this.sendLearnMessages = sendLearnMessages;
         this.toNotification_ms = toNotification_ms;
         this.debugPrintMessages = debugPrintMessages;
+        this.maxBatchSize = maxBatchSize;
+        this.numPartitions = numPartitions;
 
     }
 
@@ -187,5 +214,19 @@ public class FleaseConfig {
         return debugPrintMessages;
     }
 
+    /**
+     * @return the maxBatchSize
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * @return the numPartitions
+     */
+    public int getNumPartitions() {
+        return numPartitions;
+    }
+
 
 }
@@ -0,0 +1,456 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.foundation.flease;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.xtreemfs.foundation.LifeCycleThread;
+import org.xtreemfs.foundation.TimeSync;
+import org.xtreemfs.foundation.buffer.ASCIIString;
+import org.xtreemfs.foundation.flease.FleaseStage.Request;
+import org.xtreemfs.foundation.flease.acceptor.FleaseAcceptor;
+import org.xtreemfs.foundation.flease.acceptor.LearnEventListener;
+import org.xtreemfs.foundation.flease.comm.FleaseCommunicationInterface;
+import org.xtreemfs.foundation.flease.comm.FleaseMessage;
+import org.xtreemfs.foundation.flease.proposer.FleaseException;
+import org.xtreemfs.foundation.flease.proposer.FleaseLocalQueueInterface;
+import org.xtreemfs.foundation.flease.proposer.FleaseProposer;
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.foundation.logging.Logging.Category;
+import org.xtreemfs.foundation.util.TimerWheel;
+
+/**
+ * Proposer and acceptor for a subset of the cells of a {@link FleaseStage}. Cells are assigned to partitions by
+ * the hash of their ID, so that each cell is only accessed by the thread of its partition.
+ */
+class FleasePartition extends LifeCycleThread implements LearnEventListener, FleaseLocalQueueInterface {
+
+    private final FleaseStage                             stage;
+
+    final FleaseProposer                                  proposer;
+
+    final FleaseAcceptor                                  acceptor;
+
+    private final TimerWheel<FleaseMessage>               timers;
+
+    private final TimerWheel<Flease>                      leaseTimeouts;
+
+    /**
+     * the scheduled lease timeout of each cell
+     */
+    private final Map<ASCIIString, TimerWheel.Entry<Flease>> leaseTimeoutEntries;
+
+    private final List<FleaseMessage>                     expiredTimers;
+
+    private final List<Flease>                            expiredLeases;
+
+    private final LinkedBlockingQueue<Object>             messages;
+
+    private volatile boolean                              quit;
+
+    private long                                          lastTimerRun;
+
+    private final FleaseConfig                            config;
+
+    private final FleaseMessageSenderInterface            sender;
+
+    private final FleaseStatusListener                    leaseListener;
+
+    private final MasterEpochHandlerInterface             meHandler;
+
+    /**
+     * sender for batches of messages, null if batching is disabled
+     */
+    private final FleaseBatchMessageSenderInterface       batchSender;
+
+    /**
+     * messages sent while processing the current batch of requests, grouped by recipient
+     */
+    private final Map<InetSocketAddress, List<FleaseMessage>> outgoing;
+
+    /**
+     * @param lockOwner
+     *            the partition whose acceptor owns the lock file, null for the first partition
+     */
+    FleasePartition(FleaseStage stage, int partition, FleaseConfig config, String lockfileDir,
+            final FleaseMessageSenderInterface sender, boolean ignoreLockForTesting,
+            final FleaseViewChangeListenerInterface viewListener, final FleaseStatusListener leaseListener,
+            final MasterEpochHandlerInterface meHandler, FleasePartition lockOwner) throws IOException {
+        super("FleaseSt" + (partition == 0 ? "" : "-" + partition));
+
+        this.stage = stage;
+        this.config = config;
+        this.sender = sender;
+        this.leaseListener = leaseListener;
+        this.meHandler = meHandler;
+        this.messages = new LinkedBlockingQueue<Object>();
+        this.quit = false;
+
+        timers = new TimerWheel<FleaseMessage>(FleaseStage.TIMER_INTERVAL_IN_MS, TimeSync.getLocalSystemTime());
+        leaseTimeouts = new TimerWheel<Flease>(FleaseStage.TIMER_INTERVAL_IN_MS, TimeSync.getLocalSystemTime());
+        leaseTimeoutEntries = new HashMap<ASCIIString, TimerWheel.Entry<Flease>>();
+        expiredTimers = new ArrayList<FleaseMessage>();
+        expiredLeases = new ArrayList<Flease>();
+
+        if (lockOwner == null) {
+            acceptor = new FleaseAcceptor(this, config, lockfileDir, ignoreLockForTesting);
+        } else {
+            acceptor = new FleaseAcceptor(this, config, lockOwner.acceptor);
+        }
+        proposer = new FleaseProposer(config, acceptor, new FleaseCommunicationInterface() {
+
+            public void sendMessage(FleaseMessage msg, InetSocketAddress receiver) throws IOException {
+                send(msg, receiver);
+            }
+
+            public void requestTimer(FleaseMessage msg, long timestamp) {
+                createTimer(msg, timestamp);
+            }
+        }, leaseListener, this, this, meHandler);
+        acceptor.setViewChangeListener(viewListener);
+        proposer.setViewChangeListener(viewListener);
+
+        if (config.getMaxBatchSize() > 1 && sender instanceof FleaseBatchMessageSenderInterface) {
+            batchSender = (FleaseBatchMessageSenderInterface) sender;
+            outgoing = new HashMap<InetSocketAddress, List<FleaseMessage>>();
+        } else {
+            batchSender = null;
+            outgoing = null;
+        }
+    }
+
+    void enqueue(Object request) {
+        messages.add(request);
+    }
+
+    public void learnedEvent(ASCIIString cellId, ASCIIString leaseHolder, long leaseTimeout_ms, long masterEpochNumber) {
+        if (Logging.isDebug()) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, Category.flease, this,"learned event: "+leaseHolder+"/"+leaseTimeout_ms);
+        }
+        Flease newFlease = new Flease(cellId, leaseHolder, leaseTimeout_ms, masterEpochNumber);
+        Flease oldFlease = proposer.updatePrevLeaseForCell(cellId, newFlease);
+        if (oldFlease != null) {
+            if (oldFlease.isValid()) {
+                if (!oldFlease.isSameLeaseHolder(newFlease)) {
+                    Logging.logMessage(
+                            Logging.LEVEL_DEBUG,
+                            Category.flease,
+                            this,
+                            "New lease replaced old lease which is still valid according to this OSD's clocks. Make sure all OSD clocks are synchronized. New Lease: %s Old Lease: %s",
+                            newFlease, oldFlease);
+                }
+            }
+            if (Logging.isDebug()) {
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.flease, this,"lease state change: %s %s %d",cellId,leaseHolder,leaseTimeout_ms);
+            }
+            leaseListener.statusChanged(cellId, newFlease);
+            if (FleaseStage.ENABLE_TIMEOUT_EVENTS) {
+                cancelLeaseTimeout(cellId);
+                leaseTimeoutEntries.put(cellId, leaseTimeouts.schedule(newFlease, newFlease.getLeaseTimeout_ms()));
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+
+        notifyStarted();
+
+        long nextTimerRunInMS = FleaseStage.TIMER_INTERVAL_IN_MS;
+        lastTimerRun = 0;
+
+        List<Object> rqList = new ArrayList(1000);
+
+        while (!quit) {
+            try {
+                final Object tmp = messages.poll(nextTimerRunInMS, TimeUnit.MILLISECONDS);
+
+                if (quit) {
+                    break;
+                }
+
+                if ((tmp == null) ||
+                        (TimeSync.getLocalSystemTime() >= lastTimerRun + nextTimerRunInMS)) {
+                    checkTimers();
+                    if (FleaseStage.ENABLE_TIMEOUT_EVENTS) {
+                        checkLeaseTimeouts();
+                    }
+                    lastTimerRun = TimeSync.getLocalSystemTime();
+                }
+                if (tmp == null) {
+                    flushOutgoing();
+                    continue;
+                }
+
+                rqList.add(tmp);
+                messages.drainTo(rqList, 25);
+
+                while (!rqList.isEmpty()) {
+
+                    final Object request = rqList.remove(rqList.size() - 1);
+
+                    long rqStart = 0;
+                    if (FleaseStage.COLLECT_STATISTICS) {
+                        rqStart = System.nanoTime();
+                    }
+                    if (request instanceof FleaseMessage) {
+                        processMessage((FleaseMessage) request);
+                        if (FleaseStage.COLLECT_STATISTICS) {
+                            long rqEnd = System.nanoTime();
+                            stage.durMsgs.get().add(Integer.valueOf((int)(rqEnd-rqStart)));
+                            stage.outMsgs.incrementAndGet();
+                        }
+                    } else if (request instanceof List) {
+                        final List<FleaseMessage> msgs = (List<FleaseMessage>) request;
+                        for (FleaseMessage msg : msgs) {
+                            processMessage(msg);
+                        }
+                        if (FleaseStage.COLLECT_STATISTICS) {
+                            long rqEnd = System.nanoTime();
+                            stage.durMsgs.get().add(Integer.valueOf((int)(rqEnd-rqStart)));
+                            stage.outMsgs.addAndGet(msgs.size());
+                        }
+                    } else {
+                        processRequest((Request) request);
+                        if (FleaseStage.COLLECT_STATISTICS) {
+                            long rqEnd = System.nanoTime();
+                            stage.durRequests.get().add(Integer.valueOf((int)(rqEnd-rqStart)));
+                        }
+                    }
+
+                }
+                flushOutgoing();
+                if (FleaseStage.DISABLE_RENEW_FOR_TESTING) {
+                    Thread.sleep(0, 2);
+                }
+
+            } catch (InterruptedException ex) {
+                if (quit) {
+                    break;
+                }
+            } catch (Throwable ex) {
+                notifyCrashed(ex);
+                return;
+            }
+        }
+
+        notifyStopped();
+    }
+
+    public void shutdown() {
+        quit = true;
+        this.interrupt();
+    }
+
+    private void processRequest(Request rq) {
+        switch (rq.type) {
+            case OPEN_CELL_REQUEST: {
+                assert (rq.acceptors != null);
+                try {
+                proposer.openCell(rq.cellId, rq.acceptors, rq.requestME, rq.viewId);
+                acceptor.setViewId(rq.cellId, rq.viewId);
+                    if (rq.listener != null)
+                        rq.listener.proposalResult(rq.cellId, null, 0, FleaseMessage.IGNORE_MASTER_EPOCH);
+                } catch (FleaseException ex) {
+                    Logging.logError(Logging.LEVEL_DEBUG, this, ex);
+                    leaseListener.leaseFailed(rq.cellId, ex);
+                }
+                break;
+            }
+            case CLOSE_CELL_REQUEST: {
+                proposer.closeCell(rq.cellId);
+                rq.listener.proposalResult(rq.cellId, null, 0, FleaseMessage.IGNORE_MASTER_EPOCH);
+                break;
+            }
+            case HANDOVER_LEASE: {
+                try {
+                    Flease prevLease = proposer.updatePrevLeaseForCell(rq.cellId, Flease.EMPTY_LEASE);
+                    if (prevLease != null) {
+                        //cancel the lease
+                        cancelLeaseTimeout(rq.cellId);
+                    }
+                    proposer.handoverLease(rq.cellId, rq.newLeaseOwner);
+                } catch (FleaseException ex) {
+                    rq.listener.proposalFailed(rq.cellId, ex);
+                }
+                break;
+            }
+            case SET_VIEW: {
+                proposer.setViewId(rq.cellId, rq.viewId);
+                acceptor.setViewId(rq.cellId, rq.viewId);
+                rq.listener.proposalResult(rq.cellId, null, 0, FleaseMessage.IGNORE_MASTER_EPOCH);
+                break;
+            }
+            case GET_STATE: {
+                try {
+                    rq.cback.localStateResult(acceptor.localState());
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void processMessage(final FleaseMessage msg) throws Exception {
+        if (msg.isInternalEvent()) {
+            //should never happen!
+            Logging.logMessage(Logging.LEVEL_ERROR, Category.flease, this, "received internal event: %s", msg);
+        } else if (msg.isAcceptorMessage()) {
+            final FleaseMessage response = acceptor.processMessage(msg);
+            if (response != null) {
+                if (msg.getMasterEpochNumber() == FleaseMessage.REQUEST_MASTER_EPOCH
+                        && response.getMsgType() == FleaseMessage.MsgType.MSG_PREPARE_ACK) {
+                    // Respond with the current master epoch.
+                    if (meHandler != null) {
+                        MasterEpochHandlerInterface.Continuation cont = new MasterEpochHandlerInterface.Continuation() {
+                            @Override
+                            public void processingFinished() {
+                                sender.sendMessage(response, msg.getSender());
+                            }
+                        };
+                        meHandler.sendMasterEpoch(response, cont);
+                    } else {
+                        Logging.logMessage(Logging.LEVEL_ERROR, Category.flease, this,
+                                "MASTER EPOCH WAS REQUESTED, BUT NO MASTER EPOCH HANDLER DEFINED!!!");
+                        sender.sendMessage(response, msg.getSender());
+                    }
+                } else if (msg.getMasterEpochNumber() != FleaseMessage.IGNORE_MASTER_EPOCH
+                        && response.getMsgType() == FleaseMessage.MsgType.MSG_ACCEPT_ACK) {
+                    // Write the current master epoch to disk.
+                    if (meHandler != null) {
+                        MasterEpochHandlerInterface.Continuation cont = new MasterEpochHandlerInterface.Continuation() {
+                            @Override
+                            public void processingFinished() {
+                                sender.sendMessage(response, msg.getSender());
+                            }
+                        };
+                        meHandler.storeMasterEpoch(response, cont);
+                    }
+                } else {
+                    send(response, msg.getSender());
+                }
+            }
+        } else {
+            proposer.processMessage(msg);
+        }
+    }
+
+    /**
+     * Sends a message, or buffers it until the current batch of requests has been processed if batching is
+     * enabled.
+     */
+    private void send(FleaseMessage msg, InetSocketAddress receiver) {
+        if (outgoing == null) {
+            sender.sendMessage(msg, receiver);
+            return;
+        }
+
+        List<FleaseMessage> msgs = outgoing.get(receiver);
+        if (msgs == null) {
+            msgs = new ArrayList<FleaseMessage>();
+            outgoing.put(receiver, msgs);
+        }
+        // the proposer may modify the message after it has been sent
+        msgs.add(msg.clone());
+    }
+
+    /**
+     * Sends all buffered messages, one batch per recipient.
+     */
+    private void flushOutgoing() {
+        if (outgoing == null || outgoing.isEmpty()) {
+            return;
+        }
+
+        final int maxBatchSize = config.getMaxBatchSize();
+        for (Map.Entry<InetSocketAddress, List<FleaseMessage>> e : outgoing.entrySet()) {
+            final List<FleaseMessage> msgs = e.getValue();
+            for (int i = 0; i < msgs.size(); i += maxBatchSize) {
+                final int end = Math.min(i + maxBatchSize, msgs.size());
+                if (end - i == 1) {
+                    // a single message is sent as such, so that the receiver needs no batch support for it
+                    sender.sendMessage(msgs.get(i), e.getKey());
+                } else {
+                    batchSender.sendMessages(msgs.subList(i, end), e.getKey());
+                }
+            }
+        }
+        outgoing.clear();
+    }
+
+    private void checkTimers() throws Throwable {
+        final long now = TimeSync.getLocalSystemTime();
+
+        timers.expire(now + FleaseStage.TIMER_INTERVAL_IN_MS, expiredTimers);
+        for (int i = 0; i < expiredTimers.size(); i++) {
+            final FleaseMessage msg = expiredTimers.get(i);
+
+            long rqStart = 0;
+            if (FleaseStage.COLLECT_STATISTICS) {
+                rqStart = System.nanoTime();
+                stage.inTimers.incrementAndGet();
+            }
+            msg.setSendTimestamp(TimeSync.getGlobalTime());
+            proposer.processMessage(msg);
+
+            if (FleaseStage.COLLECT_STATISTICS) {
+                long rqEnd = System.nanoTime();
+                stage.durTimers.get().add(Integer.valueOf((int)(rqEnd-rqStart)));
+            }
+        }
+        expiredTimers.clear();
+    }
+
+    private void checkLeaseTimeouts() {
+        final long now = TimeSync.getGlobalTime();
+        final long deadline = now + FleaseStage.TIMER_INTERVAL_IN_MS + TimeSync.getLocalRenewInterval()
+            + config.getToNotification_ms();
+
+        leaseTimeouts.expire(deadline, expiredLeases);
+        for (int i = 0; i < expiredLeases.size(); i++) {
+            final Flease f = expiredLeases.get(i);
+            leaseTimeoutEntries.remove(f.getCellId());
+
+            if (Logging.isDebug()) {
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.flease, this,"lease state change: %s timed out (old lease: %s)",f.getCellId(),f.toString());
+            }
+            proposer.updatePrevLeaseForCell(f.getCellId(), Flease.EMPTY_LEASE);
+            leaseListener.statusChanged(f.getCellId(), Flease.EMPTY_LEASE);
+            //create restart event
+            FleaseMessage restartEvt = new FleaseMessage(FleaseMessage.MsgType.EVENT_RESTART);
+            restartEvt.setCellId(f.getCellId());
+            restartEvt.setProposalNo(proposer.getCurrentBallotNo(f.getCellId()));
+            createTimer(restartEvt, TimeSync.getLocalSystemTime() + config.getDMax());
+        }
+        expiredLeases.clear();
+    }
+
+    private void cancelLeaseTimeout(ASCIIString cellId) {
+        TimerWheel.Entry<Flease> e = leaseTimeoutEntries.remove(cellId);
+        if (e != null) {
+            leaseTimeouts.cancel(e);
+        }
+    }
+
+    void createTimer(FleaseMessage msg, long timestamp) {
+        msg.validateMessage();
+        timers.schedule(msg, timestamp);
+    }
+
+    @Override
+    public void enqueueMessage(FleaseMessage message) {
+        messages.add(message);
+    }
+}
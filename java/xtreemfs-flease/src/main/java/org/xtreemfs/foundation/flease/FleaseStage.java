@@ -9,36 +9,31 @@ package org.xtreemfs.foundation.flease;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.xtreemfs.foundation.LifeCycleListener;
 import org.xtreemfs.foundation.LifeCycleThread;
-import org.xtreemfs.foundation.TimeSync;
 import org.xtreemfs.foundation.buffer.ASCIIString;
-import org.xtreemfs.foundation.flease.acceptor.FleaseAcceptor;
 import org.xtreemfs.foundation.flease.acceptor.FleaseAcceptorCell;
-import org.xtreemfs.foundation.flease.acceptor.LearnEventListener;
-import org.xtreemfs.foundation.flease.comm.FleaseCommunicationInterface;
 import org.xtreemfs.foundation.flease.comm.FleaseMessage;
-import org.xtreemfs.foundation.flease.proposer.FleaseException;
 import org.xtreemfs.foundation.flease.proposer.FleaseListener;
 import org.xtreemfs.foundation.flease.proposer.FleaseLocalQueueInterface;
-import org.xtreemfs.foundation.flease.proposer.FleaseProposer;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
 
 /**
+ * Entry point of a flease instance. The cells are partitioned by the hash of their ID, each partition is
+ * processed by its own thread (see {@link FleaseConfig#getNumPartitions()}).
  *
  * @author bjko
  */
-public class FleaseStage extends LifeCycleThread implements LearnEventListener, FleaseLocalQueueInterface {
+public class FleaseStage extends LifeCycleThread implements FleaseLocalQueueInterface {
 
     public static final String FLEASE_VERSION = "0.2.4 (trunk)";
 
@@ -50,35 +45,24 @@ public class FleaseStage extends LifeCycleThread implements LearnEventListener,
 
     public static final boolean COLLECT_STATISTICS = false;
 
-    private final FleaseProposer proposer;
-
-    private final FleaseAcceptor acceptor;
-
-    private final PriorityQueue<TimerEntry> timers;
-
-    private final PriorityQueue<Flease> leaseTimeouts;
-
-    private final LinkedBlockingQueue messages;
+    private final FleasePartition[] partitions;
 
     private volatile boolean quit;
 
-    private long lastTimerRun;
+    /**
+     * cause of a crash of one of the partitions
+     */
+    private volatile Throwable crashCause;
 
     private final FleaseConfig config;
 
-    private final FleaseMessageSenderInterface sender;
-
     public static final int MAX_BATCH_SIZE = 20;
 
-    private final FleaseStatusListener leaseListener;
-
-    private final AtomicReference<List<Integer>> durRequests, durMsgs, durTimers;
-
-    private final AtomicInteger                  inRequests, inMsgs, inTimers, outMsgs;
+    final AtomicReference<List<Integer>> durRequests, durMsgs, durTimers;
 
-    private final FleaseStats                    statThr;
+    final AtomicInteger                  inRequests, inMsgs, inTimers, outMsgs;
 
-    private final MasterEpochHandlerInterface    meHandler;
+    private final FleaseStats            statThr;
 
     /**
      * Creates a new instance of Flease.
@@ -99,38 +83,33 @@ public class FleaseStage extends LifeCycleThread implements LearnEventListener,
         assert (sender != null);
         assert(leaseListener != null);
 
-        timers = new PriorityQueue<TimerEntry>();
-        messages = new LinkedBlockingQueue();
         quit = false;
         this.config = config;
-        this.leaseListener = leaseListener;
-        this.meHandler = meHandler;
 
-        acceptor = new FleaseAcceptor(this, config, lockfileDir, ignoreLockForTesting);
-        proposer = new FleaseProposer(config, acceptor, new FleaseCommunicationInterface() {
+        // listener and handlers may be invoked by several partitions concurrently
+        partitions = new FleasePartition[Math.max(config.getNumPartitions(), 1)];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new FleasePartition(this, i, config, lockfileDir, sender, ignoreLockForTesting,
+                    viewListener, leaseListener, meHandler, i == 0 ? null : partitions[0]);
+            partitions[i].setLifeCycleListener(new LifeCycleListener() {
 
-            public void sendMessage(FleaseMessage msg, InetSocketAddress receiver) throws IOException {
-                sender.sendMessage(msg, receiver);
-            }
+                public void startupPerformed() {
+                }
 
-            public void requestTimer(FleaseMessage msg, long timestamp) {
-                createTimer(msg, timestamp);
-            }
-        }, leaseListener, this, this,meHandler);
-        acceptor.setViewChangeListener(viewListener);
-        proposer.setViewChangeListener(viewListener);
-        this.sender = sender;
+                public void shutdownPerformed() {
+                }
 
-        leaseTimeouts = new PriorityQueue<Flease>(1000, new Comparator<Flease>() {
+                public void crashPerformed(Throwable cause) {
+                    crashCause = cause;
+                    shutdown();
+                }
+            });
+        }
 
-            public int compare(Flease o1, Flease o2) {
-                return (int) (o1.getLeaseTimeout_ms() - o2.getLeaseTimeout_ms());
-            }
-        });
         if (COLLECT_STATISTICS) {
-            durRequests = new AtomicReference(new LinkedList());
-            durTimers = new AtomicReference(new LinkedList());
-            durMsgs = new AtomicReference(new LinkedList());
+            durRequests = new AtomicReference(Collections.synchronizedList(new LinkedList()));
+            durTimers = new AtomicReference(Collections.synchronizedList(new LinkedList()));
+            durMsgs = new AtomicReference(Collections.synchronizedList(new LinkedList()));
             inRequests = new AtomicInteger();
             inTimers = new AtomicInteger();
             inMsgs = new AtomicInteger();
@@ -160,7 +139,7 @@ public class FleaseStage extends LifeCycleThread implements LearnEventListener,
     /**
      * Opens a cell. The leaseListener will be notified of all lease events for this cell. The local flease
      * instance will try to acquire the lease.
-     * 
+     *
      * @param cellId
      *            unique ID of the cell to open.
      * @param acceptors
@@ -184,32 +163,23 @@ public class FleaseStage extends LifeCycleThread implements LearnEventListener,
         if (COLLECT_STATISTICS)
             inRequests.incrementAndGet();
 
-        this.messages.add(rq);
+        getPartition(cellId).enqueue(rq);
         return f;
     }
 
     public void batchOpenCells(ASCIIString[] cellIds, List<InetSocketAddress>[] acceptors, boolean requestMasterEpoch) {
 
-        List<Request> batch = new ArrayList(cellIds.length);
         for (int i =0; i < cellIds.length; i++) {
             Request rq = new Request(Request.RequestType.OPEN_CELL_REQUEST);
             rq.cellId = cellIds[i];
             rq.acceptors = acceptors[i];
             rq.listener = null;
             rq.requestME = requestMasterEpoch;
-            batch.add(rq);
-        }
-        
-        for (int i = 0; i < batch.size(); i += MAX_BATCH_SIZE) {
-            int endIndex = i+MAX_BATCH_SIZE;
-            if (endIndex > batch.size()-1)
-                endIndex = batch.size();
-            List<Request> sublist = batch.subList(i, endIndex);
 
             if (COLLECT_STATISTICS)
-                inRequests.addAndGet(sublist.size());
+                inRequests.incrementAndGet();
 
-            this.messages.addAll(sublist);
+            getPartition(rq.cellId).enqueue(rq);
         }
 
     }
@@ -231,7 +201,7 @@ public class FleaseStage extends LifeCycleThread implements LearnEventListener,
         if (COLLECT_STATISTICS)
             inRequests.incrementAndGet();
 
-        this.messages.add(rq);
+        getPartition(cellId).enqueue(rq);
         return f;
     }
 
@@ -244,27 +214,32 @@ public class FleaseStage extends LifeCycleThread implements LearnEventListener,
         if (COLLECT_STATISTICS)
             inRequests.incrementAndGet();
 
-        this.messages.add(rq);
+        getPartition(cellId).enqueue(rq);
     }
 
     public Map<ASCIIString, FleaseMessage> getLocalState() throws InterruptedException {
-        final Request rq = new Request(Request.RequestType.GET_STATE);
-        final Map[] map = new Map[1];
-        rq.cback = new FleaseStateCallback() {
+        final Map<ASCIIString, FleaseMessage> result = new HashMap<ASCIIString, FleaseMessage>();
+        final int[] numResults = new int[1];
+        final FleaseStateCallback cback = new FleaseStateCallback() {
 
             public void localStateResult(Map<ASCIIString, FleaseMessage> state) {
-                synchronized (rq) {
-                    map[0] = state;
-                    rq.notifyAll();
+                synchronized (result) {
+                    result.putAll(state);
+                    numResults[0]++;
+                    result.notifyAll();
                 }
             }
         };
-        this.messages.add(rq);
-        synchronized (rq) {
-            if (map[0] == null) {
-                rq.wait();
+        for (FleasePartition partition : partitions) {
+            final Request rq = new Request(Request.RequestType.GET_STATE);
+            rq.cback = cback;
+            partition.enqueue(rq);
+        }
+        synchronized (result) {
+            while (numResults[0] < partitions.length) {
+                result.wait();
             }
-            return map[0];
+            return result;
         }
     }
 
@@ -274,15 +249,46 @@ public class FleaseStage extends LifeCycleThread implements LearnEventListener,
         if (COLLECT_STATISTICS)
             inMsgs.incrementAndGet();
 
-        this.messages.add(msg);
+        getPartition(msg.getCellId()).enqueue(msg);
+    }
+
+    /**
+     * Enqueues several messages which are processed together, e.g. a batch received from one sender. Responses
+     * to the same sender are batched again.
+     * @param msgs
+     */
+    public void receiveMessages(List<FleaseMessage> msgs) {
+        assert (!msgs.isEmpty());
+
+        if (COLLECT_STATISTICS)
+            inMsgs.addAndGet(msgs.size());
+
+        if (partitions.length == 1) {
+            partitions[0].enqueue(msgs);
+            return;
+        }
+
+        List<FleaseMessage>[] partitionMsgs = new List[partitions.length];
+        for (FleaseMessage msg : msgs) {
+            final int i = getPartitionIndex(msg.getCellId());
+            if (partitionMsgs[i] == null) {
+                partitionMsgs[i] = new ArrayList<FleaseMessage>(msgs.size() / partitions.length + 1);
+            }
+            partitionMsgs[i].add(msg);
+        }
+        for (int i = 0; i < partitions.length; i++) {
+            if (partitionMsgs[i] != null) {
+                partitions[i].enqueue(partitionMsgs[i]);
+            }
+        }
     }
 
     public FleaseMessage _test_get_local_lease_state(ASCIIString cellId) {
-        return acceptor.getLocalLeaseInformation(cellId);
+        return getPartition(cellId).acceptor.getLocalLeaseInformation(cellId);
     }
 
     public String _dump_acceptor_state(ASCIIString cellId) {
-        FleaseAcceptorCell cell = acceptor.cells.get(cellId);
+        FleaseAcceptorCell cell = getPartition(cellId).acceptor.cells.get(cellId);
         if (cell == null) {
             return cellId + ": does not exist";
         } else {
@@ -291,212 +297,58 @@ public class FleaseStage extends LifeCycleThread implements LearnEventListener,
 
     }
 
-    public void learnedEvent(ASCIIString cellId, ASCIIString leaseHolder, long leaseTimeout_ms, long masterEpochNumber) {
-        if (Logging.isDebug()) {
-            Logging.logMessage(Logging.LEVEL_DEBUG, Category.flease, this,"learned event: "+leaseHolder+"/"+leaseTimeout_ms);
-        }
-        Flease newFlease = new Flease(cellId, leaseHolder, leaseTimeout_ms, masterEpochNumber);
-        Flease oldFlease = proposer.updatePrevLeaseForCell(cellId, newFlease);
-        if (oldFlease != null) {
-            if (oldFlease.isValid()) {
-                if (!oldFlease.isSameLeaseHolder(newFlease)) {
-                    Logging.logMessage(
-                            Logging.LEVEL_DEBUG,
-                            Category.flease,
-                            this,
-                            "New lease replaced old lease which is still valid according to this OSD's clocks. Make sure all OSD clocks are synchronized. New Lease: %s Old Lease: %s",
-                            newFlease, oldFlease);
-                }
-            }
-            if (Logging.isDebug()) {
-                Logging.logMessage(Logging.LEVEL_DEBUG, Category.flease, this,"lease state change: %s %s %d",cellId,leaseHolder,leaseTimeout_ms);
-            }
-            leaseListener.statusChanged(cellId, newFlease);
-            if (ENABLE_TIMEOUT_EVENTS) {
-                leaseTimeouts.remove(oldFlease);
-                leaseTimeouts.add(newFlease);
-            }
-        }
-    }
-
     @Override
     public void run() {
 
         if (COLLECT_STATISTICS)
             statThr.start();
 
-        Logging.logMessage(Logging.LEVEL_INFO, Category.flease, this, "Flease (version %s) ready", FLEASE_VERSION);
-
-        notifyStarted();
-
-        // interval to check the OFT
-
-        long nextTimerRunInMS = TIMER_INTERVAL_IN_MS;
-        lastTimerRun = 0;
-
-        List<Object> rqList = new ArrayList(1000);
-
-        while (!quit) {
-            try {
-                final Object tmp = messages.poll(nextTimerRunInMS, TimeUnit.MILLISECONDS);
+        try {
+            for (FleasePartition partition : partitions) {
+                partition.start();
+            }
+            for (FleasePartition partition : partitions) {
+                partition.waitForStartup();
+            }
+        } catch (Exception ex) {
+            notifyCrashed(ex);
+            return;
+        }
 
-                if (quit) {
-                    break;
-                }
+        Logging.logMessage(Logging.LEVEL_INFO, Category.flease, this, "Flease (version %s) ready with %d partition(s)",
+                FLEASE_VERSION, partitions.length);
 
-                if ((tmp == null) ||
-                        (TimeSync.getLocalSystemTime() >= lastTimerRun + nextTimerRunInMS)) {
-                    if (ENABLE_TIMEOUT_EVENTS) {
-                        //nextTimerRunInMS =
-                        checkTimers();
-                        checkLeaseTimeouts();
-                    } else {
-                        nextTimerRunInMS = checkTimers();
-                    }
-                    lastTimerRun = TimeSync.getLocalSystemTime();
-                }
-                if (tmp == null) {
-                    continue;
-                }
+        notifyStarted();
 
-                rqList.add(tmp);
-                messages.drainTo(rqList, 25);
-                /*final int numItems = messages.poll(rqList, 25, nextTimerRunInMS);
-                if ((numItems == 0) ||
-                (TimeSync.getLocalSystemTime() >= lastTimerRun+nextTimerRunInMS)) {
-                nextTimerRunInMS = checkTimers();
-                lastTimerRun = TimeSync.getLocalSystemTime();
-                }
-                if (numItems == 0)
-                continue;*/
-
-                while (!rqList.isEmpty()) {
-
-                    final Object request = rqList.remove(rqList.size() - 1);
-
-                    long rqStart;
-                    if (COLLECT_STATISTICS) {
-                        rqStart = System.nanoTime();
-                    }
-                    if (request instanceof FleaseMessage) {
-                        final FleaseMessage msg = (FleaseMessage) request;
-
-                        if (msg.isInternalEvent()) {
-                            //should never happen!
-                            Logging.logMessage(Logging.LEVEL_ERROR, Category.flease, this, "received internal event: %s", msg);
-                        } else if (msg.isAcceptorMessage()) {
-                            final FleaseMessage response = acceptor.processMessage(msg);
-                            if (response != null) {
-                                if (msg.getMasterEpochNumber() == FleaseMessage.REQUEST_MASTER_EPOCH
-                                        && response.getMsgType() == FleaseMessage.MsgType.MSG_PREPARE_ACK) {
-                                    // Respond with the current master epoch.
-                                    if (meHandler != null) {
-                                        MasterEpochHandlerInterface.Continuation cont = new MasterEpochHandlerInterface.Continuation() {
-                                            @Override
-                                            public void processingFinished() {
-                                                sender.sendMessage(response, msg.getSender());
-                                            }
-                                        };
-                                        meHandler.sendMasterEpoch(response, cont);
-                                    } else {
-                                        Logging.logMessage(Logging.LEVEL_ERROR, Category.flease, this,
-                                                "MASTER EPOCH WAS REQUESTED, BUT NO MASTER EPOCH HANDLER DEFINED!!!");
-                                        sender.sendMessage(response, msg.getSender());
-                                    }
-                                } else if (msg.getMasterEpochNumber() != FleaseMessage.IGNORE_MASTER_EPOCH
-                                        && response.getMsgType() == FleaseMessage.MsgType.MSG_ACCEPT_ACK) {
-                                    // Write the current master epoch to disk.
-                                    if (meHandler != null) {
-                                        MasterEpochHandlerInterface.Continuation cont = new MasterEpochHandlerInterface.Continuation() {
-                                            @Override
-                                            public void processingFinished() {
-                                                sender.sendMessage(response, msg.getSender());
-                                            }
-                                        };
-                                        meHandler.storeMasterEpoch(response, cont);
-                                    }
-                                } else {
-                                    sender.sendMessage(response, msg.getSender());
-                                }
-                            }
-                        } else {
-                            proposer.processMessage(msg);
-                        }
-                        if (COLLECT_STATISTICS) {
-                            long rqEnd = System.nanoTime();
-                            durMsgs.get().add(Integer.valueOf((int)(rqEnd-rqStart)));
-                            outMsgs.incrementAndGet();
-                        }
-                    } else {
-                        Request rq = (Request) request;
-                        switch (rq.type) {
-                            case OPEN_CELL_REQUEST: {
-                                assert (rq.acceptors != null);
-                                try {
-                                proposer.openCell(rq.cellId, rq.acceptors, rq.requestME, rq.viewId);
-                                acceptor.setViewId(rq.cellId, rq.viewId);
-                                    if (rq.listener != null)
-                                        rq.listener.proposalResult(rq.cellId, null, 0, FleaseMessage.IGNORE_MASTER_EPOCH);
-                                } catch (FleaseException ex) {
-                                    Logging.logError(Logging.LEVEL_DEBUG, this, ex);
-                                    leaseListener.leaseFailed(rq.cellId, ex);
-                                }
-                                break;
-                            }
-                            case CLOSE_CELL_REQUEST: {
-                                proposer.closeCell(rq.cellId);
-                                rq.listener.proposalResult(rq.cellId, null, 0, FleaseMessage.IGNORE_MASTER_EPOCH);
-                                break;
-                            }
-                            case HANDOVER_LEASE: {
-                                try {
-                                    Flease prevLease = proposer.updatePrevLeaseForCell(rq.cellId, Flease.EMPTY_LEASE);
-                                    if (prevLease != null) {
-                                        //cancel the lease
-                                        leaseTimeouts.remove(prevLease);
-                                    }
-                                    proposer.handoverLease(rq.cellId, rq.newLeaseOwner);
-                                } catch (FleaseException ex) {
-                                    rq.listener.proposalFailed(rq.cellId, ex);
-                                }
-                                break;
-                            }
-                            case SET_VIEW: {
-                                proposer.setViewId(rq.cellId, rq.viewId);
-                                acceptor.setViewId(rq.cellId, rq.viewId);
-                                rq.listener.proposalResult(rq.cellId, null, 0, FleaseMessage.IGNORE_MASTER_EPOCH);
-                                break;
-                            }
-                            case GET_STATE: {
-                                try {
-                                    rq.cback.localStateResult(acceptor.localState());
-                                } catch (Exception ex) {
-                                    ex.printStackTrace();
-                                }
-                            }
-                        }
-                        if (COLLECT_STATISTICS) {
-                            long rqEnd = System.nanoTime();
-                            durRequests.get().add(Integer.valueOf((int)(rqEnd-rqStart)));
-                        }
-                    }
-                    
-                }
-                if (DISABLE_RENEW_FOR_TESTING) {
-                    Thread.sleep(0, 2);
+        synchronized (partitions) {
+            while (!quit) {
+                try {
+                    partitions.wait();
+                } catch (InterruptedException ex) {
+                    // check quit
                 }
+            }
+        }
 
-            } catch (InterruptedException ex) {
-                if (quit) {
-                    break;
-                }
-            } catch (Throwable ex) {
-                notifyCrashed(ex);
-                break;
+        for (FleasePartition partition : partitions) {
+            partition.shutdown();
+        }
+        for (FleasePartition partition : partitions) {
+            try {
+                partition.waitForShutdown();
+            } catch (Exception ex) {
+                // crashes are reported via crashCause
             }
         }
+        // the first partition removes the lock file, once all partitions have stopped
+        for (int i = partitions.length - 1; i >= 0; i--) {
+            partitions[i].acceptor.shutdown();
+        }
 
-        acceptor.shutdown();
+        if (crashCause != null) {
+            notifyCrashed(crashCause);
+            return;
+        }
         notifyStopped();
         Logging.logMessage(Logging.LEVEL_INFO, Category.flease, this, "Flease stopped", FLEASE_VERSION);
     }
@@ -505,88 +357,14 @@ public class FleaseStage extends LifeCycleThread implements LearnEventListener,
         if (COLLECT_STATISTICS)
             statThr.shutdown();
         Logging.logMessage(Logging.LEVEL_DEBUG, Category.flease, this, "received shutdown call...");
-        quit = true;
-        this.interrupt();
-    }
-
-    private int checkTimers() throws Throwable {
-        final long now = TimeSync.getLocalSystemTime();
-
-        TimerEntry e = timers.peek();
-        if (e == null) {
-            return TIMER_INTERVAL_IN_MS;
-        }
-        if (e.getScheduledTime() <= now + TIMER_INTERVAL_IN_MS) {
-            //execute timer
-            
-            do {
-                e = timers.poll();
-
-                long rqStart;
-                if (COLLECT_STATISTICS) {
-                    rqStart = System.nanoTime();
-                    inTimers.incrementAndGet();
-                }
-                if (e.getScheduledTime() < now) {
-                    Logging.logMessage(Logging.LEVEL_DEBUG, Category.flease, this, "event sent after deadline: %s",
-                            e.message);
-                }
-                e.getMessage().setSendTimestamp(TimeSync.getGlobalTime());
-                proposer.processMessage(e.getMessage());
-
-                if (COLLECT_STATISTICS) {
-                    long rqEnd = System.nanoTime();
-                    durTimers.get().add(Integer.valueOf((int)(rqEnd-rqStart)));
-                }
-
-                e = timers.peek();
-                if (e == null) {
-                    return TIMER_INTERVAL_IN_MS;
-                }
-            } while (e.getScheduledTime() <= now + TIMER_INTERVAL_IN_MS);
-            
-            return (int) (e.getScheduledTime() - now);
-        } else {
-            //tell how long we have to wait
-            return (int) (e.getScheduledTime() - now);
-        }
-    }
-
-    private void checkLeaseTimeouts() {
-        final long now = TimeSync.getGlobalTime();
-        final long deadline = now + TIMER_INTERVAL_IN_MS + TimeSync.getLocalRenewInterval()+config.getToNotification_ms();
-
-        Flease f = leaseTimeouts.peek();
-        if (f == null)
-            return;
-        if (f.getLeaseTimeout_ms() <= deadline) {
-            //execute timer
-            do {
-                f = leaseTimeouts.poll();
-
-                if (Logging.isDebug()) {
-                    Logging.logMessage(Logging.LEVEL_DEBUG, Category.flease, this,"lease state change: %s timed out (old lease: %s)",f.getCellId(),f.toString());
-                }
-                proposer.updatePrevLeaseForCell(f.getCellId(), f.EMPTY_LEASE);
-                leaseListener.statusChanged(f.getCellId(), Flease.EMPTY_LEASE);
-                //create restart event
-                FleaseMessage restartEvt = new FleaseMessage(FleaseMessage.MsgType.EVENT_RESTART);
-                restartEvt.setCellId(f.getCellId());
-                restartEvt.setProposalNo(proposer.getCurrentBallotNo(f.getCellId()));
-                createTimer(restartEvt, TimeSync.getLocalSystemTime() + config.getDMax());
-
-                f = leaseTimeouts.peek();
-                if (f == null) {
-                    return;
-                }
-            } while (f.getLeaseTimeout_ms() <= deadline);
+        synchronized (partitions) {
+            quit = true;
+            partitions.notifyAll();
         }
     }
 
     protected void createTimer(FleaseMessage msg, long timestamp) {
-        msg.validateMessage();
-        TimerEntry e = new TimerEntry(timestamp, msg);
-        timers.add(e);
+        getPartition(msg.getCellId()).createTimer(msg, timestamp);
     }
 
     int getInRequests() {
@@ -606,51 +384,31 @@ public class FleaseStage extends LifeCycleThread implements LearnEventListener,
     }
 
     List<Integer> getRequestDurations() {
-        return durRequests.getAndSet(new LinkedList());
+        return durRequests.getAndSet(Collections.synchronizedList(new LinkedList()));
     }
 
     List<Integer> getMessageDurations() {
-        return durMsgs.getAndSet(new LinkedList());
+        return durMsgs.getAndSet(Collections.synchronizedList(new LinkedList()));
     }
 
     List<Integer> getTimersDurations() {
-        return durTimers.getAndSet(new LinkedList());
+        return durTimers.getAndSet(Collections.synchronizedList(new LinkedList()));
     }
 
     @Override
     public void enqueueMessage(FleaseMessage message) {
-        messages.add(message);
+        getPartition(message.getCellId()).enqueueMessage(message);
     }
 
-    private final static class TimerEntry implements Comparable {
-
-        private final long scheduledTime;
-
-        private final FleaseMessage message;
-
-        public TimerEntry(long scheduledTime, FleaseMessage message) {
-            this.scheduledTime = scheduledTime;
-            this.message = message;
-        }
-
-        /**
-         * @return the scheduledTime
-         */
-        public long getScheduledTime() {
-            return scheduledTime;
-        }
-
-        public FleaseMessage getMessage() {
-            return this.message;
-        }
+    private int getPartitionIndex(ASCIIString cellId) {
+        return (cellId.hashCode() & Integer.MAX_VALUE) % partitions.length;
+    }
 
-        public int compareTo(Object o) {
-            TimerEntry e2 = (TimerEntry) o;
-            return (int) (this.scheduledTime - e2.scheduledTime);
-        }
+    private FleasePartition getPartition(ASCIIString cellId) {
+        return partitions[getPartitionIndex(cellId)];
     }
 
-    private final static class Request {
+    final static class Request {
 
         public boolean autoRenew;
         public boolean requestME;
@@ -685,7 +443,7 @@ public class FleaseStage extends LifeCycleThread implements LearnEventListener,
         }
     }
 
-    private static interface FleaseStateCallback {
+    static interface FleaseStateCallback {
 
         public void localStateResult(Map<ASCIIString, FleaseMessage> state);
     }
@@ -29,7 +29,7 @@ import org.xtreemfs.foundation.logging.Logging.Category;
  *
  * @author bjko
  */
-public class UDPFleaseCommunicator extends LifeCycleThread implements FleaseMessageSenderInterface {
+public class UDPFleaseCommunicator extends LifeCycleThread implements FleaseBatchMessageSenderInterface {
     
     private final FleaseStage                     stage;
 
@@ -43,7 +43,10 @@ public class UDPFleaseCommunicator extends LifeCycleThread implements FleaseMess
 
     private final AtomicBoolean                   sendMode;
 
-    private final LinkedBlockingQueue<FleaseMessage> q;
+    /**
+     * messages to send, either a FleaseMessage or a list of messages for the same recipient
+     */
+    private final LinkedBlockingQueue<Object>     q;
 
     private static final int                      MAX_UDP_SIZE  = 16*1024;
 
@@ -55,7 +58,7 @@ public class UDPFleaseCommunicator extends LifeCycleThread implements FleaseMess
         super("FlUDPCom");
         stage = new FleaseStage(config, lockfileDir, this, ignoreLockForTesting, viewListener, null, null);
         port = config.getEndpoint().getPort();
-        q = new LinkedBlockingQueue<FleaseMessage>();
+        q = new LinkedBlockingQueue<Object>();
         sendMode = new AtomicBoolean(false);
         numTx = 0;
         numRx = 0;
@@ -72,18 +75,39 @@ public class UDPFleaseCommunicator extends LifeCycleThread implements FleaseMess
         send(m);
     }
 
+    public void sendMessages(List<FleaseMessage> messages, InetSocketAddress recipient) {
+        List<FleaseMessage> batch = new ArrayList<FleaseMessage>(messages.size());
+        int batchSize = FleaseMessage.getBatchSize(batch);
+        for (FleaseMessage message : messages) {
+            // a batch must fit into a single datagram
+            if (!batch.isEmpty() && batchSize + message.getSize() > MAX_UDP_SIZE) {
+                send(batch);
+                batch = new ArrayList<FleaseMessage>(messages.size());
+                batchSize = FleaseMessage.getBatchSize(batch);
+            }
+            FleaseMessage m = message.clone();
+            m.setSender(recipient);
+            batch.add(m);
+            batchSize += m.getSize();
+        }
+        send(batch);
+    }
+
+    private void send(Object rq) {
+        q.add(rq);
+
+        if (q.size() == 1) {
+            selector.wakeup();
+        }
+    }
+
     /**
      * sends a UDPRequest.
      *
      * @attention Overwrites the first byte of rq.data with the message type.
      */
     public void send(FleaseMessage rq) {
-        q.add(rq);
-
-        if (q.size() == 1) {
-            //System.out.println("wakeup!");
-            selector.wakeup();
-        }
+        send((Object) rq);
     }
 
     public void shutdown() {
@@ -128,7 +152,7 @@ public class UDPFleaseCommunicator extends LifeCycleThread implements FleaseMess
 
             boolean isRdOnly = true;
 
-            List<FleaseMessage> sendList = new ArrayList(5000);
+            List<Object> sendList = new ArrayList(5000);
             ReusableBuffer data = BufferPool.allocate(MAX_UDP_SIZE);
 
             while (!quit) {
@@ -187,16 +211,25 @@ public class UDPFleaseCommunicator extends LifeCycleThread implements FleaseMess
                         q.drainTo(sendList,50);
                         //System.out.println("sent: "+queue.size());
                         while (!sendList.isEmpty()) {
-                            FleaseMessage r = sendList.remove(sendList.size()-1);
-                            if (r == null)
+                            Object o = sendList.remove(sendList.size()-1);
+                            if (o == null)
                                 break;
-                            if (Logging.isDebug())
-                                Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this,
-                                    "sent packet to %s", r.getSender().toString());
                             data.clear();
-                            r.serialize(data);
+                            final InetSocketAddress recipient;
+                            if (o instanceof FleaseMessage) {
+                                FleaseMessage r = (FleaseMessage) o;
+                                recipient = r.getSender();
+                                r.serialize(data);
+                            } else {
+                                List<FleaseMessage> batch = (List<FleaseMessage>) o;
+                                recipient = batch.get(0).getSender();
+                                FleaseMessage.serializeBatch(batch, data);
+                            }
                             data.flip();
-                            int sent = channel.send(data.getBuffer(), r.getSender());
+                            if (Logging.isDebug())
+                                Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this,
+                                    "sent packet to %s", recipient.toString());
+                            int sent = channel.send(data.getBuffer(), recipient);
                             if (sent == 0) {
                                 System.out.println("cannot send anymore!");
                                 q.addAll(sendList);
@@ -227,10 +260,14 @@ public class UDPFleaseCommunicator extends LifeCycleThread implements FleaseMess
                                 try {
                                     //unpack flease message
                                     data.flip();
-                                    FleaseMessage m = new FleaseMessage(data);
-                                    m.setSender(sender);
+                                    List<FleaseMessage> msgs = FleaseMessage.deserializeAll(data);
+                                    for (FleaseMessage m : msgs)
+                                        m.setSender(sender);
                                     numRx++;
-                                    stage.receiveMessage(m);
+                                    if (msgs.size() == 1)
+                                        stage.receiveMessage(msgs.get(0));
+                                    else
+                                        stage.receiveMessages(msgs);
                                 } catch (Throwable ex) {
                                     ex.printStackTrace();
                                     Logging.logMessage(Logging.LEVEL_WARN, Category.net, this,
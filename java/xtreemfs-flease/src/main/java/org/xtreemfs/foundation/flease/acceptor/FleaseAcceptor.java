@@ -40,7 +40,7 @@ public class FleaseAcceptor {
     public static final String LOCKFILE_NAME = "flease_lock.";
 
     /**
-     * lockfile full path
+     * lockfile full path, null if the lockfile belongs to another acceptor
      */
     private final String lockfile;
 
@@ -95,6 +95,19 @@ public class FleaseAcceptor {
         }
         
     }
+
+    /**
+     * Creates an acceptor for another partition of the cells of the same flease instance. It shares the lock
+     * file and the recovery period after a crash with the given acceptor.
+     */
+    public FleaseAcceptor(LearnEventListener evtListener, FleaseConfig localConfig, FleaseAcceptor lockOwner) {
+        this.config = localConfig;
+        this.cells = new HashMap<ASCIIString, FleaseAcceptorCell>();
+        this.quit = false;
+        this.lockfile = null;
+        this.evtListener = evtListener;
+        this.waitUntilTimestamp_ms = lockOwner.waitUntilTimestamp_ms;
+    }
     
     public void setViewChangeListener(FleaseViewChangeListenerInterface listener) {
         viewListener = listener;
@@ -403,8 +416,10 @@ public class FleaseAcceptor {
     
     public void shutdown() {
         this.quit = true;
-        File f = new File(lockfile);
-        f.delete();
+        if (lockfile != null) {
+            File f = new File(lockfile);
+            f.delete();
+        }
     }
 
     
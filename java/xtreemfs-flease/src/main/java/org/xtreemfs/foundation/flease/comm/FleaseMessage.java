@@ -8,7 +8,10 @@ package org.xtreemfs.foundation.flease.comm;
 
 import java.io.Serializable;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import org.xtreemfs.foundation.buffer.ASCIIString;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.foundation.flease.FleaseConfig;
@@ -90,6 +93,11 @@ public class FleaseMessage implements Serializable, Cloneable {
     public static final long IGNORE_MASTER_EPOCH = -1;
 
     public static final long REQUEST_MASTER_EPOCH = 0;
+
+    /**
+     * first byte of a buffer that contains several messages, must not be a valid message type
+     */
+    public static final byte BATCH_MARKER = (byte) 0xFF;
     
     /**
      * message type
@@ -433,6 +441,52 @@ public class FleaseMessage implements Serializable, Cloneable {
         this.masterEpochNumber = buffer.getLong();
     }
 
+    /**
+     * @param messages
+     * @return the number of bytes required to serialize the messages as a batch
+     */
+    public static int getBatchSize(List<FleaseMessage> messages) {
+        int size = 1 + 4;
+        for (FleaseMessage msg : messages)
+            size += msg.getSize();
+        return size;
+    }
+
+    /**
+     * Serializes several messages (e.g. for different cells) into a single buffer.
+     * @param messages
+     * @param buffer
+     */
+    public static void serializeBatch(List<FleaseMessage> messages, ReusableBuffer buffer) {
+        assert(buffer != null);
+        buffer.put(BATCH_MARKER);
+        buffer.putInt(messages.size());
+        for (FleaseMessage msg : messages)
+            msg.serialize(buffer);
+    }
+
+    /**
+     * Deserializes all messages contained in a buffer, which is either a single message or a batch.
+     * @param buffer
+     * @return the messages
+     */
+    public static List<FleaseMessage> deserializeAll(ReusableBuffer buffer) {
+        assert(buffer != null);
+        if (buffer.get(buffer.position()) != BATCH_MARKER) {
+            return Collections.singletonList(new FleaseMessage(buffer));
+        }
+
+        buffer.get();
+        final int numMessages = buffer.getInt();
+        if (numMessages < 0) {
+            throw new IllegalArgumentException("invalid number of messages in batch: " + numMessages);
+        }
+        List<FleaseMessage> messages = new ArrayList<FleaseMessage>(numMessages);
+        for (int i = 0; i < numMessages; i++)
+            messages.add(new FleaseMessage(buffer));
+        return messages;
+    }
+
     public boolean hasTimedOut(FleaseConfig cfg, long currentGlobalTimeout) {
         assert(this.leaseTimeout > 0);
         assert(this.leaseHolder != null);
@@ -9,9 +9,11 @@ package org.xtreemfs.foundation.flease.sim;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.xtreemfs.foundation.LifeCycleThread;
 import org.xtreemfs.foundation.flease.FleaseStage;
@@ -78,6 +80,11 @@ public class Communicator extends LifeCycleThread {
      */
     private boolean halfLink;
 
+    /**
+     * number of packets and messages sent, a packet may contain several messages
+     */
+    private final AtomicLong numPackets, numMessages;
+
     /**
      * Creates a new instance of UDPSim
      * @param pkgLossPct packet loss in percent
@@ -112,6 +119,8 @@ public class Communicator extends LifeCycleThread {
 
         this.halfLink = halfLink;
 
+        this.numPackets = new AtomicLong();
+        this.numMessages = new AtomicLong();
 
         theInstance = this;
 
@@ -164,9 +173,37 @@ public class Communicator extends LifeCycleThread {
      */
     public synchronized void send(int port, FleaseMessage msg) {
         Packet p = new Packet(msg,port);
+        numPackets.incrementAndGet();
+        numMessages.incrementAndGet();
+        sendQ.add(p);
+    }
+
+    /**
+     * sends several messages with a single packet
+     * @param port sending port number
+     * @param msgs messages to send, all from the same sender
+     */
+    public synchronized void send(int port, List<FleaseMessage> msgs) {
+        Packet p = new Packet(msgs,port);
+        numPackets.incrementAndGet();
+        numMessages.addAndGet(msgs.size());
         sendQ.add(p);
     }
 
+    /**
+     * @return the number of packets sent so far
+     */
+    public long getNumPackets() {
+        return numPackets.get();
+    }
+
+    /**
+     * @return the number of messages sent so far
+     */
+    public long getNumMessages() {
+        return numMessages.get();
+    }
+
     /**
      * main loop
      */
@@ -210,7 +247,10 @@ public class Communicator extends LifeCycleThread {
 
                             //p.msg.setSender(new InetSocketAddress(ia, p.recipientPort));
                             try {
-                                rec.receiveMessage(p.msg);
+                                if (p.batch != null)
+                                    rec.receiveMessages(p.batch);
+                                else
+                                    rec.receiveMessage(p.msg);
                             } catch (IllegalStateException e) {
                                 //just drop it
                             }
@@ -294,6 +334,10 @@ public class Communicator extends LifeCycleThread {
          * the datagram that is being sent
          */
         public FleaseMessage msg;
+        /**
+         * all messages if several messages are sent with this packet, null otherwise
+         */
+        public List<FleaseMessage> batch;
         /**
          * originating prot number
          */
@@ -312,6 +356,15 @@ public class Communicator extends LifeCycleThread {
             this.recipientPort = port;
             this.requeued = false;
         }
+        /**
+         * creates a new packet with several messages
+         * @param msgs the messages
+         * @param port originating port
+         */
+        public Packet(List<FleaseMessage> msgs, int port) {
+            this(msgs.get(0), port);
+            this.batch = msgs;
+        }
     }
 
 }
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.foundation.flease.sim;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.xtreemfs.foundation.LifeCycleListener;
+import org.xtreemfs.foundation.TimeSync;
+import org.xtreemfs.foundation.buffer.ASCIIString;
+import org.xtreemfs.foundation.flease.Flease;
+import org.xtreemfs.foundation.flease.FleaseConfig;
+import org.xtreemfs.foundation.flease.FleaseMessageSenderInterface;
+import org.xtreemfs.foundation.flease.FleaseStage;
+import org.xtreemfs.foundation.flease.FleaseStatusListener;
+import org.xtreemfs.foundation.flease.FleaseViewChangeListenerInterface;
+import org.xtreemfs.foundation.flease.comm.FleaseMessage;
+import org.xtreemfs.foundation.flease.proposer.FleaseException;
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.foundation.logging.Logging.Category;
+
+/**
+ * Load test for the partitioned Flease stage. Opens many cells at once on a set of hosts and reports the time
+ * it took until the first lease of each cell was acquired, for each of the given numbers of partitions.
+ * <p>
+ * Usage: FleaseLoadSim [numCells [numPartitions[,numPartitions...]]]
+ */
+public class FleaseLoadSim {
+
+    private static final int NUM_HOSTS = 3;
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        try {
+
+            final int numCells = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+            final String[] partitionCounts = args.length > 1 ? args[1].split(",") : new String[] { "1", "2", "4" };
+
+            Logging.start(Logging.LEVEL_WARN, Category.all);
+            TimeSync.initializeLocal(50);
+
+            System.out.println("cells: " + numCells + ", cores: " + Runtime.getRuntime().availableProcessors());
+            for (String numPartitions : partitionCounts) {
+                run(numCells, Integer.parseInt(numPartitions.trim()));
+            }
+            System.exit(0);
+
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private static void run(int numCells, int numPartitions) throws Exception {
+
+        // defaults of the OSD
+        final int dmax = 1000;
+        final int leaseTimeout = 14000;
+
+        final FleaseStage[] stages = new FleaseStage[NUM_HOSTS];
+
+        final Communicator com = new Communicator(0, 0, 0, 0, false, 0.0, 0.0, false);
+        com.start();
+        com.waitForStartup();
+
+        final List<InetSocketAddress> allPorts = new ArrayList<InetSocketAddress>(NUM_HOSTS);
+        final Map<ASCIIString, Long> acquired = new ConcurrentHashMap<ASCIIString, Long>();
+
+        for (int i = 0; i < NUM_HOSTS; i++) {
+            final int portNo = 1024 + i;
+            FleaseConfig cfg = new FleaseConfig(leaseTimeout, dmax, 500, new InetSocketAddress(portNo), "localhost:"
+                + portNo, 5, true, 0, false, 0, numPartitions);
+
+            stages[i] = new FleaseStage(cfg, "/tmp/xtreemfs-test", new FleaseMessageSenderInterface() {
+
+                public void sendMessage(FleaseMessage message, InetSocketAddress recipient) {
+                    FleaseMessage m = message.clone();
+                    m.setSender(new InetSocketAddress("localhost", portNo));
+                    com.send(recipient.getPort(), m);
+                }
+            }, true, new FleaseViewChangeListenerInterface() {
+
+                public void viewIdChangeEvent(ASCIIString cellId, int viewId, boolean onProposal) {
+                }
+            }, new FleaseStatusListener() {
+
+                public void statusChanged(ASCIIString cellId, Flease lease) {
+                    if (!lease.isEmptyLease() && !acquired.containsKey(cellId))
+                        acquired.put(cellId, System.nanoTime());
+                }
+
+                public void leaseFailed(ASCIIString cellId, FleaseException error) {
+                }
+            }, null);
+            stages[i].setLifeCycleListener(new LifeCycleListener() {
+
+                public void startupPerformed() {
+                }
+
+                public void shutdownPerformed() {
+                }
+
+                public void crashPerformed(Throwable cause) {
+                    cause.printStackTrace();
+                    System.exit(100);
+                }
+            });
+            stages[i].start();
+            stages[i].waitForStartup();
+            allPorts.add(new InetSocketAddress("localhost", portNo));
+            com.openPort(portNo, stages[i]);
+        }
+
+        final ASCIIString[] cellIds = new ASCIIString[numCells];
+        final long[] openTimes = new long[numCells];
+        for (int j = 0; j < numCells; j++) {
+            cellIds[j] = new ASCIIString("cell" + j);
+        }
+
+        final long startTime = System.currentTimeMillis();
+        for (int j = 0; j < numCells; j++) {
+            openTimes[j] = System.nanoTime();
+            for (int i = 0; i < NUM_HOSTS; i++) {
+                final int portNo = 1024 + i;
+                List<InetSocketAddress> acceptors = new ArrayList<InetSocketAddress>(NUM_HOSTS - 1);
+                for (InetSocketAddress ia : allPorts) {
+                    if (ia.getPort() != portNo)
+                        acceptors.add(ia);
+                }
+                stages[i].openCell(cellIds[j], acceptors, false, 0);
+            }
+        }
+
+        // wait until the leases of all cells have been acquired
+        while (acquired.size() < numCells) {
+            Thread.sleep(10);
+            if (System.currentTimeMillis() - startTime > leaseTimeout * 5) {
+                System.out.println("timed out waiting for leases: " + acquired.size() + " of " + numCells
+                    + " cells have a lease");
+                System.exit(1);
+            }
+        }
+        final long duration = System.currentTimeMillis() - startTime;
+
+        final long[] latencies = new long[numCells];
+        for (int j = 0; j < numCells; j++) {
+            latencies[j] = (acquired.get(cellIds[j]) - openTimes[j]) / 1000000;
+        }
+        Arrays.sort(latencies);
+
+        System.out.println("partitions: " + numPartitions + ", all leases acquired after " + duration + "ms"
+            + ", latency (ms) median: " + latencies[numCells / 2] + ", 99th percentile: "
+            + latencies[(int) (numCells * 0.99)] + ", max: " + latencies[numCells - 1]);
+
+        for (int i = 0; i < NUM_HOSTS; i++) {
+            stages[i].shutdown();
+            stages[i].waitForShutdown();
+        }
+        com.shutdown();
+        com.waitForShutdown();
+    }
+
+}
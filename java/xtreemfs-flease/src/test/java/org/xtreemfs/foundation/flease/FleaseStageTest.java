@@ -8,12 +8,21 @@
 package org.xtreemfs.foundation.flease;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.ServerSocket;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -23,6 +32,8 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.xtreemfs.foundation.TimeSync;
 import org.xtreemfs.foundation.buffer.ASCIIString;
+import org.xtreemfs.foundation.buffer.BufferPool;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.foundation.flease.comm.FleaseMessage;
 import org.xtreemfs.foundation.flease.proposer.FleaseException;
 import org.xtreemfs.foundation.logging.Logging;
@@ -43,10 +54,23 @@ public class FleaseStageTest {
         Logging.start(Logging.LEVEL_WARN, Category.all);
         TimeSync.initializeLocal(50);
 
-        cfg = new FleaseConfig(10000, 500, 500, new InetSocketAddress(12345), "localhost:12345",5);
+        final int port = getFreePort();
+        cfg = new FleaseConfig(10000, 500, 500, new InetSocketAddress(port), "localhost:" + port, 5);
         testDir = new File("/tmp/xtreemfs-test/");
     }
 
+    /**
+     * Returns a port which is currently not in use.
+     */
+    private static int getFreePort() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
     @Before
     public void setUp() throws Exception {
         FSUtils.delTree(testDir);
@@ -228,4 +252,127 @@ public class FleaseStageTest {
 
     }
 
-}
+    /**
+     * Test of message batching between two instances with many cells.
+     */
+    @Test
+    public void testBatchedMessages() throws Exception {
+        FleaseStage[] stages = openCells(100, 1);
+        for (FleaseStage stage : stages) {
+            stage.shutdown();
+            stage.waitForShutdown();
+        }
+    }
+
+    /**
+     * Test of a stage which distributes its cells across several partitions.
+     */
+    @Test
+    public void testPartitions() throws Exception {
+        FleaseStage[] stages = openCells(100, 4);
+        assertEquals(100, stages[0].getLocalState().size());
+        assertEquals(100, stages[1].getLocalState().size());
+        for (FleaseStage stage : stages) {
+            stage.shutdown();
+            stage.waitForShutdown();
+        }
+    }
+
+    /**
+     * Opens numCells cells on two connected instances which batch their messages and waits until the first
+     * instance holds the lease of all of them.
+     */
+    private FleaseStage[] openCells(final int numCells, int numPartitions) throws Exception {
+
+        final InetSocketAddress addrA = new InetSocketAddress("localhost", getFreePort());
+        final InetSocketAddress addrB = new InetSocketAddress("localhost", getFreePort());
+        final FleaseStage[] stages = new FleaseStage[2];
+        // the callbacks run on the stage threads, so their results are checked on the test thread
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+        final Set<ASCIIString> leases = Collections.synchronizedSet(new HashSet<ASCIIString>());
+        final CountDownLatch allLeases = new CountDownLatch(numCells);
+
+        for (int i = 0; i < 2; i++) {
+            final InetSocketAddress local = (i == 0) ? addrA : addrB;
+            final int remote = 1 - i;
+            FleaseConfig batchCfg = new FleaseConfig(10000, 500, 500, local, "localhost:" + local.getPort(), 5,
+                    true, 0, false, 20, numPartitions);
+            File dir = new File(testDir, "stage" + i);
+            dir.mkdirs();
+
+            stages[i] = new FleaseStage(batchCfg, dir.getAbsolutePath() + "/", new FleaseBatchMessageSenderInterface() {
+
+                @Override
+                public void sendMessage(FleaseMessage message, InetSocketAddress recipient) {
+                    ReusableBuffer rb = BufferPool.allocate(message.getSize());
+                    message.serialize(rb);
+                    rb.flip();
+                    deliver(rb);
+                }
+
+                @Override
+                public void sendMessages(List<FleaseMessage> messages, InetSocketAddress recipient) {
+                    batchSizes.add(messages.size());
+                    ReusableBuffer rb = BufferPool.allocate(FleaseMessage.getBatchSize(messages));
+                    FleaseMessage.serializeBatch(messages, rb);
+                    rb.flip();
+                    deliver(rb);
+                }
+
+                private void deliver(ReusableBuffer rb) {
+                    List<FleaseMessage> msgs = FleaseMessage.deserializeAll(rb);
+                    BufferPool.free(rb);
+                    for (FleaseMessage msg : msgs)
+                        msg.setSender(local);
+                    if (msgs.size() == 1)
+                        stages[remote].receiveMessage(msgs.get(0));
+                    else
+                        stages[remote].receiveMessages(msgs);
+                }
+            }, true, new FleaseViewChangeListenerInterface() {
+
+                @Override
+                public void viewIdChangeEvent(ASCIIString cellId, int viewId, boolean onProposal) {
+                }
+            }, new FleaseStatusListener() {
+
+                @Override
+                public void statusChanged(ASCIIString cellId, Flease lease) {
+                    if (remote == 1 && lease.getLeaseHolder() != null
+                        && lease.getLeaseHolder().equals(stages[0].getIdentity()) && leases.add(cellId)) {
+                        allLeases.countDown();
+                    }
+                }
+
+                @Override
+                public void leaseFailed(ASCIIString cellId, FleaseException error) {
+                    errors.add(cellId + ": " + error);
+                }
+            }, null);
+        }
+
+        for (FleaseStage stage : stages) {
+            stage.start();
+            stage.waitForStartup();
+        }
+
+        List<InetSocketAddress> acceptors = new ArrayList<InetSocketAddress>();
+        acceptors.add(addrB);
+        for (int i = 0; i < numCells; i++) {
+            stages[0].openCell(new ASCIIString("testcell" + i), acceptors, false, 0);
+        }
+
+        assertTrue("timeout, " + leases.size() + " of " + numCells + " leases acquired",
+            allLeases.await(60, TimeUnit.SECONDS));
+        assertEquals(new ArrayList<String>(), errors);
+
+        assertTrue(batchSizes.size() > 0);
+        synchronized (batchSizes) {
+            for (int size : batchSizes)
+                assertTrue("batch of " + size + " messages", size > 1 && size <= 20);
+        }
+        return stages;
+    }
+
+}
\ No newline at end of file
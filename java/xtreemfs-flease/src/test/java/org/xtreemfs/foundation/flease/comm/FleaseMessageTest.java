@@ -7,6 +7,8 @@
 
 package org.xtreemfs.foundation.flease.comm;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -77,4 +79,41 @@ public class FleaseMessageTest {
         assertEquals(m1.getMasterEpochNumber(),m2.getMasterEpochNumber());
     }
 
+    @Test
+    public void testBatchSerialization() throws Exception {
+        List<FleaseMessage> msgs = new ArrayList<FleaseMessage>();
+        for (int i = 0; i < 3; i++) {
+            FleaseMessage m = new FleaseMessage(FleaseMessage.MsgType.MSG_ACCEPT);
+            m.setCellId(new ASCIIString("testcell" + i));
+            m.setLeaseHolder(new ASCIIString("yagga"));
+            m.setLeaseTimeout(123456789l + i);
+            m.setProposalNo(new ProposalNumber(15 + i, 736456));
+            msgs.add(m);
+        }
+
+        ReusableBuffer rb = BufferPool.allocate(FleaseMessage.getBatchSize(msgs));
+        FleaseMessage.serializeBatch(msgs, rb);
+        assertEquals(0, rb.remaining());
+        rb.flip();
+
+        List<FleaseMessage> result = FleaseMessage.deserializeAll(rb);
+        assertEquals(msgs.size(), result.size());
+        for (int i = 0; i < msgs.size(); i++) {
+            assertEquals(msgs.get(i).getMsgType(), result.get(i).getMsgType());
+            assertEquals(msgs.get(i).getCellId(), result.get(i).getCellId());
+            assertEquals(msgs.get(i).getLeaseTimeout(), result.get(i).getLeaseTimeout());
+            assertEquals(msgs.get(i).getProposalNo().getProposalNo(), result.get(i).getProposalNo().getProposalNo());
+        }
+        BufferPool.free(rb);
+
+        // a single message is not a batch
+        rb = BufferPool.allocate(msgs.get(0).getSize());
+        msgs.get(0).serialize(rb);
+        rb.flip();
+        result = FleaseMessage.deserializeAll(rb);
+        assertEquals(1, result.size());
+        assertEquals(msgs.get(0).getCellId(), result.get(0).getCellId());
+        BufferPool.free(rb);
+    }
+
 }
\ No newline at end of file
@@ -13,6 +13,9 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.xtreemfs.foundation.metrics.Gauge;
+import org.xtreemfs.foundation.metrics.MetricsRegistry;
+
 /**
  * A concurrent pool for buffer recycling.
  *
@@ -315,6 +318,32 @@ public final class BufferPool {
         return str;
     }
 
+    /**
+     * Registers gauges for the pool size and the number of requested, created and deleted buffers of each size
+     * class. Unpooled buffers are reported with the size "unpooled".
+     */
+    public static void registerMetrics(MetricsRegistry registry) {
+        for (int i = 0; i <= BUFF_SIZES.length; i++) {
+            final String labels = MetricsRegistry.label("size", i < BUFF_SIZES.length ? String.valueOf(BUFF_SIZES[i])
+                    : "unpooled");
+            if (i < BUFF_SIZES.length) {
+                registry.register("xtreemfs_bufferpool_pooled_buffers", labels, gauge(instance.poolSizes[i]));
+                registry.register("xtreemfs_bufferpool_created_buffers", labels, gauge(instance.creates[i]));
+            }
+            registry.register("xtreemfs_bufferpool_requested_buffers", labels, gauge(instance.requests[i]));
+            registry.register("xtreemfs_bufferpool_deleted_buffers", labels, gauge(instance.deletes[i]));
+        }
+    }
+
+    private static Gauge gauge(final Number value) {
+        return new Gauge() {
+            @Override
+            public long getValue() {
+                return value.longValue();
+            }
+        };
+    }
+
     /**
      * Specifies whether stack traces shall be recorded when allocating and
      * freeing buffers. Since recording stack traces leads to some overhead, it
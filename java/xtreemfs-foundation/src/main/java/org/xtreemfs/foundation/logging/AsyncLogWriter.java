@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.foundation.logging;
+
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.xtreemfs.foundation.metrics.Counter;
+
+/**
+ * Formats and writes log messages in a background thread. Logging threads append their messages to a bounded
+ * ring buffer of preallocated records without locking; if the buffer is full, the message is dropped and counted.
+ * <p>
+ * Messages with the same format pattern, or errors of the same type, that are logged more than
+ * {@link #MAX_REPEATS_PER_SECOND} times per second are suppressed, and the number of suppressed and dropped
+ * messages is logged instead. As messages are formatted later, the arguments must not be modified after logging.
+ */
+final class AsyncLogWriter extends Thread {
+
+    static final int                  MAX_REPEATS_PER_SECOND = 100;
+
+    private static final long         IDLE_PARK_NANOS        = 1000000;
+
+    static final int                  KIND_MESSAGE           = 0;
+
+    /**
+     * an error whose cause is logged as well
+     */
+    static final int                  KIND_ERROR             = 1;
+
+    static final int                  KIND_USER_ERROR        = 2;
+
+    private static final class Record {
+
+        /**
+         * the position of the record in the buffer plus one once it has been written, the consumer waits for it
+         */
+        volatile long sequence;
+
+        int           kind;
+
+        int           level;
+
+        Object        me;
+
+        String        threadName;
+
+        long          threadId;
+
+        long          timeMillis;
+
+        String        format;
+
+        Object[]      args;
+
+        Throwable     error;
+    }
+
+    private final Record[]                records;
+
+    private final int                     mask;
+
+    /**
+     * next position to be claimed by a logging thread
+     */
+    private final AtomicLong              tail;
+
+    /**
+     * next position to be written by the writer thread
+     */
+    private volatile long                 head;
+
+    private final Counter                 dropped;
+
+    private long                          reportedDrops;
+
+    private volatile boolean              quit;
+
+    private final SimpleDateFormat        dateFormat;
+
+    private final Map<Object, int[]>      repeats;
+
+    private long                          windowStart;
+
+    /**
+     * @param capacity
+     *            the number of records in the buffer, which is rounded up to a power of two
+     */
+    AsyncLogWriter(int capacity) {
+        super("AsyncLogWriter");
+        setDaemon(true);
+
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.records = new Record[size];
+        for (int i = 0; i < size; i++) {
+            records[i] = new Record();
+        }
+        this.mask = size - 1;
+        this.tail = new AtomicLong();
+        this.dropped = new Counter();
+        this.dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        this.repeats = new HashMap<Object, int[]>();
+    }
+
+    /**
+     * Appends a message to the buffer, or drops it if the buffer is full.
+     *
+     * @return false, if the message was dropped
+     */
+    boolean append(int kind, int level, Object me, String format, Object[] args, Throwable error) {
+        long t;
+        do {
+            t = tail.get();
+            if (t - head >= records.length) {
+                dropped.increment();
+                return false;
+            }
+        } while (!tail.compareAndSet(t, t + 1));
+
+        final Thread current = Thread.currentThread();
+        final Record r = records[(int) t & mask];
+        r.kind = kind;
+        r.level = level;
+        r.me = me;
+        r.threadName = current.getName();
+        r.threadId = current.getId();
+        r.timeMillis = System.currentTimeMillis();
+        r.format = format;
+        r.args = args;
+        r.error = error;
+        // publish the record
+        r.sequence = t + 1;
+        return true;
+    }
+
+    long getDroppedMessages() {
+        return dropped.get();
+    }
+
+    /**
+     * Writes all messages appended so far and stops the writer thread.
+     */
+    void shutdown() {
+        quit = true;
+        LockSupport.unpark(this);
+        try {
+            join(1000);
+        } catch (InterruptedException e) {
+            // ignore
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            final long h = head;
+            final Record r = records[(int) h & mask];
+
+            if (r.sequence != h + 1) {
+                if (h != tail.get()) {
+                    // the record has been claimed but is not written yet
+                    Thread.yield();
+                    continue;
+                }
+                // the buffer is empty
+                final boolean done = quit;
+                finishWindow(System.currentTimeMillis(), done);
+                Logging.getOut().flush();
+                if (done) {
+                    break;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+
+            try {
+                if (!suppress(r)) {
+                    write(r);
+                }
+            } catch (Throwable th) {
+                // a failing toString() of an argument or error must not stop the writer
+                try {
+                    writeLine(Logging.LEVEL_ERROR, this, getName(), getId(), r.timeMillis,
+                        "could not write log record: " + th);
+                } catch (Throwable ignored) {
+                    // nothing left to report to
+                }
+            }
+
+            r.me = null;
+            r.args = null;
+            r.error = null;
+            head = h + 1;
+        }
+    }
+
+    /**
+     * Counts the record in the current one second window.
+     *
+     * @return true, if the message is repeated too often and must not be written
+     */
+    private boolean suppress(Record r) {
+        if (r.timeMillis - windowStart >= 1000) {
+            finishWindow(r.timeMillis, false);
+        }
+        final Object key = r.format != null ? r.format : r.error.getClass();
+        int[] count = repeats.get(key);
+        if (count == null) {
+            count = new int[1];
+            repeats.put(key, count);
+        }
+        return ++count[0] > MAX_REPEATS_PER_SECOND;
+    }
+
+    /**
+     * Reports the messages that were suppressed or dropped in the current window, and starts a new window if it
+     * has ended or the writer is shut down.
+     */
+    private void finishWindow(long now, boolean force) {
+        if (!force && now - windowStart < 1000) {
+            return;
+        }
+        for (Map.Entry<Object, int[]> e : repeats.entrySet()) {
+            final int suppressed = e.getValue()[0] - MAX_REPEATS_PER_SECOND;
+            if (suppressed > 0) {
+                writeLine(Logging.LEVEL_WARN, this, getName(), getId(), now, String.format(
+                    "%d repetitions suppressed: %s", suppressed, e.getKey() instanceof Class ? ((Class<?>) e
+                            .getKey()).getName() : e.getKey()));
+            }
+        }
+        repeats.clear();
+        windowStart = now;
+
+        final long drops = dropped.get();
+        if (drops > reportedDrops) {
+            writeLine(Logging.LEVEL_WARN, this, getName(), getId(), now, String.format(
+                "%d messages dropped because the log buffer was full", drops - reportedDrops));
+            reportedDrops = drops;
+        }
+    }
+
+    private void write(Record r) {
+        String message;
+        if (r.kind == KIND_MESSAGE) {
+            try {
+                message = String.format(r.format, r.args);
+            } catch (Throwable th) {
+                message = r.format + " (" + th + ")";
+            }
+        } else {
+            message = r.error.toString();
+        }
+        writeLine(r.level, r.me, r.threadName, r.threadId, r.timeMillis, message);
+
+        if (r.kind != KIND_MESSAGE) {
+            final PrintStream out = Logging.getOut();
+            for (StackTraceElement elem : r.error.getStackTrace()) {
+                out.println(" ...                                           " + elem.toString());
+            }
+            if (r.kind == KIND_ERROR && r.error.getCause() != null) {
+                writeLine(r.level, r.me, r.threadName, r.threadId, r.timeMillis, "root cause: "
+                    + r.error.getCause());
+                for (StackTraceElement elem : r.error.getCause().getStackTrace()) {
+                    out.println(" ...                                           " + elem.toString());
+                }
+            }
+        }
+    }
+
+    private void writeLine(int level, Object me, String threadName, long threadId, long timeMillis,
+        String message) {
+        Logging.getOut().println(String.format(Logging.FORMAT_PATTERN, Logging.getLevelName(level),
+            me == null ? "-" : Logging.truncateString(me instanceof Class ? ((Class<?>) me).getSimpleName() : me
+                    .getClass().getSimpleName(), 20), Logging.truncateString(threadName, 15), threadId,
+            dateFormat.format(new Date(timeMillis)), message));
+    }
+}
@@ -112,6 +112,12 @@ public class Logging {
     
     protected static boolean         tracingEnabled     = false;
     
+    /**
+     * writes the log messages in the background if asynchronous logging is
+     * enabled, null otherwise
+     */
+    private static volatile AsyncLogWriter asyncWriter;
+    
     private final int                level;
     
     private final int                catMask;
@@ -139,6 +145,10 @@ public class Logging {
         Logging.out = out;
     }
     
+    static PrintStream getOut() {
+        return out;
+    }
+    
     public static String truncateString(String string, int maxLength) {
         return (string.length() > maxLength) ? 
                 (string.substring(0, maxLength - 3) + "...") : string;
@@ -151,6 +161,12 @@ public class Logging {
         // is 'all', log the message
         if (level <= instance.level && (cat == Category.all || (2 << cat.ordinal() & instance.catMask) > 0)) {
             
+            final AsyncLogWriter writer = asyncWriter;
+            if (writer != null) {
+                writer.append(AsyncLogWriter.KIND_MESSAGE, level, me, formatPattern, args, null);
+                return;
+            }
+            
             char levelName = getLevelName(level);
                  
             out.println(String.format(FORMAT_PATTERN, levelName,
@@ -179,6 +195,12 @@ public class Logging {
         // if the level is appropriate, log the message
         if (level <= instance.level) {
             
+            final AsyncLogWriter writer = asyncWriter;
+            if (writer != null) {
+                writer.append(AsyncLogWriter.KIND_ERROR, level, me, null, null, msg);
+                return;
+            }
+            
             char levelName = getLevelName(level);
 
             out.println(String.format(FORMAT_PATTERN, levelName,
@@ -206,6 +228,12 @@ public class Logging {
         // is 'all', log the message
         if (level <= instance.level && (cat == Category.all || (2 << cat.ordinal() & instance.catMask) > 0)) {
             
+            final AsyncLogWriter writer = asyncWriter;
+            if (writer != null) {
+                writer.append(AsyncLogWriter.KIND_USER_ERROR, level, me, null, null, msg);
+                return;
+            }
+            
             char levelName = getLevelName(level);
             
             out.println(String.format(FORMAT_PATTERN, levelName, me == null ? "-" : me.getClass()
@@ -255,6 +283,54 @@ public class Logging {
         }
     }
     
+    /**
+     * Switches to asynchronous logging, i.e. log messages are formatted and
+     * written by a background thread instead of the logging threads, which do
+     * not block on the output stream anymore. Messages are dropped if more
+     * than bufferSize messages are pending, and suppressed if they are
+     * repeated too often. Pending messages are written when the VM shuts
+     * down.
+     * 
+     * @param bufferSize
+     *            maximum number of pending messages, 0 keeps logging
+     *            synchronous
+     */
+    public synchronized static void startAsync(int bufferSize) {
+        if (asyncWriter != null || bufferSize <= 0) {
+            return;
+        }
+        
+        final AsyncLogWriter writer = new AsyncLogWriter(bufferSize);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread("AsyncLogWriter shutdown") {
+            @Override
+            public void run() {
+                writer.shutdown();
+            }
+        });
+        asyncWriter = writer;
+    }
+    
+    /**
+     * @return the number of messages dropped by asynchronous logging because
+     *         the buffer was full
+     */
+    public static long getDroppedMessages() {
+        final AsyncLogWriter writer = asyncWriter;
+        return writer == null ? 0 : writer.getDroppedMessages();
+    }
+    
+    /**
+     * Checks whether messages of the given level and category are logged. Can
+     * be used to avoid formatting, boxing of arguments and allocating the
+     * argument array if a message is not logged.
+     */
+    public static boolean isEnabled(int level, Category cat) {
+        final Logging logging = instance;
+        return logging != null && level <= logging.level
+            && (cat == Category.all || (2 << cat.ordinal() & logging.catMask) > 0);
+    }
+    
     /**
      * Returns the current logging level if logging has been started or a negative value (-1) otherwise.
      * 
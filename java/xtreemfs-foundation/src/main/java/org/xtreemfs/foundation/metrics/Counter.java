@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.foundation.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A monotonically increasing counter which is updated by many threads. The count is striped across several cells
+ * on separate cache lines, which are selected by the id of the updating thread, so that threads rarely contend
+ * for the same cell. Reading the counter sums up all cells.
+ */
+public final class Counter {
+
+    /**
+     * number of longs per cache line, cells are placed that far apart
+     */
+    private static final int PADDING = 8;
+
+    private static final int STRIPES;
+
+    static {
+        int stripes = 1;
+        while (stripes < Runtime.getRuntime().availableProcessors() * 2 && stripes < 64) {
+            stripes <<= 1;
+        }
+        STRIPES = stripes;
+    }
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    public void increment() {
+        add(1);
+    }
+
+    public void add(long delta) {
+        cells.getAndAdd(cell(), delta);
+    }
+
+    public long get() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    private static int cell() {
+        final long id = Thread.currentThread().getId();
+        // spread consecutive thread ids across the stripes
+        final int hash = (int) (id * 0x9E3779B97F4A7C15L >>> 32);
+        return (hash & (STRIPES - 1)) * PADDING;
+    }
+}
@@ -0,0 +1,16 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.foundation.metrics;
+
+/**
+ * A value that is sampled whenever the metrics are exported, e.g. the length of a queue.
+ */
+public interface Gauge {
+
+    public long getValue();
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.foundation.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records the distribution of non-negative values, e.g. latencies in microseconds, with a bounded relative error
+ * like an HDR histogram. Each power of two is split into {@link #SUB_BUCKETS} buckets of equal width, so that a
+ * value is reported with an error of at most 1/{@link #SUB_BUCKETS} of the value. Values up to
+ * {@link #SUB_BUCKETS} are counted exactly, values larger than {@link #MAX_VALUE} are counted as
+ * {@link #MAX_VALUE}.
+ * <p>
+ * Recording a value takes constant time and does not allocate memory. Thread-safe; quantiles are computed from a
+ * snapshot that may miss concurrently recorded values.
+ */
+public final class Histogram {
+
+    private static final int  SUB_BUCKET_BITS = 4;
+
+    public static final int   SUB_BUCKETS     = 1 << SUB_BUCKET_BITS;
+
+    private static final int  MAX_EXPONENT    = 40;
+
+    public static final long  MAX_VALUE       = (1L << MAX_EXPONENT) - 1;
+
+    private static final int  NUM_BUCKETS     = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets     = new AtomicLongArray(NUM_BUCKETS);
+
+    private final Counter     count           = new Counter();
+
+    private final Counter     sum             = new Counter();
+
+    private final AtomicLong  max             = new AtomicLong();
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        } else if (value > MAX_VALUE) {
+            value = MAX_VALUE;
+        }
+
+        buckets.incrementAndGet(getBucket(value));
+        count.increment();
+        sum.add(value);
+
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getSum() {
+        return sum.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        final long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * @param quantile
+     *            a value between 0 and 1, e.g. 0.99 for the 99th percentile
+     * @return the highest value that is counted in the same bucket as the value at the quantile, or 0 if no values
+     *         have been recorded
+     */
+    public long getValueAtQuantile(double quantile) {
+        final long[] snapshot = new long[NUM_BUCKETS];
+        long total = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(getHighestValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    static int getBucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        // the leading one bit determines the power of two, the following bits the bucket within it
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long getHighestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int shift = bucket / SUB_BUCKETS - 1;
+        final long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.foundation.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.foundation.logging.Logging.Category;
+
+/**
+ * Holds the {@link Counter}s, {@link Histogram}s and {@link Gauge}s of a service. Each metric is identified by its
+ * name and a set of labels, e.g. <code>xtreemfs_stage_queue_wait_us</code> and <code>stage="OSD PreProcSt"</code>.
+ * <p>
+ * The metrics can be exported in the Prometheus text format, with histograms as summaries of a few quantiles, and
+ * as attributes of a JMX MBean. Components keep references to their metrics, so recording a value does not
+ * involve the registry.
+ */
+public class MetricsRegistry {
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999, 1 };
+
+    private static final class Entry {
+
+        final String name;
+
+        final String labels;
+
+        final Object metric;
+
+        Entry(String name, String labels, Object metric) {
+            this.name = name;
+            this.labels = labels;
+            this.metric = metric;
+        }
+    }
+
+    /**
+     * entries sorted by name and labels, so that all entries of a metric are exported together
+     */
+    private final ConcurrentSkipListMap<String, Entry> metrics;
+
+    private ObjectName                                 mbeanName;
+
+    public MetricsRegistry() {
+        this.metrics = new ConcurrentSkipListMap<String, Entry>();
+    }
+
+    /**
+     * @return a label to be used with the other methods of the registry, with the value escaped as required
+     */
+    public static String label(String name, String value) {
+        return name + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+
+    /**
+     * Returns the counter with the given name and labels, which is created if it does not exist yet.
+     *
+     * @param labels
+     *            comma-separated labels as returned by {@link #label(String, String)}, or <code>null</code>
+     */
+    public Counter counter(String name, String labels) {
+        return (Counter) getOrCreate(name, labels, Counter.class);
+    }
+
+    /**
+     * Returns the histogram with the given name and labels, which is created if it does not exist yet.
+     *
+     * @param labels
+     *            comma-separated labels as returned by {@link #label(String, String)}, or <code>null</code>
+     */
+    public Histogram histogram(String name, String labels) {
+        return (Histogram) getOrCreate(name, labels, Histogram.class);
+    }
+
+    /**
+     * Registers a {@link Counter}, {@link Histogram} or {@link Gauge}, replacing any metric registered with the
+     * same name and labels.
+     */
+    public void register(String name, String labels, Object metric) {
+        if (!(metric instanceof Counter || metric instanceof Histogram || metric instanceof Gauge)) {
+            throw new IllegalArgumentException("unsupported metric type: " + metric.getClass().getName());
+        }
+        metrics.put(getKey(name, labels), new Entry(name, labels, metric));
+    }
+
+    public void unregister(String name, String labels) {
+        metrics.remove(getKey(name, labels));
+    }
+
+    private Object getOrCreate(String name, String labels, Class<?> type) {
+        final String key = getKey(name, labels);
+        Entry entry = metrics.get(key);
+        if (entry == null) {
+            final Object metric = type == Counter.class ? new Counter() : new Histogram();
+            final Entry existing = metrics.putIfAbsent(key, new Entry(name, labels, metric));
+            entry = existing == null ? metrics.get(key) : existing;
+        }
+        if (!type.isInstance(entry.metric)) {
+            throw new IllegalArgumentException(key + " is not a " + type.getSimpleName());
+        }
+        return entry.metric;
+    }
+
+    private static String getKey(String name, String labels) {
+        return labels == null || labels.length() == 0 ? name : name + "{" + labels + "}";
+    }
+
+    /**
+     * Appends all metrics in the Prometheus text exposition format.
+     */
+    public void writeText(StringBuilder sb) {
+        String lastName = null;
+        for (Entry e : metrics.values()) {
+            final boolean first = !e.name.equals(lastName);
+            lastName = e.name;
+
+            if (e.metric instanceof Histogram) {
+                final Histogram h = (Histogram) e.metric;
+                if (first) {
+                    sb.append("# TYPE ").append(e.name).append(" summary\n");
+                }
+                for (double q : QUANTILES) {
+                    appendSample(sb, e.name, e.labels, "quantile=\"" + q + "\"", h.getValueAtQuantile(q));
+                }
+                appendSample(sb, e.name + "_count", e.labels, null, h.getCount());
+                appendSample(sb, e.name + "_sum", e.labels, null, h.getSum());
+            } else {
+                if (first) {
+                    sb.append("# TYPE ").append(e.name).append(e.metric instanceof Counter ? " counter\n" : " gauge\n");
+                }
+                appendSample(sb, e.name, e.labels, null, getValue(e.metric));
+            }
+        }
+    }
+
+    private static void appendSample(StringBuilder sb, String name, String labels, String extraLabel, long value) {
+        sb.append(name);
+        final boolean hasLabels = labels != null && labels.length() > 0;
+        if (hasLabels || extraLabel != null) {
+            sb.append('{');
+            if (hasLabels) {
+                sb.append(labels);
+            }
+            if (extraLabel != null) {
+                if (hasLabels) {
+                    sb.append(',');
+                }
+                sb.append(extraLabel);
+            }
+            sb.append('}');
+        }
+        sb.append(' ').append(value).append('\n');
+    }
+
+    private static long getValue(Object metric) {
+        return metric instanceof Counter ? ((Counter) metric).get() : ((Gauge) metric).getValue();
+    }
+
+    /**
+     * Registers the metrics as an MBean with the platform MBean server, named
+     * <code>org.xtreemfs:type=Metrics,service=&lt;service&gt;,id=&lt;id&gt;</code>. An MBean previously
+     * registered with the same name, e.g. by a service that was not shut down properly, is replaced.
+     *
+     * @param service
+     *            the type of the service, e.g. "OSD"
+     * @param id
+     *            the UUID of the service
+     */
+    public synchronized void registerMBean(String service, String id) {
+        final String name = "org.xtreemfs:type=Metrics,service=" + service + ",id=" + ObjectName.quote(id);
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = new ObjectName(name);
+            try {
+                server.registerMBean(new MetricsMBean(), objectName);
+            } catch (InstanceAlreadyExistsException ex) {
+                server.unregisterMBean(objectName);
+                server.registerMBean(new MetricsMBean(), objectName);
+            }
+            mbeanName = objectName;
+        } catch (Exception ex) {
+            Logging.logMessage(Logging.LEVEL_WARN, Category.misc, this, "could not register metrics MBean %s: %s",
+                name, ex.toString());
+        }
+    }
+
+    public synchronized void unregisterMBean() {
+        if (mbeanName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+        } catch (Exception ex) {
+            Logging.logMessage(Logging.LEVEL_WARN, Category.misc, this, "could not unregister metrics MBean %s: %s",
+                mbeanName, ex.toString());
+        }
+        mbeanName = null;
+    }
+
+    /**
+     * Exposes counters and gauges as attributes named like their entries in the text format, and histograms as
+     * attributes with the suffixes ".count", ".mean", ".p50", ".p99", ".p999" and ".max".
+     */
+    private final class MetricsMBean implements DynamicMBean {
+
+        private final String[] histogramStats = { "count", "mean", "p50", "p99", "p999", "max" };
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Entry e = metrics.get(attribute);
+            if (e != null && !(e.metric instanceof Histogram)) {
+                return Long.valueOf(getValue(e.metric));
+            }
+
+            final int dot = attribute.lastIndexOf('.');
+            e = dot < 0 ? null : metrics.get(attribute.substring(0, dot));
+            if (e == null || !(e.metric instanceof Histogram)) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            final Histogram h = (Histogram) e.metric;
+            final String stat = attribute.substring(dot + 1);
+            if (stat.equals("count")) {
+                return Long.valueOf(h.getCount());
+            } else if (stat.equals("mean")) {
+                return Double.valueOf(h.getMean());
+            } else if (stat.equals("p50")) {
+                return Double.valueOf(h.getValueAtQuantile(0.5));
+            } else if (stat.equals("p99")) {
+                return Double.valueOf(h.getValueAtQuantile(0.99));
+            } else if (stat.equals("p999")) {
+                return Double.valueOf(h.getValueAtQuantile(0.999));
+            } else if (stat.equals("max")) {
+                return Double.valueOf(h.getMax());
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            final AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch (AttributeNotFoundException ex) {
+                    // omitted from the result
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("metrics are read-only: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            final List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+            for (Map.Entry<String, Entry> e : metrics.entrySet()) {
+                if (e.getValue().metric instanceof Histogram) {
+                    for (String stat : histogramStats) {
+                        final String type = stat.equals("count") ? Long.class.getName() : Double.class.getName();
+                        attributes.add(new MBeanAttributeInfo(e.getKey() + "." + stat, type, null, true, false,
+                            false));
+                    }
+                } else {
+                    attributes.add(new MBeanAttributeInfo(e.getKey(), Long.class.getName(), null, true, false,
+                        false));
+                }
+            }
+            return new MBeanInfo(MetricsRegistry.class.getName(), "XtreemFS metrics",
+                attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, new MBeanOperationInfo[0],
+                null);
+        }
+    }
+}
@@ -21,6 +21,7 @@ import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.Auth;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.UserCredentials;
 import org.xtreemfs.foundation.pbrpc.utils.RecordMarker;
+import org.xtreemfs.foundation.util.TimerWheel;
 
 
 /**
@@ -41,6 +42,12 @@ public class RPCClientRequest<ReturnType extends Message> {
     private long              timeQueued;
     private long              bytesWritten;
 
+    /**
+     * connection the request was queued on and its request timeout
+     */
+    private RPCClientConnection                 connection;
+    private TimerWheel.Entry<RPCClientRequest>  timeout;
+
 
     RPCClientRequest(Auth authHeader, UserCredentials uCreds, int callId, int interfaceId, int procId, Message message, ReusableBuffer data, RPCResponse<ReturnType> response) throws IOException {
         if (uCreds == null) {
@@ -135,6 +142,19 @@ public class RPCClientRequest<ReturnType extends Message> {
         return this.timeQueued;
     }
 
+    void setTimeout(RPCClientConnection connection, TimerWheel.Entry<RPCClientRequest> timeout) {
+        this.connection = connection;
+        this.timeout = timeout;
+    }
+
+    RPCClientConnection getConnection() {
+        return this.connection;
+    }
+
+    TimerWheel.Entry<RPCClientRequest> getTimeout() {
+        return this.timeout;
+    }
+
     /**
      * @return the responseHeader
      */
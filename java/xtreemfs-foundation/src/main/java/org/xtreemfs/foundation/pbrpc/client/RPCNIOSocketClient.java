@@ -20,6 +20,7 @@ import java.nio.channels.NotYetConnectedException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -47,6 +48,7 @@ import org.xtreemfs.foundation.pbrpc.server.RPCNIOSocketServer;
 import org.xtreemfs.foundation.pbrpc.server.RPCNIOSocketServerConnection;
 import org.xtreemfs.foundation.pbrpc.utils.ReusableBufferInputStream;
 import org.xtreemfs.foundation.util.OutputUtils;
+import org.xtreemfs.foundation.util.TimerWheel;
 
 import com.google.protobuf.Message;
 
@@ -70,6 +72,13 @@ public class RPCNIOSocketClient extends LifeCycleThread {
 
     private AtomicLong lastCheck;
 
+    /**
+     * request timeouts of all connections, access must be synchronized on the wheel
+     */
+    private final TimerWheel<RPCClientRequest> requestTimeouts;
+
+    private final List<RPCClientRequest> expiredRequests;
+
     private final Selector selector;
 
     private volatile boolean quit;
@@ -128,6 +137,9 @@ public class RPCNIOSocketClient extends LifeCycleThread {
                             + "ms");
         }
         this.lastCheck = new AtomicLong();
+        this.requestTimeouts = new TimerWheel<RPCClientRequest>(TIMEOUT_GRANULARITY,
+                System.currentTimeMillis());
+        this.expiredRequests = new ArrayList<RPCClientRequest>();
         this.requestTimeout = requestTimeout;
         this.connectionTimeout = connectionTimeout;
         this.sendBufferSize = sendBufferSize;
@@ -175,6 +187,7 @@ public class RPCNIOSocketClient extends LifeCycleThread {
         synchronized (con) {
             boolean isEmpty = con.getSendQueue().isEmpty();
             request.queued();
+            scheduleTimeout(con, request, request.getTimeQueued() + requestTimeout);
             con.useConnection();
             if (highPriority)
                 con.getSendQueue().add(0, request);
@@ -394,6 +407,7 @@ public class RPCNIOSocketClient extends LifeCycleThread {
                 }
                 con.connectFailed();
                 for (RPCClientRequest rq : con.getSendQueue()) {
+                    cancelTimeout(rq);
                     rq.getResponse().requestFailed("sending RPC failed: server '" + con.getEndpointString() + "' not reachable (" + ex + ")");
                     rq.freeBuffers();
                 }
@@ -407,6 +421,7 @@ public class RPCNIOSocketClient extends LifeCycleThread {
             }
             synchronized (con) {
                 for (RPCClientRequest rq : con.getSendQueue()) {
+                    cancelTimeout(rq);
                     rq.getResponse().requestFailed("sending RPC failed: reconnecting to the server '" + con.getEndpointString() + "' was blocked locally to avoid flooding");
                     rq.freeBuffers();
                 }
@@ -450,7 +465,7 @@ public class RPCNIOSocketClient extends LifeCycleThread {
                         final int numBytesRead = RPCNIOSocketServer.readData(key, channel, buf);
                         if (numBytesRead == -1) {
                             // connection closed
-                            if (Logging.isInfo()) {
+                            if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.net)) {
                                 Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this,
                                         "client closed connection (EOF): %s", channel.socket()
                                                 .getRemoteSocketAddress().toString());
@@ -566,6 +581,7 @@ public class RPCNIOSocketClient extends LifeCycleThread {
                         header.getCallId());
                 return;
             }
+            cancelTimeout(rq);
             RPCResponse response = rq.getResponse();
             rq.setResponseHeader(header);
             con.setResponseBuffers(null);
@@ -713,6 +729,7 @@ public class RPCNIOSocketClient extends LifeCycleThread {
 
         // notify listeners
         for (RPCClientRequest rq : cancelRq) {
+            cancelTimeout(rq);
             rq.getResponse().requestFailed("sending RPC failed: " + errorMessage);
             rq.freeBuffers();
         }
@@ -727,7 +744,7 @@ public class RPCNIOSocketClient extends LifeCycleThread {
         // poor man's timer
         long now = System.currentTimeMillis();
         if (now >= lastCheck.get() + TIMEOUT_GRANULARITY) {
-            // check for timed out requests
+            // check for idle connections
             synchronized (connections) {
                 Iterator<RPCClientConnection> conIter = connections.values().iterator();
                 while (conIter.hasNext()) {
@@ -743,39 +760,46 @@ public class RPCNIOSocketClient extends LifeCycleThread {
                             closeConnection(con.getChannel().keyFor(selector), null);
                         } catch (Exception ex) {
                         }
-                    } else {
-                        // check for request timeout
-                        List<RPCClientRequest> cancelRq = new LinkedList<RPCClientRequest>();
-                        synchronized (con) {
-                            Iterator<RPCClientRequest> iter = con.getRequests().values().iterator();
-                            while (iter.hasNext()) {
-                                final RPCClientRequest rq = iter.next();
-                                if (rq.getTimeQueued() + requestTimeout < now) {
-                                    cancelRq.add(rq);
-                                    iter.remove();
-                                }
-                            }
-                            iter = con.getSendQueue().iterator();
-                            while (iter.hasNext()) {
-                                final RPCClientRequest rq = iter.next();
-                                if (rq.getTimeQueued() + requestTimeout < now) {
-                                    cancelRq.add(rq);
-                                    iter.remove();
-                                } else {
-                                    // requests are ordered :-)
-                                    break;
-                                }
-                            }
-                        }
-                        for (RPCClientRequest rq : cancelRq) {
-                            rq.getResponse().requestFailed("sending RPC failed: request timed out");
-                            rq.freeBuffers();
-                        }
+                    }
+                }
+            }
 
+            // check for timed out requests
+            synchronized (requestTimeouts) {
+                requestTimeouts.expire(now - 1, expiredRequests);
+            }
+            for (RPCClientRequest rq : expiredRequests) {
+                final RPCClientConnection con = rq.getConnection();
+                boolean timedOut;
+                synchronized (con) {
+                    timedOut = con.getRequests().remove(rq.getRequestHeader().getCallId()) != null
+                            || con.getSendQueue().remove(rq);
+                    if (!timedOut && con.getPendingRequest() == rq) {
+                        // still being sent, times out once it is waiting for the response
+                        scheduleTimeout(con, rq, now + TIMEOUT_GRANULARITY);
                     }
                 }
+                if (timedOut) {
+                    rq.getResponse().requestFailed("sending RPC failed: request timed out");
+                    rq.freeBuffers();
+                }
+            }
+            expiredRequests.clear();
+
+            lastCheck.set(now);
+        }
+    }
+
+    private void scheduleTimeout(RPCClientConnection con, RPCClientRequest rq, long time) {
+        synchronized (requestTimeouts) {
+            rq.setTimeout(con, requestTimeouts.schedule(rq, time));
+        }
+    }
 
-                lastCheck.set(now);
+    private void cancelTimeout(RPCClientRequest rq) {
+        if (rq.getTimeout() != null) {
+            synchronized (requestTimeouts) {
+                requestTimeouts.cancel(rq.getTimeout());
             }
         }
     }
@@ -25,6 +25,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.xtreemfs.foundation.LifeCycleThread;
@@ -33,9 +34,13 @@ import org.xtreemfs.foundation.buffer.BufferPool;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
+import org.xtreemfs.foundation.metrics.Gauge;
+import org.xtreemfs.foundation.metrics.Histogram;
+import org.xtreemfs.foundation.metrics.MetricsRegistry;
 import org.xtreemfs.foundation.pbrpc.channels.ChannelIO;
 import org.xtreemfs.foundation.pbrpc.channels.SSLChannelIO;
 import org.xtreemfs.foundation.pbrpc.channels.SSLHandshakeOnlyChannelIO;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC;
 import org.xtreemfs.foundation.util.OutputUtils;
 
 /**
@@ -104,6 +109,22 @@ public class RPCNIOSocketServer extends LifeCycleThread implements RPCServerInte
 
     public static final int DEFAULT_MAX_CLIENT_Q_LENGTH = 100;
 
+    /**
+     * registry for the latencies of the RPC procedures, or null if they are not recorded
+     */
+    private volatile MetricsRegistry metrics;
+
+    /**
+     * latency histograms in microseconds, by interface id and proc id
+     */
+    private final ConcurrentHashMap<Long, Histogram> procLatencies = new ConcurrentHashMap<Long, Histogram>();
+
+    /**
+     * latency histogram of requests rejected for an unknown interface id or proc id, which share one label so that
+     * clients cannot create an unbounded number of histograms
+     */
+    private volatile Histogram invalidProcLatency;
+
     public RPCNIOSocketServer(int bindPort, InetAddress bindAddr, RPCServerRequestListener rl,
                               SSLOptions sslOptions) throws IOException {
         this(bindPort, bindAddr, rl, sslOptions, 0, -1);
@@ -220,10 +241,13 @@ public class RPCNIOSocketServer extends LifeCycleThread implements RPCServerInte
     public void sendResponse(RPCServerRequest request, RPCServerResponse response) {
         assert (response != null);
 
-        if (Logging.isDebug())
+        if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.net))
             Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this, "response sent (request %s)",
                                request.getHeader().getCallId());
         final RPCNIOSocketServerConnection connection = (RPCNIOSocketServerConnection) request.getConnection();
+        if (metrics != null) {
+            recordLatency(request, response);
+        }
         try {
             request.freeBuffers();
         } catch (AssertionError ex) {
@@ -256,6 +280,49 @@ public class RPCNIOSocketServer extends LifeCycleThread implements RPCServerInte
         }
     }
 
+    /**
+     * Records the latency of each RPC procedure from receiving the request to sending the response, and registers
+     * gauges for the number of connections and pending requests.
+     */
+    public void registerMetrics(MetricsRegistry registry) {
+        final String labels = MetricsRegistry.label("port", String.valueOf(bindPort));
+        registry.register("xtreemfs_rpc_connections", labels, new Gauge() {
+            @Override
+            public long getValue() {
+                return getNumConnections();
+            }
+        });
+        registry.register("xtreemfs_rpc_pending_requests", labels, new Gauge() {
+            @Override
+            public long getValue() {
+                return getPendingRequests();
+            }
+        });
+        this.invalidProcLatency = registry.histogram("xtreemfs_rpc_latency_us",
+            MetricsRegistry.label("interface", "invalid") + "," + MetricsRegistry.label("proc", "invalid"));
+        this.metrics = registry;
+    }
+
+    private void recordLatency(RPCServerRequest request, RPCServerResponse response) {
+        final long latencyUs = (System.nanoTime() - request.getReceiveNanos()) / 1000;
+        if (response.errorType == RPC.ErrorType.INVALID_INTERFACE_ID
+            || response.errorType == RPC.ErrorType.INVALID_PROC_ID) {
+            invalidProcLatency.record(latencyUs);
+            return;
+        }
+
+        final RPC.RPCHeader.RequestHeader rqHdr = request.getHeader().getRequestHeader();
+        final Long key = Long.valueOf(((long) rqHdr.getInterfaceId() << 32) | rqHdr.getProcId());
+        Histogram latency = procLatencies.get(key);
+        if (latency == null) {
+            latency = metrics.histogram("xtreemfs_rpc_latency_us",
+                MetricsRegistry.label("interface", String.valueOf(rqHdr.getInterfaceId())) + ","
+                    + MetricsRegistry.label("proc", String.valueOf(rqHdr.getProcId())));
+            procLatencies.put(key, latency);
+        }
+        latency.record(latencyUs);
+    }
+
     @Override
     public void run() {
 
@@ -388,7 +455,7 @@ public class RPCNIOSocketServer extends LifeCycleThread implements RPCServerInte
                         final int numBytesRead = readData(key, channel, buf);
                         if (numBytesRead == -1) {
                             // connection closed
-                            if (Logging.isInfo()) {
+                            if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.net)) {
                                 Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this,
                                         "client closed connection (EOF): %s", channel.socket()
                                                 .getRemoteSocketAddress().toString());
@@ -478,12 +545,12 @@ public class RPCNIOSocketServer extends LifeCycleThread implements RPCServerInte
                         }
                         // request is 
                         // complete... send to receiver
-                        if (Logging.isDebug()) {
+                        if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.net)) {
                             Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this, rq
                                     .toString());
                         }
                         con.getOpenRequests().incrementAndGet();
-                        if (Logging.isDebug())
+                        if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.net))
                             Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this,
                                     "request received (request %s)",
                                                rq.getHeader().getCallId());
@@ -594,7 +661,7 @@ public class RPCNIOSocketServer extends LifeCycleThread implements RPCServerInte
                         // clean up :-) request finished
                         pendingRequests--;
                         RPCServerResponse rq = con.getPendingResponses().poll();
-                        if (Logging.isDebug()) {
+                        if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.net)) {
                             Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this,
                                     "sent response for %s", rq.toString());
                         }
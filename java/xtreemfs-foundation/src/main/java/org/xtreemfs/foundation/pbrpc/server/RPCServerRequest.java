@@ -27,8 +27,10 @@ public class RPCServerRequest {
     private ReusableBuffer message;
     private ReusableBuffer data;
     private final RPCServerConnectionInterface connection;
+    private final long receiveNanos;
 
     public RPCServerRequest(RPCServerConnectionInterface connection, ReusableBuffer headerBuffer, ReusableBuffer message, ReusableBuffer data) throws IOException {
+        this.receiveNanos = System.nanoTime();
         try {
             ReusableBufferInputStream rbis = new ReusableBufferInputStream(headerBuffer);
             header = RPC.RPCHeader.parseFrom(rbis);
@@ -41,6 +43,7 @@ public class RPCServerRequest {
     }
 
     public RPCServerRequest(RPCServerConnectionInterface connection, RPC.RPCHeader header, ReusableBuffer message) {
+        this.receiveNanos = System.nanoTime();
         this.header = header;
         this.message = message;
         this.data = null;
@@ -65,6 +68,13 @@ public class RPCServerRequest {
         return data;
     }
 
+    /**
+     * @return the value of {@link System#nanoTime()} when the request was received
+     */
+    public long getReceiveNanos() {
+        return receiveNanos;
+    }
+
     public void freeBuffers() {
         BufferPool.free(message);
         BufferPool.free(data);
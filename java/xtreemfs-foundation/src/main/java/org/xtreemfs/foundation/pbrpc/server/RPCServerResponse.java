@@ -25,6 +25,11 @@ public class RPCServerResponse {
 
     final int callId;
 
+    /**
+     * type of the error sent with the response, or null if the request succeeded
+     */
+    final RPC.ErrorType errorType;
+
     final ReusableBuffer[] buffers;
     final int hdrLen;
     final int msgLen;
@@ -33,6 +38,7 @@ public class RPCServerResponse {
     public RPCServerResponse(RPC.RPCHeader header, Message message, ReusableBuffer data) throws IOException {
         ReusableBufferOutputStream os = new ReusableBufferOutputStream(ReusableBufferOutputStream.BUFF_SIZE);
         callId = header.getCallId();
+        errorType = header.hasErrorResponse() ? header.getErrorResponse().getErrorType() : null;
 
         hdrLen = header.getSerializedSize();
         msgLen = (message != null) ? message.getSerializedSize() : 0;
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.foundation.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A hierarchical timer wheel. Timers are kept in slots depending on the tick they are scheduled for. Timers in the
+ * near future are stored in the slots of the first level with one tick per slot, timers further in the future in
+ * the slots of the higher levels, which cover {@link #SLOTS} times as many ticks per slot as the level below. When
+ * the wheel reaches the range of a slot of a higher level, its timers are moved to the lower levels.
+ * <p>
+ * Scheduling and cancelling a timer takes constant time, expiring timers takes constant time per tick that has
+ * passed plus the time to move the expired timers. Timers scheduled for a tick that has already passed are
+ * expired with the next run.
+ * <p>
+ * Not thread-safe.
+ */
+public final class TimerWheel<T> {
+
+    public static final class Entry<T> {
+
+        private final T    item;
+
+        private final long time;
+
+        private final long tick;
+
+        private Entry<T>   prev;
+
+        private Entry<T>   next;
+
+        private int        level;
+
+        private int        slot;
+
+        private Entry(T item, long time, long tick) {
+            this.item = item;
+            this.time = time;
+            this.tick = tick;
+            this.slot = -1;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * @return true, if the timer has neither expired nor been cancelled yet
+         */
+        public boolean isScheduled() {
+            return slot >= 0;
+        }
+    }
+
+    /**
+     * log2 of the number of slots per level
+     */
+    private static final int                  BITS       = 6;
+
+    public static final int                   SLOTS      = 1 << BITS;
+
+    private static final int                  MASK       = SLOTS - 1;
+
+    /**
+     * number of levels, timers beyond the range of the last level are moved down when it is reached
+     */
+    private static final int                  LEVELS     = 6;
+
+    private static final Comparator<Entry<?>> TIME_ORDER = new Comparator<Entry<?>>() {
+
+        public int compare(Entry<?> o1, Entry<?> o2) {
+            return o1.time < o2.time ? -1 : (o1.time == o2.time ? 0 : 1);
+        }
+    };
+
+    private final int                         tickDuration;
+
+    private final Entry<T>[][]                slots;
+
+    private final List<Entry<T>>              due;
+
+    /**
+     * the next tick to process
+     */
+    private long                              currentTick;
+
+    /**
+     * the last tick for which the timers of the higher levels have been moved down
+     */
+    private long                              cascadedTick;
+
+    private int                               size;
+
+    /**
+     * @param tickDuration
+     *            granularity of the wheel, in the unit of the timer timestamps
+     * @param startTime
+     *            non-negative timestamp from which on timers are expired, usually the current time
+     */
+    public TimerWheel(int tickDuration, long startTime) {
+        if (tickDuration <= 0 || startTime < 0) {
+            throw new IllegalArgumentException("tick duration must be positive and start time non-negative");
+        }
+        this.tickDuration = tickDuration;
+        this.slots = new Entry[LEVELS][SLOTS];
+        this.due = new ArrayList<Entry<T>>();
+        this.currentTick = startTime / tickDuration;
+        this.cascadedTick = -1;
+    }
+
+    /**
+     * Schedules a timer.
+     *
+     * @param item
+     * @param time
+     *            non-negative timestamp at which the timer expires
+     * @return a handle to cancel the timer
+     */
+    public Entry<T> schedule(T item, long time) {
+        final long tick = time / tickDuration;
+        final Entry<T> e = new Entry<T>(item, time, tick);
+        link(e);
+        size++;
+        return e;
+    }
+
+    /**
+     * Cancels a timer, if it has neither expired nor been cancelled yet.
+     *
+     * @param e
+     */
+    public void cancel(Entry<T> e) {
+        if (e.isScheduled()) {
+            unlink(e);
+            size--;
+        }
+    }
+
+    /**
+     * Removes all timers which expire at or before the given timestamp.
+     *
+     * @param limit
+     * @param expired
+     *            the items of the expired timers are added to this list, ordered by their timestamps
+     */
+    public void expire(long limit, List<T> expired) {
+        final long limitTick = limit / tickDuration;
+        while (currentTick <= limitTick) {
+            if (size == 0) {
+                // nothing to move down or expire in between
+                currentTick = limitTick;
+                break;
+            }
+
+            if (cascadedTick != currentTick) {
+                cascade(currentTick);
+                cascadedTick = currentTick;
+            }
+
+            // timers of the last tick may still be pending
+            final boolean lastTick = currentTick == limitTick;
+            Entry<T> e = slots[0][(int) (currentTick & MASK)];
+            while (e != null) {
+                final Entry<T> next = e.next;
+                if (!lastTick || e.time <= limit) {
+                    unlink(e);
+                    size--;
+                    due.add(e);
+                }
+                e = next;
+            }
+
+            if (lastTick) {
+                break;
+            }
+            currentTick++;
+        }
+
+        if (!due.isEmpty()) {
+            Collections.sort(due, TIME_ORDER);
+            for (Entry<T> e : due) {
+                expired.add(e.item);
+            }
+            due.clear();
+        }
+    }
+
+    /**
+     * @return the number of scheduled timers
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Moves the timers of the higher level slots that start at the given tick to the lower levels.
+     */
+    private void cascade(long tick) {
+        for (int level = 1; level < LEVELS; level++) {
+            if ((tick & ((1L << (BITS * level)) - 1)) != 0) {
+                break;
+            }
+            final int slot = (int) ((tick >>> (BITS * level)) & MASK);
+            Entry<T> e = slots[level][slot];
+            slots[level][slot] = null;
+            while (e != null) {
+                final Entry<T> next = e.next;
+                e.prev = null;
+                e.next = null;
+                link(e);
+                e = next;
+            }
+        }
+    }
+
+    private void link(Entry<T> e) {
+        final long delta = e.tick - currentTick;
+        int level = 0;
+        long tick = Math.max(e.tick, currentTick);
+        while (level < LEVELS - 1 && delta >= (1L << (BITS * (level + 1)))) {
+            level++;
+        }
+        if (delta >= (1L << (BITS * LEVELS))) {
+            // beyond the range of the wheel, is moved down again when the last level slot is reached
+            tick = currentTick + (1L << (BITS * LEVELS)) - 1;
+        }
+
+        e.level = level;
+        e.slot = (int) ((tick >>> (BITS * level)) & MASK);
+        e.next = slots[level][e.slot];
+        if (e.next != null) {
+            e.next.prev = e;
+        }
+        slots[level][e.slot] = e;
+    }
+
+    private void unlink(Entry<T> e) {
+        if (e.prev != null) {
+            e.prev.next = e.next;
+        } else {
+            slots[e.level][e.slot] = e.next;
+        }
+        if (e.next != null) {
+            e.next.prev = e.prev;
+        }
+        e.prev = null;
+        e.next = null;
+        e.slot = -1;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.foundation.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncLogWriterTest {
+
+    private ByteArrayOutputStream output;
+
+    @Before
+    public void setUp() {
+        output = new ByteArrayOutputStream();
+        Logging.redirect(new PrintStream(output, true));
+    }
+
+    @After
+    public void tearDown() {
+        Logging.redirect(System.out);
+    }
+
+    private int countLines(String text) {
+        int count = 0;
+        for (String line : output.toString().split("\n")) {
+            if (line.contains(text)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        AsyncLogWriter writer = new AsyncLogWriter(16);
+        writer.start();
+        assertTrue(writer.append(AsyncLogWriter.KIND_MESSAGE, Logging.LEVEL_INFO, this, "message %d of %s",
+            new Object[] { 1, "test" }, null));
+        assertTrue(writer.append(AsyncLogWriter.KIND_ERROR, Logging.LEVEL_ERROR, this, null, null,
+            new IllegalStateException("failed", new RuntimeException("cause"))));
+        writer.shutdown();
+
+        assertEquals(1, countLines("message 1 of test"));
+        assertEquals(1, countLines("IllegalStateException: failed"));
+        assertEquals(1, countLines("root cause: java.lang.RuntimeException: cause"));
+        assertEquals(0, writer.getDroppedMessages());
+    }
+
+    @Test
+    public void testDropWhenFull() throws Exception {
+        // the writer is not started, so the buffer fills up
+        AsyncLogWriter writer = new AsyncLogWriter(3);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(writer.append(AsyncLogWriter.KIND_MESSAGE, Logging.LEVEL_INFO, this, "message %d",
+                new Object[] { i }, null));
+        }
+        assertFalse(writer.append(AsyncLogWriter.KIND_MESSAGE, Logging.LEVEL_INFO, this, "message %d",
+            new Object[] { 4 }, null));
+        assertEquals(1, writer.getDroppedMessages());
+
+        writer.start();
+        writer.shutdown();
+        assertEquals(4, countLines("message "));
+        assertEquals(1, countLines("1 messages dropped"));
+    }
+
+    @Test
+    public void testSuppressRepeats() throws Exception {
+        final int repeats = AsyncLogWriter.MAX_REPEATS_PER_SECOND + 50;
+        AsyncLogWriter writer = new AsyncLogWriter(repeats);
+        for (int i = 0; i < repeats; i++) {
+            writer.append(AsyncLogWriter.KIND_MESSAGE, Logging.LEVEL_WARN, this, "overloaded %d",
+                new Object[] { i }, null);
+        }
+        writer.append(AsyncLogWriter.KIND_MESSAGE, Logging.LEVEL_WARN, this, "other", new Object[0], null);
+        writer.start();
+        writer.shutdown();
+
+        assertEquals(AsyncLogWriter.MAX_REPEATS_PER_SECOND, countLines("] overloaded "));
+        assertEquals(1, countLines("] other"));
+        assertEquals(1, countLines("50 repetitions suppressed: overloaded %d"));
+    }
+
+    @Test
+    public void testFailingToString() throws Exception {
+        final Object badArg = new Object() {
+            @Override
+            public String toString() {
+                throw new AssertionError("bad argument");
+            }
+        };
+        final Exception badError = new Exception() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public String toString() {
+                throw new OutOfMemoryError("bad error");
+            }
+        };
+
+        AsyncLogWriter writer = new AsyncLogWriter(16);
+        writer.start();
+        writer.append(AsyncLogWriter.KIND_MESSAGE, Logging.LEVEL_INFO, this, "argument %s",
+            new Object[] { badArg }, null);
+        writer.append(AsyncLogWriter.KIND_ERROR, Logging.LEVEL_ERROR, this, null, null, badError);
+        writer.append(AsyncLogWriter.KIND_MESSAGE, Logging.LEVEL_INFO, this, "still alive", new Object[0], null);
+        writer.shutdown();
+
+        // neither record stops the writer
+        assertEquals(1, countLines("argument %s (java.lang.AssertionError: bad argument)"));
+        assertEquals(1, countLines("could not write log record: java.lang.OutOfMemoryError: bad error"));
+        assertEquals(1, countLines("] still alive"));
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.foundation.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void testHistogramBuckets() {
+        // consecutive buckets cover all values without gaps
+        long expected = 0;
+        for (int bucket = 0; Histogram.getHighestValue(bucket) <= Histogram.MAX_VALUE; bucket++) {
+            assertEquals(bucket, Histogram.getBucket(expected));
+            final long highest = Histogram.getHighestValue(bucket);
+            assertEquals(bucket, Histogram.getBucket(highest));
+            // the relative error is bounded
+            assertTrue(highest - expected <= expected / Histogram.SUB_BUCKETS);
+            expected = highest + 1;
+            if (highest == Histogram.MAX_VALUE) {
+                break;
+            }
+        }
+        assertEquals(Histogram.MAX_VALUE + 1, expected);
+    }
+
+    @Test
+    public void testHistogramQuantiles() {
+        Histogram h = new Histogram();
+        assertEquals(0, h.getValueAtQuantile(0.99));
+
+        for (int i = 1; i <= 1000; i++) {
+            h.record(i * 1000);
+        }
+        assertEquals(1000, h.getCount());
+        assertEquals(500500000, h.getSum());
+        assertEquals(1000000, h.getMax());
+
+        final long median = h.getValueAtQuantile(0.5);
+        assertTrue(median >= 500000 && median <= 500000 * 17 / 16);
+        final long p99 = h.getValueAtQuantile(0.99);
+        assertTrue(p99 >= 990000 && p99 <= 1000000);
+        assertEquals(1000000, h.getValueAtQuantile(1));
+    }
+
+    @Test
+    public void testCounter() throws Exception {
+        final Counter c = new Counter();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        c.increment();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(40000, c.get());
+    }
+
+    @Test
+    public void testTextFormat() {
+        MetricsRegistry registry = new MetricsRegistry();
+        final String labels = MetricsRegistry.label("stage", "a\"b");
+        assertEquals("stage=\"a\\\"b\"", labels);
+
+        Counter c = registry.counter("test_requests_total", labels);
+        assertSame(c, registry.counter("test_requests_total", labels));
+        c.add(3);
+        registry.histogram("test_latency_us", null).record(7);
+        registry.register("test_queue_length", labels, new Gauge() {
+            public long getValue() {
+                return 5;
+            }
+        });
+
+        StringBuilder sb = new StringBuilder();
+        registry.writeText(sb);
+        final String text = sb.toString();
+        assertTrue(text.contains("# TYPE test_requests_total counter\ntest_requests_total{stage=\"a\\\"b\"} 3\n"));
+        assertTrue(text.contains("# TYPE test_queue_length gauge\n"));
+        assertTrue(text.contains("# TYPE test_latency_us summary\n"));
+        assertTrue(text.contains("test_latency_us{quantile=\"0.99\"} 7\n"));
+        assertTrue(text.contains("test_latency_us_count 1\n"));
+        assertTrue(text.contains("test_latency_us_sum 7\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTypeMismatch() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("test_metric", null);
+        registry.histogram("test_metric", null);
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("test_requests_total", null).add(2);
+        registry.histogram("test_latency_us", null).record(100);
+
+        final String name = "org.xtreemfs:type=Metrics,service=Test,id=" + ObjectName.quote("test:1");
+        registry.registerMBean("Test", "test:1");
+        // registering again replaces the MBean
+        registry.registerMBean("Test", "test:1");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(name);
+            assertEquals(Long.valueOf(2), server.getAttribute(objectName, "test_requests_total"));
+            assertEquals(Long.valueOf(1), server.getAttribute(objectName, "test_latency_us.count"));
+            assertEquals(Double.valueOf(100), server.getAttribute(objectName, "test_latency_us.max"));
+        } finally {
+            registry.unregisterMBean();
+        }
+        assertTrue(!ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(name)));
+    }
+}
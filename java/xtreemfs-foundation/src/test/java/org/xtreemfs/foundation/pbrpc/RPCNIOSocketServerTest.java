@@ -12,6 +12,7 @@ import java.io.IOException;
 import org.xtreemfs.foundation.util.OutputUtils;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.foundation.metrics.MetricsRegistry;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
@@ -374,4 +375,82 @@ public class RPCNIOSocketServerTest {
         server.waitForShutdown();
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testLatencyOfInvalidProcs() throws Exception {
+
+        final int TEST_PORT = 9992;
+
+        server = new RPCNIOSocketServer(TEST_PORT, null, new RPCServerRequestListener() {
+
+            @Override
+            public void receiveRecord(RPCServerRequest rq) {
+                try {
+                    if (rq.getHeader().getRequestHeader().getProcId() == 1) {
+                        rq.sendResponse(null, null);
+                    } else {
+                        rq.sendError(RPC.ErrorType.INVALID_PROC_ID, RPC.POSIXErrno.POSIX_ERROR_EINVAL,
+                            "invalid proc id");
+                    }
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    fail(ex.toString());
+                }
+            }
+        }, null);
+        MetricsRegistry metrics = new MetricsRegistry();
+        server.registerMetrics(metrics);
+
+        server.start();
+        server.waitForStartup();
+
+        Socket sock = new Socket("localhost", TEST_PORT);
+        OutputStream out = sock.getOutputStream();
+        InputStream in = sock.getInputStream();
+
+        RPC.Auth auth = RPC.Auth.newBuilder().setAuthType(RPC.AuthType.AUTH_NONE).build();
+        RPC.UserCredentials ucred = RPC.UserCredentials.newBuilder().setUsername("test").addGroups("user").build();
+        int[] procIds = new int[] { 1, 100, 101, 102 };
+        for (int i = 0; i < procIds.length; i++) {
+            RPC.RPCHeader.RequestHeader rqHdr = RPC.RPCHeader.RequestHeader.newBuilder().setAuthData(auth)
+                    .setUserCreds(ucred).setProcId(procIds[i]).setInterfaceId(2).build();
+            RPC.RPCHeader header = RPC.RPCHeader.newBuilder().setCallId(i).setMessageType(
+                RPC.MessageType.RPC_REQUEST).setRequestHeader(rqHdr).build();
+
+            ReusableBufferOutputStream ois = new ReusableBufferOutputStream(ReusableBufferOutputStream.BUFF_SIZE);
+            header.writeTo(ois);
+
+            ByteBuffer recordMarker = ByteBuffer.allocate(RecordMarker.HDR_SIZE);
+            recordMarker.putInt(ois.length());
+            recordMarker.putInt(0);
+            recordMarker.putInt(0);
+            recordMarker.flip();
+
+            ois.flip();
+
+            out.write(recordMarker.array());
+            byte[] data = new byte[ois.getBuffers()[0].remaining()];
+            ois.getBuffers()[0].get(data);
+            out.write(data);
+
+            byte[] markerIn = new byte[RecordMarker.HDR_SIZE];
+            in.read(markerIn);
+            ReusableBuffer marker = ReusableBuffer.wrap(markerIn);
+            byte[] hdrIn = new byte[marker.getInt()];
+            in.read(hdrIn);
+            assertEquals(i, RPC.RPCHeader.parseFrom(hdrIn).getCallId());
+        }
+
+        sock.close();
+        server.shutdown();
+        server.waitForShutdown();
+
+        // the latencies of unknown procedures share one histogram
+        StringBuilder sb = new StringBuilder();
+        metrics.writeText(sb);
+        String text = sb.toString();
+        assertTrue(text.contains("xtreemfs_rpc_latency_us_count{interface=\"2\",proc=\"1\"} 1"));
+        assertTrue(text.contains("xtreemfs_rpc_latency_us_count{interface=\"invalid\",proc=\"invalid\"} 3"));
+        assertFalse(text.contains("proc=\"100\""));
+    }
+
+}
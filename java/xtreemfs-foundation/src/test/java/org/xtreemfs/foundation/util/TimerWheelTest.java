@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.foundation.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TimerWheelTest {
+
+    @Test
+    public void testExpire() {
+        TimerWheel<String> wheel = new TimerWheel<String>(50, 1000);
+        List<String> expired = new ArrayList<String>();
+
+        wheel.schedule("c", 1180);
+        wheel.schedule("a", 1010);
+        wheel.schedule("b", 1020);
+        // in a higher level
+        wheel.schedule("d", 1000 + 50 * TimerWheel.SLOTS + 10);
+        assertEquals(4, wheel.size());
+
+        wheel.expire(1000, expired);
+        assertTrue(expired.isEmpty());
+
+        wheel.expire(1100, expired);
+        assertEquals(Arrays.asList("a", "b"), expired);
+        expired.clear();
+
+        // the timer of the current tick is not due yet
+        wheel.expire(1170, expired);
+        assertTrue(expired.isEmpty());
+        wheel.expire(1200, expired);
+        assertEquals(Arrays.asList("c"), expired);
+        expired.clear();
+
+        wheel.expire(1000 + 50 * TimerWheel.SLOTS, expired);
+        assertTrue(expired.isEmpty());
+        wheel.expire(100000, expired);
+        assertEquals(Arrays.asList("d"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testCancelAndOverdue() {
+        TimerWheel<String> wheel = new TimerWheel<String>(50, 1000);
+        List<String> expired = new ArrayList<String>();
+
+        TimerWheel.Entry<String> a = wheel.schedule("a", 1010);
+        wheel.schedule("b", 1020);
+        wheel.cancel(a);
+        assertFalse(a.isScheduled());
+        wheel.cancel(a);
+        assertEquals(1, wheel.size());
+
+        wheel.expire(2000, expired);
+        assertEquals(Arrays.asList("b"), expired);
+        expired.clear();
+
+        // timers in the past expire with the next run
+        wheel.schedule("c", 1500);
+        wheel.expire(2000, expired);
+        assertEquals(Arrays.asList("c"), expired);
+    }
+
+    /**
+     * Compares the wheel with the expected expiration of random timers spread across all levels.
+     */
+    @Test
+    public void testRandomTimers() {
+        TimerWheel<Long> wheel = new TimerWheel<Long>(1, 1000);
+        Random rnd = new Random(42);
+        List<TimerWheel.Entry<Long>> entries = new ArrayList<TimerWheel.Entry<Long>>();
+        List<Long> expired = new ArrayList<Long>();
+
+        long now = 1000;
+        for (int round = 0; round < 2000; round++) {
+            for (int i = 0; i < 10; i++) {
+                final long time = now + (long) Math.pow(2, rnd.nextInt(40)) + rnd.nextInt(1000) - 500;
+                entries.add(wheel.schedule(Long.valueOf(time), time));
+            }
+            if (rnd.nextInt(4) == 0) {
+                wheel.cancel(entries.get(rnd.nextInt(entries.size())));
+            }
+
+            now += rnd.nextInt(5000);
+            expired.clear();
+            wheel.expire(now, expired);
+
+            long last = Long.MIN_VALUE;
+            for (Long time : expired) {
+                assertTrue(time <= now);
+                assertTrue(time >= last);
+                last = time;
+            }
+
+            // all timers still scheduled are in the future
+            int scheduled = 0;
+            for (TimerWheel.Entry<Long> e : entries) {
+                if (e.isScheduled()) {
+                    assertTrue(e.getTime() > now);
+                    scheduled++;
+                }
+            }
+            assertEquals(scheduled, wheel.size());
+        }
+    }
+
+}
@@ -36,6 +36,8 @@ public class ServiceConfig extends Config {
          */
         DEBUG_LEVEL("debug.level", 6, Integer.class, false),
         DEBUG_CATEGORIES("debug.categories", debugCategoryDefault, Category[].class, false),
+        /** Maximum number of log messages pending for asynchronous logging. 0 logs synchronously. */
+        DEBUG_ASYNC_BUFFER_SIZE("debug.async_buffer_size", 0, Integer.class, false),
         DIRECTORY_SERVICE("dir_service.host", null, InetSocketAddress.class, true),
         DIRECTORY_SERVICE0("dir_service.0.host", null, InetSocketAddress.class, false),
         DIRECTORY_SERVICE1("dir_service.1.host", null, InetSocketAddress.class, false),
@@ -99,6 +101,10 @@ public class ServiceConfig extends Config {
         CAPABILITY_SECRET("capability_secret", null, String.class, true),
         CAPABILITY_TIMEOUT("capability_timeout", 600, Integer.class, false),
         RENEW_TIMED_OUT_CAPS("renew_to_caps", false, Boolean.class, false),
+        /** Interval for writing buffered file size updates to the database. 0 disables buffering. */
+        FILE_SIZE_UPDATE_FLUSH_INTERVAL_MS("file_size_updates.flush_interval_ms", 500, Integer.class, false),
+        /** Maximum number of xLocSet changes of different files that are coordinated concurrently. */
+        XLOCSET_COORDINATOR_THREADS("xlocset_coordinator.threads", 4, Integer.class, false),
 
         /*
          * OSD specific configuration parameter
@@ -115,6 +121,14 @@ public class ServiceConfig extends Config {
         /** Message timeout. Maximum allowed in-transit time for a Flease message. */
         FLEASE_MESSAGE_TO_MS("flease.message_to_ms", 500, Integer.class, false),
         FLEASE_RETRIES("flease.retries", 3, Integer.class, false),
+        /** Maximum number of Flease messages for different cells sent to the same OSD at once. 0 disables it. */
+        FLEASE_MAX_BATCH_SIZE("flease.max_batch_size", 0, Integer.class, false),
+        /** Number of threads that process the Flease cells of an OSD, each one is responsible for a subset of them. */
+        FLEASE_NUM_PARTITIONS("flease.num_partitions", 1, Integer.class, false),
+        /** Block size for the delta resynchronization of RW replicas. 0 disables it. */
+        RWR_DELTA_BLOCK_SIZE("rwr.delta_block_size", 0, Integer.class, false),
+        /** Maximum number of bytes fetched with one request by the ronly replication. 0 fetches objects one by one. */
+        REPLICATION_MAX_FETCH_SIZE("replication.max_fetch_size", 2097152, Integer.class, false),
         SOCKET_SEND_BUFFER_SIZE("socket.send_buffer_size", -1, Integer.class, false),
         SOCKET_RECEIVE_BUFFER_SIZE("socket.recv_buffer_size", -1, Integer.class, false),
         VIVALDI_RECALCULATION_INTERVAL_IN_MS("vivaldi.recalculation_interval_ms", 300000, Integer.class, false),
@@ -124,6 +138,24 @@ public class ServiceConfig extends Config {
         VIVALDI_MAX_REQUEST_TIMEOUT_IN_MS("vivaldi.max_request_timeout_ms", 10000, Integer.class, false),
         VIVALDI_TIMER_INTERVAL_IN_MS("vivaldi.timer_interval_ms", 60000, Integer.class, false),
         STORAGE_THREADS("storage_threads", 1, Integer.class, false),
+        /** Maximum total size of memory-mapped hot object files. 0 disables the mapped read path. */
+        MMAP_CACHE_SIZE("storage.mmap_cache_size", 0L, Long.class, false),
+        /** Number of reads on an object file before it is memory-mapped. */
+        MMAP_CACHE_MIN_READS("storage.mmap_cache_min_reads", 3, Integer.class, false),
+        /** Maximum total size of the off-heap object data cache. 0 disables the cache. */
+        OBJECT_CACHE_SIZE("storage.object_cache_size", 0L, Long.class, false),
+        /** Number of threads that delete the objects of deleted files concurrently. */
+        DELETION_THREADS("deletion_threads", 2, Integer.class, false),
+        /** Trace one out of this many requests through the OSD stages. 0 disables request tracing. */
+        REQUEST_TRACE_SAMPLING("request_trace.sampling", 100, Integer.class, false),
+        /** Minimum latency in milliseconds of a traced request to be kept in the slow request log. */
+        REQUEST_TRACE_SLOW_THRESHOLD_MS("request_trace.slow_threshold_ms", 500, Integer.class, false),
+        /** Number of traced slow requests kept in the slow request log. */
+        REQUEST_TRACE_SLOW_LOG_SIZE("request_trace.slow_log_size", 64, Integer.class, false),
+        /** Queue delay in milliseconds above which OSD stages start rejecting requests. 0 disables it. */
+        QUEUE_TARGET_DELAY_MS("queue.target_delay_ms", 0, Integer.class, false),
+        /** Time in milliseconds the queue delay may stay above the target before requests are rejected. */
+        QUEUE_DELAY_INTERVAL_MS("queue.delay_interval_ms", 500, Integer.class, false),
         HEALTH_CHECK("health_check", "", String.class, false),
 
         /*
@@ -580,6 +612,10 @@ public class ServiceConfig extends Config {
         return (Category[]) parameter.get(Parameter.DEBUG_CATEGORIES);
     }
 
+    public int getDebugAsyncBufferSize() {
+        return (Integer) parameter.get(Parameter.DEBUG_ASYNC_BUFFER_SIZE);
+    }
+
     public int getPort() {
         return (Integer) parameter.get(Parameter.PORT);
     }
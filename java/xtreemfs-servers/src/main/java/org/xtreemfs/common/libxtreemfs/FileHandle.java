@@ -11,6 +11,7 @@ import java.io.IOException;
 import org.xtreemfs.common.libxtreemfs.exceptions.AddressToUUIDNotFoundException;
 import org.xtreemfs.common.libxtreemfs.exceptions.PosixErrorException;
 import org.xtreemfs.common.libxtreemfs.exceptions.UUIDNotInXlocSetException;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.UserCredentials;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.Stat;
 import org.xtreemfs.pbrpc.generatedinterfaces.OSD.Lock;
@@ -134,6 +135,39 @@ public interface FileHandle {
             int dataOffset, int count, long offset) throws IOException,
             PosixErrorException, AddressToUUIDNotFoundException;
 
+    /**
+     * Write to a file the first 'count' bytes of 'data' at file offset 'offset'.
+     * 
+     * In contrast to the byte array variants, the data is neither copied nor
+     * wrapped: the buffer is sent to the OSDs as it is, which avoids copies
+     * if it is a direct buffer, e.g. one allocated from the BufferPool.
+     * Ownership of 'data' is transferred to the file handle, which frees it
+     * once it has been sent. The number of bytes in flight is bounded by the
+     * maximum write-ahead of asynchronous writes.
+     * 
+     * @attention See write(UserCredentials, byte[], int, long) regarding
+     *            errors of asynchronous writes.
+     * 
+     * @param userCredentials
+     *            Name and Groups of the user.
+     * @param data
+     *            [in] Buffer which contains the data to be written, starting
+     *            at index 0.
+     * @param count
+     *            Number of bytes to be written from data.
+     * @param offset
+     *            Offset in bytes.
+     * 
+     * @throws AddressToUUIDNotFoundException
+     * @throws IOException
+     * @throws PosixErrorException
+     * 
+     * @return Number of bytes written (see @attention above).
+     */
+    public int write(UserCredentials userCredentials, ReusableBuffer data,
+            int count, long offset) throws IOException,
+            PosixErrorException, AddressToUUIDNotFoundException;
+
     /**
      * Flushes pending writes and file size updates (corresponds to a fsync()
      * system call).
@@ -22,6 +22,7 @@ import org.xtreemfs.common.libxtreemfs.exceptions.PosixErrorException;
 import org.xtreemfs.common.libxtreemfs.exceptions.UUIDIteratorListIsEmpyException;
 import org.xtreemfs.common.libxtreemfs.exceptions.UUIDNotInXlocSetException;
 import org.xtreemfs.common.libxtreemfs.exceptions.XtreemFSException;
+import org.xtreemfs.foundation.buffer.BufferPool;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
@@ -374,8 +375,16 @@ public class FileHandleImplementation implements FileHandle, AdminFileHandle {
         return write(userCredentials, buffer, count, offset);
     }
 
-    private int write(final UserCredentials userCredentials, final ReusableBuffer buffer, final int count,
-            final long offset) throws IOException, PosixErrorException, AddressToUUIDNotFoundException {
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.xtreemfs.common.libxtreemfs.FileHandle#write(org.xtreemfs.foundation.pbrpc.generatedinterfaces.
+     * RPC.UserCredentials, org.xtreemfs.foundation.buffer.ReusableBuffer, int, long)
+     */
+    @Override
+    public synchronized int write(final UserCredentials userCredentials, final ReusableBuffer buffer,
+            final int count, final long offset) throws IOException, PosixErrorException,
+            AddressToUUIDNotFoundException {
 
         ViewCheckedOperation<Integer> operation = new ViewCheckedOperation<Integer>() {
             @Override
@@ -383,7 +392,12 @@ public class FileHandleImplementation implements FileHandle, AdminFileHandle {
                 return doWrite(userCredentials, buffer, count, offset);
             }
         };
-        return operation.execute();
+        try {
+            return operation.execute();
+        } finally {
+            // The write requests hold their own references to the data.
+            BufferPool.free(buffer);
+        }
     }
 
     private int doWrite(UserCredentials userCredentials, ReusableBuffer buffer, int count, long offset)
@@ -460,51 +474,59 @@ public class FileHandleImplementation implements FileHandle, AdminFileHandle {
             }
         } else {
             // synchroneous write
-            for (int j = 0; j < operations.size(); j++) {
-                request = writeRequest.newBuilder();
-                request.setFileCredentials(fileCredentials);
-                request.setFileId(globalFileId);
-                request.setObjectNumber(operations.get(j).getObjNumber());
-                request.setObjectVersion(0);
-                request.setOffset(operations.get(j).getReqOffset());
-                request.setLeaseTimeout(0);
-
-                ObjectData objectData = ObjectData.newBuilder().setChecksum(0).setInvalidChecksumOnOsd(false)
-                        .setZeroPadding(0).build();
-
-                request.setObjectData(objectData);
-
-                // Differ between striping and the rest (replication, no replication).
-                UUIDIterator uuidIterator;
-                if (xlocs.getReplicas(0).getOsdUuidsCount() > 1) {
-                    // Replica is striped. Pick UUID from Xlocset. Use first and only replica.
-                    osdUuid = Helper.getOSDUUIDFromXlocSet(xlocs, 0, operations.get(j).getOsdOffset());
-                    uuidIterator = new UUIDIterator();
-                    uuidIterator.clearAndAddUUID(osdUuid);
-                } else {
-                    // TODO: enhance UUIDIterator to read from different replicas.
-                    uuidIterator = osdUuidIterator;
-                }
+            try {
+                for (int j = 0; j < operations.size(); j++) {
+                    request = writeRequest.newBuilder();
+                    request.setFileCredentials(fileCredentials);
+                    request.setFileId(globalFileId);
+                    request.setObjectNumber(operations.get(j).getObjNumber());
+                    request.setObjectVersion(0);
+                    request.setOffset(operations.get(j).getReqOffset());
+                    request.setLeaseTimeout(0);
+
+                    ObjectData objectData = ObjectData.newBuilder().setChecksum(0).setInvalidChecksumOnOsd(false)
+                            .setZeroPadding(0).build();
+
+                    request.setObjectData(objectData);
+
+                    // Differ between striping and the rest (replication, no replication).
+                    UUIDIterator uuidIterator;
+                    if (xlocs.getReplicas(0).getOsdUuidsCount() > 1) {
+                        // Replica is striped. Pick UUID from Xlocset. Use first and only replica.
+                        osdUuid = Helper.getOSDUUIDFromXlocSet(xlocs, 0, operations.get(j).getOsdOffset());
+                        uuidIterator = new UUIDIterator();
+                        uuidIterator.clearAndAddUUID(osdUuid);
+                    } else {
+                        // TODO: enhance UUIDIterator to read from different replicas.
+                        uuidIterator = osdUuidIterator;
+                    }
 
-                final ReusableBuffer writeDataBuffer = operations.get(j).getReqData();
-                OSDWriteResponse response = RPCCaller.<writeRequest, OSDWriteResponse> syncCall(SERVICES.OSD,
-                        userCredentials, authBogus, volumeOptions, uuidResolver, uuidIterator, false, request.build(),
-                        new CallGenerator<writeRequest, OSDWriteResponse>() {
+                    final ReusableBuffer writeDataBuffer = operations.get(j).getReqData();
+                    OSDWriteResponse response = RPCCaller.<writeRequest, OSDWriteResponse> syncCall(SERVICES.OSD,
+                            userCredentials, authBogus, volumeOptions, uuidResolver, uuidIterator, false,
+                            request.build(), new CallGenerator<writeRequest, OSDWriteResponse>() {
 
-                            @Override
-                            public RPCResponse<OSDWriteResponse> executeCall(InetSocketAddress server, Auth authHeader,
-                                    UserCredentials userCreds, writeRequest input) throws IOException {
-                                return osdServiceClient.write(server, authHeader, userCreds, input,
-                                        writeDataBuffer.createViewBuffer());
-                            }
-                        });
+                                @Override
+                                public RPCResponse<OSDWriteResponse> executeCall(InetSocketAddress server,
+                                        Auth authHeader, UserCredentials userCreds, writeRequest input)
+                                        throws IOException {
+                                    return osdServiceClient.write(server, authHeader, userCreds, input,
+                                            writeDataBuffer.createViewBuffer());
+                                }
+                            });
 
-                assert (response != null);
+                    assert (response != null);
 
-                // If the filesize has changed, remember OSDWriteResponse for later file size
-                // update towards the MRC (executed by PeriodicFileSizeUpdateThread).
-                if (response.hasSizeInBytes()) {
-                    fileInfo.tryToUpdateOSDWriteResponse(response, xcap);
+                    // If the filesize has changed, remember OSDWriteResponse for later file size
+                    // update towards the MRC (executed by PeriodicFileSizeUpdateThread).
+                    if (response.hasSizeInBytes()) {
+                        fileInfo.tryToUpdateOSDWriteResponse(response, xcap);
+                    }
+                }
+            } finally {
+                // The data was sent with view buffers of the operations' buffers.
+                for (WriteOperation operation : operations) {
+                    BufferPool.free(operation.getReqData());
                 }
             }
         }
@@ -13,6 +13,7 @@ import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.xtreemfs.common.libxtreemfs.Volume.StripeLocation;
 import org.xtreemfs.common.libxtreemfs.exceptions.AddressToUUIDNotFoundException;
@@ -36,6 +37,30 @@ import org.xtreemfs.pbrpc.generatedinterfaces.OSD.Lock;
  */
 public class Helper {
 
+    /**
+     * Time in ms for which the result of a reverse lookup of an OSD address is cached.
+     */
+    private static final long HOSTNAME_CACHE_TIMEOUT_MS = 10 * 60 * 1000;
+
+    /**
+     * Maps OSD addresses to their hostnames and the time of the lookup. Addresses which can not be resolved to a
+     * hostname are cached with a null hostname, to avoid repeated lookups of the same address.
+     */
+    private static final ConcurrentHashMap<String, CachedHostname> hostnameCache =
+            new ConcurrentHashMap<String, CachedHostname>();
+
+    private static class CachedHostname {
+
+        final String hostname;
+
+        final long   timestamp;
+
+        CachedHostname(String hostname, long timestamp) {
+            this.hostname = hostname;
+            this.timestamp = timestamp;
+        }
+    }
+
     /**
      * Generates a pseudorandom UUID with 32 chars length.
      * 
@@ -205,14 +230,12 @@ public class Helper {
                 String addressString = uuidResolver.uuidToAddress(uuidString);
                 addressString = addressString.substring(0, addressString.lastIndexOf(':'));
 
-                InetAddress address = InetAddress.getByName(addressString);
-                String hostname = address.getHostName();
-
                 // Ignore entries, that can not be resolved to a hostname.
-                if (!hostname.equals(address.getHostAddress())) {
+                String hostname = resolveHostname(addressString);
+                if (hostname != null) {
                     names.add(hostname);
                 }
-                
+
             } catch (AddressToUUIDNotFoundException e) {
                 Logging.logMessage(Logging.LEVEL_INFO, Logging.Category.net, (Object) null,
                         "Could not find host for UUID '%s'", uuidString);
@@ -224,6 +247,28 @@ public class Helper {
         return names;
     }
 
+    /**
+     * Returns the hostname of the given address, or null if it can not be resolved to a hostname. Lookups are
+     * cached for {@link #HOSTNAME_CACHE_TIMEOUT_MS}, as the reverse lookups are expensive and the same OSDs are
+     * looked up for the stripes of many files.
+     */
+    private static String resolveHostname(String addressString) throws UnknownHostException {
+        final long now = System.currentTimeMillis();
+        CachedHostname cached = hostnameCache.get(addressString);
+        if (cached != null && now - cached.timestamp < HOSTNAME_CACHE_TIMEOUT_MS) {
+            return cached.hostname;
+        }
+
+        InetAddress address = InetAddress.getByName(addressString);
+        String hostname = address.getHostName();
+        if (hostname.equals(address.getHostAddress())) {
+            hostname = null;
+        }
+
+        hostnameCache.put(addressString, new CachedHostname(hostname, now));
+        return hostname;
+    }
+
     static public long extractFileIdFromXcap(XCap xcap) {
         String fileId = xcap.getFileId();
         return extractFileIdFromGlobalFileId(fileId);
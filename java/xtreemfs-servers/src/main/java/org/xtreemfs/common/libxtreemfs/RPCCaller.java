@@ -11,6 +11,7 @@ import java.net.InetSocketAddress;
 
 import org.xtreemfs.common.libxtreemfs.exceptions.AddressToUUIDNotFoundException;
 import org.xtreemfs.common.libxtreemfs.exceptions.InternalServerErrorException;
+import org.xtreemfs.common.libxtreemfs.exceptions.InvalidProcIdException;
 import org.xtreemfs.common.libxtreemfs.exceptions.InvalidViewException;
 import org.xtreemfs.common.libxtreemfs.exceptions.PosixErrorException;
 import org.xtreemfs.common.libxtreemfs.exceptions.XtreemFSException;
@@ -259,6 +260,10 @@ public class RPCCaller {
                     "The server %s denied the requested operation because the clients view is outdated. Error: %s",
                     it.getUUID(), e.getErrorMessage());
             throw new InvalidViewException(e.getErrorMessage());
+        case INVALID_PROC_ID:
+            Logging.logMessage(logLevel, Category.misc, e, "The server %s does not support the requested operation: %s",
+                    it.getUUID(), e.getErrorMessage());
+            throw new InvalidProcIdException(e.getErrorMessage());
         default:
             errorMsg =
                     "The server " + it.getUUID() + "returned an error: " + e.getErrorType().name()
@@ -16,6 +16,7 @@ import org.xtreemfs.common.libxtreemfs.exceptions.AddressToUUIDNotFoundException
 import org.xtreemfs.common.libxtreemfs.exceptions.PosixErrorException;
 import org.xtreemfs.common.xloc.ReplicationFlags;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.Auth;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.POSIXErrno;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.UserCredentials;
 import org.xtreemfs.mrc.metadata.ReplicationPolicy;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.REPL_FLAG;
@@ -175,6 +176,30 @@ public interface Volume {
     public FileHandle openFile(UserCredentials userCredentials, String path, int flags, int mode)
             throws IOException, PosixErrorException, AddressToUUIDNotFoundException;
 
+    /**
+     * Creates multiple empty files with a single call to the MRC. Files that cannot be created, e.g. because
+     * they exist already, are skipped; the remaining files are created nevertheless.
+     * 
+     * Please note that the mode parameter requires octal values, i.e. use 0777 instead of 777 for the
+     * permissions.
+     * 
+     * @param userCredentials
+     *            Name and Groups of the user.
+     * @param paths
+     *            Paths to the new files.
+     * @param mode
+     *            Permissions of the new files.
+     * @return The result for each path, in the order of "paths": POSIX_ERROR_NONE if the file was created,
+     *         the error otherwise.
+     * 
+     * @throws AddressToUUIDNotFoundException
+     * @throws {@link IOException}
+     * @throws PosixErrorException
+     *             if the entire call failed, e.g. because the volume does not exist
+     */
+    public List<POSIXErrno> createFiles(UserCredentials userCredentials, List<String> paths, int mode)
+            throws IOException, PosixErrorException, AddressToUUIDNotFoundException;
+
     /**
      * Truncates the file to "newFileSize" bytes.
      * 
@@ -208,6 +233,25 @@ public interface Volume {
     public Stat getAttr(UserCredentials userCredentials, String path) throws IOException,
             PosixErrorException, AddressToUUIDNotFoundException;
 
+    /**
+     * Retrieves the attributes of multiple files or directories. Attributes that are not cached are
+     * retrieved with a single call to the MRC.
+     * 
+     * @param userCredentials
+     *            Name and Groups of the user.
+     * @param paths
+     *            Paths to the files/directories.
+     * @return The attributes of each path, in the order of "paths". An entry is null if the attributes
+     *         could not be retrieved, e.g. because the file does not exist.
+     * 
+     * @throws AddressToUUIDNotFoundException
+     * @throws {@link IOException}
+     * @throws PosixErrorException
+     *             if the entire call failed, e.g. because the volume does not exist
+     */
+    public List<Stat> getAttrs(UserCredentials userCredentials, List<String> paths) throws IOException,
+            PosixErrorException, AddressToUUIDNotFoundException;
+
     /**
      * Sets the attributes given by "stat" and specified in "toSet".
      * 
@@ -522,6 +566,25 @@ public interface Volume {
     public Replicas listReplicas(UserCredentials userCredentials, String path) throws IOException,
             PosixErrorException, AddressToUUIDNotFoundException;
 
+    /**
+     * Returns the lists of replicas of multiple files with a single call to the MRC.
+     * 
+     * @param userCredentials
+     *            Username and groups of the user.
+     * @param paths
+     *            Paths to the files.
+     * @return The replicas of each path, in the order of "paths". An entry is null if the file does not
+     *         exist (anymore).
+     * 
+     * @throws AddressToUUIDNotFoundException
+     * @throws {@link IOException}
+     * @throws PosixErrorException
+     *             if the call failed, e.g. because the volume does not exist, or if the replicas of a file
+     *             could not be retrieved for another reason than its absence, e.g. because it is a directory
+     */
+    public List<Replicas> listReplicas(UserCredentials userCredentials, List<String> paths) throws IOException,
+            PosixErrorException, AddressToUUIDNotFoundException;
+
     /**
      * Removes the replica of file at "path" located on the OSD with the UUID "osdUuid" (which has to be the
      * head OSD in case of striping).
@@ -638,6 +701,22 @@ public interface Volume {
             long startSize, long length) throws IOException, PosixErrorException,
             AddressToUUIDNotFoundException;
 
+    /**
+     * Returns a list of {@link StripeLocation} like {@link #getStripeLocations(UserCredentials, String, long, long)}
+     * for replicas that were already retrieved, e.g. with {@link #listReplicas(UserCredentials, List)}. Does not
+     * contact the MRC; the hostnames of the OSDs are cached.
+     * 
+     * @param replicas
+     *            Replicas of the file.
+     * @param startSize
+     *            Size in byte where to start collecting the {@link StripeLocation}s.
+     * @param length
+     *            The length of the part of the file where the {@link StripeLocation}s should be collected in
+     *            byte.
+     * @return {@link List} of {@link StripeLocation}
+     */
+    public List<StripeLocation> getStripeLocations(Replicas replicas, long startSize, long length);
+
     
     /**
      * Removes the user from the ACL stored in path 
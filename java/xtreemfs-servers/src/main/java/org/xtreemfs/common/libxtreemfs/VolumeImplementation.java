@@ -8,6 +8,8 @@ package org.xtreemfs.common.libxtreemfs;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -19,6 +21,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import org.xtreemfs.common.ReplicaUpdatePolicies;
 import org.xtreemfs.common.libxtreemfs.RPCCaller.CallGenerator;
 import org.xtreemfs.common.libxtreemfs.exceptions.AddressToUUIDNotFoundException;
+import org.xtreemfs.common.libxtreemfs.exceptions.InvalidProcIdException;
 import org.xtreemfs.common.libxtreemfs.exceptions.PosixErrorException;
 import org.xtreemfs.common.libxtreemfs.exceptions.XtreemFSException;
 import org.xtreemfs.common.xloc.ReplicationPolicyImplementation;
@@ -77,9 +80,16 @@ import org.xtreemfs.pbrpc.generatedinterfaces.MRC.symlinkRequest;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.timestampResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.unlinkRequest;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.unlinkResponse;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_batch_result;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_create_filesRequest;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_create_filesResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_get_suitable_osdsRequest;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_get_suitable_osdsResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_get_xlocsetRequest;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_get_xlocsetsRequest;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_get_xlocsetsResponse;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_getattrsRequest;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_getattrsResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_replica_addRequest;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_replica_addResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_replica_removeRequest;
@@ -115,6 +125,11 @@ public class VolumeImplementation implements Volume, AdminVolume {
      */
     private final String                                    volumeName;
 
+    /**
+     * False, if the MRC does not support xtreemfs_get_xlocsets and replicas have to be listed one by one.
+     */
+    private volatile boolean                                batchedListReplicasSupported = true;
+
     /**
      * The options of the client that should be used for this volume.
      */
@@ -465,6 +480,56 @@ public class VolumeImplementation implements Volume, AdminVolume {
         return openFile(userCredentials, path, flags, mode, 0);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.xtreemfs.common.libxtreemfs.Volume#createFiles(org.xtreemfs.foundation
+     * .pbrpc.generatedinterfaces.RPC .UserCredentials, java.util.List, int)
+     */
+    @Override
+    public List<POSIXErrno> createFiles(UserCredentials userCredentials, List<String> paths, int mode)
+            throws IOException, PosixErrorException, AddressToUUIDNotFoundException {
+        xtreemfs_create_filesRequest request = xtreemfs_create_filesRequest.newBuilder().setVolumeName(volumeName)
+                .addAllPaths(paths).setMode(mode).setAttributes(0).build();
+
+        xtreemfs_create_filesResponse response = RPCCaller
+                .<xtreemfs_create_filesRequest, xtreemfs_create_filesResponse> syncCall(SERVICES.MRC,
+                        userCredentials, authBogus, volumeOptions, uuidResolver, mrcUUIDIterator, false, request,
+                        new CallGenerator<xtreemfs_create_filesRequest, xtreemfs_create_filesResponse>() {
+                            @Override
+                            public RPCResponse<xtreemfs_create_filesResponse> executeCall(InetSocketAddress server,
+                                    Auth authHeader, UserCredentials userCreds, xtreemfs_create_filesRequest input)
+                                    throws IOException {
+                                return mrcServiceClient.xtreemfs_create_files(server, authHeader, userCreds,
+                                        input);
+                            }
+                        });
+
+        assert (response != null);
+
+        List<POSIXErrno> results = new ArrayList<POSIXErrno>(paths.size());
+        Set<String> parentDirs = new HashSet<String>();
+        for (int i = 0; i < paths.size(); i++) {
+            POSIXErrno errno = POSIXErrno.valueOf(response.getResults(i).getPosixErrno());
+            if (errno == null) {
+                errno = POSIXErrno.POSIX_ERROR_EIO;
+            }
+            if (errno == POSIXErrno.POSIX_ERROR_NONE) {
+                parentDirs.add(Helper.resolveParentDirectory(paths.get(i)));
+            }
+            results.add(errno);
+        }
+
+        // Update the parent directories of all new files once.
+        for (String parentDir : parentDirs) {
+            metadataCache.updateStatTime(parentDir, response.getTimestampS(), Setattrs.SETATTR_CTIME.getNumber()
+                    | Setattrs.SETATTR_MTIME.getNumber());
+            metadataCache.invalidateDirEntries(parentDir);
+        }
+
+        return results;
+    }
+
     /**
      * Used by Volume.truncate() method. Otherwise truncateNewFileSize = 0;.
      * 
@@ -587,6 +652,75 @@ public class VolumeImplementation implements Volume, AdminVolume {
         return getAttr(userCredentials, path, null);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.xtreemfs.common.libxtreemfs.Volume#getAttrs(org.xtreemfs.foundation
+     * .pbrpc.generatedinterfaces.RPC .UserCredentials, java.util.List)
+     */
+    @Override
+    public List<Stat> getAttrs(UserCredentials userCredentials, List<String> paths) throws IOException,
+            PosixErrorException, AddressToUUIDNotFoundException {
+        Stat[] stats = new Stat[paths.size()];
+
+        // Serve as many entries as possible from the StatCache and retrieve
+        // the remaining ones with a single call.
+        xtreemfs_getattrsRequest.Builder request = xtreemfs_getattrsRequest.newBuilder().setVolumeName(volumeName);
+        List<Integer> uncached = new ArrayList<Integer>();
+        for (int i = 0; i < paths.size(); i++) {
+            stats[i] = metadataCache.getStat(paths.get(i));
+            if (stats[i] == null) {
+                uncached.add(i);
+                request.addPaths(paths.get(i));
+            }
+        }
+
+        if (!uncached.isEmpty()) {
+            xtreemfs_getattrsResponse response = RPCCaller
+                    .<xtreemfs_getattrsRequest, xtreemfs_getattrsResponse> syncCall(SERVICES.MRC, userCredentials,
+                            authBogus, volumeOptions, uuidResolver, mrcUUIDIterator, false, request.build(),
+                            new CallGenerator<xtreemfs_getattrsRequest, xtreemfs_getattrsResponse>() {
+                                @Override
+                                public RPCResponse<xtreemfs_getattrsResponse> executeCall(InetSocketAddress server,
+                                        Auth authHeader, UserCredentials userCreds, xtreemfs_getattrsRequest input)
+                                        throws IOException {
+                                    return mrcServiceClient.xtreemfs_getattrs(server, authHeader, userCreds, input);
+                                }
+                            });
+
+            assert (response != null);
+
+            for (int i = 0; i < uncached.size(); i++) {
+                xtreemfs_batch_result result = response.getResults(i);
+                if (!result.hasStbuf()) {
+                    continue;
+                }
+
+                String path = paths.get(uncached.get(i));
+                Stat stat = result.getStbuf();
+                if (stat.getNlink() > 1) { // Do not cache hardlinks
+                    metadataCache.invalidate(path);
+                } else {
+                    metadataCache.updateStat(path, stat);
+                }
+                stats[uncached.get(i)] = stat;
+            }
+        }
+
+        // Merge the attributes of open files with possibly newer information.
+        for (int i = 0; i < stats.length; i++) {
+            if (stats[i] != null) {
+                FileInfo fileInfo = openFileTable.get(stats[i].getIno()); // Ino == fileId
+                if (fileInfo != null) {
+                    fileInfo.waitForPendingAsyncWrites();
+                    stats[i] = fileInfo.mergeStatAndOSDWriteResponse(stats[i]);
+                }
+            }
+        }
+
+        return Arrays.asList(stats);
+    }
+
     /**
      * If fileInfo is unknown and set to NULL, getFileInfo(path) is used.
      */
@@ -973,16 +1107,22 @@ public class VolumeImplementation implements Volume, AdminVolume {
 
         DirectoryEntries.Builder dirEntriesBuilder = DirectoryEntries.newBuilder();
 
-        // Process large requests in multiples of readdirChunkSize.
+        // Process large requests in multiples of readdirChunkSize. Subsequent chunks are requested with the
+        // continuation key of the previous chunk, so that the MRC does not need to skip all seen entries.
+        String continuationKey = null;
         for (int currentOffset = offset; currentOffset < offset + count; currentOffset += volumeOptions
                 .getReaddirChunkSize()) {
 
-            int limitDirEntriesCount = (currentOffset > offset + count) ? (currentOffset - offset - count)
-                    : volumeOptions.getReaddirChunkSize();
+            int limitDirEntriesCount = Math.min(volumeOptions.getReaddirChunkSize(), offset + count
+                    - currentOffset);
 
-            readdirRequest request = readdirRequest.newBuilder().setPath(path).setVolumeName(volumeName)
-                    .setNamesOnly(namesOnly).setKnownEtag(0).setSeenDirectoryEntriesCount(currentOffset)
-                    .setLimitDirectoryEntriesCount(limitDirEntriesCount).build();
+            readdirRequest.Builder requestBuilder = readdirRequest.newBuilder().setPath(path)
+                    .setVolumeName(volumeName).setNamesOnly(namesOnly).setKnownEtag(0)
+                    .setSeenDirectoryEntriesCount(currentOffset).setLimitDirectoryEntriesCount(limitDirEntriesCount);
+            if (continuationKey != null) {
+                requestBuilder.setContinuationKey(continuationKey);
+            }
+            readdirRequest request = requestBuilder.build();
 
             DirectoryEntries readDirResponse = RPCCaller.<readdirRequest, DirectoryEntries> syncCall(SERVICES.MRC,
                     userCredentials,
@@ -1001,9 +1141,12 @@ public class VolumeImplementation implements Volume, AdminVolume {
             dirEntriesBuilder.addAllEntries(readDirResponse.getEntriesList());
 
             // Break if this is the last chunk.
-            if (dirEntriesBuilder.getEntriesCount() < (currentOffset + volumeOptions.getReaddirChunkSize())) {
+            if (readDirResponse.getEntriesCount() < limitDirEntriesCount) {
                 break;
             }
+
+            // MRCs of older releases do not return a continuation key.
+            continuationKey = readDirResponse.hasContinuationKey() ? readDirResponse.getContinuationKey() : null;
         }
 
         // TODO: Merge possible pending file size updates of files into
@@ -1396,6 +1539,75 @@ public class VolumeImplementation implements Volume, AdminVolume {
         return replicas.build();
     }
 
+    @Override
+    public List<Replicas> listReplicas(UserCredentials userCredentials, List<String> paths) throws IOException,
+            PosixErrorException, AddressToUUIDNotFoundException {
+        List<Replicas> replicas = new ArrayList<Replicas>(paths.size());
+        if (paths.isEmpty()) {
+            return replicas;
+        }
+
+        if (!batchedListReplicasSupported) {
+            return listReplicasOneByOne(userCredentials, paths);
+        }
+
+        xtreemfs_get_xlocsetsRequest request = xtreemfs_get_xlocsetsRequest.newBuilder().setVolumeName(volumeName)
+                .addAllPaths(paths).build();
+
+        xtreemfs_get_xlocsetsResponse response;
+        try {
+            response = RPCCaller.<xtreemfs_get_xlocsetsRequest, xtreemfs_get_xlocsetsResponse> syncCall(SERVICES.MRC,
+                    userCredentials, authBogus, volumeOptions, uuidResolver, mrcUUIDIterator, false, request,
+                    new CallGenerator<xtreemfs_get_xlocsetsRequest, xtreemfs_get_xlocsetsResponse>() {
+                        @Override
+                        public RPCResponse<xtreemfs_get_xlocsetsResponse> executeCall(InetSocketAddress server,
+                                Auth authHeader, UserCredentials userCreds, xtreemfs_get_xlocsetsRequest input)
+                                throws IOException {
+                            return mrcServiceClient.xtreemfs_get_xlocsets(server, authHeader, userCreds, input);
+                        }
+                    });
+        } catch (InvalidProcIdException e) {
+            // MRCs of older releases do not support the batched call.
+            Logging.logMessage(Logging.LEVEL_INFO, Category.misc, this,
+                    "The MRC does not support xtreemfs_get_xlocsets, listing replicas one by one");
+            batchedListReplicasSupported = false;
+            return listReplicasOneByOne(userCredentials, paths);
+        }
+
+        assert (response != null);
+
+        for (int i = 0; i < response.getResultsCount(); i++) {
+            xtreemfs_batch_result result = response.getResults(i);
+            if (result.hasXlocset()) {
+                replicas.add(Replicas.newBuilder().addAllReplicas(result.getXlocset().getReplicasList()).build());
+            } else if (result.getPosixErrno() == POSIXErrno.POSIX_ERROR_ENOENT.getNumber()) {
+                replicas.add(null);
+            } else {
+                POSIXErrno errno = POSIXErrno.valueOf(result.getPosixErrno());
+                throw new PosixErrorException(errno == null ? POSIXErrno.POSIX_ERROR_EIO : errno,
+                        "Could not list the replicas of " + paths.get(i) + ": " + result.getErrorMessage());
+            }
+        }
+
+        return replicas;
+    }
+
+    private List<Replicas> listReplicasOneByOne(UserCredentials userCredentials, List<String> paths)
+            throws IOException, PosixErrorException, AddressToUUIDNotFoundException {
+        List<Replicas> replicas = new ArrayList<Replicas>(paths.size());
+        for (String path : paths) {
+            try {
+                replicas.add(listReplicas(userCredentials, path));
+            } catch (PosixErrorException e) {
+                if (e.getPosixError() != POSIXErrno.POSIX_ERROR_ENOENT) {
+                    throw e;
+                }
+                replicas.add(null);
+            }
+        }
+        return replicas;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -1751,6 +1963,11 @@ public class VolumeImplementation implements Volume, AdminVolume {
         return Helper.getStripeLocationsFromReplicas(replicas, startSize, length, uuidResolver);
     }
 
+    @Override
+    public List<StripeLocation> getStripeLocations(Replicas replicas, long startSize, long length) {
+        return Helper.getStripeLocationsFromReplicas(replicas, startSize, length, uuidResolver);
+    }
+
     @Override
     public long getNumObjects(UserCredentials userCredentials, String path) throws IOException {
         StripingPolicy stripingPolicy = this.listReplicas(userCredentials, path).getReplicas(0)
@@ -0,0 +1,21 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+package org.xtreemfs.common.libxtreemfs.exceptions;
+
+/**
+ * This exception is thrown, when the server does not know the requested operation, e.g. because it runs an older
+ * release. The client may fall back to operations the server supports.
+ **/
+public class InvalidProcIdException extends XtreemFSException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InvalidProcIdException(String errorMsg) {
+        super(errorMsg);
+    }
+
+}
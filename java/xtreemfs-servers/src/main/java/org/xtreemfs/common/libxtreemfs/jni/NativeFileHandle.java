@@ -13,6 +13,8 @@ import org.xtreemfs.common.libxtreemfs.FileHandle;
 import org.xtreemfs.common.libxtreemfs.exceptions.AddressToUUIDNotFoundException;
 import org.xtreemfs.common.libxtreemfs.exceptions.PosixErrorException;
 import org.xtreemfs.common.libxtreemfs.jni.generated.FileHandleProxy;
+import org.xtreemfs.foundation.buffer.BufferPool;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.UserCredentials;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.Stat;
 import org.xtreemfs.pbrpc.generatedinterfaces.OSD.Lock;
@@ -77,6 +79,21 @@ public class NativeFileHandle implements FileHandle {
         }
     }
 
+    @Override
+    public int write(UserCredentials userCredentials, ReusableBuffer data, int count, long offset)
+            throws IOException, PosixErrorException, AddressToUUIDNotFoundException {
+        try {
+            ByteBuffer buffer = data.getBuffer();
+            if (buffer.isDirect()) {
+                return proxy.writeDirect(buffer, count, offset);
+            } else {
+                return proxy.write(buffer.array(), buffer.arrayOffset(), count, offset);
+            }
+        } finally {
+            BufferPool.free(data);
+        }
+    }
+
     @Override
     public void flush() throws IOException, PosixErrorException, AddressToUUIDNotFoundException {
         proxy.flush();
@@ -7,6 +7,7 @@
 package org.xtreemfs.common.libxtreemfs.jni;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -132,6 +133,25 @@ public class NativeVolume implements Volume {
         return fileHandleNative;
     }
 
+    @Override
+    public List<POSIXErrno> createFiles(UserCredentials userCredentials, List<String> paths, int mode)
+            throws IOException, PosixErrorException, AddressToUUIDNotFoundException {
+        // The native client does not support batched creates; create the files one by one.
+        int flags = SYSTEM_V_FCNTL.SYSTEM_V_FCNTL_H_O_CREAT.getNumber()
+                | SYSTEM_V_FCNTL.SYSTEM_V_FCNTL_H_O_EXCL.getNumber()
+                | SYSTEM_V_FCNTL.SYSTEM_V_FCNTL_H_O_WRONLY.getNumber();
+        List<POSIXErrno> results = new ArrayList<POSIXErrno>(paths.size());
+        for (String path : paths) {
+            try {
+                openFile(userCredentials, path, flags, mode).close();
+                results.add(POSIXErrno.POSIX_ERROR_NONE);
+            } catch (PosixErrorException e) {
+                results.add(e.getPosixError());
+            }
+        }
+        return results;
+    }
+
     @Override
     public void truncate(UserCredentials userCredentials, String path, int newFileSize) throws IOException,
             PosixErrorException, AddressToUUIDNotFoundException {
@@ -144,6 +164,21 @@ public class NativeVolume implements Volume {
         return proxy.getAttr(userCredentials, path);
     }
 
+    @Override
+    public List<Stat> getAttrs(UserCredentials userCredentials, List<String> paths) throws IOException,
+            PosixErrorException, AddressToUUIDNotFoundException {
+        // The native client does not support batched stats; retrieve the attributes one by one.
+        List<Stat> stats = new ArrayList<Stat>(paths.size());
+        for (String path : paths) {
+            try {
+                stats.add(getAttr(userCredentials, path));
+            } catch (PosixErrorException e) {
+                stats.add(null);
+            }
+        }
+        return stats;
+    }
+
     @Override
     public void setAttr(UserCredentials userCredentials, String path, Stat stat, int toSet) throws IOException,
             PosixErrorException, AddressToUUIDNotFoundException {
@@ -282,6 +317,24 @@ public class NativeVolume implements Volume {
         return proxy.listReplicas(userCredentials, path);
     }
 
+    @Override
+    public List<Replicas> listReplicas(UserCredentials userCredentials, List<String> paths) throws IOException,
+            PosixErrorException, AddressToUUIDNotFoundException {
+        // The native client does not support batched requests; retrieve the replicas one by one.
+        List<Replicas> replicas = new ArrayList<Replicas>(paths.size());
+        for (String path : paths) {
+            try {
+                replicas.add(listReplicas(userCredentials, path));
+            } catch (PosixErrorException e) {
+                if (e.getPosixError() != POSIXErrno.POSIX_ERROR_ENOENT) {
+                    throw e;
+                }
+                replicas.add(null);
+            }
+        }
+        return replicas;
+    }
+
     @Override
     public void removeReplica(UserCredentials userCredentials, String path, String osdUuid) throws IOException,
             PosixErrorException, AddressToUUIDNotFoundException {
@@ -362,6 +415,11 @@ public class NativeVolume implements Volume {
         return Helper.getStripeLocationsFromReplicas(replicas, startSize, length, uuidResolver);
     }
 
+    @Override
+    public List<StripeLocation> getStripeLocations(Replicas replicas, long startSize, long length) {
+        return Helper.getStripeLocationsFromReplicas(replicas, startSize, length, uuidResolver);
+    }
+
     @Override
     public void removeACL(UserCredentials userCreds, String path, String user) throws IOException {
         Set<String> elements = new HashSet<String>();
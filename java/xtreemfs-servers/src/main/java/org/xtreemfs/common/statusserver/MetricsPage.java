@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+package org.xtreemfs.common.statusserver;
+
+import java.io.IOException;
+
+import org.xtreemfs.foundation.metrics.MetricsRegistry;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceType;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Exports the metrics of the service in the Prometheus text format.
+ */
+public class MetricsPage extends StatusServerModule {
+
+    private final MetricsRegistry registry;
+
+    public MetricsPage(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void handle(HttpExchange httpExchange) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        registry.writeText(sb);
+
+        byte[] content = sb.toString().getBytes("UTF-8");
+        httpExchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=UTF-8");
+        httpExchange.sendResponseHeaders(200, content.length);
+        httpExchange.getResponseBody().write(content);
+        httpExchange.getResponseBody().close();
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Metrics";
+    }
+
+    @Override
+    public String getUriPath() {
+        return "/metrics";
+    }
+
+    @Override
+    public boolean isAvailableForService(ServiceType service) {
+        return true;
+    }
+
+    @Override
+    public void initialize(ServiceType service, Object serviceRequestDispatcher) {
+        // Noop.
+    }
+
+    @Override
+    public void shutdown() {
+        // Noop.
+    }
+
+}
@@ -47,6 +47,7 @@ public class DIR {
         
         
         Logging.start(config.getDebugLevel(), config.getDebugCategories());
+        Logging.startAsync(config.getDebugAsyncBufferSize());
         
         BabuDBConfig dbsConfig = new BabuDBConfig(configFileName);
         
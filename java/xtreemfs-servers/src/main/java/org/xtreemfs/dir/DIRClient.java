@@ -30,6 +30,7 @@ import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceType;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.addressMappingSetResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.configurationSetResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.globalTimeSGetResponse;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIR.serviceGetUpdatesResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.serviceRegisterResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIRServiceClient;
 
@@ -257,6 +258,27 @@ public class DIRClient implements TimeServerClient {
         return response;
     }
     
+    public serviceGetUpdatesResponse xtreemfs_service_get_updates(InetSocketAddress server,
+            final Auth authHeader, final UserCredentials userCreds, final ServiceType type,
+            final long knownGeneration, final int maxWaitMs) throws IOException, InterruptedException {
+        return xtreemfs_service_get_updates(server, authHeader, userCreds, type, knownGeneration, maxWaitMs,
+                maxRetries);
+    }
+    
+    public serviceGetUpdatesResponse xtreemfs_service_get_updates(InetSocketAddress server,
+            final Auth authHeader, final UserCredentials userCreds, final ServiceType type,
+            final long knownGeneration, final int maxWaitMs, int maxRetries) throws IOException,
+            InterruptedException {
+        serviceGetUpdatesResponse response = (serviceGetUpdatesResponse) syncCall(new CallGenerator() {
+            @Override
+            public RPCResponse executeCall(DIRServiceClient client, InetSocketAddress server) throws IOException {
+                return client.xtreemfs_service_get_updates(server, authHeader, userCreds, type, knownGeneration,
+                        maxWaitMs);
+            }
+        }, maxRetries);
+        return response;
+    }
+    
     public serviceRegisterResponse xtreemfs_service_register(InetSocketAddress server, final Auth authHeader,
             final UserCredentials userCreds, final Service service) throws IOException, InterruptedException {
         return xtreemfs_service_register(server, authHeader, userCreds, service, maxRetries);
@@ -373,6 +395,7 @@ public class DIRClient implements TimeServerClient {
                 }
                 
                 case ERRNO:
+                case INVALID_PROC_ID:
                     throw ex;
                     
                 default: {
@@ -25,6 +25,7 @@ public class DIRConfig extends ServiceConfig {
     private final Parameter[] dirParameter = {
             Parameter.DEBUG_LEVEL,
             Parameter.DEBUG_CATEGORIES,
+            Parameter.DEBUG_ASYNC_BUFFER_SIZE,
             Parameter.PORT,
             Parameter.BIND_RETRIES,
             Parameter.HTTP_PORT,
@@ -61,6 +62,8 @@ public class DIRConfig extends ServiceConfig {
     
     private Map<String, Integer> mirrors;
     
+    private boolean              databaseReplicated;
+    
     
     /** Creates a new instance of DIRConfig */
     public DIRConfig(String filename) throws IOException {
@@ -95,6 +98,8 @@ public class DIRConfig extends ServiceConfig {
             
             id++;
         }
+        
+        this.databaseReplicated = id > 0 || this.readOptionalString("babudb.plugin.0", null) != null;
     }
 
     /**
@@ -151,7 +156,15 @@ public class DIRConfig extends ServiceConfig {
      */
     public Map<String, Integer> getMirrors() {
         return mirrors;
-    }  
+    }
+    
+    /**
+     * @return true, if the DIR database is replicated to other DIRs
+     */
+    public boolean isDatabaseReplicated() {
+        return databaseReplicated;
+    }
+    
     public void setDefaults() {
         super.setDefaults(dirParameter);
     }
@@ -18,6 +18,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.xtreemfs.babudb.BabuDBFactory;
 import org.xtreemfs.babudb.api.BabuDB;
@@ -30,10 +31,12 @@ import org.xtreemfs.babudb.config.BabuDBConfig;
 import org.xtreemfs.common.config.PolicyContainer;
 import org.xtreemfs.common.monitoring.StatusMonitor;
 import org.xtreemfs.common.statusserver.BabuDBStatusPage;
+import org.xtreemfs.common.statusserver.MetricsPage;
 import org.xtreemfs.common.statusserver.PrintStackTrace;
 import org.xtreemfs.common.statusserver.StatusServer;
 import org.xtreemfs.dir.data.ServiceRecord;
 import org.xtreemfs.dir.data.ServiceRecords;
+import org.xtreemfs.dir.data.ServiceRegistry;
 import org.xtreemfs.dir.discovery.DiscoveryMsgThread;
 import org.xtreemfs.dir.operations.DIROperation;
 import org.xtreemfs.dir.operations.DeleteAddressMappingOperation;
@@ -43,6 +46,7 @@ import org.xtreemfs.dir.operations.GetConfigurationOperation;
 import org.xtreemfs.dir.operations.GetGlobalTimeOperation;
 import org.xtreemfs.dir.operations.GetServiceByNameOperation;
 import org.xtreemfs.dir.operations.GetServiceByUuidOperation;
+import org.xtreemfs.dir.operations.GetServiceUpdatesOperation;
 import org.xtreemfs.dir.operations.GetServicesByTypeOperation;
 import org.xtreemfs.dir.operations.RegisterServiceOperation;
 import org.xtreemfs.dir.operations.ServiceOfflineOperation;
@@ -59,6 +63,8 @@ import org.xtreemfs.foundation.buffer.BufferPool;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
+import org.xtreemfs.foundation.metrics.Gauge;
+import org.xtreemfs.foundation.metrics.MetricsRegistry;
 import org.xtreemfs.foundation.pbrpc.Schemes;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.ErrorType;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.MessageType;
@@ -95,7 +101,15 @@ public class DIRRequestDispatcher extends LifeCycleThread implements RPCServerRe
     
     public static final int                       DB_VERSION              = 2010111010;
     
+    /**
+     * interval in ms in which pending requests for service updates are
+     * checked
+     */
+    private static final int                      WATCH_CHECK_INTERVAL    = 100;
+    
     protected final StatusServer                  statusServer;
+
+    private final MetricsRegistry                 metrics;
     
     private int                                   numRequests;
     
@@ -121,6 +135,10 @@ public class DIRRequestDispatcher extends LifeCycleThread implements RPCServerRe
     
     private VivaldiClientMap vivaldiClientMap;
     
+    private final ServiceRegistry                 serviceRegistry;
+    
+    private GetServiceUpdatesOperation            serviceUpdatesOperation;
+    
     public DIRRequestDispatcher(final DIRConfig config, final BabuDBConfig dbsConfig) throws IOException,
         BabuDBException {
         super("DIR RqDisp");
@@ -141,6 +159,19 @@ public class DIRRequestDispatcher extends LifeCycleThread implements RPCServerRe
             }
         });
         
+        // keep an in-memory index of all service records, unless the database
+        // is replicated and may thus be modified by other DIRs
+        if (config.isDatabaseReplicated()) {
+            serviceRegistry = null;
+        } else {
+            serviceRegistry = new ServiceRegistry();
+            Iterator<Entry<byte[], byte[]>> iter = getDirDatabase().prefixLookup(INDEX_ID_SERVREG, new byte[0],
+                null).get();
+            while (iter.hasNext()) {
+                serviceRegistry.update(new ServiceRecord(ReusableBuffer.wrap(iter.next().getValue())));
+            }
+        }
+        
         registerOperations();
         
         // start the server
@@ -187,6 +218,16 @@ public class DIRRequestDispatcher extends LifeCycleThread implements RPCServerRe
             discoveryThr = null;
         }
         
+        metrics = new MetricsRegistry();
+        server.registerMetrics(metrics);
+        metrics.register("xtreemfs_stage_queue_length", MetricsRegistry.label("stage", getName()), new Gauge() {
+            @Override
+            public long getValue() {
+                return queue.size();
+            }
+        });
+        BufferPool.registerMetrics(metrics);
+        
         if (config.getHttpPort() == -1) {
             // Webinterface is explicitly disabled.
             statusServer = null;
@@ -196,6 +237,7 @@ public class DIRRequestDispatcher extends LifeCycleThread implements RPCServerRe
             statusServer.registerModule(new StatusPage(config));
             statusServer.registerModule(new ReplicaStatusPage());
             statusServer.registerModule(new VivaldiStatusPage(config));
+            statusServer.registerModule(new MetricsPage(metrics));
             statusServer.registerModule(new BabuDBStatusPage(new BabuDBStatusPage.BabuDBStatusProvider() {
                 @Override
                 public Map<String, Object> getStatus() {
@@ -250,9 +292,14 @@ public class DIRRequestDispatcher extends LifeCycleThread implements RPCServerRe
         try {
             notifyStarted();
             while (!quit) {
-                final RPCServerRequest rq = queue.take();
+                // wake up regularly while requests for service updates are
+                // pending, as they may time out
+                final RPCServerRequest rq = serviceUpdatesOperation.hasPendingWatches() ? queue.poll(
+                    WATCH_CHECK_INTERVAL, TimeUnit.MILLISECONDS) : queue.take();
                 synchronized (database) {
-                    processRequest(rq);
+                    if (rq != null)
+                        processRequest(rq);
+                    serviceUpdatesOperation.processPendingWatches();
                 }
             }
         } catch (InterruptedException ex) {
@@ -302,6 +349,8 @@ public class DIRRequestDispatcher extends LifeCycleThread implements RPCServerRe
             monThr.start();
             monThr.waitForStartup();
         }
+        
+        metrics.registerMBean("DIR", String.valueOf(config.getPort()));
     }
     
     @Override
@@ -314,6 +363,7 @@ public class DIRRequestDispatcher extends LifeCycleThread implements RPCServerRe
         if (statusServer != null) {
             statusServer.shutdown();
         }
+        metrics.unregisterMBean();
         server.shutdown();
         server.waitForShutdown();
         database.shutdown();
@@ -363,6 +413,9 @@ public class DIRRequestDispatcher extends LifeCycleThread implements RPCServerRe
         op = new GetServiceByNameOperation(this);
         registry.put(op.getProcedureId(), op);
         
+        serviceUpdatesOperation = new GetServiceUpdatesOperation(this);
+        registry.put(serviceUpdatesOperation.getProcedureId(), serviceUpdatesOperation);
+        
         op = new ServiceOfflineOperation(this);
         registry.put(op.getProcedureId(), op);
         
@@ -380,6 +433,17 @@ public class DIRRequestDispatcher extends LifeCycleThread implements RPCServerRe
         return database.getDatabaseManager().getDatabase(DB_NAME);
     }
     
+    /**
+     * Returns the in-memory index of service records, which has to be updated
+     * whenever the database is modified.
+     * 
+     * @return the index, or <code>null</code> if the database is replicated
+     *         and its contents cannot be indexed in memory
+     */
+    public ServiceRegistry getServiceRegistry() {
+        return serviceRegistry;
+    }
+    
     @Override
     public void receiveRecord(RPCServerRequest rq) {
         if (Logging.isDebug())
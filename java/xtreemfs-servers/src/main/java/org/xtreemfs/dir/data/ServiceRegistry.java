@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.dir.data;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.xtreemfs.pbrpc.generatedinterfaces.DIR.Service;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceDataMap;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceType;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIR.serviceGetUpdatesResponse;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.KeyValuePair;
+
+/**
+ * In-memory index of the service records stored in the DIR database. Service records are indexed by UUID,
+ * type and name, so that lookups do not require a scan over the database.
+ * <p>
+ * Services are returned in the order of their UUIDs, like in the database.
+ * <p>
+ * Each change of a record is assigned a new generation number, which allows clients to retrieve only the
+ * records that changed since a generation known to them. Generation numbers are initialized with the
+ * current time in microseconds, so that generations of a previous DIR instance can be told apart in
+ * practice.
+ */
+public class ServiceRegistry {
+
+    /**
+     * attribute added to returned services, not stored
+     */
+    public static final String                   SECONDS_SINCE_LAST_UPDATE = "seconds_since_last_update";
+
+    /**
+     * maximum number of deregistrations remembered for computing deltas
+     */
+    private static final int                     MAX_DEREGISTRATIONS       = 10000;
+
+    private static final class Record {
+
+        final Service service;
+
+        final long    generation;
+
+        Record(Service service, long generation) {
+            this.service = service;
+            this.generation = generation;
+        }
+    }
+
+    private final Map<String, Record>                   servicesByUuid;
+
+    private final Map<ServiceType, Map<String, Record>> servicesByType;
+
+    private final Map<String, Map<String, Record>>      servicesByName;
+
+    /**
+     * UUIDs of deregistered services mapped to their last records with the generations of their
+     * deregistration, in the order of deregistration
+     */
+    private final LinkedHashMap<String, Record>         deregistrations;
+
+    private long                                        generation;
+
+    /**
+     * the oldest generation for which deltas can be computed
+     */
+    private long                                        oldestDeltaGeneration;
+
+    public ServiceRegistry() {
+        servicesByUuid = new TreeMap<String, Record>();
+        servicesByType = new EnumMap<ServiceType, Map<String, Record>>(ServiceType.class);
+        servicesByName = new HashMap<String, Map<String, Record>>();
+        deregistrations = new LinkedHashMap<String, Record>();
+
+        generation = System.currentTimeMillis() * 1000;
+        oldestDeltaGeneration = generation;
+    }
+
+    /**
+     * Adds or replaces a service record.
+     *
+     * @param record
+     *            the record as stored in the database
+     */
+    public synchronized void update(ServiceRecord record) {
+
+        Service service = record.getService();
+
+        // do not index attributes that are computed on retrieval
+        if (record.getData().containsKey(SECONDS_SINCE_LAST_UPDATE)) {
+            ServiceDataMap.Builder data = ServiceDataMap.newBuilder();
+            for (KeyValuePair kvp : service.getData().getDataList()) {
+                if (!kvp.getKey().equals(SECONDS_SINCE_LAST_UPDATE))
+                    data.addData(kvp);
+            }
+            service = service.toBuilder().setData(data).build();
+        }
+
+        remove(service.getUuid(), false);
+
+        Record rec = new Record(service, ++generation);
+        servicesByUuid.put(service.getUuid(), rec);
+
+        Map<String, Record> byType = servicesByType.get(service.getType());
+        if (byType == null) {
+            byType = new TreeMap<String, Record>();
+            servicesByType.put(service.getType(), byType);
+        }
+        byType.put(service.getUuid(), rec);
+
+        Map<String, Record> byName = servicesByName.get(service.getName());
+        if (byName == null) {
+            byName = new TreeMap<String, Record>();
+            servicesByName.put(service.getName(), byName);
+        }
+        byName.put(service.getUuid(), rec);
+
+        deregistrations.remove(service.getUuid());
+    }
+
+    /**
+     * Removes a service record.
+     *
+     * @param uuid
+     *            the UUID of the service
+     */
+    public synchronized void remove(String uuid) {
+        remove(uuid, true);
+    }
+
+    private void remove(String uuid, boolean deregister) {
+
+        Record rec = servicesByUuid.remove(uuid);
+        if (rec == null)
+            return;
+
+        Map<String, Record> byType = servicesByType.get(rec.service.getType());
+        byType.remove(uuid);
+        if (byType.isEmpty())
+            servicesByType.remove(rec.service.getType());
+
+        Map<String, Record> byName = servicesByName.get(rec.service.getName());
+        byName.remove(uuid);
+        if (byName.isEmpty())
+            servicesByName.remove(rec.service.getName());
+
+        if (deregister) {
+            deregistrations.put(uuid, new Record(rec.service, ++generation));
+
+            // forget the oldest deregistration if necessary; deltas cannot be
+            // computed for earlier generations anymore
+            if (deregistrations.size() > MAX_DEREGISTRATIONS) {
+                Iterator<Record> it = deregistrations.values().iterator();
+                oldestDeltaGeneration = it.next().generation;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the service with the given UUID.
+     *
+     * @param uuid
+     *            the UUID
+     * @return the service, or <code>null</code> if no such service is registered
+     */
+    public synchronized Service getByUuid(String uuid) {
+        Record rec = servicesByUuid.get(uuid);
+        return rec == null ? null : rec.service;
+    }
+
+    /**
+     * Returns all services with the given name.
+     *
+     * @param name
+     *            the name
+     * @return the services
+     */
+    public synchronized List<Service> getByName(String name) {
+        List<Service> result = new ArrayList<Service>();
+        Map<String, Record> byName = servicesByName.get(name);
+        if (byName != null) {
+            for (Record rec : byName.values())
+                result.add(rec.service);
+        }
+        return result;
+    }
+
+    /**
+     * Returns all services of the given type, including the time passed since their last update.
+     *
+     * @param type
+     *            the type, or {@link ServiceType#SERVICE_TYPE_MIXED} for all services
+     * @param now
+     *            the current time in seconds
+     * @return the services
+     */
+    public synchronized List<Service> getByType(ServiceType type, long now) {
+        List<Service> result = new ArrayList<Service>();
+        for (Record rec : getRecords(type))
+            result.add(withSecondsSinceLastUpdate(rec.service, now));
+        return result;
+    }
+
+    /**
+     * Returns all services of the given type that changed since the given generation, including the time
+     * passed since their last update. If the changes since the given generation are not known, all
+     * services of the given type are returned.
+     *
+     * @param type
+     *            the type, or {@link ServiceType#SERVICE_TYPE_MIXED} for all services
+     * @param knownGeneration
+     *            the generation known to the caller
+     * @param now
+     *            the current time in seconds
+     * @return the response containing the changes
+     */
+    public synchronized serviceGetUpdatesResponse getUpdates(ServiceType type, long knownGeneration, long now) {
+
+        serviceGetUpdatesResponse.Builder response = serviceGetUpdatesResponse.newBuilder().setGeneration(
+                generation);
+
+        // generations outside of the known range have been assigned by
+        // another DIR instance
+        boolean full = knownGeneration < oldestDeltaGeneration || knownGeneration > generation;
+        response.setFull(full);
+
+        for (Record rec : getRecords(type)) {
+            if (full || rec.generation > knownGeneration)
+                response.addServices(withSecondsSinceLastUpdate(rec.service, now));
+        }
+
+        if (!full) {
+            for (Record rec : deregistrations.values()) {
+                if (rec.generation > knownGeneration && matches(rec, type))
+                    response.addDeregisteredUuids(rec.service.getUuid());
+            }
+        }
+
+        return response.build();
+    }
+
+    /**
+     * Checks whether any service of the given type changed since the given generation.
+     *
+     * @param type
+     *            the type, or {@link ServiceType#SERVICE_TYPE_MIXED} for all services
+     * @param knownGeneration
+     *            the generation known to the caller
+     * @return <code>true</code>, if {@link #getUpdates(ServiceType, long, long)} would return any changes
+     */
+    public synchronized boolean hasUpdates(ServiceType type, long knownGeneration) {
+
+        if (knownGeneration == generation)
+            return false;
+        if (knownGeneration < oldestDeltaGeneration || knownGeneration > generation)
+            return true;
+
+        for (Record rec : getRecords(type)) {
+            if (rec.generation > knownGeneration)
+                return true;
+        }
+        for (Record rec : deregistrations.values()) {
+            if (rec.generation > knownGeneration && matches(rec, type))
+                return true;
+        }
+
+        return false;
+    }
+
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    public synchronized int getNumServices() {
+        return servicesByUuid.size();
+    }
+
+    private Iterable<Record> getRecords(ServiceType type) {
+        if (type == ServiceType.SERVICE_TYPE_MIXED)
+            return servicesByUuid.values();
+
+        Map<String, Record> byType = servicesByType.get(type);
+        return byType == null ? new ArrayList<Record>(0) : byType.values();
+    }
+
+    private static boolean matches(Record rec, ServiceType type) {
+        return type == ServiceType.SERVICE_TYPE_MIXED || rec.service.getType() == type;
+    }
+
+    private static Service withSecondsSinceLastUpdate(Service service, long now) {
+        return service
+                .toBuilder()
+                .setData(
+                        service.getData()
+                                .toBuilder()
+                                .addData(
+                                        KeyValuePair.newBuilder().setKey(SECONDS_SINCE_LAST_UPDATE)
+                                                .setValue(Long.toString(now - service.getLastUpdatedS()))))
+                .build();
+    }
+
+}
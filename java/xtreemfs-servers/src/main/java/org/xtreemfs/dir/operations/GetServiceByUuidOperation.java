@@ -13,7 +13,9 @@ import org.xtreemfs.babudb.api.exception.BabuDBException;
 import org.xtreemfs.dir.DIRRequest;
 import org.xtreemfs.dir.DIRRequestDispatcher;
 import org.xtreemfs.dir.data.ServiceRecord;
+import org.xtreemfs.dir.data.ServiceRegistry;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIR.Service;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceSet;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.serviceGetByUUIDRequest;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIRServiceConstants;
@@ -42,6 +44,16 @@ public class GetServiceByUuidOperation extends DIROperation {
     public void startRequest(DIRRequest rq) {
         serviceGetByUUIDRequest request = (serviceGetByUUIDRequest) rq.getRequestMessage();
         
+        final ServiceRegistry registry = master.getServiceRegistry();
+        if (registry != null) {
+            ServiceSet.Builder services = ServiceSet.newBuilder();
+            Service service = registry.getByUuid(request.getName());
+            if (service != null)
+                services.addServices(service);
+            requestFinished(services.build(), rq);
+            return;
+        }
+        
         database.lookup(DIRRequestDispatcher.INDEX_ID_SERVREG, request.getName().getBytes(), rq).registerListener(
                 new DBRequestListener<byte[], ServiceSet>(true) {
                     
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.dir.operations;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.xtreemfs.babudb.api.database.Database;
+import org.xtreemfs.babudb.api.database.ResultSet;
+import org.xtreemfs.babudb.api.exception.BabuDBException;
+import org.xtreemfs.dir.DIRRequest;
+import org.xtreemfs.dir.DIRRequestDispatcher;
+import org.xtreemfs.dir.data.ServiceRecord;
+import org.xtreemfs.dir.data.ServiceRegistry;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceType;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIR.serviceGetUpdatesRequest;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIR.serviceGetUpdatesResponse;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIRServiceConstants;
+
+import com.google.protobuf.Message;
+
+/**
+ * Returns the services that changed since a generation known to the client. If nothing changed, the
+ * request is kept pending until a service changes or the maximum wait time elapsed.
+ * <p>
+ * Pending requests are only accessed by the request dispatcher thread.
+ */
+public class GetServiceUpdatesOperation extends DIROperation {
+
+    /**
+     * upper bound for the time a request is kept pending
+     */
+    private static final int  MAX_WAIT_MS         = 60 * 1000;
+
+    /**
+     * maximum number of pending requests; further requests are answered immediately
+     */
+    private static final int  MAX_PENDING_WATCHES = 1024;
+
+    private static final class Watch {
+
+        final DIRRequest                rq;
+
+        final serviceGetUpdatesRequest request;
+
+        final long                      deadline;
+
+        long                            checkedGeneration;
+
+        Watch(DIRRequest rq, serviceGetUpdatesRequest request, long deadline, long checkedGeneration) {
+            this.rq = rq;
+            this.request = request;
+            this.deadline = deadline;
+            this.checkedGeneration = checkedGeneration;
+        }
+    }
+
+    private final Database    database;
+
+    private final List<Watch> pendingWatches;
+
+    public GetServiceUpdatesOperation(DIRRequestDispatcher master) throws BabuDBException {
+        super(master);
+        database = master.getDirDatabase();
+        pendingWatches = new LinkedList<Watch>();
+    }
+
+    @Override
+    public int getProcedureId() {
+        return DIRServiceConstants.PROC_ID_XTREEMFS_SERVICE_GET_UPDATES;
+    }
+
+    @Override
+    public void startRequest(DIRRequest rq) {
+        final serviceGetUpdatesRequest request = (serviceGetUpdatesRequest) rq.getRequestMessage();
+
+        final ServiceRegistry registry = master.getServiceRegistry();
+        if (registry == null) {
+            // no deltas can be computed, always return all services
+            getAllServices(rq, request.getType());
+            return;
+        }
+
+        final long generation = registry.getGeneration();
+        if (request.getMaxWaitMs() > 0 && pendingWatches.size() < MAX_PENDING_WATCHES
+                && !registry.hasUpdates(request.getType(), request.getKnownGeneration())) {
+            long deadline = System.currentTimeMillis() + Math.min(request.getMaxWaitMs(), MAX_WAIT_MS);
+            pendingWatches.add(new Watch(rq, request, deadline, generation));
+            return;
+        }
+
+        requestFinished(registry.getUpdates(request.getType(), request.getKnownGeneration(),
+                System.currentTimeMillis() / 1000l), rq);
+    }
+
+    /**
+     * @return true, if any requests are pending
+     */
+    public boolean hasPendingWatches() {
+        return !pendingWatches.isEmpty();
+    }
+
+    /**
+     * Answers all pending requests for which changes are available or which timed out.
+     */
+    public void processPendingWatches() {
+
+        if (pendingWatches.isEmpty())
+            return;
+
+        final ServiceRegistry registry = master.getServiceRegistry();
+        final long generation = registry.getGeneration();
+        final long now = System.currentTimeMillis();
+
+        Iterator<Watch> it = pendingWatches.iterator();
+        while (it.hasNext()) {
+            Watch w = it.next();
+
+            // only check for relevant changes if anything changed at all
+            boolean changed = false;
+            if (generation != w.checkedGeneration) {
+                changed = registry.hasUpdates(w.request.getType(), w.request.getKnownGeneration());
+                w.checkedGeneration = generation;
+            }
+
+            if (changed || now >= w.deadline) {
+                it.remove();
+                requestFinished(registry.getUpdates(w.request.getType(), w.request.getKnownGeneration(),
+                        now / 1000l), w.rq);
+            }
+        }
+    }
+
+    private void getAllServices(DIRRequest rq, final ServiceType type) {
+
+        database.prefixLookup(DIRRequestDispatcher.INDEX_ID_SERVREG, new byte[0], rq).registerListener(
+                new DBRequestListener<ResultSet<byte[], byte[]>, serviceGetUpdatesResponse>(true) {
+
+                    @Override
+                    serviceGetUpdatesResponse execute(ResultSet<byte[], byte[]> result, DIRRequest rq)
+                            throws Exception {
+
+                        serviceGetUpdatesResponse.Builder response = serviceGetUpdatesResponse.newBuilder()
+                                .setGeneration(0).setFull(true);
+                        long now = System.currentTimeMillis() / 1000l;
+
+                        while (result.hasNext()) {
+                            Entry<byte[], byte[]> e = result.next();
+                            ServiceRecord servEntry = new ServiceRecord(ReusableBuffer.wrap(e.getValue()));
+
+                            if ((type == ServiceType.SERVICE_TYPE_MIXED) || (servEntry.getType() == type)) {
+                                long secondsSinceLastUpdate = now - servEntry.getLast_updated_s();
+                                servEntry.getData().put(ServiceRegistry.SECONDS_SINCE_LAST_UPDATE,
+                                        Long.toString(secondsSinceLastUpdate));
+                                response.addServices(servEntry.getService());
+                            }
+                        }
+                        return response.build();
+                    }
+                });
+    }
+
+    @Override
+    public boolean isAuthRequired() {
+        return false;
+    }
+
+    @Override
+    protected Message getRequestMessagePrototype() {
+        return serviceGetUpdatesRequest.getDefaultInstance();
+    }
+
+    @Override
+    void requestFinished(Object result, DIRRequest rq) {
+        rq.sendSuccess((serviceGetUpdatesResponse) result);
+    }
+
+}
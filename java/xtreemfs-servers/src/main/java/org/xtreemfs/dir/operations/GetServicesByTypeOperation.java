@@ -16,6 +16,7 @@ import org.xtreemfs.babudb.api.exception.BabuDBException;
 import org.xtreemfs.dir.DIRRequest;
 import org.xtreemfs.dir.DIRRequestDispatcher;
 import org.xtreemfs.dir.data.ServiceRecord;
+import org.xtreemfs.dir.data.ServiceRegistry;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceSet;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceType;
@@ -46,6 +47,15 @@ public class GetServicesByTypeOperation extends DIROperation {
     public void startRequest(DIRRequest rq) {
         final serviceGetByTypeRequest request = (serviceGetByTypeRequest) rq.getRequestMessage();
         
+        final ServiceRegistry registry = master.getServiceRegistry();
+        if (registry != null) {
+            requestFinished(
+                    ServiceSet.newBuilder()
+                            .addAllServices(registry.getByType(request.getType(), System.currentTimeMillis() / 1000l))
+                            .build(), rq);
+            return;
+        }
+        
         database.prefixLookup(DIRRequestDispatcher.INDEX_ID_SERVREG, new byte[0], rq).registerListener(
                 new DBRequestListener<ResultSet<byte[], byte[]>, ServiceSet>(true) {
                     
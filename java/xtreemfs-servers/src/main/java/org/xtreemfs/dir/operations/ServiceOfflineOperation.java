@@ -49,7 +49,7 @@ public class ServiceOfflineOperation extends DIROperation {
                     Object execute(byte[] result, DIRRequest rq) throws Exception {
                         if (result != null) {
                             ReusableBuffer buf = ReusableBuffer.wrap(result);
-                            ServiceRecord dbData = new ServiceRecord(buf);
+                            final ServiceRecord dbData = new ServiceRecord(buf);
                             
                             dbData.setLast_updated_s(0);
                             dbData.setVersion(dbData.getVersion() + 1);
@@ -61,6 +61,8 @@ public class ServiceOfflineOperation extends DIROperation {
                                 
                                 @Override
                                 Object execute(Object result, DIRRequest rq) throws Exception {
+                                    if (master.getServiceRegistry() != null)
+                                        master.getServiceRegistry().update(dbData);
                                     return null;
                                 }
                             });
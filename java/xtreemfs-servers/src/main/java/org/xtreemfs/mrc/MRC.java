@@ -101,6 +101,7 @@ public class MRC {
         }
         
         Logging.start(config.getDebugLevel(), config.getDebugCategories());
+        Logging.startAsync(config.getDebugAsyncBufferSize());
         
         new MRC(config, dbsConfig);
     }
@@ -27,6 +27,7 @@ public class MRCConfig extends ServiceConfig {
     final Parameter[] mrcParameter = {
             Parameter.DEBUG_LEVEL,
             Parameter.DEBUG_CATEGORIES,
+            Parameter.DEBUG_ASYNC_BUFFER_SIZE,
             Parameter.PORT,
             Parameter.BIND_RETRIES,
             Parameter.HTTP_PORT,
@@ -66,7 +67,9 @@ public class MRCConfig extends ServiceConfig {
             Parameter.MAX_CLIENT_Q,
             Parameter.USE_RENEWAL_SIGNAL,
             Parameter.USE_MULTIHOMING,
-            Parameter.FLEASE_LEASE_TIMEOUT_MS
+            Parameter.FLEASE_LEASE_TIMEOUT_MS,
+            Parameter.FILE_SIZE_UPDATE_FLUSH_INTERVAL_MS,
+            Parameter.XLOCSET_COORDINATOR_THREADS
             };
     /*
      * @formatter:on
@@ -149,6 +152,14 @@ public class MRCConfig extends ServiceConfig {
 
     }
 
+    public int getFileSizeUpdateFlushInterval() {
+        return (Integer) parameter.get(Parameter.FILE_SIZE_UPDATE_FLUSH_INTERVAL_MS);
+    }
+
+    public int getXLocSetCoordinatorThreads() {
+        return (Integer) parameter.get(Parameter.XLOCSET_COORDINATOR_THREADS);
+    }
+
     /**
      * Set default values according to the value in {@link Parameter} for all configuration parameter which
      * are null.
@@ -31,6 +31,7 @@ import org.xtreemfs.common.config.RemoteConfigHelper;
 import org.xtreemfs.common.config.ServiceConfig;
 import org.xtreemfs.common.monitoring.StatusMonitor;
 import org.xtreemfs.common.statusserver.BabuDBStatusPage;
+import org.xtreemfs.common.statusserver.MetricsPage;
 import org.xtreemfs.common.statusserver.PrintStackTrace;
 import org.xtreemfs.common.statusserver.StatusServer;
 import org.xtreemfs.common.uuids.ServiceUUID;
@@ -47,6 +48,7 @@ import org.xtreemfs.foundation.VersionManagement;
 import org.xtreemfs.foundation.buffer.BufferPool;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
+import org.xtreemfs.foundation.metrics.MetricsRegistry;
 import org.xtreemfs.foundation.pbrpc.Schemes;
 import org.xtreemfs.foundation.pbrpc.client.RPCNIOSocketClient;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.ErrorType;
@@ -123,6 +125,8 @@ public class MRCRequestDispatcher implements RPCServerRequestListener, LifeCycle
 
     private final StatusServer             statusServer;
 
+    private final MetricsRegistry          metrics;
+
     private final OSDServiceClient         osdClient;
 
     private final boolean                  replicated;
@@ -314,6 +318,11 @@ public class MRCRequestDispatcher implements RPCServerRequestListener, LifeCycle
 
         };
 
+        metrics = new MetricsRegistry();
+        serverStage.registerMetrics(metrics);
+        procStage.registerMetrics(metrics);
+        BufferPool.registerMetrics(metrics);
+
         if (config.getHttpPort() == -1) {
             // Webinterface is explicitly disabled.
             statusServer = null;
@@ -321,6 +330,7 @@ public class MRCRequestDispatcher implements RPCServerRequestListener, LifeCycle
             statusServer = new StatusServer(ServiceType.SERVICE_TYPE_MRC, this, config.getHttpPort());
             statusServer.registerModule(new StatusPage());
             statusServer.registerModule(new PrintStackTrace());
+            statusServer.registerModule(new MetricsPage(metrics));
 
             final MRCRequestDispatcher master = this;
             statusServer.registerModule(new BabuDBStatusPage(new BabuDBStatusPage.BabuDBStatusProvider() {
@@ -372,6 +382,8 @@ public class MRCRequestDispatcher implements RPCServerRequestListener, LifeCycle
             statusServer.shutdown();
         }
 
+        metrics.unregisterMBean();
+
         if (replicated)
             mrcMonitor.shutdown();
 
@@ -423,6 +435,8 @@ public class MRCRequestDispatcher implements RPCServerRequestListener, LifeCycle
             serverStage.start();
             serverStage.waitForStartup();
 
+            metrics.registerMBean("MRC", config.getUUID().toString());
+
             if (Logging.isInfo())
                 Logging.logMessage(Logging.LEVEL_INFO, Category.lifecycle, this,
                         "MRC operational, listening on port %d", config.getPort());
@@ -463,12 +477,17 @@ public class MRCRequestDispatcher implements RPCServerRequestListener, LifeCycle
         procStage.shutdown();
         procStage.waitForShutdown();
         
+        // write the file sizes buffered by the stopped processing stage
+        procStage.getFileSizeUpdateBuffer().flush(true);
+        
         xLocSetCoordinator.shutdown();
         xLocSetCoordinator.waitForShutdown();
 
         volumeManager.shutdown();
 
         statusServer.shutdown();
+
+        metrics.unregisterMBean();
     }
 
     public void requestFinished(MRCRequest request) {
@@ -609,6 +628,7 @@ public class MRCRequestDispatcher implements RPCServerRequestListener, LifeCycle
         data.put(Vars.DBVERSION, volumeManager.getDBVersion());
 
         data.put(Vars.PINKYQ, Long.toString(this.serverStage.getPendingRequests()));
+        data.put(Vars.XLOCSETCHANGES, xLocSetCoordinator.getStatistics());
         data.put(Vars.NUMCON, Integer.toString(this.serverStage.getNumConnections()));
 
         long freeMem = Runtime.getRuntime().freeMemory();
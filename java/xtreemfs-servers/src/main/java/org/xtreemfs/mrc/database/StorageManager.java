@@ -68,6 +68,26 @@ public interface StorageManager {
     
     public void dumpDB(BufferedWriter xmlWriter) throws DatabaseException, IOException;
     
+    /**
+     * Returns the raw key-value pairs stored in an index of the volume
+     * database, e.g. in order to create a binary dump of the volume. The
+     * entries are returned in key order as arrays of the form
+     * <code>{key, value}</code>.
+     * 
+     * @param index
+     *            the index
+     * @param from
+     *            the first key of the range (inclusive), or <code>null</code>
+     *            if all entries of the index are requested
+     * @param to
+     *            the last key of the range (exclusive), or <code>null</code>
+     *            if all entries of the index are requested
+     * @return an iterator over the entries
+     * @throws DatabaseException
+     */
+    public DatabaseResultSet<byte[][]> getRawEntries(int index, byte[] from, byte[] to)
+        throws DatabaseException;
+    
     // handling volumes
     
     public VolumeInfo getVolumeInfo();
@@ -153,6 +173,55 @@ public interface StorageManager {
     
     public short delete(long parentId, String fileName, AtomicDBUpdate update) throws DatabaseException;
     
+    // recursive directory statistics
+    
+    /**
+     * Adds a change of a file's size to the recursive sizes of the
+     * directories containing the file.
+     * 
+     * @param file
+     *            the file
+     * @param sizeDiff
+     *            the difference between the new and the old file size
+     * @param update
+     *            the update to which the changes are added
+     * @throws DatabaseException
+     */
+    public void updateDirStats(FileMetadata file, long sizeDiff, AtomicDBUpdate update)
+        throws DatabaseException;
+    
+    /**
+     * Moves the contribution of a file or directory to the recursive
+     * statistics from the source to the target parent directory and its
+     * ancestors. Has to be invoked when a file or directory is moved.
+     * 
+     * @param metadata
+     *            the moved file or directory
+     * @param sourceParentId
+     *            the ID of the former parent directory
+     * @param targetParentId
+     *            the ID of the new parent directory
+     * @param update
+     *            the update to which the changes are added
+     * @throws DatabaseException
+     */
+    public void moveDirStats(FileMetadata metadata, long sourceParentId, long targetParentId,
+        AtomicDBUpdate update) throws DatabaseException;
+    
+    /**
+     * Returns the recursive statistics of a directory, i.e. the total size
+     * and number of files and the number of subdirectories in the entire
+     * subtree below the directory.
+     * 
+     * @param dirId
+     *            the directory ID
+     * @return an array of the form <code>{size, numFiles, numDirs}</code>,
+     *         or <code>null</code> if no statistics are maintained for the
+     *         directory
+     * @throws DatabaseException
+     */
+    public long[] getDirStats(long dirId) throws DatabaseException;
+    
     // retrieving metadata
     
     public FileMetadata[] resolvePath(Path path) throws DatabaseException;
@@ -201,6 +270,11 @@ public interface StorageManager {
     
     public DatabaseResultSet<FileMetadata> getChildren(long parentId, int seen, int num) throws DatabaseException;
     
+    // returns the children following the child named 'after', which does not
+    // need to exist anymore
+    public DatabaseResultSet<FileMetadata> getChildren(long parentId, String after, int num)
+        throws DatabaseException;
+    
     // handling snapshots
     
     public void createSnapshot(String snapName, long parentId, String dirName, boolean recursive)
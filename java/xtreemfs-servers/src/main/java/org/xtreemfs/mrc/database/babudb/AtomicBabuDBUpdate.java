@@ -8,12 +8,17 @@
 
 package org.xtreemfs.mrc.database.babudb;
 
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.xtreemfs.babudb.api.database.Database;
 import org.xtreemfs.babudb.api.database.DatabaseInsertGroup;
 import org.xtreemfs.babudb.api.database.DatabaseRequestListener;
 import org.xtreemfs.babudb.api.exception.BabuDBException;
 import org.xtreemfs.mrc.database.AtomicDBUpdate;
 import org.xtreemfs.mrc.database.DatabaseException;
+import org.xtreemfs.mrc.quota.QuotaManager;
 
 public class AtomicBabuDBUpdate implements AtomicDBUpdate {
     
@@ -25,6 +30,11 @@ public class AtomicBabuDBUpdate implements AtomicDBUpdate {
     
     private Object                          context;
     
+    /**
+     * the latest values of volume metadata entries contained in the update
+     */
+    private Map<ByteBuffer, byte[]>         volumeMetadata;
+    
     // private List<Object[]> updates;
     //    
     // private String dbName;
@@ -44,6 +54,12 @@ public class AtomicBabuDBUpdate implements AtomicDBUpdate {
     
     @Override
     public void addUpdate(Object... update) {
+        if ((Integer) update[0] == BabuDBStorageManager.VOLUME_INDEX) {
+            if (volumeMetadata == null)
+                volumeMetadata = new HashMap<ByteBuffer, byte[]>();
+            volumeMetadata.put(ByteBuffer.wrap((byte[]) update[1]), (byte[]) update[2]);
+        }
+        
         ig.addInsert((Integer) update[0], (byte[]) update[1], (byte[]) update[2]);
         // updates.add(update);
     }
@@ -62,6 +78,31 @@ public class AtomicBabuDBUpdate implements AtomicDBUpdate {
         } catch (Exception exc) {
             throw new DatabaseException(exc);
         }
+        
+        // the quota changes of the update must not be reverted anymore
+        QuotaManager.commitChanges();
+    }
+    
+    /**
+     * Returns the value of a volume metadata entry that has been added to this update.
+     * 
+     * @param key
+     *            the key of the entry
+     * @return the value, or <code>null</code> if the update does not contain the entry
+     */
+    byte[] getVolumeMetadata(byte[] key) {
+        return volumeMetadata == null ? null : volumeMetadata.get(ByteBuffer.wrap(key));
+    }
+    
+    /**
+     * Checks whether the update contains a change of a volume metadata entry, including its deletion.
+     * 
+     * @param key
+     *            the key of the entry
+     * @return <code>true</code>, if the update contains the entry
+     */
+    boolean containsVolumeMetadata(byte[] key) {
+        return volumeMetadata != null && volumeMetadata.containsKey(ByteBuffer.wrap(key));
     }
     
     public String toString() {
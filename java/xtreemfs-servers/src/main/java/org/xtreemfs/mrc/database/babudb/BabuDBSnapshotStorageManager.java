@@ -190,6 +190,18 @@ public class BabuDBSnapshotStorageManager implements StorageManager {
 
     }
 
+    @Override
+    public DatabaseResultSet<FileMetadata> getChildren(long parentId, String after, int num)
+        throws DatabaseException {
+
+        try {
+            return BabuDBStorageHelper.getChildren(database, parentId, after, num);
+        } catch (Exception exc) {
+            throw new DatabaseException(exc);
+        }
+
+    }
+
     @Override
     public StripingPolicy getDefaultStripingPolicy(long fileId) throws DatabaseException {
 
@@ -694,6 +706,29 @@ public class BabuDBSnapshotStorageManager implements StorageManager {
         return -1;
     }
 
+    @Override
+    public void updateDirStats(FileMetadata file, long sizeDiff, AtomicDBUpdate update) throws DatabaseException {
+        throwException();
+    }
+
+    @Override
+    public void moveDirStats(FileMetadata metadata, long sourceParentId, long targetParentId,
+                             AtomicDBUpdate update) throws DatabaseException {
+        throwException();
+    }
+
+    @Override
+    public long[] getDirStats(long dirId) throws DatabaseException {
+
+        try {
+            byte[] value = database.lookup(VOLUME_INDEX, BabuDBStorageHelper.createDirStatsKey(dirId), null).get();
+            return value == null ? null : BabuDBStorageHelper.getDirStats(value);
+
+        } catch (BabuDBException exc) {
+            throw new DatabaseException(exc);
+        }
+    }
+
     @Override
     public void deleteDatabase() throws DatabaseException {
         throwException();
@@ -709,6 +744,16 @@ public class BabuDBSnapshotStorageManager implements StorageManager {
         DBAdminHelper.dumpVolume(xmlWriter, this);
     }
 
+    @Override
+    public DatabaseResultSet<byte[][]> getRawEntries(int index, byte[] from, byte[] to)
+            throws DatabaseException {
+        try {
+            return BabuDBStorageHelper.getRawEntries(database, index, from, to);
+        } catch (BabuDBException exc) {
+            throw new DatabaseException(exc);
+        }
+    }
+
     @Override
     public String[] getAllSnapshots() throws DatabaseException {
         throwException();
@@ -18,6 +18,7 @@ import org.xtreemfs.babudb.api.database.Database;
 import org.xtreemfs.babudb.api.database.DatabaseRO;
 import org.xtreemfs.babudb.api.database.ResultSet;
 import org.xtreemfs.babudb.api.exception.BabuDBException;
+import org.xtreemfs.babudb.index.DefaultByteRangeComparator;
 import org.xtreemfs.common.quota.QuotaConstants;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
@@ -67,6 +68,26 @@ public class BabuDBStorageHelper {
             remaining = num;
         }
         
+        public ChildrenIterator(DatabaseRO database, ResultSet<byte[], byte[]> it, String after, int num) {
+            
+            this.database = database;
+            this.it = it;
+            
+            this.keyBufs = new byte[BufferBackedFileMetadata.NUM_BUFFERS][];
+            this.valBufs = new byte[BufferBackedFileMetadata.NUM_BUFFERS][];
+            
+            // skip the records of the 'after' element, which precede all
+            // other records in the result set
+            while (it.hasNext()) {
+                next = it.next();
+                if (!getFileName(next.getKey()).equals(after))
+                    break;
+                next = null;
+            }
+            
+            remaining = num;
+        }
+        
         @Override
         public boolean hasNext() {
             return (next != null || it.hasNext()) && remaining > 0;
@@ -80,7 +101,7 @@ public class BabuDBStorageHelper {
                 if (next == null)
                     next = it.next();
                 
-                final String currFileName = new String(next.getKey(), 8, next.getKey().length - 9);
+                final String currFileName = getFileName(next.getKey());
                 
                 if (prevFileName != null && !prevFileName.equals(currFileName)) {
                     assert (valBufs[FileMetadata.RC_METADATA] != null) : "*** DATABASE CORRUPTED *** incomplete file metadata";
@@ -146,6 +167,10 @@ public class BabuDBStorageHelper {
             it.free();
         }
         
+        private static String getFileName(byte[] key) {
+            return new String(key, 8, key.length - 9);
+        }
+        
     }
     
     static class XAttrIterator implements DatabaseResultSet<XAttr> {
@@ -283,6 +308,37 @@ public class BabuDBStorageHelper {
 
     }
     
+    static class RawEntryIterator implements DatabaseResultSet<byte[][]> {
+        
+        private final ResultSet<byte[], byte[]> it;
+        
+        public RawEntryIterator(ResultSet<byte[], byte[]> it) {
+            this.it = it;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return it.hasNext();
+        }
+        
+        @Override
+        public byte[][] next() {
+            Entry<byte[], byte[]> entry = it.next();
+            return new byte[][] { entry.getKey(), entry.getValue() };
+        }
+        
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public void destroy() {
+            it.free();
+        }
+        
+    }
+    
     public enum QuotaType {
 
         VOLUME("volume"), USER("user"), GROUP("group");
@@ -558,6 +614,36 @@ public class BabuDBStorageHelper {
         return buf;
     }
     
+    public static byte[] createDirStatsKey(long dirId) {
+        
+        byte[] key = new byte[9];
+        ByteBuffer.wrap(key).put(BabuDBStorageManager.DIR_STATS_KEY_PREFIX).putLong(dirId);
+        
+        return key;
+    }
+    
+    public static byte[] createDirStatsValue(long parentId, long size, long numFiles, long numDirs) {
+        
+        byte[] value = new byte[32];
+        ByteBuffer.wrap(value).putLong(parentId).putLong(size).putLong(numFiles).putLong(numDirs);
+        
+        return value;
+    }
+    
+    public static long[] getDirStats(byte[] value) {
+        
+        ByteBuffer buf = ByteBuffer.wrap(value);
+        return new long[] { buf.getLong(8), buf.getLong(16), buf.getLong(24) };
+    }
+    
+    public static byte[] createFileParentKey(long fileId) {
+        
+        byte[] key = new byte[9];
+        ByteBuffer.wrap(key).put(BabuDBStorageManager.FILE_PARENT_KEY_PREFIX).putLong(fileId);
+        
+        return key;
+    }
+    
     /**
      * Generates the key for a FileVoucherInfo based on the key identifer, the fileID and the word "info", seperated by
      * dots.
@@ -810,6 +896,21 @@ public class BabuDBStorageHelper {
         return new ChildrenIterator(database, it, from, num);
     }
     
+    public static ChildrenIterator getChildren(DatabaseRO database, long parentId, String after, int num)
+        throws BabuDBException {
+        
+        // look up the range between the 'after' element (inclusive) and the
+        // end of the parent directory's key range, so that the preceding
+        // elements do not need to be skipped
+        byte[] from = BabuDBStorageHelper.createFileKey(parentId, after, (byte) -1);
+        byte[] to = DefaultByteRangeComparator.getInstance().prefixToRange(
+            BabuDBStorageHelper.createFilePrefixKey(parentId), true)[1];
+        ResultSet<byte[], byte[]> it = database.rangeLookup(BabuDBStorageManager.FILE_INDEX, from, to, null)
+                .get();
+        
+        return new ChildrenIterator(database, it, after, num);
+    }
+    
     public static void getNestedFiles(List<FileMetadata> files, Database database, long dirId,
         boolean recursive) throws BabuDBException {
         
@@ -827,6 +928,15 @@ public class BabuDBStorageHelper {
         children.destroy();
     }
     
+    public static DatabaseResultSet<byte[][]> getRawEntries(DatabaseRO database, int index, byte[] from,
+        byte[] to) throws BabuDBException {
+        
+        ResultSet<byte[], byte[]> it = from == null && to == null ? database.prefixLookup(index, null, null)
+                .get() : database.rangeLookup(index, from, to, null).get();
+        
+        return new RawEntryIterator(it);
+    }
+    
     public static long getRootParentId(DatabaseRO database) throws BabuDBException {
         
         ResultSet<byte[], byte[]> it = database.prefixLookup(BabuDBStorageManager.FILE_INDEX, null, null)
@@ -89,6 +89,17 @@ public class BabuDBStorageManager implements StorageManager {
 
     public static final String QUOTA_KEY_IDENTIFIER = "q";
 
+    /**
+     * prefix of the volume index keys of the recursive statistics of directories
+     */
+    public static final byte DIR_STATS_KEY_PREFIX = 'r';
+
+    /**
+     * prefix of the volume index keys that refer moved and hard-linked files to the directories their sizes are
+     * accounted to
+     */
+    public static final byte FILE_PARENT_KEY_PREFIX = 'p';
+
     private static final String DEFAULT_SP_ATTR_NAME = "sp";
 
     private static final String DEFAULT_RP_ATTR_NAME = "rp";
@@ -344,6 +355,18 @@ public class BabuDBStorageManager implements StorageManager {
         else
             updateCount(NUM_DIRS_KEY, true, update);
 
+        // recursive statistics are only maintained if they have been maintained since the creation of the
+        // volume, i.e. if the root directory and all other directories have them
+        try {
+            if (initCount || getVolumeEntry(BabuDBStorageHelper.createDirStatsKey(parentId), update) != null) {
+                update.addUpdate(VOLUME_INDEX, BabuDBStorageHelper.createDirStatsKey(fileId),
+                        BabuDBStorageHelper.createDirStatsValue(parentId, 0, 0, 0));
+                addToDirStats(parentId, 0, 0, 1, update);
+            }
+        } catch (BabuDBException exc) {
+            throw new DatabaseException(exc);
+        }
+
         return fileMetadata;
     }
 
@@ -367,6 +390,12 @@ public class BabuDBStorageManager implements StorageManager {
         volume.updateVolumeSize(size, update);
         updateCount(NUM_FILES_KEY, true, update);
 
+        try {
+            addToDirStats(parentId, size, 1, 0, update);
+        } catch (BabuDBException exc) {
+            throw new DatabaseException(exc);
+        }
+
         return fileMetadata;
     }
 
@@ -491,9 +520,17 @@ public class BabuDBStorageManager implements StorageManager {
                 // if a file is deleted, update file count and volume size
                 if (file.isDirectory()) {
                     updateCount(NUM_DIRS_KEY, false, update);
+
+                    addToDirStats(parentId, 0, 0, -1, update);
+                    update.addUpdate(VOLUME_INDEX, BabuDBStorageHelper.createDirStatsKey(file.getId()), null);
+
                 } else if (file.getXLocList() != null) {
                     volume.updateVolumeSize(-file.getSize(), update);
                     updateCount(NUM_FILES_KEY, false, update);
+
+                    addToDirStats(getAccountingParentId(file, update), -file.getSize(), -1, 0, update);
+                    if (file.getIndexId() == FILE_ID_INDEX)
+                        update.addUpdate(VOLUME_INDEX, BabuDBStorageHelper.createFileParentKey(file.getId()), null);
                 }
 
             }
@@ -546,6 +583,18 @@ public class BabuDBStorageManager implements StorageManager {
 
     }
 
+    @Override
+    public DatabaseResultSet<FileMetadata> getChildren(long parentId, String after, int num)
+        throws DatabaseException {
+
+        try {
+            return BabuDBStorageHelper.getChildren(database, parentId, after, num);
+        } catch (Exception exc) {
+            throw new DatabaseException(exc);
+        }
+
+    }
+
     @Override
     public StripingPolicy getDefaultStripingPolicy(long fileId) throws DatabaseException {
 
@@ -947,6 +996,12 @@ public class BabuDBStorageManager implements StorageManager {
             update.addUpdate(FILE_INDEX, md.getRCMetadata().getKey(),
                     BabuDBStorageHelper.createLinkTarget(metadata.getId()));
             update.addUpdate(FILE_INDEX, md.getFCMetadataKey(), null);
+
+            // the parent ID can no longer be derived from the file's key, so
+            // keep the directory to which the file size is accounted
+            if (!md.isDirectory())
+                update.addUpdate(VOLUME_INDEX, BabuDBStorageHelper.createFileParentKey(metadata.getId()),
+                        BabuDBStorageHelper.createFilePrefixKey(getParentIdFromKey(md)));
         }
 
         // create an entry for the new link to the metadata in the file
@@ -957,6 +1012,65 @@ public class BabuDBStorageManager implements StorageManager {
 
     }
 
+    @Override
+    public void updateDirStats(FileMetadata file, long sizeDiff, AtomicDBUpdate update) throws DatabaseException {
+
+        try {
+            addToDirStats(getAccountingParentId((BufferBackedFileMetadata) file, update), sizeDiff, 0, 0, update);
+        } catch (BabuDBException exc) {
+            throw new DatabaseException(exc);
+        }
+    }
+
+    @Override
+    public void moveDirStats(FileMetadata metadata, long sourceParentId, long targetParentId,
+                             AtomicDBUpdate update) throws DatabaseException {
+
+        try {
+
+            if (metadata.isDirectory()) {
+
+                byte[] key = BabuDBStorageHelper.createDirStatsKey(metadata.getId());
+                byte[] value = getVolumeEntry(key, update);
+                if (value == null)
+                    return;
+
+                // move the entire subtree, including the directory itself
+                long[] stats = BabuDBStorageHelper.getDirStats(value);
+                addToDirStats(sourceParentId, -stats[0], -stats[1], -stats[2] - 1, update);
+                addToDirStats(targetParentId, stats[0], stats[1], stats[2] + 1, update);
+
+                ByteBuffer.wrap(value).putLong(0, targetParentId);
+                update.addUpdate(VOLUME_INDEX, key, value);
+
+            } else if (metadata.getXLocList() != null) {
+
+                long size = metadata.getSize();
+                addToDirStats(getAccountingParentId((BufferBackedFileMetadata) metadata, update), -size, -1, 0,
+                        update);
+                addToDirStats(targetParentId, size, 1, 0, update);
+
+                update.addUpdate(VOLUME_INDEX, BabuDBStorageHelper.createFileParentKey(metadata.getId()),
+                        BabuDBStorageHelper.createFilePrefixKey(targetParentId));
+            }
+
+        } catch (BabuDBException exc) {
+            throw new DatabaseException(exc);
+        }
+    }
+
+    @Override
+    public long[] getDirStats(long dirId) throws DatabaseException {
+
+        try {
+            byte[] value = database.lookup(VOLUME_INDEX, BabuDBStorageHelper.createDirStatsKey(dirId), null).get();
+            return value == null ? null : BabuDBStorageHelper.getDirStats(value);
+
+        } catch (BabuDBException exc) {
+            throw new DatabaseException(exc);
+        }
+    }
+
     @Override
     public FileMetadata[] resolvePath(final Path path) throws DatabaseException {
 
@@ -1304,14 +1418,27 @@ public class BabuDBStorageManager implements StorageManager {
         DBAdminHelper.dumpVolume(xmlWriter, this);
     }
 
-    protected void updateVolumeSize(long diff, AtomicDBUpdate update) throws DatabaseException {
+    @Override
+    public DatabaseResultSet<byte[][]> getRawEntries(int index, byte[] from, byte[] to)
+            throws DatabaseException {
+        try {
+            return BabuDBStorageHelper.getRawEntries(database, index, from, to);
+        } catch (BabuDBException exc) {
+            throw new DatabaseException(exc);
+        }
+    }
 
-        long newSize = getVolumeSize() + diff;
+    protected void updateVolumeSize(long diff, AtomicDBUpdate update) throws DatabaseException {
 
-        byte[] sizeBytes = new byte[8];
-        ByteBuffer.wrap(sizeBytes).putLong(0, newSize);
+        try {
+            byte[] sizeBytes = getVolumeMetadata(VOL_SIZE_KEY, update);
+            ByteBuffer sizeBuf = ByteBuffer.wrap(sizeBytes);
+            sizeBuf.putLong(0, sizeBuf.getLong(0) + diff);
 
-        update.addUpdate(VOLUME_INDEX, VOL_SIZE_KEY, sizeBytes);
+            update.addUpdate(VOLUME_INDEX, VOL_SIZE_KEY, sizeBytes);
+        } catch (BabuDBException exc) {
+            throw new DatabaseException(exc);
+        }
     }
 
     protected long getVolumeSize() throws DatabaseException {
@@ -1362,7 +1489,7 @@ public class BabuDBStorageManager implements StorageManager {
     private void updateCount(byte[] key, boolean increment, AtomicDBUpdate update) throws DatabaseException {
 
         try {
-            byte[] countBytes = BabuDBStorageHelper.getVolumeMetadata(database, key);
+            byte[] countBytes = getVolumeMetadata(key, update);
             ByteBuffer countBuf = ByteBuffer.wrap(countBytes);
             countBuf.putLong(0, countBuf.getLong() + (increment ? 1 : -1));
 
@@ -1372,6 +1499,85 @@ public class BabuDBStorageManager implements StorageManager {
         }
     }
 
+    /**
+     * Returns a copy of a volume metadata entry, taking into account changes of the entry that have been
+     * added to the given update before. This allows for multiple changes of the same counter in a single
+     * update.
+     */
+    private byte[] getVolumeMetadata(byte[] key, AtomicDBUpdate update) throws BabuDBException {
+
+        if (update instanceof AtomicBabuDBUpdate) {
+            byte[] value = ((AtomicBabuDBUpdate) update).getVolumeMetadata(key);
+            if (value != null)
+                return value.clone();
+        }
+
+        return BabuDBStorageHelper.getVolumeMetadata(database, key);
+    }
+
+    /**
+     * Adds the given differences to the recursive statistics of a directory and all its ancestors.
+     */
+    private void addToDirStats(long dirId, long sizeDiff, long filesDiff, long dirsDiff, AtomicDBUpdate update)
+            throws BabuDBException {
+
+        // walk up to the root directory, whose parent ID is 0; the walk also
+        // ends at directories without statistics, as statistics are not
+        // maintained for the entire volume in this case
+        while (dirId > 0) {
+
+            byte[] key = BabuDBStorageHelper.createDirStatsKey(dirId);
+            byte[] value = getVolumeEntry(key, update);
+            if (value == null)
+                return;
+
+            ByteBuffer buf = ByteBuffer.wrap(value);
+            buf.putLong(8, buf.getLong(8) + sizeDiff);
+            buf.putLong(16, buf.getLong(16) + filesDiff);
+            buf.putLong(24, buf.getLong(24) + dirsDiff);
+            update.addUpdate(VOLUME_INDEX, key, value);
+
+            dirId = buf.getLong(0);
+        }
+    }
+
+    /**
+     * Returns the ID of the directory to which the size of a file is accounted. This is the parent directory,
+     * unless the file has been moved or hard-linked, in which case the directory is recorded in the volume index.
+     *
+     * @return the directory ID, or -1 if the directory is unknown
+     */
+    private long getAccountingParentId(BufferBackedFileMetadata file, AtomicDBUpdate update)
+            throws BabuDBException {
+
+        if (file.getIndexId() == FILE_INDEX)
+            return getParentIdFromKey(file);
+
+        byte[] value = getVolumeEntry(BabuDBStorageHelper.createFileParentKey(file.getId()), update);
+        return value == null ? -1 : ByteBuffer.wrap(value).getLong(0);
+    }
+
+    private static long getParentIdFromKey(BufferBackedFileMetadata file) {
+        return ByteBuffer.wrap(file.getFCMetadataKey()).getLong(0);
+    }
+
+    /**
+     * Returns a copy of a volume index entry, taking into account changes of the entry that have been added to
+     * the given update before.
+     *
+     * @return the entry, or <code>null</code> if it does not exist
+     */
+    private byte[] getVolumeEntry(byte[] key, AtomicDBUpdate update) throws BabuDBException {
+
+        if (update instanceof AtomicBabuDBUpdate && ((AtomicBabuDBUpdate) update).containsVolumeMetadata(key)) {
+            byte[] value = ((AtomicBabuDBUpdate) update).getVolumeMetadata(key);
+            return value == null ? null : value.clone();
+        }
+
+        byte[] value = database.lookup(VOLUME_INDEX, key, null).get();
+        return value == null ? null : value.clone();
+    }
+
     private void initCount(byte[] key, AtomicDBUpdate update) {
 
         byte[] countBytes = new byte[Long.SIZE / 8];
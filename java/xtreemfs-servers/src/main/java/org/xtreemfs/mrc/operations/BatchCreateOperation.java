@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.mrc.operations;
+
+import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.xtreemfs.common.ReplicaUpdatePolicies;
+import org.xtreemfs.foundation.TimeSync;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.POSIXErrno;
+import org.xtreemfs.mrc.MRCRequest;
+import org.xtreemfs.mrc.MRCRequestDispatcher;
+import org.xtreemfs.mrc.UserException;
+import org.xtreemfs.mrc.ac.FileAccessManager;
+import org.xtreemfs.mrc.database.AtomicDBUpdate;
+import org.xtreemfs.mrc.database.DatabaseException;
+import org.xtreemfs.mrc.database.DatabaseException.ExceptionType;
+import org.xtreemfs.mrc.database.StorageManager;
+import org.xtreemfs.mrc.database.VolumeInfo;
+import org.xtreemfs.mrc.metadata.FileMetadata;
+import org.xtreemfs.mrc.metadata.ReplicationPolicy;
+import org.xtreemfs.mrc.metadata.XLocList;
+import org.xtreemfs.mrc.quota.QuotaFileInformation;
+import org.xtreemfs.mrc.utils.MRCHelper;
+import org.xtreemfs.mrc.utils.Path;
+import org.xtreemfs.mrc.utils.PathResolver;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_batch_result;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_create_filesRequest;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_create_filesResponse;
+
+/**
+ * Creates multiple empty files of a volume with a single request. All files are created with a single
+ * atomic database update. Replicas are assigned to the new files like with an <code>open</code> call with
+ * <code>O_CREAT</code>.
+ * <p>
+ * Errors are reported per entry, e.g. if a file exists already; the remaining files are created
+ * nevertheless.
+ */
+public class BatchCreateOperation extends MRCOperation {
+
+    public BatchCreateOperation(MRCRequestDispatcher master) {
+        super(master);
+    }
+
+    @Override
+    public void startRequest(MRCRequest rq) throws Throwable {
+
+        // perform master redirect if necessary
+        if (master.getReplMasterUUID() != null
+            && !master.getReplMasterUUID().equals(master.getConfig().getUUID().toString()))
+            throw new DatabaseException(ExceptionType.REDIRECT);
+
+        final xtreemfs_create_filesRequest rqArgs = (xtreemfs_create_filesRequest) rq.getRequestArgs();
+
+        final FileAccessManager faMan = master.getFileAccessManager();
+
+        validateContext(rq);
+
+        if ((rqArgs.getMode() & GlobalTypes.SYSTEM_V_FCNTL.SYSTEM_V_FCNTL_H_S_IFIFO.getNumber()) != 0)
+            throw new UserException(POSIXErrno.POSIX_ERROR_EIO, "FIFOs not supported");
+
+        final StorageManager sMan = master.getVolumeManager().getStorageManagerByName(rqArgs.getVolumeName());
+        final VolumeInfo volume = sMan.getVolumeInfo();
+
+        AtomicDBUpdate update = sMan.createAtomicDBUpdate(master, rq);
+
+        // atime, ctime, mtime
+        int time = (int) (TimeSync.getGlobalTime() / 1000);
+
+        // file IDs are assigned consecutively, as the last file ID is only
+        // updated in the database when the update is executed
+        long fileId = sMan.getNextFileId();
+        int numCreated = 0;
+
+        // new files are not visible to the path resolver before the update
+        // has been executed
+        Set<String> createdPaths = new HashSet<String>();
+
+        xtreemfs_create_filesResponse.Builder response = xtreemfs_create_filesResponse.newBuilder();
+
+        for (String pathString : rqArgs.getPathsList()) {
+
+            xtreemfs_batch_result.Builder result = xtreemfs_batch_result.newBuilder();
+
+            try {
+                Path path = new Path(rqArgs.getVolumeName(), pathString);
+                PathResolver res = new PathResolver(sMan, path);
+
+                // check whether the path prefix is searchable
+                faMan.checkSearchPermission(sMan, res, rq.getDetails().userId, rq.getDetails().superUser, rq
+                        .getDetails().groupIds);
+
+                // check whether the file exists already
+                res.checkIfFileExistsAlready();
+                if (createdPaths.contains(path.toString()))
+                    throw new UserException(POSIXErrno.POSIX_ERROR_EEXIST, "file or directory '" + pathString
+                        + "' exists already");
+
+                // check whether the parent directory grants write access
+                faMan.checkPermission(FileAccessManager.O_WRONLY, sMan, res.getParentDir(), res
+                        .getParentsParentId(), rq.getDetails().userId, rq.getDetails().superUser, rq
+                        .getDetails().groupIds);
+
+                // inherit the groupId if the setgid bit is set
+                String groupId = rq.getDetails().groupIds.get(0);
+                int parentMode = faMan.getPosixAccessMode(sMan, res.getParentDir(), rq.getDetails().userId, rq
+                        .getDetails().groupIds);
+                if ((parentMode & 02000) > 0)
+                    groupId = res.getParentDir().getOwningGroupId();
+
+                // check quota
+                QuotaFileInformation quotaFileInformation = new QuotaFileInformation(volume.getId(), fileId,
+                    rq.getDetails().userId, groupId, 0, 1);
+                master.getMrcVoucherManager().checkVoucherAvailability(quotaFileInformation);
+
+                // assign the replicas before adding anything to the update, so
+                // that a failure does not leave an incomplete file behind
+                ReplicationPolicy defaultReplPolicy = sMan.getDefaultReplicationPolicy(res.getParentDirId());
+                if (defaultReplPolicy == null)
+                    defaultReplPolicy = sMan.getDefaultReplicationPolicy(1);
+                boolean replicateOnClose = defaultReplPolicy != null
+                    && ReplicaUpdatePolicies.isRO(defaultReplPolicy.getName());
+
+                XLocList xLocList = MRCHelper.createXLocList(defaultReplPolicy, replicateOnClose, sMan, master
+                        .getOSDStatusManager(), volume, res.getParentDirId(), path.toString(),
+                    ((InetSocketAddress) rq.getRPCRequest().getSenderAddress()).getAddress(), rqArgs
+                            .getCoordinates(), null);
+
+                // create the metadata object
+                FileMetadata file = sMan.createFile(fileId, res.getParentDirId(), res.getFileName(), time, time,
+                    time, rq.getDetails().userId, groupId, rqArgs.getMode(), rqArgs.getAttributes(), 0, false, 0,
+                    0, update);
+                file.setXLocList(xLocList);
+                sMan.setMetadata(file, FileMetadata.RC_METADATA, update);
+
+                // update POSIX timestamps of parent directory
+                MRCHelper.updateFileTimes(res.getParentsParentId(), res.getParentDir(), false, true, true, sMan,
+                    time, update);
+
+                createdPaths.add(path.toString());
+                fileId++;
+                numCreated++;
+
+                result.setPosixErrno(POSIXErrno.POSIX_ERROR_NONE.getNumber());
+
+            } catch (UserException exc) {
+                result.setPosixErrno(exc.getErrno().getNumber());
+                if (exc.getMessage() != null)
+                    result.setErrorMessage(exc.getMessage());
+            }
+
+            response.addResults(result);
+        }
+
+        // set the response
+        rq.setResponse(response.setTimestampS(time).build());
+
+        if (numCreated == 0) {
+            finishRequest(rq);
+            return;
+        }
+
+        // set the file ID of the last new file as the last one
+        sMan.setLastFileId(fileId - 1, update);
+
+        update.execute();
+    }
+
+}
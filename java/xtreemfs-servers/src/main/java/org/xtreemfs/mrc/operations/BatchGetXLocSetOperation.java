@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.mrc.operations;
+
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.POSIXErrno;
+import org.xtreemfs.mrc.MRCRequest;
+import org.xtreemfs.mrc.MRCRequestDispatcher;
+import org.xtreemfs.mrc.UserException;
+import org.xtreemfs.mrc.ac.FileAccessManager;
+import org.xtreemfs.mrc.database.StorageManager;
+import org.xtreemfs.mrc.database.VolumeInfo;
+import org.xtreemfs.mrc.metadata.FileMetadata;
+import org.xtreemfs.mrc.utils.Path;
+import org.xtreemfs.mrc.utils.PathResolver;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_batch_result;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_get_xlocsetsRequest;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_get_xlocsetsResponse;
+
+/**
+ * Returns the current XLocSets of multiple files of a volume with a single request, e.g. to determine the
+ * locations of all files of a directory. Errors are reported per entry, so that a missing file does not fail the
+ * entire request.
+ */
+public class BatchGetXLocSetOperation extends MRCOperation {
+
+    public BatchGetXLocSetOperation(MRCRequestDispatcher master) {
+        super(master);
+    }
+
+    @Override
+    public void startRequest(MRCRequest rq) throws Throwable {
+
+        final xtreemfs_get_xlocsetsRequest rqArgs = (xtreemfs_get_xlocsetsRequest) rq.getRequestArgs();
+
+        final FileAccessManager faMan = master.getFileAccessManager();
+
+        validateContext(rq);
+
+        final StorageManager sMan = master.getVolumeManager().getStorageManagerByName(rqArgs.getVolumeName());
+        final VolumeInfo volume = sMan.getVolumeInfo();
+
+        xtreemfs_get_xlocsetsResponse.Builder response = xtreemfs_get_xlocsetsResponse.newBuilder();
+
+        for (String path : rqArgs.getPathsList()) {
+
+            xtreemfs_batch_result.Builder result = xtreemfs_batch_result.newBuilder();
+
+            try {
+                final Path p = new Path(rqArgs.getVolumeName(), path);
+                PathResolver res = new PathResolver(sMan, p);
+
+                // check whether file exists
+                res.checkIfFileDoesNotExist();
+                FileMetadata file = res.getFile();
+
+                // check whether the path prefix is searchable
+                faMan.checkSearchPermission(sMan, res, rq.getDetails().userId, rq.getDetails().superUser, rq
+                        .getDetails().groupIds);
+
+                if (file.isDirectory()) {
+                    throw new UserException(POSIXErrno.POSIX_ERROR_EISDIR, path + " is a directory");
+                }
+
+                if (sMan.getSoftlinkTarget(file.getId()) != null) {
+                    throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "file '" + path
+                        + "' is a symbolic link");
+                }
+
+                result.setXlocset(GetXLocSetOperation.createXLocSet(master, rq, volume, file,
+                    rqArgs.getCoordinates(), p.toString()));
+                result.setPosixErrno(POSIXErrno.POSIX_ERROR_NONE.getNumber());
+
+            } catch (UserException exc) {
+                result.setPosixErrno(exc.getErrno().getNumber());
+                if (exc.getMessage() != null)
+                    result.setErrorMessage(exc.getMessage());
+            }
+
+            response.addResults(result);
+        }
+
+        // set the response
+        rq.setResponse(response.build());
+
+        finishRequest(rq);
+    }
+
+}
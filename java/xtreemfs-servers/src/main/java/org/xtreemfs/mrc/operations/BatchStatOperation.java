@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.mrc.operations;
+
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.POSIXErrno;
+import org.xtreemfs.mrc.MRCRequest;
+import org.xtreemfs.mrc.MRCRequestDispatcher;
+import org.xtreemfs.mrc.UserException;
+import org.xtreemfs.mrc.ac.FileAccessManager;
+import org.xtreemfs.mrc.database.StorageManager;
+import org.xtreemfs.mrc.database.VolumeInfo;
+import org.xtreemfs.mrc.utils.Path;
+import org.xtreemfs.mrc.utils.PathResolver;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_batch_result;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_getattrsRequest;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_getattrsResponse;
+
+/**
+ * Retrieves the attributes of multiple files and directories of a volume with a single request. Errors are
+ * reported per entry, so that a missing file does not fail the entire request.
+ */
+public class BatchStatOperation extends MRCOperation {
+
+    public BatchStatOperation(MRCRequestDispatcher master) {
+        super(master);
+    }
+
+    @Override
+    public void startRequest(MRCRequest rq) throws Throwable {
+
+        final xtreemfs_getattrsRequest rqArgs = (xtreemfs_getattrsRequest) rq.getRequestArgs();
+
+        final FileAccessManager faMan = master.getFileAccessManager();
+
+        validateContext(rq);
+
+        final StorageManager sMan = master.getVolumeManager().getStorageManagerByName(rqArgs.getVolumeName());
+        final VolumeInfo volume = sMan.getVolumeInfo();
+
+        xtreemfs_getattrsResponse.Builder response = xtreemfs_getattrsResponse.newBuilder();
+
+        for (String path : rqArgs.getPathsList()) {
+
+            xtreemfs_batch_result.Builder result = xtreemfs_batch_result.newBuilder();
+
+            try {
+                PathResolver res = new PathResolver(sMan, new Path(rqArgs.getVolumeName(), path));
+
+                // check whether the path prefix is searchable
+                faMan.checkSearchPermission(sMan, res, rq.getDetails().userId, rq.getDetails().superUser, rq
+                        .getDetails().groupIds);
+
+                // check whether file exists
+                res.checkIfFileDoesNotExist();
+
+                result.setStbuf(StatOperation.createStat(faMan, sMan, volume, res.getFile(),
+                    rq.getDetails().userId, rq.getDetails().groupIds));
+                result.setPosixErrno(POSIXErrno.POSIX_ERROR_NONE.getNumber());
+
+            } catch (UserException exc) {
+                result.setPosixErrno(exc.getErrno().getNumber());
+                if (exc.getMessage() != null)
+                    result.setErrorMessage(exc.getMessage());
+            }
+
+            response.addResults(result);
+        }
+
+        // set the response
+        rq.setResponse(response.build());
+
+        finishRequest(rq);
+    }
+
+}
@@ -27,6 +27,7 @@ import org.xtreemfs.mrc.database.StorageManager;
 import org.xtreemfs.mrc.database.VolumeInfo;
 import org.xtreemfs.mrc.database.VolumeManager;
 import org.xtreemfs.mrc.metadata.FileMetadata;
+import org.xtreemfs.mrc.utils.BinaryDBDump;
 import org.xtreemfs.pbrpc.generatedinterfaces.Common.emptyResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_dump_restore_databaseRequest;
 
@@ -42,9 +43,12 @@ public class DumpDBOperation extends MRCOperation {
         
         private List<StorageManager> sManList;
         
-        public DumpWriter(List<StorageManager> sManList, File dumpFile) {
+        private boolean              binary;
+        
+        public DumpWriter(List<StorageManager> sManList, File dumpFile, boolean binary) {
             this.dumpFile = dumpFile;
             this.sManList = sManList;
+            this.binary = binary;
         }
         
         public void run() {
@@ -52,6 +56,12 @@ public class DumpDBOperation extends MRCOperation {
             File df = new File(dumpFile + ".inprogress");
             
             try {
+                if (binary) {
+                    BinaryDBDump.dump(df, sManList);
+                    df.renameTo(dumpFile);
+                    return;
+                }
+                
                 BufferedWriter xmlWriter = new BufferedWriter(new FileWriter(df));
                 xmlWriter.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
                 xmlWriter.write("<filesystem dbversion=\"" + VersionManagement.getMrcDataVersion() + "\">\n");
@@ -125,7 +135,7 @@ public class DumpDBOperation extends MRCOperation {
             }
             
             // write the dump asynchronously
-            DumpWriter dw = new DumpWriter(storageManagers, new File(rqArgs.getDumpFile()));
+            DumpWriter dw = new DumpWriter(storageManagers, new File(rqArgs.getDumpFile()), rqArgs.getBinary());
             dw.start();
         }
         
@@ -26,6 +26,7 @@ import org.xtreemfs.mrc.utils.Path;
 import org.xtreemfs.mrc.utils.PathResolver;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.Replica;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.Replicas;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.VivaldiCoordinates;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.XLocSet;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_get_xlocsetRequest;
 
@@ -115,29 +116,39 @@ public class GetXLocSetOperation extends MRCOperation {
                     + "' is a symbolic link");
         }
 
+        String path = null;
+        if (rqArgs.hasVolumeName() && rqArgs.hasPath()) {
+            path = new Path(rqArgs.getVolumeName(), rqArgs.getPath()).toString();
+        }
+
+        // Set the response.
+        rq.setResponse(createXLocSet(master, rq, volume, file, rqArgs.getCoordinates(), path));
+        finishRequest(rq);
+    }
+
+    /**
+     * Creates the XLocSet of a file, with the replicas sorted according to the replica selection policy of the
+     * volume.
+     */
+    static XLocSet createXLocSet(MRCRequestDispatcher master, MRCRequest rq, VolumeInfo volume, FileMetadata file,
+            VivaldiCoordinates coordinates, String path) {
+
         // Get the XLocSet from the XLocList.
         XLocList xLocList = file.getXLocList();
         assert (xLocList != null);
         XLocSet.Builder xLocSetBuilder = Converter.xLocListToXLocSet(xLocList);
 
-        String path = null;
-        if (rqArgs.hasVolumeName() && rqArgs.hasPath()) {
-            path = new Path(rqArgs.getVolumeName(), rqArgs.getPath()).toString();
-        }
-        
         // Sort the XLocSet according to the policy.
         List<Replica> sortedReplList = master.getOSDStatusManager()
                 .getSortedReplicaList(volume.getId(),
                         ((InetSocketAddress) rq.getRPCRequest().getSenderAddress()).getAddress(),
-                        rqArgs.getCoordinates(), xLocSetBuilder.getReplicasList(), xLocList, path)
+                        coordinates, xLocSetBuilder.getReplicasList(), xLocList, path)
                 .getReplicasList();
         xLocSetBuilder.clearReplicas();
         xLocSetBuilder.addAllReplicas(sortedReplList);
         xLocSetBuilder.setReadOnlyFileSize(file.getSize());
 
-        // Set the response.
-        rq.setResponse(xLocSetBuilder.build());
-        finishRequest(rq);
+        return xLocSetBuilder.build();
     }
 
 }
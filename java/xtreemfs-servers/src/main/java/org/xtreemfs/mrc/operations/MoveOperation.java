@@ -336,6 +336,7 @@ public class MoveOperation extends MRCOperation {
         source.setLinkCount(newLinkCount);
         source.setCtime((int) (TimeSync.getGlobalTime() / 1000));
         sMan.link(source, targetParentDirId, targetFileName, update);
+        sMan.moveDirStats(source, sourceParentDirId, targetParentDirId, update);
     }
     
     private static renameResponse buildResponse(int time, FileCredentials.Builder creds) {
@@ -104,7 +104,11 @@ public class ReadDirAndStatOperation extends MRCOperation {
         // get the parent directory
         FileMetadata parentDir = res.getParentDir();
         
-        if (seenEntries == 0 && numEntries > 0) {
+        // if a continuation key is given, '..' and '.' have been returned
+        // already
+        final boolean continued = rqArgs.getContinuationKey().length() > 0;
+        
+        if (seenEntries == 0 && numEntries > 0 && !continued) {
             
             // dir is not root directory
             if (parentDir != null) {
@@ -136,7 +140,8 @@ public class ReadDirAndStatOperation extends MRCOperation {
         
         if (newEtag != knownEtag) {
             
-            if ((seenEntries == 0 && numEntries >= 2) || (seenEntries == 1 && numEntries >= 1)) {
+            if (!continued
+                && ((seenEntries == 0 && numEntries >= 2) || (seenEntries == 1 && numEntries >= 1))) {
                 
                 DirectoryEntry.Builder entry = DirectoryEntry.newBuilder().setName(".");
                 if (!namesOnly)
@@ -145,9 +150,13 @@ public class ReadDirAndStatOperation extends MRCOperation {
                 dirContent.addEntries(entry);
             }
             
-            // get all children
-            DatabaseResultSet<FileMetadata> it = sMan.getChildren(res.getFile().getId(), seenEntries - 2, numEntries
-                - dirContent.getEntriesCount());
+            // get all children; if possible, continue after the last child
+            // returned by the previous call instead of skipping all children
+            // that have been seen already
+            DatabaseResultSet<FileMetadata> it = continued ? sMan.getChildren(res.getFile().getId(), rqArgs
+                    .getContinuationKey(), numEntries - dirContent.getEntriesCount()) : sMan.getChildren(res
+                    .getFile().getId(), seenEntries - 2, numEntries - dirContent.getEntriesCount());
+            String lastChildName = null;
             while (it.hasNext()) {
                 
                 FileMetadata child = it.next();
@@ -156,6 +165,7 @@ public class ReadDirAndStatOperation extends MRCOperation {
                             .isDirectory() ? "directory" : "file");
                     continue;
                 }
+                lastChildName = child.getFileName();
                 
                 DirectoryEntry.Builder entry = DirectoryEntry.newBuilder().setName(child.getFileName());
                 if (!namesOnly)
@@ -165,6 +175,8 @@ public class ReadDirAndStatOperation extends MRCOperation {
             }
             it.destroy();
             
+            if (lastChildName != null)
+                dirContent.setContinuationKey(lastChildName);
         }
         
         // set the response
@@ -29,6 +29,7 @@ import org.xtreemfs.mrc.database.AtomicDBUpdate;
 import org.xtreemfs.mrc.database.DatabaseException;
 import org.xtreemfs.mrc.database.StorageManager;
 import org.xtreemfs.mrc.database.VolumeManager;
+import org.xtreemfs.mrc.utils.BinaryDBDump;
 import org.xtreemfs.mrc.utils.DBAdminHelper;
 import org.xtreemfs.mrc.utils.DBAdminHelper.DBRestoreState;
 import org.xtreemfs.pbrpc.generatedinterfaces.Common.emptyResponse;
@@ -70,9 +71,19 @@ public class RestoreDBOperation extends MRCOperation {
                     POSIXErrno.POSIX_ERROR_EPERM,
                     "Restoring from a dump is only possible on an MRC with no database. Please delete the existing MRC database on the server and restart the MRC!");
             
+            // binary dumps are restored by bulk-inserting the database entries
+            File dumpFile = new File(rqArgs.getDumpFile());
+            if (BinaryDBDump.isBinaryDump(dumpFile)) {
+                BinaryDBDump.restore(dumpFile, vMan, master.getFileAccessManager());
+                
+                rq.setResponse(emptyResponse.getDefaultInstance());
+                finishRequest(rq);
+                return;
+            }
+            
             SAXParserFactory spf = SAXParserFactory.newInstance();
             SAXParser sp = spf.newSAXParser();
-            sp.parse(new File(rqArgs.getDumpFile()), new DefaultHandler() {
+            sp.parse(dumpFile, new DefaultHandler() {
                 
                 private DBRestoreState state;
                 
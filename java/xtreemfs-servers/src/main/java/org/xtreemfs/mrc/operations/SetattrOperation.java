@@ -192,8 +192,9 @@ public class SetattrOperation extends MRCOperation {
                     if (epochChanged)
                         sMan.setMetadata(file, FileMetadata.RC_METADATA, update);
                     
-                    // update the volume size
+                    // update the volume size and the recursive directory sizes
                     sMan.getVolumeInfo().updateVolumeSize(newFileSize - oldFileSize, update);
+                    sMan.updateDirStats(file, newFileSize - oldFileSize, update);
                 }
 
                 else if (Logging.isDebug())
@@ -8,9 +8,13 @@
 
 package org.xtreemfs.mrc.operations;
 
+import java.util.List;
+
+import org.xtreemfs.mrc.MRCException;
 import org.xtreemfs.mrc.MRCRequest;
 import org.xtreemfs.mrc.MRCRequestDispatcher;
 import org.xtreemfs.mrc.ac.FileAccessManager;
+import org.xtreemfs.mrc.database.DatabaseException;
 import org.xtreemfs.mrc.database.StorageManager;
 import org.xtreemfs.mrc.database.VolumeInfo;
 import org.xtreemfs.mrc.database.VolumeManager;
@@ -69,29 +73,8 @@ public class StatOperation extends MRCOperation {
         // retrieve and prepare the metadata to return
         if (knownEtag != newEtag) {
             
-            String linkTarget = sMan.getSoftlinkTarget(file.getId());
-            int mode = faMan.getPosixAccessMode(sMan, file, rq.getDetails().userId, rq.getDetails().groupIds);
-            mode |= linkTarget != null ? GlobalTypes.SYSTEM_V_FCNTL.SYSTEM_V_FCNTL_H_S_IFLNK.getNumber()
-                : file.isDirectory() ? GlobalTypes.SYSTEM_V_FCNTL.SYSTEM_V_FCNTL_H_S_IFDIR.getNumber()
-                    : ((file.getPerms() & GlobalTypes.SYSTEM_V_FCNTL.SYSTEM_V_FCNTL_H_S_IFIFO.getNumber()) != 0) ? GlobalTypes.SYSTEM_V_FCNTL.SYSTEM_V_FCNTL_H_S_IFIFO
-                            .getNumber()
-                        : GlobalTypes.SYSTEM_V_FCNTL.SYSTEM_V_FCNTL_H_S_IFREG.getNumber();
-            
-            long size = linkTarget != null ? linkTarget.length() : file.isDirectory() ? 0 : file.getSize();
-            int blkSize = 0;
-            if ((linkTarget == null) && (!file.isDirectory())) {
-                XLocList xlocList = file.getXLocList();
-                if ((xlocList != null) && (xlocList.getReplicaCount() > 0))
-                    blkSize = xlocList.getReplica(0).getStripingPolicy().getStripeSize() * 1024;
-            }
-            
-            stat.setStbuf(Stat.newBuilder().setDev(volume.getId().hashCode()).setIno(file.getId()).setMode(
-                mode).setNlink(file.getLinkCount()).setUserId(file.getOwnerId()).setGroupId(
-                file.getOwningGroupId()).setSize(size).setAtimeNs((long) file.getAtime() * (long) 1e9)
-                    .setCtimeNs((long) file.getCtime() * (long) 1e9).setMtimeNs(
-                        (long) file.getMtime() * (long) 1e9).setBlksize(blkSize).setTruncateEpoch(
-                        file.isDirectory() ? 0 : file.getEpoch()).setAttributes((int) file.getW32Attrs())
-                    .setEtag(newEtag));
+            stat.setStbuf(createStat(faMan, sMan, volume, file, rq.getDetails().userId,
+                rq.getDetails().groupIds));
             
         }
         
@@ -102,4 +85,48 @@ public class StatOperation extends MRCOperation {
         
     }
     
+    /**
+     * Creates the POSIX attributes of a file or directory, as seen by the given user.
+     * 
+     * @param faMan
+     *            the file access manager
+     * @param sMan
+     *            the storage manager of the volume
+     * @param volume
+     *            the volume
+     * @param file
+     *            the file or directory
+     * @param userId
+     *            the ID of the user
+     * @param groupIds
+     *            the group IDs of the user
+     * @return the attributes
+     */
+    static Stat.Builder createStat(FileAccessManager faMan, StorageManager sMan, VolumeInfo volume,
+        FileMetadata file, String userId, List<String> groupIds) throws DatabaseException, MRCException {
+        
+        String linkTarget = sMan.getSoftlinkTarget(file.getId());
+        int mode = faMan.getPosixAccessMode(sMan, file, userId, groupIds);
+        mode |= linkTarget != null ? GlobalTypes.SYSTEM_V_FCNTL.SYSTEM_V_FCNTL_H_S_IFLNK.getNumber()
+            : file.isDirectory() ? GlobalTypes.SYSTEM_V_FCNTL.SYSTEM_V_FCNTL_H_S_IFDIR.getNumber()
+                : ((file.getPerms() & GlobalTypes.SYSTEM_V_FCNTL.SYSTEM_V_FCNTL_H_S_IFIFO.getNumber()) != 0) ? GlobalTypes.SYSTEM_V_FCNTL.SYSTEM_V_FCNTL_H_S_IFIFO
+                        .getNumber()
+                    : GlobalTypes.SYSTEM_V_FCNTL.SYSTEM_V_FCNTL_H_S_IFREG.getNumber();
+        
+        long size = linkTarget != null ? linkTarget.length() : file.isDirectory() ? 0 : file.getSize();
+        int blkSize = 0;
+        if ((linkTarget == null) && (!file.isDirectory())) {
+            XLocList xlocList = file.getXLocList();
+            if ((xlocList != null) && (xlocList.getReplicaCount() > 0))
+                blkSize = xlocList.getReplica(0).getStripingPolicy().getStripeSize() * 1024;
+        }
+        
+        return Stat.newBuilder().setDev(volume.getId().hashCode()).setIno(file.getId()).setMode(mode)
+                .setNlink(file.getLinkCount()).setUserId(file.getOwnerId()).setGroupId(file.getOwningGroupId())
+                .setSize(size).setAtimeNs((long) file.getAtime() * (long) 1e9)
+                .setCtimeNs((long) file.getCtime() * (long) 1e9).setMtimeNs((long) file.getMtime() * (long) 1e9)
+                .setBlksize(blkSize).setTruncateEpoch(file.isDirectory() ? 0 : file.getEpoch())
+                .setAttributes((int) file.getW32Attrs()).setEtag(file.getCtime() + file.getMtime());
+    }
+    
 }
@@ -33,6 +33,7 @@ import org.xtreemfs.mrc.metadata.FileMetadata;
 import org.xtreemfs.mrc.metadata.ReplicationPolicy;
 import org.xtreemfs.mrc.metadata.XLoc;
 import org.xtreemfs.mrc.metadata.XLocList;
+import org.xtreemfs.mrc.stages.FileSizeUpdateBuffer;
 import org.xtreemfs.mrc.utils.Converter;
 import org.xtreemfs.mrc.utils.MRCHelper;
 import org.xtreemfs.mrc.utils.MRCHelper.GlobalFileIdResolver;
@@ -81,6 +82,40 @@ public class UpdateFileSizeOperation extends MRCOperation {
             throw new UserException(POSIXErrno.POSIX_ERROR_ENOENT, "file '" + cap.getFileId()
                 + "' does not exist");
         
+        // absorb size updates of files that are being written; they will be
+        // written to the database with the next flush of the buffer
+        final FileSizeUpdateBuffer sizeBuffer = master.getProcStage().getFileSizeUpdateBuffer();
+        if (sizeBuffer.isEnabled() && !rqArgs.getCloseFile() && rqArgs.getOsdWriteResponse().hasSizeInBytes()) {
+            
+            if (file.isReadOnly())
+                throw new UserException(POSIXErrno.POSIX_ERROR_EPERM, "file '" + cap.getFileId()
+                    + "' is read-only");
+            
+            if (!rqArgs.getOsdWriteResponse().hasTruncateEpoch())
+                throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL,
+                    "missing truncate epoch in OSDWriteResponse");
+            
+            long newFileSize = rqArgs.getOsdWriteResponse().getSizeInBytes();
+            int epochNo = rqArgs.getOsdWriteResponse().getTruncateEpoch();
+            
+            int epoch = sizeBuffer.getEpoch(idRes.getVolumeId(), file);
+            if (epochNo > epoch
+                || (epochNo == epoch && newFileSize > sizeBuffer.getSize(idRes.getVolumeId(), file)))
+                sizeBuffer.put(idRes.getVolumeId(), file.getId(), newFileSize, epochNo,
+                    (int) (TimeSync.getGlobalTime() / 1000));
+            
+            else if (Logging.isDebug())
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this,
+                    "received outdated file size update: size=%d, epoch=%d", newFileSize, epochNo);
+            
+            rq.setResponse(emptyResponse.getDefaultInstance());
+            finishRequest(rq);
+            return;
+        }
+        
+        // write buffered sizes before the file size is checked
+        sizeBuffer.flush(false);
+        
         AtomicDBUpdate update = sMan.createAtomicDBUpdate(master, rq);
         
         // update the file size if necessary
@@ -98,43 +133,11 @@ public class UpdateFileSizeOperation extends MRCOperation {
             int epochNo = rqArgs.getOsdWriteResponse().getTruncateEpoch();
             
             // only accept valid file size updates
-            if (epochNo >= file.getEpoch()) {
-                
-                boolean epochChanged = epochNo > file.getEpoch();
-                
-                // accept any file size in a new epoch but only larger file
-                // sizes in the current epoch
-                if (epochChanged || newFileSize > file.getSize()) {
-                    
-                    long oldFileSize = file.getSize();
-                    int time = (int) (TimeSync.getGlobalTime() / 1000);
-                    
-                    file.setSize(newFileSize);
-                    file.setEpoch(epochNo);
-                    file.setCtime(time);
-                    file.setMtime(time);
-                    
-                    sMan.setMetadata(file, FileMetadata.FC_METADATA, update);
-                    
-                    if (epochChanged)
-                        sMan.setMetadata(file, FileMetadata.RC_METADATA, update);
-                    
-                    // update the volume size
-                    sMan.getVolumeInfo().updateVolumeSize(newFileSize - oldFileSize, update);
-                }
-
-                else if (Logging.isDebug())
-                    Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this,
-                        "received update for outdated file size: " + newFileSize + ", current file size="
-                            + file.getSize());
-            }
-
-            else {
-                if (Logging.isDebug())
-                    Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this,
-                        "received file size update w/ outdated epoch: " + epochNo + ", current epoch="
-                            + file.getEpoch());
-            }
+            if (!FileSizeUpdateBuffer.applyFileSize(sMan, file, newFileSize, epochNo,
+                (int) (TimeSync.getGlobalTime() / 1000), update) && Logging.isDebug())
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this,
+                    "received outdated file size update: size=%d, epoch=%d, current size=%d, current epoch=%d",
+                    newFileSize, epochNo, file.getSize(), file.getEpoch());
         }
         
         // check if file is closed and on-close replication is required
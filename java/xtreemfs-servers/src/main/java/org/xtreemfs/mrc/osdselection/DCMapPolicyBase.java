@@ -177,20 +177,23 @@ public abstract class DCMapPolicyBase implements OSDSelectionPolicy {
         if(!initialized)
             return -1;
         
-        Integer cached = matchingDCcache.get(addr);
-        if (cached == null) {
-            for (int i = 0; i < matchers.length; i++) {
-                for (int j = 0; j < matchers[i].length; j++) {
-                    if (matchers[i][j].matches(addr)) {
-                        matchingDCcache.put(addr, i);
-                        return i;
+        // policies may be used by concurrent requests
+        synchronized (matchingDCcache) {
+            Integer cached = matchingDCcache.get(addr);
+            if (cached == null) {
+                for (int i = 0; i < matchers.length; i++) {
+                    for (int j = 0; j < matchers[i].length; j++) {
+                        if (matchers[i][j].matches(addr)) {
+                            matchingDCcache.put(addr, i);
+                            return i;
+                        }
                     }
                 }
+                matchingDCcache.put(addr, -1);
+                return -1;
+            } else {
+                return cached;
             }
-            matchingDCcache.put(addr, -1);
-            return -1;
-        } else {
-            return cached;
         }
     }
     
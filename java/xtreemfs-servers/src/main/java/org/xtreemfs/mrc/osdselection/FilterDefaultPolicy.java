@@ -32,7 +32,7 @@ import org.xtreemfs.pbrpc.generatedinterfaces.OSD.OSDHealthResult;
  * 
  * @author stender
  */
-public class FilterDefaultPolicy implements OSDSelectionPolicy {
+public class FilterDefaultPolicy implements StaticOSDFilterPolicy {
     
     public static final short       POLICY_ID           = (short) OSDSelectionPolicyType.OSD_SELECTION_POLICY_FILTER_DEFAULT
                                                                 .getNumber();
@@ -127,6 +127,11 @@ public class FilterDefaultPolicy implements OSDSelectionPolicy {
         return false;
     }
     
+    @Override
+    public boolean excludesUsedOSDs() {
+        return true;
+    }
+    
     @Override
     public void setAttribute(String key, String value) {
         if (OFFLINE_TIME_SECS.equals(key)) {
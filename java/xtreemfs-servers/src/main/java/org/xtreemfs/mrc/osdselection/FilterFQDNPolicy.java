@@ -31,7 +31,7 @@ import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.VivaldiCoordinates;
  * 
  * @author stender
  */
-public class FilterFQDNPolicy implements OSDSelectionPolicy {
+public class FilterFQDNPolicy implements StaticOSDFilterPolicy {
     
     public static final short   POLICY_ID = (short) OSDSelectionPolicyType.OSD_SELECTION_POLICY_FILTER_FQDN
                                                   .getNumber();
@@ -69,6 +69,11 @@ public class FilterFQDNPolicy implements OSDSelectionPolicy {
         return filteredOSDs;
     }
     
+    @Override
+    public boolean excludesUsedOSDs() {
+        return false;
+    }
+    
     @Override
     public void setAttribute(String key, String value) {
         if (key.equals(DOMAINS)) {
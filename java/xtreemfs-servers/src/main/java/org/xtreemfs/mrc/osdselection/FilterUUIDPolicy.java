@@ -30,7 +30,7 @@ import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.VivaldiCoordinates;
  *
  * @author stender, seibert
  */
-public class FilterUUIDPolicy implements OSDSelectionPolicy {
+public class FilterUUIDPolicy implements StaticOSDFilterPolicy {
 
     public static final short POLICY_ID = (short) OSDSelectionPolicyType
             .OSD_SELECTION_POLICY_FILTER_UUID
@@ -73,6 +73,11 @@ public class FilterUUIDPolicy implements OSDSelectionPolicy {
         return filteredOSDs;
     }
 
+    @Override
+    public boolean excludesUsedOSDs() {
+        return false;
+    }
+
     @Override
     public void setAttribute(String key, String value) {
 
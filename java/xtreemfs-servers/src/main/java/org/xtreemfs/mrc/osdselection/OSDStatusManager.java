@@ -10,15 +10,24 @@ package org.xtreemfs.mrc.osdselection;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.xtreemfs.common.KeyValuePairs;
+import org.xtreemfs.dir.data.ServiceRegistry;
 import org.xtreemfs.foundation.LifeCycleThread;
+import org.xtreemfs.foundation.TimeSync;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
+import org.xtreemfs.foundation.pbrpc.client.PBRPCException;
 import org.xtreemfs.foundation.pbrpc.client.RPCAuthentication;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.ErrorType;
 import org.xtreemfs.foundation.util.OutputUtils;
 import org.xtreemfs.mrc.MRCRequestDispatcher;
 import org.xtreemfs.mrc.database.DatabaseException;
@@ -26,14 +35,23 @@ import org.xtreemfs.mrc.database.VolumeChangeListener;
 import org.xtreemfs.mrc.database.VolumeInfo;
 import org.xtreemfs.mrc.metadata.XLocList;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.Service;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceDataMap;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceSet;
 import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceType;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIR.serviceGetUpdatesResponse;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.KeyValuePair;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.Replica;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.Replicas;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.VivaldiCoordinates;
 
 /**
  * Checks regularly for suitable OSDs for each volume.
+ * <p>
+ * For each volume, an immutable {@link VolumeOSDFilter} is published that
+ * contains the precomputed set of eligible OSDs. It is replaced whenever the
+ * set of known OSDs or the volume's policy attributes change. Requests for
+ * usable OSDs and sorted replica lists are served from these filters without
+ * locking.
  * 
  * @author bjko
  */
@@ -47,17 +65,35 @@ public class OSDStatusManager extends LifeCycleThread implements VolumeChangeLis
     /**
      * A list of volumes registered with the thread.
      */
-    private final Map<String, VolumeOSDFilter> volumeMap;
+    private final ConcurrentMap<String, VolumeOSDFilter> volumeMap;
     
     /**
      * The latest set of all known OSDs fetched from the Directory Service.
      */
-    private ServiceSet.Builder                 knownOSDs;
+    private volatile ServiceSet                knownOSDs;
     
     /**
-     * A map containing all known OSDs sorted by their UUIDs.
+     * An unmodifiable map containing all known OSDs sorted by their UUIDs.
      */
-    private final Map<String, Service>               knownOSDMap;
+    private volatile Map<String, Service>      knownOSDMap;
+    
+    /**
+     * All OSDs registered at the Directory Service, sorted by their UUIDs.
+     * Only accessed by the thread itself, in order to merge updates.
+     */
+    private final Map<String, Service>         registeredOSDs;
+    
+    /**
+     * The generation of the Directory Service's service registry that
+     * <code>registeredOSDs</code> reflects.
+     */
+    private long                               knownGeneration;
+    
+    /**
+     * False if the Directory Service cannot return updates of the service
+     * registry, but only complete service lists.
+     */
+    private boolean                            updatesSupported    = true;
     
     /**
      * Thread shuts down if true.
@@ -75,9 +111,10 @@ public class OSDStatusManager extends LifeCycleThread implements VolumeChangeLis
         
         this.master = master;
         
-        volumeMap = new HashMap<String, VolumeOSDFilter>();
-        knownOSDs = ServiceSet.newBuilder();
-        knownOSDMap = new HashMap<String, Service>();
+        volumeMap = new ConcurrentHashMap<String, VolumeOSDFilter>();
+        knownOSDs = ServiceSet.getDefaultInstance();
+        knownOSDMap = Collections.emptyMap();
+        registeredOSDs = new TreeMap<String, Service>();
         
         int interval = master.getConfig().getOsdCheckInterval();
         checkIntervalMillis = 1000 * interval;
@@ -86,16 +123,8 @@ public class OSDStatusManager extends LifeCycleThread implements VolumeChangeLis
     @Override
     public synchronized void volumeChanged(VolumeInfo volume) {
         
-        final String volId = volume.getId();
-        VolumeOSDFilter vol = volumeMap.get(volId);
-        
-        if (vol == null) {
-            vol = new VolumeOSDFilter(master, knownOSDMap);
-            volumeMap.put(volId, vol);
-        }
-        
         try {
-            vol.init(volume);
+            volumeMap.put(volume.getId(), new VolumeOSDFilter(master, volume, knownOSDs, knownOSDMap));
         } catch (DatabaseException e) {
             Logging.logError(Logging.LEVEL_ERROR, this, e);
         }
@@ -119,7 +148,7 @@ public class OSDStatusManager extends LifeCycleThread implements VolumeChangeLis
             return;
         }
         
-        vol.setAttribute(key, value);
+        volumeMap.put(volumeId, vol.withAttribute(key, value, knownOSDs));
         
     }
     
@@ -141,8 +170,7 @@ public class OSDStatusManager extends LifeCycleThread implements VolumeChangeLis
         
         // initially fetch the list of OSDs from the Directory Service
         try {
-            knownOSDs = master.getDirClient().xtreemfs_service_get_by_type(null, RPCAuthentication.authNone,
-                RPCAuthentication.userService, ServiceType.SERVICE_TYPE_OSD).toBuilder();
+            evaluateResponse(fetchOSDs());
         } catch (Throwable exc) {
             this.notifyCrashed(exc);
         }
@@ -158,7 +186,7 @@ public class OSDStatusManager extends LifeCycleThread implements VolumeChangeLis
             synchronized (this) {
                 try {
                     this
-                            .wait(knownOSDs == null || knownOSDs.getServicesCount() == 0 ? checkIntervalMillis / 2
+                            .wait(knownOSDs.getServicesCount() == 0 ? checkIntervalMillis / 2
                                 : checkIntervalMillis);
                 } catch (InterruptedException ex) {
                     break;
@@ -171,14 +199,13 @@ public class OSDStatusManager extends LifeCycleThread implements VolumeChangeLis
             try {
                 // request list of registered OSDs from Directory
                 // Service
-                knownOSDs = master.getDirClient().xtreemfs_service_get_by_type(null, RPCAuthentication.authNone,
-                            RPCAuthentication.userService, ServiceType.SERVICE_TYPE_OSD).toBuilder();
+                ServiceSet.Builder osds = fetchOSDs();
                 
                 Logging
                         .logMessage(Logging.LEVEL_DEBUG, Category.misc, this,
                             "... received OSD list from DIR");
                 
-                evaluateResponse(knownOSDs);
+                evaluateResponse(osds);
                 
             } catch (InterruptedException ex) {
                 break;
@@ -193,6 +220,64 @@ public class OSDStatusManager extends LifeCycleThread implements VolumeChangeLis
         notifyStopped();
     }
     
+    /**
+     * Fetches the list of registered OSDs from the Directory Service. If
+     * supported, only the OSDs that changed since the last call are fetched
+     * and merged into the list.
+     * 
+     * @return the list of registered OSDs
+     */
+    private ServiceSet.Builder fetchOSDs() throws IOException, InterruptedException {
+        
+        if (updatesSupported) {
+            try {
+                serviceGetUpdatesResponse updates = master.getDirClient().xtreemfs_service_get_updates(null,
+                    RPCAuthentication.authNone, RPCAuthentication.userService, ServiceType.SERVICE_TYPE_OSD,
+                    knownGeneration, 0);
+                return mergeUpdates(updates);
+                
+            } catch (PBRPCException exc) {
+                if (exc.getErrorType() != ErrorType.INVALID_PROC_ID)
+                    throw exc;
+                
+                Logging.logMessage(Logging.LEVEL_INFO, Category.misc, this,
+                    "DIR does not support service updates, fetching complete OSD lists");
+                updatesSupported = false;
+            }
+        }
+        
+        return master.getDirClient().xtreemfs_service_get_by_type(null, RPCAuthentication.authNone,
+            RPCAuthentication.userService, ServiceType.SERVICE_TYPE_OSD).toBuilder();
+    }
+    
+    private ServiceSet.Builder mergeUpdates(serviceGetUpdatesResponse updates) {
+        
+        if (updates.getFull())
+            registeredOSDs.clear();
+        for (String uuid : updates.getDeregisteredUuidsList())
+            registeredOSDs.remove(uuid);
+        for (Service osd : updates.getServicesList())
+            registeredOSDs.put(osd.getUuid(), osd);
+        knownGeneration = updates.getGeneration();
+        
+        // the time since the last update of OSDs that did not change has to
+        // be updated locally
+        final long now = TimeSync.getGlobalTime() / 1000;
+        ServiceSet.Builder osds = ServiceSet.newBuilder();
+        for (Service osd : registeredOSDs.values()) {
+            ServiceDataMap.Builder data = ServiceDataMap.newBuilder();
+            for (KeyValuePair kvp : osd.getData().getDataList()) {
+                if (!kvp.getKey().equals(ServiceRegistry.SECONDS_SINCE_LAST_UPDATE))
+                    data.addData(kvp);
+            }
+            data.addData(KeyValuePair.newBuilder().setKey(ServiceRegistry.SECONDS_SINCE_LAST_UPDATE).setValue(
+                Long.toString(now - osd.getLastUpdatedS())));
+            osds.addServices(osd.toBuilder().setData(data));
+        }
+        
+        return osds;
+    }
+    
     /**
      * Returns the list of usable OSDs for the given volume id.
      * 
@@ -206,7 +291,7 @@ public class OSDStatusManager extends LifeCycleThread implements VolumeChangeLis
      *            the number of requested OSDs
      * @return a list of feasible OSDs
      */
-    public synchronized ServiceSet.Builder getUsableOSDs(String volumeId, InetAddress clientIP,
+    public ServiceSet.Builder getUsableOSDs(String volumeId, InetAddress clientIP,
         VivaldiCoordinates clientCoords, XLocList currentXLoc, int numOSDs, String path) {
         
         VolumeOSDFilter vol = volumeMap.get(volumeId);
@@ -217,8 +302,7 @@ public class OSDStatusManager extends LifeCycleThread implements VolumeChangeLis
         }
         
         // return a set of OSDs
-        ServiceSet.Builder result = vol.filterByOSDSelectionPolicy(knownOSDs,
-                                                                   clientIP,
+        ServiceSet.Builder result = vol.filterByOSDSelectionPolicy(clientIP,
                                                                    clientCoords,
                                                                    currentXLoc,
                                                                    numOSDs,
@@ -227,7 +311,7 @@ public class OSDStatusManager extends LifeCycleThread implements VolumeChangeLis
         return result;
     }
     
-    public synchronized ServiceSet.Builder getUsableOSDs(String volumeId) {
+    public ServiceSet.Builder getUsableOSDs(String volumeId) {
         
         VolumeOSDFilter vol = volumeMap.get(volumeId);
         if (vol == null) {
@@ -237,10 +321,10 @@ public class OSDStatusManager extends LifeCycleThread implements VolumeChangeLis
         }
         
         // return a set of OSDs
-        return vol.filterByOSDSelectionPolicy(knownOSDs);
+        return vol.filterByOSDSelectionPolicy();
     }
     
-    public synchronized Replicas getSortedReplicaList(String volumeId, InetAddress clientIP,
+    public Replicas getSortedReplicaList(String volumeId, InetAddress clientIP,
         VivaldiCoordinates clientCoords, List<Replica> repls, XLocList xLocList, String path) {
         
         VolumeOSDFilter vol = volumeMap.get(volumeId);
@@ -274,13 +358,18 @@ public class OSDStatusManager extends LifeCycleThread implements VolumeChangeLis
             }
         
         // update the list of known OSDs
-        this.knownOSDs = knownOSDs;
-        knownOSDMap.clear();
+        Map<String, Service> osdMap = new HashMap<String, Service>();
         for (Service osd : knownOSDs.getServicesList())
-            knownOSDMap.put(osd.getUuid(), osd);
+            osdMap.put(osd.getUuid(), osd);
+        this.knownOSDs = knownOSDs.build();
+        this.knownOSDMap = Collections.unmodifiableMap(osdMap);
+        
+        // publish new filters containing the eligible OSDs of each volume
+        for (Entry<String, VolumeOSDFilter> vol : volumeMap.entrySet())
+            vol.setValue(vol.getValue().withKnownOSDs(this.knownOSDs, this.knownOSDMap));
     }
     
-    public synchronized Service getOSDService(String uuid) {
+    public Service getOSDService(String uuid) {
         return knownOSDMap.get(uuid);
     }
     
@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.mrc.osdselection;
+
+/**
+ * Interface for filtering policies whose results only depend on the given set of OSDs and the policy
+ * attributes, but not on the client or the file. Their results are precomputed each time the set of known
+ * OSDs or the policy attributes change, rather than being computed for each request.
+ * <p>
+ * {@link #getOSDs(org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceSet.Builder)} is used to compute the
+ * results.
+ */
+public interface StaticOSDFilterPolicy extends OSDSelectionPolicy {
+
+    /**
+     * Indicates whether the policy removes all OSDs that are contained in the current X-Locations list if
+     * invoked with a context.
+     *
+     * @return <code>true</code>, if OSDs from the current X-Locations list are removed
+     */
+    public boolean excludesUsedOSDs();
+
+}
@@ -10,8 +10,10 @@ package org.xtreemfs.mrc.osdselection;
 
 import java.net.InetAddress;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
@@ -34,49 +36,169 @@ import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.VivaldiCoordinates;
 
 /**
  * Volume and policy record.
+ * <p>
+ * Instances are immutable once they have been created, so that they can be used by concurrent requests
+ * without locking. The results of the leading {@link StaticOSDFilterPolicy} policies are precomputed for
+ * the set of known OSDs; changes of the known OSDs or the policy attributes result in new instances.
  */
 public class VolumeOSDFilter {
 
-    private final MRCRequestDispatcher           master;
+    private final MRCRequestDispatcher             master;
 
     /**
      * volume ID
      */
-    private String                         volId;
+    private final String                           volId;
 
     /**
      * OSD selection policy
      */
-    private short[]                        osdPolicy;
+    private final short[]                          osdPolicy;
 
     /**
      * replica selection policy
      */
-    private short[]                        replPolicy;
+    private final short[]                          replPolicy;
 
     /**
      * map containing instances of all OSD policies
      */
-    private Map<Short, OSDSelectionPolicy> policyMap;
+    private final Map<Short, OSDSelectionPolicy>   policyMap;
+
+    /**
+     * all policy attributes that have been set, in the order in which they have been set
+     */
+    private final Map<String, String>              policyAttrs;
 
     /**
      * map containing all known OSDs
      */
-    private final Map<String, Service>           knownOSDMap;
+    private final Map<String, Service>             knownOSDMap;
 
-    public VolumeOSDFilter(MRCRequestDispatcher master, Map<String, Service> knownOSDMap) {
-        this.master = master;
-        this.knownOSDMap = knownOSDMap;
-    }
+    /**
+     * the number of leading OSD selection policies whose results are precomputed
+     */
+    private final int                              numStaticPolicies;
 
-    public void init(VolumeInfo volume) throws DatabaseException {
+    /**
+     * true, if OSDs from the current XLoc list have to be removed from the precomputed OSDs
+     */
+    private final boolean                          removeUsedOSDs;
 
+    /**
+     * the known OSDs filtered by the leading static policies
+     */
+    private final ServiceSet                       eligibleOSDs;
+
+    /**
+     * the known OSDs filtered by all OSD selection policies, without any context
+     */
+    private final ServiceSet                       usableOSDs;
+
+    /**
+     * Creates a new filter for the given volume. The policy attributes are read from the volume's root
+     * directory.
+     */
+    public VolumeOSDFilter(MRCRequestDispatcher master, VolumeInfo volume, ServiceSet knownOSDs,
+            Map<String, Service> knownOSDMap) throws DatabaseException {
+
+        this.master = master;
         this.volId = volume.getId();
         this.osdPolicy = volume.getOsdPolicy();
         this.replPolicy = volume.getReplicaPolicy();
+        this.knownOSDMap = knownOSDMap;
+
+        policyMap = createPolicies(master, osdPolicy, replPolicy);
+        policyAttrs = new LinkedHashMap<String, String>();
+
+        // get all policy attributes
+
+        try {
+            DatabaseResultSet<XAttr> xattrs = master.getVolumeManager().getStorageManager(this.volId)
+                    .getXAttrs(1, StorageManager.SYSTEM_UID);
+
+            while (xattrs.hasNext()) {
+                XAttr xattr = xattrs.next();
+                if (xattr.getKey().startsWith(MRCHelper.XTREEMFS_POLICY_ATTR_PREFIX)) {
+                    String value = new String(xattr.getValue());
+                    setAttribute(policyMap, xattr.getKey(), value);
+                    policyAttrs.put(xattr.getKey(), value);
+                }
+            }
+
+            xattrs.destroy();
+
+        } catch (Exception exc) {
+            Logging.logMessage(Logging.LEVEL_ERROR, Category.misc, "could not set policy attributes");
+            Logging.logMessage(Logging.LEVEL_ERROR, Category.misc, OutputUtils.stackTraceToString(exc));
+        }
+
+        numStaticPolicies = getNumStaticPolicies();
+        removeUsedOSDs = getRemoveUsedOSDs();
+        eligibleOSDs = filterByStaticPolicies(knownOSDs);
+        usableOSDs = filterByOSDSelectionPolicy(eligibleOSDs, numStaticPolicies).build();
+    }
+
+    private VolumeOSDFilter(VolumeOSDFilter filter, Map<Short, OSDSelectionPolicy> policyMap,
+            Map<String, String> policyAttrs, ServiceSet knownOSDs, Map<String, Service> knownOSDMap) {
+
+        this.master = filter.master;
+        this.volId = filter.volId;
+        this.osdPolicy = filter.osdPolicy;
+        this.replPolicy = filter.replPolicy;
+        this.policyMap = policyMap;
+        this.policyAttrs = policyAttrs;
+        this.knownOSDMap = knownOSDMap;
+
+        numStaticPolicies = getNumStaticPolicies();
+        removeUsedOSDs = getRemoveUsedOSDs();
+        eligibleOSDs = filterByStaticPolicies(knownOSDs);
+        usableOSDs = filterByOSDSelectionPolicy(eligibleOSDs, numStaticPolicies).build();
+    }
+
+    /**
+     * Creates a copy of this filter for a new set of known OSDs.
+     *
+     * @param knownOSDs
+     *            all known OSDs
+     * @param knownOSDMap
+     *            all known OSDs, mapped by their UUIDs
+     * @return the new filter
+     */
+    public VolumeOSDFilter withKnownOSDs(ServiceSet knownOSDs, Map<String, Service> knownOSDMap) {
+        return new VolumeOSDFilter(this, policyMap, policyAttrs, knownOSDs, knownOSDMap);
+    }
+
+    /**
+     * Creates a copy of this filter with an additional policy attribute. As policies cannot be modified
+     * while they are in use, new policy instances are created and all attributes are applied to them.
+     *
+     * @param key
+     *            the attribute key
+     * @param value
+     *            the attribute value
+     * @param knownOSDs
+     *            all known OSDs
+     * @return the new filter
+     */
+    public VolumeOSDFilter withAttribute(String key, String value, ServiceSet knownOSDs) {
+
+        Map<Short, OSDSelectionPolicy> policies = createPolicies(master, osdPolicy, replPolicy);
+
+        Map<String, String> attrs = new LinkedHashMap<String, String>(policyAttrs);
+        attrs.remove(key);
+        attrs.put(key, value);
+        for (Entry<String, String> attr : attrs.entrySet())
+            setAttribute(policies, attr.getKey(), attr.getValue());
+
+        return new VolumeOSDFilter(this, policies, attrs, knownOSDs, knownOSDMap);
+    }
+
+    private static Map<Short, OSDSelectionPolicy> createPolicies(MRCRequestDispatcher master,
+            short[] osdPolicy, short[] replPolicy) {
 
         // initialize the policy map
-        policyMap = new HashMap<Short, OSDSelectionPolicy>();
+        Map<Short, OSDSelectionPolicy> policyMap = new HashMap<Short, OSDSelectionPolicy>();
         for (short pol : osdPolicy) {
             try {
                 if (!policyMap.containsKey(pol)) {
@@ -101,29 +223,10 @@ public class VolumeOSDFilter {
             }
         }
 
-        // get all policy attributes
-
-        try {
-            DatabaseResultSet<XAttr> xattrs = master.getVolumeManager().getStorageManager(this.volId)
-                    .getXAttrs(1, StorageManager.SYSTEM_UID);
-
-            while (xattrs.hasNext()) {
-                XAttr xattr = xattrs.next();
-                if (xattr.getKey().startsWith(MRCHelper.XTREEMFS_POLICY_ATTR_PREFIX)) {
-                    setAttribute(xattr.getKey(), new String(xattr.getValue()));
-                }
-            }
-
-            xattrs.destroy();
-
-        } catch (Exception exc) {
-            Logging.logMessage(Logging.LEVEL_ERROR, Category.misc, "could not set policy attributes");
-            Logging.logMessage(Logging.LEVEL_ERROR, Category.misc, OutputUtils.stackTraceToString(exc));
-        }
-
+        return policyMap;
     }
 
-    public void setAttribute(String key, String value) {
+    private static void setAttribute(Map<Short, OSDSelectionPolicy> policyMap, String key, String value) {
 
         assert (key.startsWith(MRCHelper.XTREEMFS_POLICY_ATTR_PREFIX));
         key = key.substring(MRCHelper.XTREEMFS_POLICY_ATTR_PREFIX.length());
@@ -136,7 +239,7 @@ public class VolumeOSDFilter {
             Logging.logMessage(
                     Logging.LEVEL_WARN,
                     Category.misc,
-                    this,
+                    VolumeOSDFilter.class,
                     "'%s=%s :' XtreemFS no longer supports global policy attributes. It is necessary to specify a policy e.g., '1000.%s=%s'",
                     key, value, key, value);
 //            for (OSDSelectionPolicy pol : policyMap.values())
@@ -151,35 +254,54 @@ public class VolumeOSDFilter {
 
     }
 
-    public ServiceSet.Builder filterByOSDSelectionPolicy(ServiceSet.Builder knownOSDs, InetAddress clientIP,
-            VivaldiCoordinates clientCoords, XLocList currentXLoc, int numOSDs, String path) {
-
-        ServiceSet.Builder result = ServiceSet.newBuilder().addAllServices(knownOSDs.getServicesList());
+    private int getNumStaticPolicies() {
+        int num = 0;
         for (short id : osdPolicy) {
             OSDSelectionPolicy policy = policyMap.get(id);
+            if (policy != null && !(policy instanceof StaticOSDFilterPolicy))
+                break;
+            num++;
+        }
+        return num;
+    }
+
+    private boolean getRemoveUsedOSDs() {
+        for (int i = 0; i < numStaticPolicies; i++) {
+            OSDSelectionPolicy policy = policyMap.get(osdPolicy[i]);
+            if (policy != null && ((StaticOSDFilterPolicy) policy).excludesUsedOSDs())
+                return true;
+        }
+        return false;
+    }
+
+    private ServiceSet filterByStaticPolicies(ServiceSet knownOSDs) {
+
+        ServiceSet.Builder result = ServiceSet.newBuilder().addAllServices(knownOSDs.getServicesList());
+        for (int i = 0; i < numStaticPolicies; i++) {
+
+            OSDSelectionPolicy policy = policyMap.get(osdPolicy[i]);
             if (policy == null) {
-                Logging.logMessage(Logging.LEVEL_ERROR, Category.proc, this,
-                        "could not find OSD selection policy with ID=%d, will be ignored", id);
+                Logging.logMessage(Logging.LEVEL_WARN, Category.misc, this,
+                        "could not find OSD selection policy with ID %d, will be ignored", osdPolicy[i]);
                 continue;
             }
 
-            result = policy.getOSDs(result, clientIP, clientCoords,
-                                    currentXLoc, numOSDs, path);
+            result = policy.getOSDs(result);
         }
 
-        return result;
+        return result.build();
     }
 
-    public ServiceSet.Builder filterByOSDSelectionPolicy(ServiceSet.Builder knownOSDs) {
+    private ServiceSet.Builder filterByOSDSelectionPolicy(ServiceSet osds, int firstPolicy) {
 
-        ServiceSet.Builder result = ServiceSet.newBuilder().addAllServices(knownOSDs.getServicesList());
-        for (short id : osdPolicy) {
+        ServiceSet.Builder result = ServiceSet.newBuilder().addAllServices(osds.getServicesList());
+        for (int i = firstPolicy; i < osdPolicy.length; i++) {
 
-            OSDSelectionPolicy policy = policyMap.get(id);
+            OSDSelectionPolicy policy = policyMap.get(osdPolicy[i]);
 
             if (policy == null) {
                 Logging.logMessage(Logging.LEVEL_WARN, Category.misc, this,
-                        "could not find OSD selection policy with ID %d, will be ignored", id);
+                        "could not find OSD selection policy with ID %d, will be ignored", osdPolicy[i]);
                 continue;
             }
 
@@ -189,6 +311,33 @@ public class VolumeOSDFilter {
         return result;
     }
 
+    public ServiceSet.Builder filterByOSDSelectionPolicy(InetAddress clientIP, VivaldiCoordinates clientCoords,
+            XLocList currentXLoc, int numOSDs, String path) {
+
+        // start with the precomputed results of the static policies
+        ServiceSet.Builder result = ServiceSet.newBuilder().addAllServices(eligibleOSDs.getServicesList());
+        if (removeUsedOSDs)
+            result = PolicyHelper.removeUsedOSDs(result, currentXLoc);
+
+        for (int i = numStaticPolicies; i < osdPolicy.length; i++) {
+            OSDSelectionPolicy policy = policyMap.get(osdPolicy[i]);
+            if (policy == null) {
+                Logging.logMessage(Logging.LEVEL_ERROR, Category.proc, this,
+                        "could not find OSD selection policy with ID=%d, will be ignored", osdPolicy[i]);
+                continue;
+            }
+
+            result = policy.getOSDs(result, clientIP, clientCoords,
+                                    currentXLoc, numOSDs, path);
+        }
+
+        return result;
+    }
+
+    public ServiceSet.Builder filterByOSDSelectionPolicy() {
+        return usableOSDs.toBuilder();
+    }
+
     public Replicas sortByReplicaSelectionPolicy(InetAddress clientIP, VivaldiCoordinates clientCoords,
             List<Replica> unsortedRepls, XLocList xLocList, String path) {
 
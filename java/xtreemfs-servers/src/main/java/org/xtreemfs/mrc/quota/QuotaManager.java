@@ -6,8 +6,10 @@
  */
 package org.xtreemfs.mrc.quota;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.mrc.MRCException;
@@ -19,7 +21,13 @@ import org.xtreemfs.mrc.database.VolumeManager;
  */
 public class QuotaManager {
 
-    private final Map<String, VolumeQuotaManager> volQuotaManMap = new HashMap<String, VolumeQuotaManager>();
+    private final Map<String, VolumeQuotaManager> volQuotaManMap = new ConcurrentHashMap<String, VolumeQuotaManager>();
+
+    /**
+     * The space counter changes of the operation currently executed by a thread. They are reverted if the operation
+     * fails before its database update has been executed.
+     */
+    private static final ThreadLocal<ChangeLog>   changeLogs     = new ThreadLocal<ChangeLog>();
 
     /**
      * 
@@ -58,8 +66,9 @@ public class QuotaManager {
 
     public VolumeQuotaManager getVolumeQuotaManagerById(String volumeId) throws MRCException {
 
-        if (volQuotaManMap.containsKey(volumeId)) {
-            return volQuotaManMap.get(volumeId);
+        VolumeQuotaManager volumeQuotaManager = volQuotaManMap.get(volumeId);
+        if (volumeQuotaManager != null) {
+            return volumeQuotaManager;
         } else {
             Logging.logMessage(Logging.LEVEL_DEBUG, this, "Return VolumeQuotaManager for volumeId: " + volumeId);
             throw new MRCException("There's no VolumeQuotaManager registered for the volumeId " + volumeId);
@@ -79,8 +88,86 @@ public class QuotaManager {
         }
     }
 
+    /**
+     * Starts recording the space counter changes made by the calling thread.
+     */
+    public void beginOperation() {
+        ChangeLog changeLog = changeLogs.get();
+        if (changeLog == null) {
+            changeLog = new ChangeLog();
+            changeLogs.set(changeLog);
+        }
+
+        changeLog.active = true;
+    }
+
+    /**
+     * Stops recording the space counter changes made by the calling thread.
+     * 
+     * @param revert
+     *            true, if the changes recorded since the last commit have to be reverted, because the database update
+     *            they have been added to won't be executed
+     */
+    public void endOperation(boolean revert) {
+        ChangeLog changeLog = changeLogs.get();
+        if (changeLog == null) {
+            return;
+        }
+
+        if (revert) {
+            for (int i = changeLog.changes.size() - 1; i >= 0; i--) {
+                SpaceChange change = changeLog.changes.get(i);
+                change.counter.addUsedSpace(-1 * change.usedSpaceDifference);
+                change.counter.addBlockedSpace(-1 * change.blockedSpaceDifference);
+            }
+        }
+
+        changeLog.changes.clear();
+        changeLog.active = false;
+    }
+
+    /**
+     * Marks the space counter changes recorded so far by the calling thread as committed, because the database update
+     * they have been added to has been executed. Committed changes are not reverted if the operation fails afterwards.
+     */
+    public static void commitChanges() {
+        ChangeLog changeLog = changeLogs.get();
+        if (changeLog != null) {
+            changeLog.changes.clear();
+        }
+    }
+
+    void recordChange(SpaceCounter counter, long usedSpaceDifference, long blockedSpaceDifference) {
+        ChangeLog changeLog = changeLogs.get();
+        if (changeLog != null && changeLog.active) {
+            changeLog.changes.add(new SpaceChange(counter, usedSpaceDifference, blockedSpaceDifference));
+        }
+    }
+
     @Override
     public String toString() {
         return "MRCQuotaManager [volQuotaManMap=" + volQuotaManMap + "]";
     }
+
+    private static final class ChangeLog {
+
+        private boolean                 active;
+
+        private final List<SpaceChange> changes = new ArrayList<SpaceChange>();
+    }
+
+    private static final class SpaceChange {
+
+        private final SpaceCounter counter;
+
+        private final long         usedSpaceDifference;
+
+        private final long         blockedSpaceDifference;
+
+        SpaceChange(SpaceCounter counter, long usedSpaceDifference, long blockedSpaceDifference) {
+            this.counter = counter;
+            this.usedSpaceDifference = usedSpaceDifference;
+            this.blockedSpaceDifference = blockedSpaceDifference;
+        }
+    }
 }
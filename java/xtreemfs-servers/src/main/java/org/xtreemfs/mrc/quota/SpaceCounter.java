@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+package org.xtreemfs.mrc.quota;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xtreemfs.common.quota.QuotaConstants;
+
+/**
+ * The used and blocked space of a volume, user or group. The counters are loaded from the database once and reflect
+ * all changes that have been added to database updates since then, so that quota checks don't have to read the
+ * database and concurrent changes don't get lost.
+ */
+class SpaceCounter {
+
+    private final AtomicLong usedSpace;
+
+    private final AtomicLong blockedSpace;
+
+    SpaceCounter(long usedSpace, long blockedSpace) {
+        this.usedSpace = new AtomicLong(usedSpace);
+        this.blockedSpace = new AtomicLong(blockedSpace);
+    }
+
+    long getUsedSpace() {
+        return usedSpace.get();
+    }
+
+    long getBlockedSpace() {
+        return blockedSpace.get();
+    }
+
+    long addUsedSpace(long difference) {
+        return usedSpace.addAndGet(difference);
+    }
+
+    long addBlockedSpace(long difference) {
+        return blockedSpace.addAndGet(difference);
+    }
+
+    /**
+     * Blocks the given space, if the sum of used and blocked space doesn't exceed the quota afterwards.
+     *
+     * @param space
+     * @param quota
+     * @return true, if the space has been blocked
+     */
+    boolean tryBlockSpace(long space, long quota) {
+        while (true) {
+            long blocked = blockedSpace.get();
+            if (quota != QuotaConstants.UNLIMITED_QUOTA && usedSpace.get() + blocked + space > quota) {
+                return false;
+            }
+
+            if (blockedSpace.compareAndSet(blocked, blocked + space)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SpaceCounter [usedSpace=" + usedSpace + ", blockedSpace=" + blockedSpace + "]";
+    }
+}
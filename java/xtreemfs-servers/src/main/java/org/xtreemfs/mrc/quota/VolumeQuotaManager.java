@@ -6,6 +6,9 @@
  */
 package org.xtreemfs.mrc.quota;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.xtreemfs.common.quota.QuotaConstants;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.POSIXErrno;
@@ -20,6 +23,11 @@ import org.xtreemfs.mrc.quota.Voucher.VoucherType;
  * This class contains all relevant information regarding the quota of an volume.
  * 
  * It also allocates resources for requesting parties and blocks them, until they get freed.
+ * 
+ * The used and blocked space of the volume and of each user and group is kept in {@link SpaceCounter}s, which are
+ * loaded from the database on first access. Changes are applied atomically to the counters and their new values are
+ * added to the database update of the operation. Space is blocked with a compare-and-set on the counters of all limited
+ * quotas, so that vouchers can be issued concurrently without exceeding any quota and without locking.
  */
 public class VolumeQuotaManager {
 
@@ -33,10 +41,16 @@ public class VolumeQuotaManager {
 
     private final String              volumeId;
 
-    private long                      volumeQuota             = 0;
-    private long                      volumeVoucherSize       = 0;
-    private long                      volumeDefaultUserQuota  = 0;
-    private long                      volumeDefaultGroupQuota = 0;
+    private volatile long             volumeQuota             = 0;
+    private volatile long             volumeVoucherSize       = 0;
+    private volatile long             volumeDefaultUserQuota  = 0;
+    private volatile long             volumeDefaultGroupQuota = 0;
+
+    private volatile SpaceCounter     volumeSpace;
+
+    private final ConcurrentMap<String, SpaceCounter> userSpace  = new ConcurrentHashMap<String, SpaceCounter>();
+
+    private final ConcurrentMap<String, SpaceCounter> groupSpace = new ConcurrentHashMap<String, SpaceCounter>();
 
     /**
      * Creates the volume quota manager and register at the mrc quota manager. Add a change listener to the volume info
@@ -94,35 +108,40 @@ public class VolumeQuotaManager {
      * @return
      * @throws UserException
      */
-    private synchronized Voucher getVoucher(QuotaFileInformation quotaFileInformation, boolean test,
-            AtomicDBUpdate update) throws UserException {
+    private Voucher getVoucher(QuotaFileInformation quotaFileInformation, boolean test, AtomicDBUpdate update)
+            throws UserException {
 
         int replicaCount = quotaFileInformation.getReplicaCount();
-        QuotaInformation quotaInformation = getAndApplyQuotaInformation(quotaFileInformation, !test, update);
-        long freeSpace = quotaInformation.getFreeSpace();
 
-        long voucherSize = volumeVoucherSize;
-        Voucher voucher = new Voucher(VoucherType.LIMITED, voucherSize);
+        while (true) {
+            QuotaInformation quotaInformation = getAndApplyQuotaInformation(quotaFileInformation, !test, update);
+            long freeSpace = quotaInformation.getFreeSpace();
+
+            long voucherSize = volumeVoucherSize;
+            Voucher voucher = new Voucher(VoucherType.LIMITED, voucherSize);
+
+            if (quotaInformation.getVolumeQuota() == QuotaConstants.UNLIMITED_QUOTA
+                    && quotaInformation.getUserQuota() == QuotaConstants.UNLIMITED_QUOTA
+                    && quotaInformation.getGroupQuota() == QuotaConstants.UNLIMITED_QUOTA) {
+                // no quota set at all: unlimited voucher
+                voucher.setVoucherType(VoucherType.UNLIMITED);
+            } else if (freeSpace / replicaCount == 0) { // can't get negative
+                voucher.setVoucherType(VoucherType.NONE);
+                voucher.setEnforcedQuotaName(quotaInformation.getQuotaType());
+            } else if ((replicaCount * voucherSize) > freeSpace) {
+                voucherSize = freeSpace / replicaCount;
+                voucher.setVoucherSize(voucherSize);
+            }
 
-        if (quotaInformation.getVolumeQuota() == QuotaConstants.UNLIMITED_QUOTA
-                && quotaInformation.getUserQuota() == QuotaConstants.UNLIMITED_QUOTA
-                && quotaInformation.getGroupQuota() == QuotaConstants.UNLIMITED_QUOTA) {
-            // no quota set at all: unlimited voucher
-            voucher.setVoucherType(VoucherType.UNLIMITED);
-        } else if (freeSpace / replicaCount == 0) { // can't get negative
-            voucher.setVoucherType(VoucherType.NONE);
-            voucher.setEnforcedQuotaName(quotaInformation.getQuotaType());
-        } else if ((replicaCount * voucherSize) > freeSpace) {
-            voucherSize = freeSpace / replicaCount;
-            voucher.setVoucherSize(voucherSize);
-        }
+            // save voucherSize as blocked, if it isn't just a check; retry, if the free space has been reduced
+            // concurrently
+            if (!test && voucher.getVoucherType() == VoucherType.LIMITED
+                    && !reserveSpace(quotaFileInformation, quotaInformation, 0, replicaCount * voucherSize, update)) {
+                continue;
+            }
 
-        // save voucherSize as blocked, if it isn't just a check
-        if (!test && voucher.getVoucherType() == VoucherType.LIMITED) {
-            updateSpaceUsage(quotaFileInformation, quotaInformation, 0, replicaCount * voucherSize, update);
+            return voucher;
         }
-
-        return voucher;
     }
 
     /**
@@ -137,7 +156,7 @@ public class VolumeQuotaManager {
      *            unused blocked space
      * @throws UserException
      */
-    public synchronized void updateSpaceUsage(QuotaFileInformation quotaFileInformation, long fileSizeDifference,
+    public void updateSpaceUsage(QuotaFileInformation quotaFileInformation, long fileSizeDifference,
             long blockedSpaceDifference, AtomicDBUpdate update) throws UserException {
 
         QuotaInformation quotaInformation = getAndApplyQuotaInformation(quotaFileInformation, true, update);
@@ -146,7 +165,7 @@ public class VolumeQuotaManager {
 
     }
 
-    public synchronized void updateSpaceUsage(QuotaFileInformation quotaFileInformation,
+    public void updateSpaceUsage(QuotaFileInformation quotaFileInformation,
             QuotaInformation quotaInformation, long filesizeDifference, long blockedSpaceDifference,
             AtomicDBUpdate update) throws UserException {
 
@@ -156,11 +175,12 @@ public class VolumeQuotaManager {
                 update);
     }
 
-    public synchronized void updateVolumeSpaceUsage(QuotaInformation quotaInformation, long filesizeDifference,
+    public void updateVolumeSpaceUsage(QuotaInformation quotaInformation, long filesizeDifference,
             long blockedSpaceDifference, AtomicDBUpdate update) throws UserException {
         try {
+            SpaceCounter counter = getVolumeSpace();
             if (filesizeDifference != 0) {
-                long volumeUsedSpace = quotaInformation.getVolumeUsedSpace() + filesizeDifference;
+                long volumeUsedSpace = addUsedSpace(counter, filesizeDifference);
                 checkNegativeValue(volumeUsedSpace, "volume", true);
                 volStorageManager.setVolumeUsedSpace(volumeUsedSpace, update);
 
@@ -170,7 +190,7 @@ public class VolumeQuotaManager {
 
             if (blockedSpaceDifference != 0) {
                 if (quotaInformation.getVolumeQuota() != QuotaConstants.UNLIMITED_QUOTA) {
-                    long volumeBlockedSpace = quotaInformation.getVolumeBlockedSpace() + blockedSpaceDifference;
+                    long volumeBlockedSpace = addBlockedSpace(counter, blockedSpaceDifference);
                     checkNegativeValue(volumeBlockedSpace, "volume", false);
                     volStorageManager.setVolumeBlockedSpace(volumeBlockedSpace, update);
 
@@ -187,14 +207,15 @@ public class VolumeQuotaManager {
         }
     }
 
-    public synchronized void updateUserSpaceUsage(QuotaFileInformation quotaFileInformation,
+    public void updateUserSpaceUsage(QuotaFileInformation quotaFileInformation,
             QuotaInformation quotaInformation, long filesizeDifference, long blockedSpaceDifference,
             AtomicDBUpdate update) throws UserException {
 
         String ownerId = quotaFileInformation.getOwnerId();
         try {
+            SpaceCounter counter = getUserSpace(ownerId);
             if (filesizeDifference != 0) {
-                long userUsedSpace = quotaInformation.getUserUsedSpace() + filesizeDifference;
+                long userUsedSpace = addUsedSpace(counter, filesizeDifference);
                 checkNegativeValue(userUsedSpace, "ownerId: " + ownerId, true);
                 volStorageManager.setUserUsedSpace(ownerId, userUsedSpace, update);
 
@@ -204,7 +225,7 @@ public class VolumeQuotaManager {
 
             if (blockedSpaceDifference != 0) {
                 if (quotaInformation.getUserQuota() != QuotaConstants.UNLIMITED_QUOTA) {
-                    long userBlockedSpace = quotaInformation.getUserBlockedSpace() + blockedSpaceDifference;
+                    long userBlockedSpace = addBlockedSpace(counter, blockedSpaceDifference);
                     checkNegativeValue(userBlockedSpace, "ownerId: " + ownerId, false);
                     volStorageManager.setUserBlockedSpace(ownerId, userBlockedSpace, update);
 
@@ -221,14 +242,15 @@ public class VolumeQuotaManager {
         }
     }
 
-    public synchronized void updateGroupSpaceUsage(QuotaFileInformation quotaFileInformation,
+    public void updateGroupSpaceUsage(QuotaFileInformation quotaFileInformation,
             QuotaInformation quotaInformation, long filesizeDifference, long blockedSpaceDifference,
             AtomicDBUpdate update) throws UserException {
 
         String ownerGroupId = quotaFileInformation.getOwnerGroupId();
         try {
+            SpaceCounter counter = getGroupSpace(ownerGroupId);
             if (filesizeDifference != 0) {
-                long groupUsedSpace = quotaInformation.getGroupUsedSpace() + filesizeDifference;
+                long groupUsedSpace = addUsedSpace(counter, filesizeDifference);
                 checkNegativeValue(groupUsedSpace, "ownerGroupId: " + ownerGroupId, true);
                 volStorageManager.setGroupUsedSpace(ownerGroupId, groupUsedSpace, update);
 
@@ -239,7 +261,7 @@ public class VolumeQuotaManager {
 
             if (blockedSpaceDifference != 0) {
                 if (quotaInformation.getGroupQuota() != QuotaConstants.UNLIMITED_QUOTA) {
-                    long groupBlockedSpace = quotaInformation.getGroupBlockedSpace() + blockedSpaceDifference;
+                    long groupBlockedSpace = addBlockedSpace(counter, blockedSpaceDifference);
                     checkNegativeValue(groupBlockedSpace, "ownerGroupId: " + ownerGroupId, false);
                     volStorageManager.setGroupBlockedSpace(ownerGroupId, groupBlockedSpace, update);
 
@@ -265,20 +287,25 @@ public class VolumeQuotaManager {
      * @param update
      * @throws UserException
      */
-    public synchronized void addReplica(QuotaFileInformation quotaFileInformation, long filesize, long blockedSpace,
+    public void addReplica(QuotaFileInformation quotaFileInformation, long filesize, long blockedSpace,
             AtomicDBUpdate update) throws UserException {
 
         Logging.logMessage(Logging.LEVEL_DEBUG, this, "VolumeQuotaManager(" + volumeId
                 + ") tries to add a replica to current space information.");
 
-        QuotaInformation quotaInformation = getAndApplyQuotaInformation(quotaFileInformation, true, update);
+        while (true) {
+            QuotaInformation quotaInformation = getAndApplyQuotaInformation(quotaFileInformation, true, update);
 
-        if (quotaInformation.getFreeSpace() < (filesize + blockedSpace)) {
-            throw new UserException(POSIXErrno.POSIX_ERROR_ENOSPC, "Not enough space available for a new replica! The "
-                    + quotaInformation.getQuotaType() + " quota has been reached!");
-        }
+            if (quotaInformation.getFreeSpace() < (filesize + blockedSpace)) {
+                throw new UserException(POSIXErrno.POSIX_ERROR_ENOSPC,
+                        "Not enough space available for a new replica! The " + quotaInformation.getQuotaType()
+                                + " quota has been reached!");
+            }
 
-        updateSpaceUsage(quotaFileInformation, quotaInformation, filesize, blockedSpace, update);
+            if (reserveSpace(quotaFileInformation, quotaInformation, filesize, blockedSpace, update)) {
+                return;
+            }
+        }
     }
 
     /**
@@ -291,7 +318,7 @@ public class VolumeQuotaManager {
      * @param update
      * @throws UserException
      */
-    public synchronized void transferOwnerSpace(QuotaFileInformation quotaFileInformation, String newOwnerId,
+    public void transferOwnerSpace(QuotaFileInformation quotaFileInformation, String newOwnerId,
             long filesize, long blockedSpace, AtomicDBUpdate update) throws UserException {
 
         Logging.logMessage(Logging.LEVEL_DEBUG, this, "VolumeQuotaManager(" + volumeId
@@ -329,7 +356,7 @@ public class VolumeQuotaManager {
      * @param update
      * @throws UserException
      */
-    public synchronized void transferOwnerGroupSpace(QuotaFileInformation quotaFileInformation, String newOwnerGroupId,
+    public void transferOwnerGroupSpace(QuotaFileInformation quotaFileInformation, String newOwnerGroupId,
             long filesize, long blockedSpace, AtomicDBUpdate update) throws UserException {
 
         Logging.logMessage(Logging.LEVEL_DEBUG, this, "VolumeQuotaManager(" + volumeId
@@ -359,6 +386,156 @@ public class VolumeQuotaManager {
         updateGroupSpaceUsage(newQuotaFileInformation, quotaInformationNewOwnerGroup, filesize, blockedSpace, update);
     }
 
+    /**
+     * Adds used and blocked space to the space usage without exceeding any quota. The space is reserved by blocking it
+     * at the counters of all limited quotas with a compare-and-set, before the used part is moved from blocked to used
+     * space.
+     * 
+     * @param quotaFileInformation
+     * @param quotaInformation
+     *            the quota information the reservation has been calculated with
+     * @param usedSpace
+     * @param blockedSpace
+     * @param update
+     * @return false, if a quota would be exceeded due to concurrent changes; nothing has been reserved in this case
+     * @throws UserException
+     */
+    private boolean reserveSpace(QuotaFileInformation quotaFileInformation, QuotaInformation quotaInformation,
+            long usedSpace, long blockedSpace, AtomicDBUpdate update) throws UserException {
+
+        long space = usedSpace + blockedSpace;
+        try {
+            SpaceCounter volumeCounter = getVolumeSpace();
+            SpaceCounter userCounter = getUserSpace(quotaFileInformation.getOwnerId());
+            SpaceCounter groupCounter = getGroupSpace(quotaFileInformation.getOwnerGroupId());
+
+            boolean volumeLimited = quotaInformation.getVolumeQuota() != QuotaConstants.UNLIMITED_QUOTA;
+            boolean userLimited = quotaInformation.getUserQuota() != QuotaConstants.UNLIMITED_QUOTA;
+            boolean groupLimited = quotaInformation.getGroupQuota() != QuotaConstants.UNLIMITED_QUOTA;
+
+            if (volumeLimited && !tryBlockSpace(volumeCounter, space, quotaInformation.getVolumeQuota())) {
+                return false;
+            }
+
+            if (userLimited && !tryBlockSpace(userCounter, space, quotaInformation.getUserQuota())) {
+                if (volumeLimited) {
+                    addBlockedSpace(volumeCounter, -1 * space);
+                }
+                return false;
+            }
+
+            if (groupLimited && !tryBlockSpace(groupCounter, space, quotaInformation.getGroupQuota())) {
+                if (volumeLimited) {
+                    addBlockedSpace(volumeCounter, -1 * space);
+                }
+                if (userLimited) {
+                    addBlockedSpace(userCounter, -1 * space);
+                }
+                return false;
+            }
+
+            if (usedSpace != 0) {
+                if (volumeLimited) {
+                    addBlockedSpace(volumeCounter, -1 * usedSpace);
+                }
+                if (userLimited) {
+                    addBlockedSpace(userCounter, -1 * usedSpace);
+                }
+                if (groupLimited) {
+                    addBlockedSpace(groupCounter, -1 * usedSpace);
+                }
+
+                volStorageManager.setVolumeUsedSpace(addUsedSpace(volumeCounter, usedSpace), update);
+                volStorageManager.setUserUsedSpace(quotaFileInformation.getOwnerId(),
+                        addUsedSpace(userCounter, usedSpace), update);
+                volStorageManager.setGroupUsedSpace(quotaFileInformation.getOwnerGroupId(),
+                        addUsedSpace(groupCounter, usedSpace), update);
+            }
+
+            if (volumeLimited) {
+                volStorageManager.setVolumeBlockedSpace(volumeCounter.getBlockedSpace(), update);
+            }
+            if (userLimited) {
+                volStorageManager.setUserBlockedSpace(quotaFileInformation.getOwnerId(),
+                        userCounter.getBlockedSpace(), update);
+            }
+            if (groupLimited) {
+                volStorageManager.setGroupBlockedSpace(quotaFileInformation.getOwnerGroupId(),
+                        groupCounter.getBlockedSpace(), update);
+            }
+
+            Logging.logMessage(Logging.LEVEL_DEBUG, this, "VolumeQuotaManager(" + volumeId + ") reserved used space: "
+                    + usedSpace + " and blocked space: " + blockedSpace);
+
+        } catch (DatabaseException e) {
+            Logging.logError(Logging.LEVEL_ERROR, "An error occurred during the interaction with the database!", e);
+
+            throw new UserException(POSIXErrno.POSIX_ERROR_EIO,
+                    "An error occurred during the interaction with the database!");
+        }
+
+        return true;
+    }
+
+    private SpaceCounter getVolumeSpace() throws DatabaseException {
+        SpaceCounter counter = volumeSpace;
+        if (counter == null) {
+            synchronized (this) {
+                if (volumeSpace == null) {
+                    volumeSpace = new SpaceCounter(volStorageManager.getVolumeUsedSpace(),
+                            volStorageManager.getVolumeBlockedSpace());
+                }
+                counter = volumeSpace;
+            }
+        }
+        return counter;
+    }
+
+    private SpaceCounter getUserSpace(String ownerId) throws DatabaseException {
+        SpaceCounter counter = userSpace.get(ownerId);
+        if (counter == null) {
+            counter = new SpaceCounter(volStorageManager.getUserUsedSpace(ownerId),
+                    volStorageManager.getUserBlockedSpace(ownerId));
+            SpaceCounter existing = userSpace.putIfAbsent(ownerId, counter);
+            if (existing != null) {
+                counter = existing;
+            }
+        }
+        return counter;
+    }
+
+    private SpaceCounter getGroupSpace(String ownerGroupId) throws DatabaseException {
+        SpaceCounter counter = groupSpace.get(ownerGroupId);
+        if (counter == null) {
+            counter = new SpaceCounter(volStorageManager.getGroupUsedSpace(ownerGroupId),
+                    volStorageManager.getGroupBlockedSpace(ownerGroupId));
+            SpaceCounter existing = groupSpace.putIfAbsent(ownerGroupId, counter);
+            if (existing != null) {
+                counter = existing;
+            }
+        }
+        return counter;
+    }
+
+    private long addUsedSpace(SpaceCounter counter, long difference) {
+        mrcQuotaManager.recordChange(counter, difference, 0);
+        return counter.addUsedSpace(difference);
+    }
+
+    private long addBlockedSpace(SpaceCounter counter, long difference) {
+        mrcQuotaManager.recordChange(counter, 0, difference);
+        return counter.addBlockedSpace(difference);
+    }
+
+    private boolean tryBlockSpace(SpaceCounter counter, long space, long quota) {
+        if (!counter.tryBlockSpace(space, quota)) {
+            return false;
+        }
+
+        mrcQuotaManager.recordChange(counter, 0, space);
+        return true;
+    }
+
     /**
      * Gets all quota information, applies the default user and group quota and saves them, if it has to.
      * 
@@ -389,12 +566,13 @@ public class VolumeQuotaManager {
         }
 
         try {
-            long volumeUsedSpace = volStorageManager.getVolumeUsedSpace();
+            SpaceCounter counter = getVolumeSpace();
+            long volumeUsedSpace = counter.getUsedSpace();
             quotaInformation.setVolumeUsedSpace(volumeUsedSpace);
 
             // check volume quota
-            if (volumeQuota != QuotaConstants.UNLIMITED_QUOTA) {
-                long volumeBlockedSpace = volStorageManager.getVolumeBlockedSpace();
+            if (quotaInformation.getVolumeQuota() != QuotaConstants.UNLIMITED_QUOTA) {
+                long volumeBlockedSpace = counter.getBlockedSpace();
                 quotaInformation.setVolumeBlockedSpace(volumeBlockedSpace);
 
                 long volumeFreeSpace = volumeQuota - (volumeUsedSpace + volumeBlockedSpace);
@@ -437,11 +615,12 @@ public class VolumeQuotaManager {
                 userQuotaDefined = true;
             }
 
-            long userUsedSpace = volStorageManager.getUserUsedSpace(ownerId);
+            SpaceCounter counter = getUserSpace(ownerId);
+            long userUsedSpace = counter.getUsedSpace();
             quotaInformation.setUserUsedSpace(userUsedSpace);
 
             if (userQuota != QuotaConstants.UNLIMITED_QUOTA) {
-                long userBlockedSpace = volStorageManager.getUserBlockedSpace(ownerId);
+                long userBlockedSpace = counter.getBlockedSpace();
                 quotaInformation.setUserBlockedSpace(userBlockedSpace);
 
                 long userFreeSpace = userQuota - (userUsedSpace + userBlockedSpace);
@@ -490,11 +669,12 @@ public class VolumeQuotaManager {
                 groupQuotaDefined = true;
             }
 
-            long groupUsedSpace = volStorageManager.getGroupUsedSpace(ownerGroupId);
+            SpaceCounter counter = getGroupSpace(ownerGroupId);
+            long groupUsedSpace = counter.getUsedSpace();
             quotaInformation.setGroupUsedSpace(groupUsedSpace);
 
             if (groupQuota != QuotaConstants.UNLIMITED_QUOTA) {
-                long groupBlockedSpace = volStorageManager.getGroupBlockedSpace(ownerGroupId);
+                long groupBlockedSpace = counter.getBlockedSpace();
                 quotaInformation.setGroupBlockedSpace(groupBlockedSpace);
 
                 long groupFreeSpace = groupQuota - (groupUsedSpace + groupBlockedSpace);
@@ -542,7 +722,7 @@ public class VolumeQuotaManager {
      * 
      * @throws Exception
      */
-    public synchronized void delete() throws Exception {
+    public void delete() throws Exception {
         mrcQuotaManager.removeVolumeQuotaManager(this);
     }
 
@@ -28,15 +28,38 @@ import org.xtreemfs.mrc.quota.Voucher.VoucherType;
 /**
  * This class manages all voucher requested affairs and if necessary, it delegates them to reference classes.
  * 
- * This class is currently thread-safe, because e.g. the XLockCoordinator handling add/remove replica works in a
- * separate thread.
+ * This class is thread-safe, because e.g. the XLockCoordinator handling add/remove replica works in a separate thread.
+ * Changes of the voucher information of a file are serialized with a lock that is striped by the file, so that
+ * operations on different files don't block each other. The quota itself is accounted by the lock-free
+ * {@link VolumeQuotaManager}.
  */
 public class VoucherManager {
 
+    private static final int   NUM_FILE_LOCKS = 64;
+
     private final QuotaManager mrcQuotaManager;
 
+    private final Object[]     fileLocks;
+
     public VoucherManager(QuotaManager mrcQuotaManager) {
         this.mrcQuotaManager = mrcQuotaManager;
+
+        fileLocks = new Object[NUM_FILE_LOCKS];
+        for (int i = 0; i < fileLocks.length; i++) {
+            fileLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Returns the lock that serializes changes of the voucher information of the given file.
+     * 
+     * @param quotaFileInformation
+     * @return the lock object
+     */
+    private Object getFileLock(QuotaFileInformation quotaFileInformation) {
+        long fileId = quotaFileInformation.getFileId();
+        int hash = 31 * quotaFileInformation.getVolumeId().hashCode() + (int) (fileId ^ (fileId >>> 32));
+        return fileLocks[(hash & Integer.MAX_VALUE) % NUM_FILE_LOCKS];
     }
 
     /**
@@ -50,73 +73,75 @@ public class VoucherManager {
      * @return
      * @throws UserException
      */
-    public synchronized long getVoucher(QuotaFileInformation quotaFileInformation, String clientId, long expireTime,
+    public long getVoucher(QuotaFileInformation quotaFileInformation, String clientId, long expireTime,
             AtomicDBUpdate update) throws UserException {
 
-        Logging.logMessage(Logging.LEVEL_DEBUG, this, "Client " + clientId + " requests a voucher for file: "
-                + quotaFileInformation.getGlobalFileId());
+        synchronized (getFileLock(quotaFileInformation)) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, this, "Client " + clientId + " requests a voucher for file: "
+                    + quotaFileInformation.getGlobalFileId());
 
-        long newMaxFileSize = 0;
+            long newMaxFileSize = 0;
 
-        try {
-            VolumeQuotaManager volumeQuotaManager = mrcQuotaManager.getVolumeQuotaManagerById(quotaFileInformation
-                    .getVolumeId());
-            StorageManager storageManager = volumeQuotaManager.getVolStorageManager();
+            try {
+                VolumeQuotaManager volumeQuotaManager = mrcQuotaManager.getVolumeQuotaManagerById(quotaFileInformation
+                        .getVolumeId());
+                StorageManager storageManager = volumeQuotaManager.getVolStorageManager();
 
-            FileVoucherInfo fileVoucherInfo = storageManager.getFileVoucherInfo(quotaFileInformation.getFileId());
-            FileVoucherClientInfo fileVoucherClientInfo = storageManager.getFileVoucherClientInfo(
-                    quotaFileInformation.getFileId(), clientId);
+                FileVoucherInfo fileVoucherInfo = storageManager.getFileVoucherInfo(quotaFileInformation.getFileId());
+                FileVoucherClientInfo fileVoucherClientInfo = storageManager.getFileVoucherClientInfo(
+                        quotaFileInformation.getFileId(), clientId);
 
-            if (fileVoucherInfo != null) {
-                // overwrite replica count, because added replica don't have to be installed yet, but are covered
-                // by the voucher and quota management.
-                quotaFileInformation.setReplicaCount(fileVoucherInfo.getReplicaCount());
-            }
+                if (fileVoucherInfo != null) {
+                    // overwrite replica count, because added replica don't have to be installed yet, but are covered
+                    // by the voucher and quota management.
+                    quotaFileInformation.setReplicaCount(fileVoucherInfo.getReplicaCount());
+                }
+
+                Voucher voucher = volumeQuotaManager.getVoucher(quotaFileInformation, update);
 
-            Voucher voucher = volumeQuotaManager.getVoucher(quotaFileInformation, update);
+                // create or update file voucher info
+                if (fileVoucherInfo == null) {
+                    assert (fileVoucherClientInfo == null); // it has to be null
 
-            // create or update file voucher info
-            if (fileVoucherInfo == null) {
-                assert (fileVoucherClientInfo == null); // it has to be null
+                    fileVoucherInfo = new BufferBackedFileVoucherInfo(quotaFileInformation.getFileId(),
+                            quotaFileInformation.getFilesize(), quotaFileInformation.getReplicaCount(),
+                            voucher.getVoucherSize());
+                } else {
+                    if (fileVoucherClientInfo == null) {
+                        fileVoucherInfo.increaseClientCount();
+                    }
+                    fileVoucherInfo.increaseBlockedSpaceByValue(voucher.getVoucherSize());
+                }
 
-                fileVoucherInfo = new BufferBackedFileVoucherInfo(quotaFileInformation.getFileId(),
-                        quotaFileInformation.getFilesize(), quotaFileInformation.getReplicaCount(),
-                        voucher.getVoucherSize());
-            } else {
+                // create or update file voucher client info
                 if (fileVoucherClientInfo == null) {
-                    fileVoucherInfo.increaseClientCount();
+                    fileVoucherClientInfo = new BufferBackedFileVoucherClientInfo(quotaFileInformation.getFileId(),
+                            clientId, expireTime);
+                } else {
+                    fileVoucherClientInfo.addExpireTime(expireTime);
                 }
-                fileVoucherInfo.increaseBlockedSpaceByValue(voucher.getVoucherSize());
-            }
 
-            // create or update file voucher client info
-            if (fileVoucherClientInfo == null) {
-                fileVoucherClientInfo = new BufferBackedFileVoucherClientInfo(quotaFileInformation.getFileId(),
-                        clientId, expireTime);
-            } else {
-                fileVoucherClientInfo.addExpireTime(expireTime);
-            }
+                if (voucher.getVoucherType() != VoucherType.UNLIMITED) {
+                    newMaxFileSize = fileVoucherInfo.getFilesize() + fileVoucherInfo.getBlockedSpace();
+                } else {
+                    newMaxFileSize = QuotaConstants.UNLIMITED_VOUCHER;
+                }
 
-            if (voucher.getVoucherType() != VoucherType.UNLIMITED) {
-                newMaxFileSize = fileVoucherInfo.getFilesize() + fileVoucherInfo.getBlockedSpace();
-            } else {
-                newMaxFileSize = QuotaConstants.UNLIMITED_VOUCHER;
-            }
+                storageManager.setFileVoucherInfo(fileVoucherInfo, update);
+                storageManager.setFileVoucherClientInfo(fileVoucherClientInfo, update);
+            } catch (DatabaseException e) {
+                Logging.logError(Logging.LEVEL_ERROR, "An error occurred during the interaction with the database!", e);
 
-            storageManager.setFileVoucherInfo(fileVoucherInfo, update);
-            storageManager.setFileVoucherClientInfo(fileVoucherClientInfo, update);
-        } catch (DatabaseException e) {
-            Logging.logError(Logging.LEVEL_ERROR, "An error occurred during the interaction with the database!", e);
+                throw new UserException(POSIXErrno.POSIX_ERROR_EIO,
+                        "An error occurred during the interaction with the database!");
+            } catch (MRCException e) {
+                Logging.logError(Logging.LEVEL_ERROR, this, e);
 
-            throw new UserException(POSIXErrno.POSIX_ERROR_EIO,
-                    "An error occurred during the interaction with the database!");
-        } catch (MRCException e) {
-            Logging.logError(Logging.LEVEL_ERROR, this, e);
+                throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "This volume has no assigned quota manager!");
+            }
 
-            throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "This volume has no assigned quota manager!");
+            return newMaxFileSize;
         }
-
-        return newMaxFileSize;
     }
 
     /**
@@ -125,7 +150,7 @@ public class VoucherManager {
      * @param quotaFileInformation
      * @throws UserException
      */
-    public synchronized void checkVoucherAvailability(QuotaFileInformation quotaFileInformation)
+    public void checkVoucherAvailability(QuotaFileInformation quotaFileInformation)
             throws UserException {
 
         Logging.logMessage(Logging.LEVEL_DEBUG, this,
@@ -189,69 +214,72 @@ public class VoucherManager {
      * @param update
      * @throws UserException
      */
-    public synchronized void clearVouchers(QuotaFileInformation quotaFileInformation, String clientId,
+    public void clearVouchers(QuotaFileInformation quotaFileInformation, String clientId,
             Set<Long> expireTimes, long fileSize, AtomicDBUpdate update) throws UserException {
 
-        Logging.logMessage(Logging.LEVEL_DEBUG, this,
-                "Clear voucher for file: " + quotaFileInformation.getGlobalFileId() + ". Client: " + clientId
-                        + " fileSize: " + fileSize + " expireTimes: " + expireTimes.toString());
+        synchronized (getFileLock(quotaFileInformation)) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, this,
+                    "Clear voucher for file: " + quotaFileInformation.getGlobalFileId() + ". Client: " + clientId
+                            + " fileSize: " + fileSize + " expireTimes: " + expireTimes.toString());
 
-        try {
-            VolumeQuotaManager volumeQuotaManager = mrcQuotaManager.getVolumeQuotaManagerById(quotaFileInformation
-                    .getVolumeId());
-            StorageManager storageManager = volumeQuotaManager.getVolStorageManager();
+            try {
+                VolumeQuotaManager volumeQuotaManager = mrcQuotaManager.getVolumeQuotaManagerById(quotaFileInformation
+                        .getVolumeId());
+                StorageManager storageManager = volumeQuotaManager.getVolStorageManager();
 
-            FileVoucherClientInfo fileVoucherClientInfo = storageManager.getFileVoucherClientInfo(
-                    quotaFileInformation.getFileId(), clientId);
+                FileVoucherClientInfo fileVoucherClientInfo = storageManager.getFileVoucherClientInfo(
+                        quotaFileInformation.getFileId(), clientId);
 
-            if (fileVoucherClientInfo != null) {
-                // clear expire times
-                fileVoucherClientInfo.removeExpireTimeSet(expireTimes);
-                storageManager.setFileVoucherClientInfo(fileVoucherClientInfo, update);
+                if (fileVoucherClientInfo != null) {
+                    // clear expire times
+                    fileVoucherClientInfo.removeExpireTimeSet(expireTimes);
+                    storageManager.setFileVoucherClientInfo(fileVoucherClientInfo, update);
 
-                // if no expire time remains, update general file voucher info
-                if (fileVoucherClientInfo.getExpireTimeSetSize() == 0) {
-                    FileVoucherInfo fileVoucherInfo = storageManager.getFileVoucherInfo(quotaFileInformation
-                            .getFileId());
+                    // if no expire time remains, update general file voucher info
+                    if (fileVoucherClientInfo.getExpireTimeSetSize() == 0) {
+                        FileVoucherInfo fileVoucherInfo = storageManager.getFileVoucherInfo(quotaFileInformation
+                                .getFileId());
 
-                    if (fileVoucherInfo == null) {
-                        throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL,
-                                "Invalid database structure: no general voucher information saved for fileId:"
-                                        + quotaFileInformation.getGlobalFileId());
-                    }
+                        if (fileVoucherInfo == null) {
+                            throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL,
+                                    "Invalid database structure: no general voucher information saved for fileId:"
+                                            + quotaFileInformation.getGlobalFileId());
+                        }
 
-                    // check for obsolete client vouchers
-                    clearAllClientVouchers(quotaFileInformation, clientId, fileVoucherInfo, update);
+                        // check for obsolete client vouchers
+                        clearAllClientVouchers(quotaFileInformation, clientId, fileVoucherInfo, update);
 
-                    fileVoucherInfo.decreaseClientCount();
+                        fileVoucherInfo.decreaseClientCount();
 
-                    // if there is no open voucher anymore, clear general information and update quota information
-                    if (fileVoucherInfo.getClientCount() == 0) {
-                        int replicaCount = fileVoucherInfo.getReplicaCount();
-                        long fileSizeDifference = fileSize - fileVoucherInfo.getFilesize();
-                        volumeQuotaManager.updateSpaceUsage(quotaFileInformation, replicaCount * fileSizeDifference, -1
-                                * replicaCount * fileVoucherInfo.getBlockedSpace(), update);
-                    }
+                        // if there is no open voucher anymore, clear general information and update quota information
+                        if (fileVoucherInfo.getClientCount() == 0) {
+                            int replicaCount = fileVoucherInfo.getReplicaCount();
+                            long fileSizeDifference = fileSize - fileVoucherInfo.getFilesize();
+                            volumeQuotaManager.updateSpaceUsage(quotaFileInformation,
+                                    replicaCount * fileSizeDifference,
+                                    -1 * replicaCount * fileVoucherInfo.getBlockedSpace(), update);
+                        }
 
-                    storageManager.setFileVoucherInfo(fileVoucherInfo, update);
+                        storageManager.setFileVoucherInfo(fileVoucherInfo, update);
+                    }
+                } else {
+                    Logging.logMessage(
+                            Logging.LEVEL_WARN,
+                            this,
+                            "Couldn't clear voucher, because no open voucher was issued for file: "
+                                    + quotaFileInformation.getGlobalFileId() + ". Client: " + clientId + " fileSize: "
+                                    + fileSize + " expireTimes: " + expireTimes.toString());
                 }
-            } else {
-                Logging.logMessage(
-                        Logging.LEVEL_WARN,
-                        this,
-                        "Couldn't clear voucher, because no open voucher was issued for file: "
-                                + quotaFileInformation.getGlobalFileId() + ". Client: " + clientId + " fileSize: "
-                                + fileSize + " expireTimes: " + expireTimes.toString());
-            }
-        } catch (DatabaseException e) {
-            Logging.logError(Logging.LEVEL_ERROR, "An error occurred during the interaction with the database!", e);
+            } catch (DatabaseException e) {
+                Logging.logError(Logging.LEVEL_ERROR, "An error occurred during the interaction with the database!", e);
 
-            throw new UserException(POSIXErrno.POSIX_ERROR_EIO,
-                    "An error occurred during the interaction with the database!");
-        } catch (MRCException e) {
-            Logging.logError(Logging.LEVEL_ERROR, this, e);
+                throw new UserException(POSIXErrno.POSIX_ERROR_EIO,
+                        "An error occurred during the interaction with the database!");
+            } catch (MRCException e) {
+                Logging.logError(Logging.LEVEL_ERROR, this, e);
 
-            throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "This volume has no assigned quota manager!");
+                throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "This volume has no assigned quota manager!");
+            }
         }
     }
 
@@ -315,62 +343,65 @@ public class VoucherManager {
      * @param update
      * @throws UserException
      */
-    public synchronized void deleteFile(QuotaFileInformation quotaFileInformation, AtomicDBUpdate update)
+    public void deleteFile(QuotaFileInformation quotaFileInformation, AtomicDBUpdate update)
             throws UserException {
 
-        Logging.logMessage(Logging.LEVEL_DEBUG, this, "Delete file: " + quotaFileInformation.getGlobalFileId()
-                + ": Check for open voucher and pass delete to quota manager.");
+        synchronized (getFileLock(quotaFileInformation)) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, this, "Delete file: " + quotaFileInformation.getGlobalFileId()
+                    + ": Check for open voucher and pass delete to quota manager.");
 
-        DatabaseResultSet<FileVoucherClientInfo> allFileVoucherClientInfo = null;
+            DatabaseResultSet<FileVoucherClientInfo> allFileVoucherClientInfo = null;
 
-        try {
-            VolumeQuotaManager volumeQuotaManager = mrcQuotaManager.getVolumeQuotaManagerById(quotaFileInformation
-                    .getVolumeId());
-            StorageManager storageManager = volumeQuotaManager.getVolStorageManager();
+            try {
+                VolumeQuotaManager volumeQuotaManager = mrcQuotaManager.getVolumeQuotaManagerById(quotaFileInformation
+                        .getVolumeId());
+                StorageManager storageManager = volumeQuotaManager.getVolStorageManager();
 
-            FileVoucherInfo fileVoucherInfo = storageManager.getFileVoucherInfo(quotaFileInformation.getFileId());
+                FileVoucherInfo fileVoucherInfo = storageManager.getFileVoucherInfo(quotaFileInformation.getFileId());
 
-            int replicaCount = quotaFileInformation.getReplicaCount();
-            if (fileVoucherInfo != null) {
-                Logging.logMessage(Logging.LEVEL_DEBUG, this,
-                        "Delete file with voucher: " + quotaFileInformation.getGlobalFileId());
-
-                // overwrite replica count, because added replica don't has to be installed yet, but is covered by
-                // the voucher and quota management.
-                replicaCount = fileVoucherInfo.getReplicaCount();
-
-                volumeQuotaManager.updateSpaceUsage(quotaFileInformation,
-                        -1 * replicaCount * fileVoucherInfo.getFilesize(),
-                        -1 * replicaCount * fileVoucherInfo.getBlockedSpace(), update);
+                int replicaCount = quotaFileInformation.getReplicaCount();
+                if (fileVoucherInfo != null) {
+                    Logging.logMessage(Logging.LEVEL_DEBUG, this,
+                            "Delete file with voucher: " + quotaFileInformation.getGlobalFileId());
 
-                // get all open client information and delete them
-                allFileVoucherClientInfo = storageManager.getAllFileVoucherClientInfo(quotaFileInformation.getFileId());
-                while (allFileVoucherClientInfo.hasNext()) {
-                    FileVoucherClientInfo fileVoucherClientInfo = allFileVoucherClientInfo.next();
-                    fileVoucherClientInfo.clearExpireTimeSet();
-                    storageManager.setFileVoucherClientInfo(fileVoucherClientInfo, update);
-                }
+                    // overwrite replica count, because added replica don't has to be installed yet, but is covered by
+                    // the voucher and quota management.
+                    replicaCount = fileVoucherInfo.getReplicaCount();
 
-            } else {
-                Logging.logMessage(Logging.LEVEL_DEBUG, this,
-                        "Delete file without voucher: " + quotaFileInformation.getGlobalFileId());
+                    volumeQuotaManager.updateSpaceUsage(quotaFileInformation,
+                            -1 * replicaCount * fileVoucherInfo.getFilesize(),
+                            -1 * replicaCount * fileVoucherInfo.getBlockedSpace(), update);
 
-                // check for active volume quota manager and reduce used space by file size
-                volumeQuotaManager.updateSpaceUsage(quotaFileInformation,
-                        -1 * replicaCount * quotaFileInformation.getFilesize(), 0, update);
-            }
-        } catch (DatabaseException e) {
-            Logging.logError(Logging.LEVEL_ERROR, "An error occurred during the interaction with the database!", e);
+                    // get all open client information and delete them
+                    allFileVoucherClientInfo = storageManager.getAllFileVoucherClientInfo(quotaFileInformation
+                            .getFileId());
+                    while (allFileVoucherClientInfo.hasNext()) {
+                        FileVoucherClientInfo fileVoucherClientInfo = allFileVoucherClientInfo.next();
+                        fileVoucherClientInfo.clearExpireTimeSet();
+                        storageManager.setFileVoucherClientInfo(fileVoucherClientInfo, update);
+                    }
 
-            throw new UserException(POSIXErrno.POSIX_ERROR_EIO,
-                    "An error occurred during the interaction with the database!");
-        } catch (MRCException e) {
-            Logging.logError(Logging.LEVEL_ERROR, this, e);
+                } else {
+                    Logging.logMessage(Logging.LEVEL_DEBUG, this,
+                            "Delete file without voucher: " + quotaFileInformation.getGlobalFileId());
 
-            throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "This volume has no assigned quota manager!");
-        } finally {
-            if (allFileVoucherClientInfo != null) {
-                allFileVoucherClientInfo.destroy();
+                    // check for active volume quota manager and reduce used space by file size
+                    volumeQuotaManager.updateSpaceUsage(quotaFileInformation,
+                            -1 * replicaCount * quotaFileInformation.getFilesize(), 0, update);
+                }
+            } catch (DatabaseException e) {
+                Logging.logError(Logging.LEVEL_ERROR, "An error occurred during the interaction with the database!", e);
+
+                throw new UserException(POSIXErrno.POSIX_ERROR_EIO,
+                        "An error occurred during the interaction with the database!");
+            } catch (MRCException e) {
+                Logging.logError(Logging.LEVEL_ERROR, this, e);
+
+                throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "This volume has no assigned quota manager!");
+            } finally {
+                if (allFileVoucherClientInfo != null) {
+                    allFileVoucherClientInfo.destroy();
+                }
             }
         }
     }
@@ -390,82 +421,84 @@ public class VoucherManager {
      *             if parameter couldn't be found or if no new voucher could be acquired and old and new maximum
      *             filesize are the same
      */
-    public synchronized long checkAndRenewVoucher(QuotaFileInformation quotaFileInformation, String clientId,
+    public long checkAndRenewVoucher(QuotaFileInformation quotaFileInformation, String clientId,
             long oldMaxFileSize, long oldExpireTime, long newExpireTime, AtomicDBUpdate update) throws UserException {
 
-        Logging.logMessage(Logging.LEVEL_DEBUG, this,
-                "Renew voucher for file: " + quotaFileInformation.getGlobalFileId() + ": client: " + clientId
-                        + ", oldExpireTime: " + oldExpireTime + ", newExpireTime: " + newExpireTime);
+        synchronized (getFileLock(quotaFileInformation)) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, this,
+                    "Renew voucher for file: " + quotaFileInformation.getGlobalFileId() + ": client: " + clientId
+                            + ", oldExpireTime: " + oldExpireTime + ", newExpireTime: " + newExpireTime);
 
-        long newMaxFileSize = 0;
+            long newMaxFileSize = 0;
 
-        try {
-            VolumeQuotaManager volumeQuotaManager = mrcQuotaManager.getVolumeQuotaManagerById(quotaFileInformation
-                    .getVolumeId());
-            StorageManager storageManager = volumeQuotaManager.getVolStorageManager();
+            try {
+                VolumeQuotaManager volumeQuotaManager = mrcQuotaManager.getVolumeQuotaManagerById(quotaFileInformation
+                        .getVolumeId());
+                StorageManager storageManager = volumeQuotaManager.getVolStorageManager();
 
-            FileVoucherClientInfo fileVoucherClientInfo = storageManager.getFileVoucherClientInfo(
-                    quotaFileInformation.getFileId(), clientId);
+                FileVoucherClientInfo fileVoucherClientInfo = storageManager.getFileVoucherClientInfo(
+                        quotaFileInformation.getFileId(), clientId);
 
-            if (fileVoucherClientInfo != null) {
-                if (fileVoucherClientInfo.hasExpireTime(oldExpireTime)) {
-                    FileVoucherInfo fileVoucherInfo = storageManager.getFileVoucherInfo(quotaFileInformation
-                            .getFileId());
+                if (fileVoucherClientInfo != null) {
+                    if (fileVoucherClientInfo.hasExpireTime(oldExpireTime)) {
+                        FileVoucherInfo fileVoucherInfo = storageManager.getFileVoucherInfo(quotaFileInformation
+                                .getFileId());
 
-                    if (fileVoucherInfo != null) {
-                        // overwrite replica count, because added replica don't have to be installed yet, but are
-                        // covered by the voucher and quota management.
-                        quotaFileInformation.setReplicaCount(fileVoucherInfo.getReplicaCount());
-                        Voucher voucher = volumeQuotaManager.getVoucher(quotaFileInformation, update);
+                        if (fileVoucherInfo != null) {
+                            // overwrite replica count, because added replica don't have to be installed yet, but are
+                            // covered by the voucher and quota management.
+                            quotaFileInformation.setReplicaCount(fileVoucherInfo.getReplicaCount());
+                            Voucher voucher = volumeQuotaManager.getVoucher(quotaFileInformation, update);
 
-                        if (voucher.getVoucherType() != VoucherType.NONE) {
-                            fileVoucherInfo.increaseBlockedSpaceByValue(voucher.getVoucherSize());
-                            storageManager.setFileVoucherInfo(fileVoucherInfo, update);
+                            if (voucher.getVoucherType() != VoucherType.NONE) {
+                                fileVoucherInfo.increaseBlockedSpaceByValue(voucher.getVoucherSize());
+                                storageManager.setFileVoucherInfo(fileVoucherInfo, update);
 
-                            fileVoucherClientInfo.addExpireTime(newExpireTime);
-                            storageManager.setFileVoucherClientInfo(fileVoucherClientInfo, update);
-                        }
+                                fileVoucherClientInfo.addExpireTime(newExpireTime);
+                                storageManager.setFileVoucherClientInfo(fileVoucherClientInfo, update);
+                            }
 
 
-                        if (voucher.getVoucherType() == VoucherType.UNLIMITED) {
-                            newMaxFileSize = QuotaConstants.UNLIMITED_VOUCHER;
-                        } else {
-                            newMaxFileSize = fileVoucherInfo.getFilesize() + fileVoucherInfo.getBlockedSpace();
+                            if (voucher.getVoucherType() == VoucherType.UNLIMITED) {
+                                newMaxFileSize = QuotaConstants.UNLIMITED_VOUCHER;
+                            } else {
+                                newMaxFileSize = fileVoucherInfo.getFilesize() + fileVoucherInfo.getBlockedSpace();
 
-                            if (voucher.getVoucherType() == VoucherType.NONE && oldMaxFileSize == newMaxFileSize) {
-                                throw new UserException(POSIXErrno.POSIX_ERROR_ENOSPC, "The "
-                                        + voucher.getEnforcedQuotaName() + " quota has been reached !");
+                                if (voucher.getVoucherType() == VoucherType.NONE && oldMaxFileSize == newMaxFileSize) {
+                                    throw new UserException(POSIXErrno.POSIX_ERROR_ENOSPC, "The "
+                                            + voucher.getEnforcedQuotaName() + " quota has been reached !");
+                                }
                             }
-                        }
 
-                        Logging.logMessage(Logging.LEVEL_DEBUG, this, "Renew voucher to " + newMaxFileSize
-                                + ". fileId: " + quotaFileInformation.getFileId() + ", client: " + clientId
-                                + ", oldExpireTime: " + oldExpireTime + ", newExpireTime: " + newExpireTime);
+                            Logging.logMessage(Logging.LEVEL_DEBUG, this, "Renew voucher to " + newMaxFileSize
+                                    + ". fileId: " + quotaFileInformation.getFileId() + ", client: " + clientId
+                                    + ", oldExpireTime: " + oldExpireTime + ", newExpireTime: " + newExpireTime);
+                        } else {
+                            throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL,
+                                    "Invalid database structure: no general voucher information saved for fileId:"
+                                            + quotaFileInformation.getGlobalFileId());
+                        }
                     } else {
-                        throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL,
-                                "Invalid database structure: no general voucher information saved for fileId:"
-                                        + quotaFileInformation.getGlobalFileId());
+                        throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "Former expire time: " + oldExpireTime
+                                + " couldn't be found for fileId:" + quotaFileInformation.getGlobalFileId());
                     }
                 } else {
-                    throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "Former expire time: " + oldExpireTime
-                            + " couldn't be found for fileId:" + quotaFileInformation.getGlobalFileId());
+                    throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "No open voucher for global fileId "
+                            + quotaFileInformation.getGlobalFileId());
                 }
-            } else {
-                throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "No open voucher for global fileId "
-                        + quotaFileInformation.getGlobalFileId());
-            }
-        } catch (DatabaseException e) {
-            Logging.logError(Logging.LEVEL_ERROR, "An error occurred during the interaction with the database!", e);
+            } catch (DatabaseException e) {
+                Logging.logError(Logging.LEVEL_ERROR, "An error occurred during the interaction with the database!", e);
 
-            throw new UserException(POSIXErrno.POSIX_ERROR_EIO,
-                    "An error occurred during the interaction with the database!");
-        } catch (MRCException e) {
-            Logging.logError(Logging.LEVEL_ERROR, this, e);
+                throw new UserException(POSIXErrno.POSIX_ERROR_EIO,
+                        "An error occurred during the interaction with the database!");
+            } catch (MRCException e) {
+                Logging.logError(Logging.LEVEL_ERROR, this, e);
 
-            throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "This volume has no assigned quota manager!");
-        }
+                throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "This volume has no assigned quota manager!");
+            }
 
-        return newMaxFileSize;
+            return newMaxFileSize;
+        }
     }
 
     /**
@@ -478,59 +511,61 @@ public class VoucherManager {
      * @param update
      * @throws UserException
      */
-    public synchronized long addRenewedTimestamp(QuotaFileInformation quotaFileInformation, String clientId,
+    public long addRenewedTimestamp(QuotaFileInformation quotaFileInformation, String clientId,
             long oldExpireTime, long newExpireTime, AtomicDBUpdate update) throws UserException {
 
-        Logging.logMessage(Logging.LEVEL_DEBUG, this,
-                "Add renewed timestamp for file: " + quotaFileInformation.getGlobalFileId() + ": client: " + clientId
-                        + ", oldExpireTime: " + oldExpireTime + ", newExpireTime: " + newExpireTime);
+        synchronized (getFileLock(quotaFileInformation)) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, this,
+                    "Add renewed timestamp for file: " + quotaFileInformation.getGlobalFileId() + ": client: "
+                            + clientId + ", oldExpireTime: " + oldExpireTime + ", newExpireTime: " + newExpireTime);
 
-        long currentMaxFileSize = 0;
+            long currentMaxFileSize = 0;
 
-        try {
-            VolumeQuotaManager volumeQuotaManager = mrcQuotaManager.getVolumeQuotaManagerById(quotaFileInformation
-                    .getVolumeId());
-            StorageManager storageManager = volumeQuotaManager.getVolStorageManager();
+            try {
+                VolumeQuotaManager volumeQuotaManager = mrcQuotaManager.getVolumeQuotaManagerById(quotaFileInformation
+                        .getVolumeId());
+                StorageManager storageManager = volumeQuotaManager.getVolStorageManager();
 
-            FileVoucherInfo fileVoucherInfo = storageManager.getFileVoucherInfo(quotaFileInformation.getFileId());
-            FileVoucherClientInfo fileVoucherClientInfo = storageManager.getFileVoucherClientInfo(
-                    quotaFileInformation.getFileId(), clientId);
+                FileVoucherInfo fileVoucherInfo = storageManager.getFileVoucherInfo(quotaFileInformation.getFileId());
+                FileVoucherClientInfo fileVoucherClientInfo = storageManager.getFileVoucherClientInfo(
+                        quotaFileInformation.getFileId(), clientId);
 
-            if (fileVoucherClientInfo != null) {
-                if (fileVoucherClientInfo.hasExpireTime(oldExpireTime)) {
-                    fileVoucherClientInfo.addExpireTime(newExpireTime);
-                    storageManager.setFileVoucherClientInfo(fileVoucherClientInfo, update);
+                if (fileVoucherClientInfo != null) {
+                    if (fileVoucherClientInfo.hasExpireTime(oldExpireTime)) {
+                        fileVoucherClientInfo.addExpireTime(newExpireTime);
+                        storageManager.setFileVoucherClientInfo(fileVoucherClientInfo, update);
 
-                    Logging.logMessage(Logging.LEVEL_DEBUG, this, "Added new expireTime: " + newExpireTime
-                            + " for fileId: " + quotaFileInformation.getFileId() + " and client: " + clientId);
+                        Logging.logMessage(Logging.LEVEL_DEBUG, this, "Added new expireTime: " + newExpireTime
+                                + " for fileId: " + quotaFileInformation.getFileId() + " and client: " + clientId);
+                    } else {
+                        throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "Former expire time: " + oldExpireTime
+                                + " couldn't be found for fileId:" + quotaFileInformation.getGlobalFileId());
+                    }
                 } else {
-                    throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "Former expire time: " + oldExpireTime
-                            + " couldn't be found for fileId:" + quotaFileInformation.getGlobalFileId());
+                    throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "No open voucher for global fileId "
+                            + quotaFileInformation.getGlobalFileId());
                 }
-            } else {
-                throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "No open voucher for global fileId "
-                        + quotaFileInformation.getGlobalFileId());
-            }
 
-            // calculate the current maximum filesize
-            if (fileVoucherInfo.getBlockedSpace() == 0) {
-                currentMaxFileSize = QuotaConstants.UNLIMITED_VOUCHER;
-            } else {
-                currentMaxFileSize = fileVoucherInfo.getFilesize() + fileVoucherInfo.getBlockedSpace();
-            }
+                // calculate the current maximum filesize
+                if (fileVoucherInfo.getBlockedSpace() == 0) {
+                    currentMaxFileSize = QuotaConstants.UNLIMITED_VOUCHER;
+                } else {
+                    currentMaxFileSize = fileVoucherInfo.getFilesize() + fileVoucherInfo.getBlockedSpace();
+                }
 
-        } catch (DatabaseException e) {
-            Logging.logError(Logging.LEVEL_ERROR, "An error occurred during the interaction with the database!", e);
+            } catch (DatabaseException e) {
+                Logging.logError(Logging.LEVEL_ERROR, "An error occurred during the interaction with the database!", e);
 
-            throw new UserException(POSIXErrno.POSIX_ERROR_EIO,
-                    "An error occurred during the interaction with the database!");
-        } catch (MRCException e) {
-            Logging.logError(Logging.LEVEL_ERROR, this, e);
+                throw new UserException(POSIXErrno.POSIX_ERROR_EIO,
+                        "An error occurred during the interaction with the database!");
+            } catch (MRCException e) {
+                Logging.logError(Logging.LEVEL_ERROR, this, e);
 
-            throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "This volume has no assigned quota manager!");
-        }
+                throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "This volume has no assigned quota manager!");
+            }
 
-        return currentMaxFileSize;
+            return currentMaxFileSize;
+        }
     }
 
     /**
@@ -541,41 +576,44 @@ public class VoucherManager {
      * @param update
      * @throws UserException
      */
-    public synchronized void addReplica(QuotaFileInformation quotaFileInformation, AtomicDBUpdate update)
+    public void addReplica(QuotaFileInformation quotaFileInformation, AtomicDBUpdate update)
             throws UserException {
 
-        Logging.logMessage(Logging.LEVEL_DEBUG, this, "Add replica for file: " + quotaFileInformation.getGlobalFileId());
+        synchronized (getFileLock(quotaFileInformation)) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, this,
+                    "Add replica for file: " + quotaFileInformation.getGlobalFileId());
 
-        try {
-            VolumeQuotaManager volumeQuotaManager = mrcQuotaManager.getVolumeQuotaManagerById(quotaFileInformation
-                    .getVolumeId());
-            StorageManager storageManager = volumeQuotaManager.getVolStorageManager();
+            try {
+                VolumeQuotaManager volumeQuotaManager = mrcQuotaManager.getVolumeQuotaManagerById(quotaFileInformation
+                        .getVolumeId());
+                StorageManager storageManager = volumeQuotaManager.getVolStorageManager();
 
-            FileVoucherInfo fileVoucherInfo = storageManager.getFileVoucherInfo(quotaFileInformation.getFileId());
+                FileVoucherInfo fileVoucherInfo = storageManager.getFileVoucherInfo(quotaFileInformation.getFileId());
 
-            long filesize = quotaFileInformation.getFilesize();
-            long blockedSpace = 0;
-            if (fileVoucherInfo != null) {
-                filesize = fileVoucherInfo.getFilesize();
-                blockedSpace = fileVoucherInfo.getBlockedSpace();
-            }
+                long filesize = quotaFileInformation.getFilesize();
+                long blockedSpace = 0;
+                if (fileVoucherInfo != null) {
+                    filesize = fileVoucherInfo.getFilesize();
+                    blockedSpace = fileVoucherInfo.getBlockedSpace();
+                }
 
-            volumeQuotaManager.addReplica(quotaFileInformation, filesize, blockedSpace, update);
+                volumeQuotaManager.addReplica(quotaFileInformation, filesize, blockedSpace, update);
 
-            // update file voucher info, if add replica didn't throw an error
-            if (fileVoucherInfo != null) {
-                fileVoucherInfo.increaseReplicaCount();
-                storageManager.setFileVoucherInfo(fileVoucherInfo, update);
-            }
-        } catch (DatabaseException e) {
-            Logging.logError(Logging.LEVEL_ERROR, "An error occurred during the interaction with the database!", e);
+                // update file voucher info, if add replica didn't throw an error
+                if (fileVoucherInfo != null) {
+                    fileVoucherInfo.increaseReplicaCount();
+                    storageManager.setFileVoucherInfo(fileVoucherInfo, update);
+                }
+            } catch (DatabaseException e) {
+                Logging.logError(Logging.LEVEL_ERROR, "An error occurred during the interaction with the database!", e);
 
-            throw new UserException(POSIXErrno.POSIX_ERROR_EIO,
-                    "An error occurred during the interaction with the database!");
-        } catch (MRCException e) {
-            Logging.logError(Logging.LEVEL_ERROR, this, e);
+                throw new UserException(POSIXErrno.POSIX_ERROR_EIO,
+                        "An error occurred during the interaction with the database!");
+            } catch (MRCException e) {
+                Logging.logError(Logging.LEVEL_ERROR, this, e);
 
-            throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "This volume has no assigned quota manager!");
+                throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "This volume has no assigned quota manager!");
+            }
         }
     }
 
@@ -586,41 +624,43 @@ public class VoucherManager {
      * @param update
      * @throws UserException
      */
-    public synchronized void removeReplica(QuotaFileInformation quotaFileInformation, AtomicDBUpdate update)
+    public void removeReplica(QuotaFileInformation quotaFileInformation, AtomicDBUpdate update)
             throws UserException {
 
-        Logging.logMessage(Logging.LEVEL_DEBUG, this,
-                "Remove replica for file: " + quotaFileInformation.getGlobalFileId());
+        synchronized (getFileLock(quotaFileInformation)) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, this,
+                    "Remove replica for file: " + quotaFileInformation.getGlobalFileId());
 
-        try {
-            VolumeQuotaManager volumeQuotaManager = mrcQuotaManager.getVolumeQuotaManagerById(quotaFileInformation
-                    .getVolumeId());
-            StorageManager storageManager = volumeQuotaManager.getVolStorageManager();
+            try {
+                VolumeQuotaManager volumeQuotaManager = mrcQuotaManager.getVolumeQuotaManagerById(quotaFileInformation
+                        .getVolumeId());
+                StorageManager storageManager = volumeQuotaManager.getVolStorageManager();
 
-            FileVoucherInfo fileVoucherInfo = storageManager.getFileVoucherInfo(quotaFileInformation.getFileId());
+                FileVoucherInfo fileVoucherInfo = storageManager.getFileVoucherInfo(quotaFileInformation.getFileId());
 
-            long filesizeDifference = -1 * quotaFileInformation.getFilesize();
-            long blockedSpaceDifference = 0;
-            if (fileVoucherInfo != null) {
-                filesizeDifference = -1 * fileVoucherInfo.getFilesize();
-                blockedSpaceDifference = -1 * fileVoucherInfo.getBlockedSpace();
+                long filesizeDifference = -1 * quotaFileInformation.getFilesize();
+                long blockedSpaceDifference = 0;
+                if (fileVoucherInfo != null) {
+                    filesizeDifference = -1 * fileVoucherInfo.getFilesize();
+                    blockedSpaceDifference = -1 * fileVoucherInfo.getBlockedSpace();
 
-                // update file voucher info
-                fileVoucherInfo.decreaseReplicaCount();
-                storageManager.setFileVoucherInfo(fileVoucherInfo, update);
-            }
+                    // update file voucher info
+                    fileVoucherInfo.decreaseReplicaCount();
+                    storageManager.setFileVoucherInfo(fileVoucherInfo, update);
+                }
 
-            volumeQuotaManager.updateSpaceUsage(quotaFileInformation, filesizeDifference, blockedSpaceDifference,
-                    update);
-        } catch (DatabaseException e) {
-            Logging.logError(Logging.LEVEL_ERROR, "An error occurred during the interaction with the database!", e);
+                volumeQuotaManager.updateSpaceUsage(quotaFileInformation, filesizeDifference, blockedSpaceDifference,
+                        update);
+            } catch (DatabaseException e) {
+                Logging.logError(Logging.LEVEL_ERROR, "An error occurred during the interaction with the database!", e);
 
-            throw new UserException(POSIXErrno.POSIX_ERROR_EIO,
-                    "An error occurred during the interaction with the database!");
-        } catch (MRCException e) {
-            Logging.logError(Logging.LEVEL_ERROR, this, e);
+                throw new UserException(POSIXErrno.POSIX_ERROR_EIO,
+                        "An error occurred during the interaction with the database!");
+            } catch (MRCException e) {
+                Logging.logError(Logging.LEVEL_ERROR, this, e);
 
-            throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "This volume has no assigned quota manager!");
+                throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "This volume has no assigned quota manager!");
+            }
         }
     }
 
@@ -633,37 +673,39 @@ public class VoucherManager {
      * @param update
      * @throws UserException
      */
-    public synchronized void transferOwnerSpace(QuotaFileInformation quotaFileInformation, String newOwnerId,
+    public void transferOwnerSpace(QuotaFileInformation quotaFileInformation, String newOwnerId,
             AtomicDBUpdate update) throws UserException {
 
-        Logging.logMessage(Logging.LEVEL_DEBUG, this,
-                "Transfer space of the file " + quotaFileInformation.getGlobalFileId() + " to the new owner.");
+        synchronized (getFileLock(quotaFileInformation)) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, this,
+                    "Transfer space of the file " + quotaFileInformation.getGlobalFileId() + " to the new owner.");
 
-        try {
-            VolumeQuotaManager volumeQuotaManager = mrcQuotaManager.getVolumeQuotaManagerById(quotaFileInformation
-                    .getVolumeId());
-            StorageManager storageManager = volumeQuotaManager.getVolStorageManager();
+            try {
+                VolumeQuotaManager volumeQuotaManager = mrcQuotaManager.getVolumeQuotaManagerById(quotaFileInformation
+                        .getVolumeId());
+                StorageManager storageManager = volumeQuotaManager.getVolStorageManager();
 
-            FileVoucherInfo fileVoucherInfo = storageManager.getFileVoucherInfo(quotaFileInformation.getFileId());
+                FileVoucherInfo fileVoucherInfo = storageManager.getFileVoucherInfo(quotaFileInformation.getFileId());
 
-            long filesize = quotaFileInformation.getFilesize();
-            long blockedSpace = 0;
-            if (fileVoucherInfo != null) {
-                filesize = fileVoucherInfo.getFilesize();
-                blockedSpace = fileVoucherInfo.getBlockedSpace();
-            }
+                long filesize = quotaFileInformation.getFilesize();
+                long blockedSpace = 0;
+                if (fileVoucherInfo != null) {
+                    filesize = fileVoucherInfo.getFilesize();
+                    blockedSpace = fileVoucherInfo.getBlockedSpace();
+                }
 
-            volumeQuotaManager.transferOwnerSpace(quotaFileInformation, newOwnerId, filesize, blockedSpace, update);
+                volumeQuotaManager.transferOwnerSpace(quotaFileInformation, newOwnerId, filesize, blockedSpace, update);
 
-        } catch (DatabaseException e) {
-            Logging.logError(Logging.LEVEL_ERROR, "An error occurred during the interaction with the database!", e);
+            } catch (DatabaseException e) {
+                Logging.logError(Logging.LEVEL_ERROR, "An error occurred during the interaction with the database!", e);
 
-            throw new UserException(POSIXErrno.POSIX_ERROR_EIO,
-                    "An error occurred during the interaction with the database!");
-        } catch (MRCException e) {
-            Logging.logError(Logging.LEVEL_ERROR, this, e);
+                throw new UserException(POSIXErrno.POSIX_ERROR_EIO,
+                        "An error occurred during the interaction with the database!");
+            } catch (MRCException e) {
+                Logging.logError(Logging.LEVEL_ERROR, this, e);
 
-            throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "This volume has no assigned quota manager!");
+                throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "This volume has no assigned quota manager!");
+            }
         }
     }
 
@@ -676,38 +718,41 @@ public class VoucherManager {
      * @param update
      * @throws UserException
      */
-    public synchronized void transferOwnerGroupSpace(QuotaFileInformation quotaFileInformation, String newOwnerGroupId,
+    public void transferOwnerGroupSpace(QuotaFileInformation quotaFileInformation, String newOwnerGroupId,
             AtomicDBUpdate update) throws UserException {
 
-        Logging.logMessage(Logging.LEVEL_DEBUG, this,
-                "Transfer space of the file " + quotaFileInformation.getGlobalFileId() + " to the new owner group.");
+        synchronized (getFileLock(quotaFileInformation)) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, this,
+                    "Transfer space of the file " + quotaFileInformation.getGlobalFileId()
+                            + " to the new owner group.");
 
-        try {
-            VolumeQuotaManager volumeQuotaManager = mrcQuotaManager.getVolumeQuotaManagerById(quotaFileInformation
-                    .getVolumeId());
-            StorageManager storageManager = volumeQuotaManager.getVolStorageManager();
+            try {
+                VolumeQuotaManager volumeQuotaManager = mrcQuotaManager.getVolumeQuotaManagerById(quotaFileInformation
+                        .getVolumeId());
+                StorageManager storageManager = volumeQuotaManager.getVolStorageManager();
 
-            FileVoucherInfo fileVoucherInfo = storageManager.getFileVoucherInfo(quotaFileInformation.getFileId());
+                FileVoucherInfo fileVoucherInfo = storageManager.getFileVoucherInfo(quotaFileInformation.getFileId());
 
-            long filesize = quotaFileInformation.getFilesize();
-            long blockedSpace = 0;
-            if (fileVoucherInfo != null) {
-                filesize = fileVoucherInfo.getFilesize();
-                blockedSpace = fileVoucherInfo.getBlockedSpace();
-            }
+                long filesize = quotaFileInformation.getFilesize();
+                long blockedSpace = 0;
+                if (fileVoucherInfo != null) {
+                    filesize = fileVoucherInfo.getFilesize();
+                    blockedSpace = fileVoucherInfo.getBlockedSpace();
+                }
 
-            volumeQuotaManager.transferOwnerGroupSpace(quotaFileInformation, newOwnerGroupId, filesize, blockedSpace,
-                    update);
+                volumeQuotaManager.transferOwnerGroupSpace(quotaFileInformation, newOwnerGroupId, filesize,
+                        blockedSpace, update);
 
-        } catch (DatabaseException e) {
-            Logging.logError(Logging.LEVEL_ERROR, "An error occurred during the interaction with the database!", e);
+            } catch (DatabaseException e) {
+                Logging.logError(Logging.LEVEL_ERROR, "An error occurred during the interaction with the database!", e);
 
-            throw new UserException(POSIXErrno.POSIX_ERROR_EIO,
-                    "An error occurred during the interaction with the database!");
-        } catch (MRCException e) {
-            Logging.logError(Logging.LEVEL_ERROR, this, e);
+                throw new UserException(POSIXErrno.POSIX_ERROR_EIO,
+                        "An error occurred during the interaction with the database!");
+            } catch (MRCException e) {
+                Logging.logError(Logging.LEVEL_ERROR, this, e);
 
-            throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "This volume has no assigned quota manager!");
+                throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "This volume has no assigned quota manager!");
+            }
         }
     }
 
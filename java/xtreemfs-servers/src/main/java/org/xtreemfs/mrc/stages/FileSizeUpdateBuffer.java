@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.mrc.stages;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.foundation.logging.Logging.Category;
+import org.xtreemfs.mrc.MRCRequestDispatcher;
+import org.xtreemfs.mrc.UserException;
+import org.xtreemfs.mrc.database.AtomicDBUpdate;
+import org.xtreemfs.mrc.database.DBAccessResultListener;
+import org.xtreemfs.mrc.database.DatabaseException;
+import org.xtreemfs.mrc.database.StorageManager;
+import org.xtreemfs.mrc.metadata.FileMetadata;
+
+/**
+ * Absorbs file size updates reported by clients while files are being written, and writes them to the
+ * database in batches.
+ * <p>
+ * For each file, only the largest size of the latest truncate epoch is kept. Buffered sizes are written
+ * periodically, and before any other operation is executed by the processing stage, so that all other
+ * operations see the latest file sizes. Hence, only file size updates that are processed back to back are
+ * combined: a run of consecutive file size updates, which dominate the load during parallel appends, results
+ * in a single database update per volume, while any other operation in between ends the run.
+ * <p>
+ * If the sizes of a volume cannot be written, they are kept and written with the next flush.
+ * <p>
+ * The buffer is only accessed by the processing stage thread. Sizes reported by clients within the last
+ * flush interval may be lost if the MRC crashes; clients report the final size of a file on close, which
+ * is never buffered.
+ */
+public class FileSizeUpdateBuffer implements InternalCallbackInterface {
+
+    private static final class PendingSize {
+
+        long size;
+
+        int  epoch;
+
+        int  time;
+
+        PendingSize(long size, int epoch, int time) {
+            this.size = size;
+            this.epoch = epoch;
+            this.time = time;
+        }
+    }
+
+    private final MRCRequestDispatcher                master;
+
+    /**
+     * volume IDs mapped to file IDs mapped to the buffered sizes of the files
+     */
+    private final Map<String, Map<Long, PendingSize>> pendingSizes;
+
+    private final Timer                               timer;
+
+    private final int                                 flushIntervalMillis;
+
+    /**
+     * true, if sizes are buffered; used by the timer to avoid needless flushes
+     */
+    private volatile boolean                          dirty;
+
+    private final DBAccessResultListener<Object>      flushListener;
+
+    private volatile ProcessingStage                  stage;
+
+    public FileSizeUpdateBuffer(MRCRequestDispatcher master, int flushIntervalMillis) {
+        this.master = master;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.pendingSizes = new HashMap<String, Map<Long, PendingSize>>();
+        this.timer = flushIntervalMillis > 0 ? new Timer("FileSizeUpdateBuffer", true) : null;
+
+        this.flushListener = new DBAccessResultListener<Object>() {
+
+            @Override
+            public void finished(Object result, Object context) {
+            }
+
+            @Override
+            public void failed(Throwable error, Object context) {
+                final Object[] failed = (Object[]) context;
+                Logging.logMessage(Logging.LEVEL_ERROR, Category.storage, FileSizeUpdateBuffer.this,
+                    "could not write buffered file sizes of volume %s", failed[0]);
+                Logging.logError(Logging.LEVEL_ERROR, FileSizeUpdateBuffer.this, error);
+
+                // buffer the sizes again, in the context of the processing stage
+                stage.enqueueInternalCallbackOperation(new InternalCallbackInterface() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public void execute() {
+                        requeue((String) failed[0], (Map<Long, PendingSize>) failed[1]);
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * @return <code>true</code>, if file size updates are buffered
+     */
+    public boolean isEnabled() {
+        return timer != null;
+    }
+
+    void start(final ProcessingStage stage) {
+        this.stage = stage;
+        if (timer == null)
+            return;
+
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                if (dirty)
+                    stage.enqueueInternalCallbackOperation(FileSizeUpdateBuffer.this);
+            }
+        }, flushIntervalMillis, flushIntervalMillis);
+    }
+
+    void stop() {
+        if (timer != null)
+            timer.cancel();
+    }
+
+    /**
+     * Returns the file size that is currently in effect for the given file, i.e. the buffered size if it
+     * supersedes the file's stored size.
+     *
+     * @param volumeId
+     *            the volume ID
+     * @param file
+     *            the file as stored in the database
+     * @return the size
+     */
+    public long getSize(String volumeId, FileMetadata file) {
+        PendingSize pending = getPendingSize(volumeId, file);
+        return pending == null ? file.getSize() : pending.size;
+    }
+
+    /**
+     * Returns the truncate epoch that is currently in effect for the given file.
+     *
+     * @param volumeId
+     *            the volume ID
+     * @param file
+     *            the file as stored in the database
+     * @return the truncate epoch
+     */
+    public int getEpoch(String volumeId, FileMetadata file) {
+        PendingSize pending = getPendingSize(volumeId, file);
+        return pending == null ? file.getEpoch() : pending.epoch;
+    }
+
+    /**
+     * Buffers a new file size. The size must supersede the size in effect for the file.
+     *
+     * @param volumeId
+     *            the volume ID
+     * @param fileId
+     *            the file ID
+     * @param size
+     *            the new size
+     * @param epoch
+     *            the truncate epoch of the new size
+     * @param time
+     *            the time of the update in seconds
+     */
+    public void put(String volumeId, long fileId, long size, int epoch, int time) {
+
+        Map<Long, PendingSize> sizes = pendingSizes.get(volumeId);
+        if (sizes == null) {
+            sizes = new LinkedHashMap<Long, PendingSize>();
+            pendingSizes.put(volumeId, sizes);
+        }
+
+        PendingSize pending = sizes.get(fileId);
+        if (pending == null)
+            sizes.put(fileId, new PendingSize(size, epoch, time));
+        else {
+            pending.size = size;
+            pending.epoch = epoch;
+            pending.time = time;
+        }
+
+        dirty = true;
+    }
+
+    /**
+     * Writes all buffered sizes asynchronously.
+     */
+    @Override
+    public void execute() {
+        flush(false);
+    }
+
+    /**
+     * Writes all buffered sizes to the database, with one update per volume. The sizes of a volume that
+     * cannot be written remain buffered.
+     *
+     * @param sync
+     *            if <code>true</code>, the method returns after the updates have been written
+     */
+    public void flush(boolean sync) {
+
+        if (!dirty)
+            return;
+
+        Iterator<Entry<String, Map<Long, PendingSize>>> it = pendingSizes.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry<String, Map<Long, PendingSize>> vol = it.next();
+            try {
+                StorageManager sMan = master.getVolumeManager().getStorageManager(vol.getKey());
+                AtomicDBUpdate update = sync ? sMan.createAtomicDBUpdate(null, null) : sMan
+                        .createAtomicDBUpdate(flushListener, new Object[] { vol.getKey(), vol.getValue() });
+
+                for (Entry<Long, PendingSize> entry : vol.getValue().entrySet()) {
+                    FileMetadata file = sMan.getMetadata(entry.getKey());
+                    if (file != null) {
+                        PendingSize pending = entry.getValue();
+                        applyFileSize(sMan, file, pending.size, pending.epoch, pending.time, update);
+                    }
+                }
+
+                update.execute();
+                it.remove();
+
+            } catch (UserException exc) {
+                // the volume has been deleted in the meantime
+                it.remove();
+            } catch (DatabaseException exc) {
+                Logging.logMessage(Logging.LEVEL_ERROR, Category.storage, this,
+                    "could not write buffered file sizes of volume %s", vol.getKey());
+                Logging.logError(Logging.LEVEL_ERROR, this, exc);
+            }
+        }
+
+        dirty = !pendingSizes.isEmpty();
+    }
+
+    /**
+     * Buffers sizes whose asynchronous update has failed again, unless they have been superseded in the
+     * meantime.
+     */
+    private void requeue(String volumeId, Map<Long, PendingSize> sizes) {
+        for (Entry<Long, PendingSize> entry : sizes.entrySet()) {
+            PendingSize failed = entry.getValue();
+            Map<Long, PendingSize> current = pendingSizes.get(volumeId);
+            PendingSize pending = current == null ? null : current.get(entry.getKey());
+            if (pending == null || failed.epoch > pending.epoch
+                || (failed.epoch == pending.epoch && failed.size > pending.size))
+                put(volumeId, entry.getKey(), failed.size, failed.epoch, failed.time);
+        }
+    }
+
+    /**
+     * Sets the size of a file, if the new size supersedes the current size. A size supersedes the current
+     * size if it belongs to a newer truncate epoch, or if it is larger and belongs to the same epoch.
+     *
+     * @param sMan
+     *            the storage manager of the file's volume
+     * @param file
+     *            the file
+     * @param newFileSize
+     *            the new size
+     * @param epochNo
+     *            the truncate epoch of the new size
+     * @param time
+     *            the modification time in seconds
+     * @param update
+     *            the update to which the changes are added
+     * @return <code>true</code>, if the size was changed
+     */
+    public static boolean applyFileSize(StorageManager sMan, FileMetadata file, long newFileSize, int epochNo,
+        int time, AtomicDBUpdate update) throws DatabaseException {
+
+        // only accept valid file size updates
+        if (epochNo < file.getEpoch())
+            return false;
+
+        boolean epochChanged = epochNo > file.getEpoch();
+
+        // accept any file size in a new epoch but only larger file
+        // sizes in the current epoch
+        if (!epochChanged && newFileSize <= file.getSize())
+            return false;
+
+        long oldFileSize = file.getSize();
+
+        file.setSize(newFileSize);
+        file.setEpoch(epochNo);
+        file.setCtime(time);
+        file.setMtime(time);
+
+        sMan.setMetadata(file, FileMetadata.FC_METADATA, update);
+
+        if (epochChanged)
+            sMan.setMetadata(file, FileMetadata.RC_METADATA, update);
+
+        // update the volume size and the recursive directory sizes
+        sMan.getVolumeInfo().updateVolumeSize(newFileSize - oldFileSize, update);
+        sMan.updateDirStats(file, newFileSize - oldFileSize, update);
+
+        return true;
+    }
+
+    private PendingSize getPendingSize(String volumeId, FileMetadata file) {
+        Map<Long, PendingSize> sizes = pendingSizes.get(volumeId);
+        PendingSize pending = sizes == null ? null : sizes.get(file.getId());
+        return pending == null || pending.epoch < file.getEpoch() ? null : pending;
+    }
+
+}
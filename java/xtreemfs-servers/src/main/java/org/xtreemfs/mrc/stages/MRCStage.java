@@ -10,12 +10,13 @@ package org.xtreemfs.mrc.stages;
 
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 
 import org.xtreemfs.foundation.LifeCycleThread;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
+import org.xtreemfs.foundation.metrics.Gauge;
+import org.xtreemfs.foundation.metrics.Histogram;
+import org.xtreemfs.foundation.metrics.MetricsRegistry;
 import org.xtreemfs.mrc.MRCRequest;
 
 public abstract class MRCStage extends LifeCycleThread {
@@ -58,19 +59,22 @@ public abstract class MRCStage extends LifeCycleThread {
      */
     protected volatile boolean           quit;
     
-    public AtomicInteger                 _numRq, _maxRqTime, _minRqTime;
+    /**
+     * time from enqueueing a request until it is dequeued, in microseconds
+     */
+    private final Histogram              queueWait;
     
-    public AtomicLong                    _sumRqTime;
+    /**
+     * time spent processing a request in the stage, in microseconds
+     */
+    private final Histogram              processing;
     
     public MRCStage(String stageName) {
         super(stageName);
         q = new LinkedBlockingQueue<StageMethod>();
         this.quit = false;
-        
-        _numRq = new AtomicInteger(0);
-        _maxRqTime = new AtomicInteger(0);
-        _minRqTime = new AtomicInteger(Integer.MAX_VALUE);
-        _sumRqTime = new AtomicLong(0);
+        this.queueWait = new Histogram();
+        this.processing = new Histogram();
     }
     
     /**
@@ -102,6 +106,22 @@ public abstract class MRCStage extends LifeCycleThread {
         return q.size();
     }
     
+    /**
+     * Registers the queue wait and processing times and the queue length of
+     * the stage, labeled with the name of the stage.
+     */
+    public void registerMetrics(MetricsRegistry registry) {
+        final String labels = MetricsRegistry.label("stage", getName());
+        registry.register("xtreemfs_stage_queue_wait_us", labels, queueWait);
+        registry.register("xtreemfs_stage_processing_us", labels, processing);
+        registry.register("xtreemfs_stage_queue_length", labels, new Gauge() {
+            @Override
+            public long getValue() {
+                return getQueueLength();
+            }
+        });
+    }
+    
     @Override
     public void run() {
         
@@ -111,6 +131,8 @@ public abstract class MRCStage extends LifeCycleThread {
             MRCRequest rq = null;
             try {
                 final StageMethod op = q.take();
+                final long start = System.nanoTime();
+                queueWait.record((start - op.getEnqueueNanos()) / 1000);
                 
                 if (op.isInternalRequest()) {
                     if (Logging.isDebug())
@@ -129,6 +151,8 @@ public abstract class MRCStage extends LifeCycleThread {
                     processMethod(op);
                 }
                 
+                processing.record((System.nanoTime() - start) / 1000);
+                
             } catch (InterruptedException ex) {
                 break;
             } catch (Throwable ex) {
@@ -166,12 +190,15 @@ public abstract class MRCStage extends LifeCycleThread {
         private int                       stageMethod;
 
         private MRCStageCallbackInterface callback;
+
+        private final long                enqueueNanos;
         
         public StageMethod(MRCRequest rq, int stageMethod, MRCStageCallbackInterface callback) {
             this.rq = rq;
             this.internalRq = null;
             this.stageMethod = stageMethod;
             this.callback = callback;
+            this.enqueueNanos = System.nanoTime();
         }
 
         public StageMethod(MRCInternalRequest internalRq, int stageMethod, MRCStageCallbackInterface callback) {
@@ -179,6 +206,7 @@ public abstract class MRCStage extends LifeCycleThread {
             this.internalRq = internalRq;
             this.stageMethod = stageMethod;
             this.callback = callback;
+            this.enqueueNanos = System.nanoTime();
         }
         
         public int getStageMethod() {
@@ -212,6 +240,10 @@ public abstract class MRCStage extends LifeCycleThread {
         public void setCallback(MRCStageCallbackInterface callback) {
             this.callback = callback;
         }
+
+        public long getEnqueueNanos() {
+            return enqueueNanos;
+        }
     }
     
 }
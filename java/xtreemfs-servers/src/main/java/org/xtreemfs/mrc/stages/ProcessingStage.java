@@ -32,6 +32,9 @@ import org.xtreemfs.mrc.database.DatabaseException;
 import org.xtreemfs.mrc.database.DatabaseException.ExceptionType;
 import org.xtreemfs.mrc.operations.AccessOperation;
 import org.xtreemfs.mrc.operations.AddReplicaOperation;
+import org.xtreemfs.mrc.operations.BatchCreateOperation;
+import org.xtreemfs.mrc.operations.BatchGetXLocSetOperation;
+import org.xtreemfs.mrc.operations.BatchStatOperation;
 import org.xtreemfs.mrc.operations.CheckFileListOperation;
 import org.xtreemfs.mrc.operations.CheckpointOperation;
 import org.xtreemfs.mrc.operations.ClearVouchersOperation;
@@ -72,6 +75,7 @@ import org.xtreemfs.mrc.operations.StatFSOperation;
 import org.xtreemfs.mrc.operations.StatOperation;
 import org.xtreemfs.mrc.operations.TruncateOperation;
 import org.xtreemfs.mrc.operations.UpdateFileSizeOperation;
+import org.xtreemfs.mrc.quota.QuotaManager;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRCServiceConstants;
 
 import com.google.protobuf.Descriptors.FieldDescriptor;
@@ -94,10 +98,15 @@ public class ProcessingStage extends MRCStage {
     
     private final boolean                    statisticsEnabled         = true;
     
+    private final FileSizeUpdateBuffer       fileSizeUpdateBuffer;
+    
     public ProcessingStage(MRCRequestDispatcher master) {
         super("ProcSt");
         this.master = master;
         
+        fileSizeUpdateBuffer = new FileSizeUpdateBuffer(master, master.getConfig()
+                .getFileSizeUpdateFlushInterval());
+        
         operations = new HashMap<Integer, MRCOperation>();
         installOperations();
         
@@ -160,12 +169,31 @@ public class ProcessingStage extends MRCStage {
         operations.put(MRCServiceConstants.PROC_ID_XTREEMFS_GET_XLOCSET, new GetXLocSetOperation(master));
         operations.put(MRCServiceConstants.PROC_ID_XTREEMFS_RESELECT_OSDS, new ReselectOSDsOperation(master));
         operations.put(MRCServiceConstants.PROC_ID_XTREEMFS_CLEAR_VOUCHERS, new ClearVouchersOperation(master));
+        operations.put(MRCServiceConstants.PROC_ID_XTREEMFS_GETATTRS, new BatchStatOperation(master));
+        operations.put(MRCServiceConstants.PROC_ID_XTREEMFS_CREATE_FILES, new BatchCreateOperation(master));
+        operations.put(MRCServiceConstants.PROC_ID_XTREEMFS_GET_XLOCSETS, new BatchGetXLocSetOperation(master));
     }
     
     public Map<Integer, Integer> get_opCountMap() {
         return _opCountMap;
     }
     
+    public FileSizeUpdateBuffer getFileSizeUpdateBuffer() {
+        return fileSizeUpdateBuffer;
+    }
+    
+    @Override
+    public void run() {
+        fileSizeUpdateBuffer.start(this);
+        super.run();
+    }
+    
+    @Override
+    public void shutdown() {
+        fileSizeUpdateBuffer.stop();
+        super.shutdown();
+    }
+    
 //    public String getOpName(int opId) {
 //        String opName = operations.get(opId).getClass().getSimpleName();
 //        return (opName.charAt(0) + "").toLowerCase() + opName.substring(0, opName.length() - "Operation".length()).substring(1);
@@ -272,6 +300,10 @@ public class ProcessingStage extends MRCStage {
             return;
         }
         
+        // make buffered file sizes visible to all other operations
+        if (rqHeader.getProcId() != MRCServiceConstants.PROC_ID_XTREEMFS_UPDATE_FILE_SIZE)
+            fileSizeUpdateBuffer.flush(false);
+        
         execute(op, method);
 
     }
@@ -289,6 +321,11 @@ public class ProcessingStage extends MRCStage {
         final RPCServerRequest rpcRequest = rq.getRPCRequest();
         final RPCHeader header = rpcRequest.getHeader();
         final RPCHeader.RequestHeader rqHeader = header.getRequestHeader();
+        
+        // quota changes of a failed operation have to be reverted, unless
+        // the database update they belong to has already been executed
+        final QuotaManager quotaMan = master.getMrcQuotaManager();
+        boolean succeeded = false;
 
         try {
             
@@ -309,7 +346,9 @@ public class ProcessingStage extends MRCStage {
                         StatusPage.getOpName(rqHeader.getProcId()), params.toString(), rq.getRPCRequest().getHeader().getCallId());
             }
             
+            quotaMan.beginOperation();
             op.startRequest(rq);
+            succeeded = true;
             
         } catch (UserException exc) {
             reportUserError(op, rq, exc, exc.getErrno());
@@ -336,6 +375,9 @@ public class ProcessingStage extends MRCStage {
             
         } catch (Throwable exc) {
             reportServerError(op, rq, exc);
+            
+        } finally {
+            quotaMan.endOperation(!succeeded);
         }
     }
     
@@ -373,6 +415,8 @@ public class ProcessingStage extends MRCStage {
 
         InternalCallbackInterface callback = (InternalCallbackInterface) args[0];
         try {
+            if (callback != fileSizeUpdateBuffer)
+                fileSizeUpdateBuffer.flush(false);
             callback.execute();
         } catch (Throwable e) {
             Logging.logMessage(Logging.LEVEL_INFO, this, "Internal callback failed with an exception");
@@ -68,7 +68,10 @@ import org.xtreemfs.pbrpc.generatedinterfaces.OSDServiceClient;
  * a global point of view and that enough replicas are up to date to maintain consistency.<br>
  * Since database calls have to be exclusively from one process the coordinator calls the
  * {@link XLocSetCoordinatorCallback} in the context of the {@link ProcessingStage} when consistency in the new XLocSet
- * is assured.
+ * is assured.<br>
+ * Changes of different files are coordinated concurrently by a configurable number of threads, since most of the
+ * time is spent waiting for OSD responses and lease timeouts. Changes of the same file are coordinated in the order
+ * they were requested; concurrent requests are usually rejected beforehand by the {@link XLocSetLock}.
  */
 public class XLocSetCoordinator extends LifeCycleThread implements DBAccessResultListener<Object> {
     private enum RequestType {
@@ -85,22 +88,83 @@ public class XLocSetCoordinator extends LifeCycleThread implements DBAccessResul
     /** The lease timeout is needed to ensure no primary can exist after invalidating. */
     private final int                    leaseToMS;
 
+    /** Additional threads coordinating changes besides the coordinator thread itself. */
+    private final Thread[]               workers;
+
+    /**
+     * Requests of files whose xLocSet is currently being changed, mapped by fileId. A file is active as long as it has
+     * an entry, and further requests for it are deferred until the current one has been processed.
+     */
+    private final HashMap<String, LinkedList<RequestMethod>> activeFiles;
+
+    private int                          numDeferred;
+
+    private long                         numCompleted;
+
+    private long                         numFailed;
+
+    private long                         totalLatencyMS;
+
+    private long                         maxLatencyMS;
+
     public XLocSetCoordinator(MRCRequestDispatcher master) {
+        this(master, master.getConfig().getFleaseLeaseToMS(), master.getConfig().getXLocSetCoordinatorThreads());
+    }
+
+    XLocSetCoordinator(MRCRequestDispatcher master, int leaseToMS, int numThreads) {
         super("XLocSetCoordinator");
         quit = false;
         q = new LinkedBlockingQueue<RequestMethod>();
+        activeFiles = new HashMap<String, LinkedList<RequestMethod>>();
         this.master = master;
-
-        leaseToMS = master.getConfig().getFleaseLeaseToMS();
+        this.leaseToMS = leaseToMS;
+
+        workers = new Thread[Math.max(1, numThreads) - 1];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread("XLocSetCoordinator-" + (i + 1)) {
+                @Override
+                public void run() {
+                    processQueue();
+                }
+            };
+            workers[i].setDaemon(true);
+        }
     }
 
     @Override
     public void run() {
+        for (Thread worker : workers)
+            worker.start();
+
         notifyStarted();
+        processQueue();
+        notifyStopped();
+    }
+
+    @Override
+    public void shutdown() {
+        this.quit = true;
+        this.interrupt();
+        for (Thread worker : workers)
+            worker.interrupt();
+    }
+
+    /**
+     * Takes requests from the queue and processes them until the coordinator is shut down. Executed by the
+     * coordinator thread and all worker threads.
+     */
+    private void processQueue() {
         while (!quit) {
             try {
                 RequestMethod m = q.take();
-                processRequest(m);
+                if (!activate(m))
+                    continue;
+
+                // Process the request and all requests for the same file that have been deferred in the meantime.
+                while (m != null) {
+                    processRequest(m);
+                    m = complete(m);
+                }
             } catch (InterruptedException ex) {
                 continue;
             } catch (Throwable ex) {
@@ -108,13 +172,71 @@ public class XLocSetCoordinator extends LifeCycleThread implements DBAccessResul
                 break;
             }
         }
-        notifyStopped();
     }
 
-    @Override
-    public void shutdown() {
-        this.quit = true;
-        this.interrupt();
+    /**
+     * Marks the request's file as active, or defers the request if another change of the file is in progress.
+     * 
+     * @return true, if the request has to be processed by the calling thread
+     */
+    private synchronized boolean activate(RequestMethod m) {
+        LinkedList<RequestMethod> deferred = activeFiles.get(m.getFileId());
+        if (deferred != null) {
+            deferred.add(m);
+            numDeferred++;
+            return false;
+        }
+
+        activeFiles.put(m.getFileId(), new LinkedList<RequestMethod>());
+        return true;
+    }
+
+    /**
+     * Records the statistics of a processed request and returns the next deferred request for the same file, if any.
+     * Otherwise, the file is marked as inactive.
+     */
+    private synchronized RequestMethod complete(RequestMethod m) {
+        long latencyMS = TimeSync.getLocalSystemTime() - m.submitTimeMS;
+        totalLatencyMS += latencyMS;
+        maxLatencyMS = Math.max(maxLatencyMS, latencyMS);
+        numCompleted++;
+        if (m.failed)
+            numFailed++;
+
+        LinkedList<RequestMethod> deferred = activeFiles.get(m.getFileId());
+        if (deferred.isEmpty()) {
+            activeFiles.remove(m.getFileId());
+            return null;
+        }
+
+        numDeferred--;
+        return deferred.removeFirst();
+    }
+
+    /**
+     * @return the number of requested xLocSet changes that have not been started yet
+     */
+    public synchronized int getQueueLength() {
+        return q.size() + numDeferred;
+    }
+
+    /**
+     * @return the number of xLocSet changes currently being coordinated
+     */
+    public synchronized int getNumActiveChanges() {
+        return activeFiles.size();
+    }
+
+    /**
+     * Returns statistics about the coordinated xLocSet changes. The latency of a change is measured from the time the
+     * xLocSet has been locked until the new xLocSet can be installed.
+     * 
+     * @return a textual summary of the statistics
+     */
+    public synchronized String getStatistics() {
+        return String.format("%d queued, %d in progress, %d completed (%d failed), latency avg %.2f ms, max %d ms",
+                q.size() + numDeferred, activeFiles.size(), numCompleted, numFailed, numCompleted == 0 ? 0.0
+                        : (double) totalLatencyMS / numCompleted, maxLatencyMS);
     }
 
     /**
@@ -122,7 +244,7 @@ public class XLocSetCoordinator extends LifeCycleThread implements DBAccessResul
      * 
      * @param m
      */
-    private void processRequest(RequestMethod m) throws InterruptedException {
+    void processRequest(RequestMethod m) throws InterruptedException {
         try {
             switch (m.getRequestType()) {
             case XLOCSET_CHANGE:
@@ -134,6 +256,8 @@ public class XLocSetCoordinator extends LifeCycleThread implements DBAccessResul
         } catch (InterruptedException e) {
             throw e;
         } catch (Throwable e) {
+            m.failed = true;
+
             // Try to handle the error
             Logging.logError(Logging.LEVEL_WARN, this, e);
             try {
@@ -168,6 +292,10 @@ public class XLocSetCoordinator extends LifeCycleThread implements DBAccessResul
         XLocList                   curXLocList;
         /** The new xLocList requested to be installed. **/
         XLocList                   newXLocList;
+        /** The time the request has been queued for coordination. **/
+        long                       submitTimeMS;
+        /** True, if the coordination failed. **/
+        boolean                    failed;
 
         public RequestMethod(RequestType type, String fileId, MRCRequest rq, MRCOperation op,
                 XLocSetCoordinatorCallback callback, Capability cap, XLocList curXLocList, XLocList newXLocList) {
@@ -1007,12 +1135,20 @@ public class XLocSetCoordinator extends LifeCycleThread implements DBAccessResul
         }
 
         RequestMethod m = (RequestMethod) context;
-        q.add(m);
+        enqueue(m);
 
         // The request can be finished as soon as the xlocset is locked.
         master.finished(result, m.getRequest());
     }
 
+    /**
+     * Queues the request for coordination.
+     */
+    void enqueue(RequestMethod m) {
+        m.submitTimeMS = TimeSync.getLocalSystemTime();
+        q.add(m);
+    }
+
     @Override
     public void failed(Throwable error, Object context) {
         if (!(context instanceof RequestMethod)) {
@@ -0,0 +1,543 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.mrc.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.zip.CRC32;
+
+import org.xtreemfs.foundation.VersionManagement;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.POSIXErrno;
+import org.xtreemfs.mrc.UserException;
+import org.xtreemfs.mrc.ac.FileAccessManager;
+import org.xtreemfs.mrc.database.AtomicDBUpdate;
+import org.xtreemfs.mrc.database.DatabaseException;
+import org.xtreemfs.mrc.database.DatabaseResultSet;
+import org.xtreemfs.mrc.database.StorageManager;
+import org.xtreemfs.mrc.database.VolumeInfo;
+import org.xtreemfs.mrc.database.VolumeManager;
+import org.xtreemfs.mrc.database.babudb.BabuDBStorageHelper;
+import org.xtreemfs.mrc.database.babudb.BabuDBStorageManager;
+import org.xtreemfs.mrc.metadata.FileMetadata;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.KeyValuePair;
+
+/**
+ * Creates and restores binary dumps of the MRC database.
+ * <p>
+ * Unlike XML dumps, which describe the logical content of the file system,
+ * binary dumps contain the raw key-value pairs of all volume databases. They
+ * are considerably faster to create and restore, but can only be restored by
+ * an MRC with the same database version.
+ * <p>
+ * A dump starts with a header (magic bytes, format version, MRC database
+ * version), followed by a sequence of records. Each record consists of a type
+ * byte, the payload length, the payload and a CRC32 checksum of the payload.
+ * The volume records precede all entry records. Each entry record holds a
+ * bounded chunk of key-value pairs of a single index of a volume. The last
+ * record contains the number of entry records in the dump.
+ * <p>
+ * Volumes and key ranges of the file ID-based indices are dumped by multiple
+ * threads in parallel, and chunks are restored in parallel by means of
+ * separate database inserts. As each key is contained in exactly one chunk,
+ * the order in which chunks are restored does not matter.
+ */
+public class BinaryDBDump {
+
+    private static final byte[] MAGIC                 = { 'X', 'T', 'F', 'S', 'M', 'R', 'C', 'D' };
+
+    private static final int    FORMAT_VERSION        = 1;
+
+    private static final byte   RECORD_END            = 0;
+
+    private static final byte   RECORD_VOLUME         = 1;
+
+    private static final byte   RECORD_ENTRIES        = 2;
+
+    /**
+     * the maximum payload size of an entry record, unless a single entry is
+     * larger
+     */
+    private static final int    CHUNK_SIZE            = 1024 * 1024;
+
+    /**
+     * the number of threads that read or write volume databases
+     */
+    private static final int    NUM_THREADS           = 4;
+
+    /**
+     * the minimum number of file IDs per key range that is dumped by a single
+     * thread
+     */
+    private static final long   MIN_FILE_IDS_PER_TASK = 10000;
+
+    /**
+     * indices with keys that start with a file ID
+     */
+    private static final int[]  FILE_ID_INDICES       = { BabuDBStorageManager.FILE_INDEX,
+        BabuDBStorageManager.XATTRS_INDEX, BabuDBStorageManager.ACL_INDEX, BabuDBStorageManager.FILE_ID_INDEX };
+
+    /**
+     * Checks whether the given file is a binary dump.
+     *
+     * @param dumpFile
+     *            the dump file
+     * @return <code>true</code>, if the file starts with the magic bytes of a
+     *         binary dump
+     * @throws IOException
+     */
+    public static boolean isBinaryDump(File dumpFile) throws IOException {
+
+        byte[] magic = new byte[MAGIC.length];
+        DataInputStream in = new DataInputStream(new FileInputStream(dumpFile));
+        try {
+            in.readFully(magic);
+        } catch (EOFException exc) {
+            return false;
+        } finally {
+            in.close();
+        }
+
+        return Arrays.equals(magic, MAGIC);
+    }
+
+    /**
+     * Writes a binary dump of the given volumes. The storage managers should
+     * refer to snapshots, so that the volumes don't change while being dumped.
+     *
+     * @param dumpFile
+     *            the dump file
+     * @param sManList
+     *            the storage managers of the volumes to dump
+     * @throws IOException
+     * @throws DatabaseException
+     */
+    public static void dump(File dumpFile, List<StorageManager> sManList) throws IOException, DatabaseException {
+
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dumpFile),
+            CHUNK_SIZE));
+
+        ExecutorService pool = Executors.newFixedThreadPool(NUM_THREADS);
+        try {
+
+            out.write(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(VersionManagement.getMrcDataVersion());
+
+            // write all volume records first, so that volumes can be created
+            // before their entries are restored
+            for (int i = 0; i < sManList.size(); i++)
+                writeRecord(out, RECORD_VOLUME, createVolumeRecord(i, sManList.get(i)));
+
+            List<Future<Long>> tasks = new LinkedList<Future<Long>>();
+            for (int i = 0; i < sManList.size(); i++) {
+
+                final StorageManager sMan = sManList.get(i);
+
+                // split the file ID-based indices into key ranges that are
+                // dumped in parallel
+                long lastFileId = getLastFileId(sMan);
+                long numRanges = Math.max(1, Math.min(NUM_THREADS, lastFileId / MIN_FILE_IDS_PER_TASK));
+                long rangeSize = lastFileId / numRanges + 1;
+
+                for (int index : FILE_ID_INDICES) {
+                    for (long r = 0; r < numRanges; r++) {
+
+                        // all keys either start with a positive file ID or an
+                        // ASCII character, so that the last range comprises
+                        // all remaining keys
+                        byte[] from = r == 0 ? new byte[0] : BabuDBStorageHelper.createFilePrefixKey(r
+                            * rangeSize);
+                        byte[] to = BabuDBStorageHelper.createFilePrefixKey(r == numRanges - 1 ? Long.MAX_VALUE
+                            : (r + 1) * rangeSize);
+
+                        tasks.add(pool.submit(new DumpTask(out, i, sMan, index, from, to)));
+                    }
+                }
+
+                tasks.add(pool.submit(new DumpTask(out, i, sMan, BabuDBStorageManager.VOLUME_INDEX, null, null)));
+            }
+
+            long numChunks = 0;
+            for (Future<Long> task : tasks)
+                numChunks += getResult(task);
+
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(8);
+            new DataOutputStream(payload).writeLong(numChunks);
+            writeRecord(out, RECORD_END, payload.toByteArray());
+
+        } finally {
+            pool.shutdownNow();
+            out.close();
+        }
+    }
+
+    /**
+     * Restores all volumes from a binary dump. The volume manager must not
+     * contain any volumes.
+     *
+     * @param dumpFile
+     *            the dump file
+     * @param vMan
+     *            the volume manager
+     * @param faMan
+     *            the file access manager
+     * @throws IOException
+     * @throws DatabaseException
+     * @throws UserException
+     *             if the dump is corrupt or has been created by an MRC with a
+     *             different database version
+     */
+    public static void restore(File dumpFile, VolumeManager vMan, FileAccessManager faMan) throws IOException,
+        DatabaseException, UserException {
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(dumpFile), CHUNK_SIZE));
+
+        ExecutorService pool = Executors.newFixedThreadPool(NUM_THREADS);
+
+        // bound the number of chunks that are kept in memory
+        Semaphore pendingChunks = new Semaphore(2 * NUM_THREADS);
+
+        try {
+
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC))
+                throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "'" + dumpFile + "' is not a binary dump");
+
+            int formatVersion = in.readInt();
+            if (formatVersion != FORMAT_VERSION)
+                throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "unsupported binary dump format version: "
+                    + formatVersion);
+
+            long dbVersion = in.readLong();
+            if (dbVersion != VersionManagement.getMrcDataVersion())
+                throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "binary dump has database version "
+                    + dbVersion + ", but the MRC requires version " + VersionManagement.getMrcDataVersion()
+                    + "; please use an XML dump to migrate the database");
+
+            List<StorageManager> sManList = new ArrayList<StorageManager>();
+            List<Future<Long>> tasks = new LinkedList<Future<Long>>();
+            long numChunks = 0;
+
+            for (;;) {
+
+                byte type = in.readByte();
+                byte[] payload = readRecord(in);
+                DataInputStream data = new DataInputStream(new ByteArrayInputStream(payload));
+
+                if (type == RECORD_VOLUME) {
+
+                    if (data.readInt() != sManList.size())
+                        throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "corrupt binary dump: "
+                            + "unexpected volume record");
+
+                    sManList.add(restoreVolume(data, vMan, faMan));
+
+                } else if (type == RECORD_ENTRIES) {
+
+                    int volNo = data.readInt();
+                    if (volNo < 0 || volNo >= sManList.size())
+                        throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "corrupt binary dump: "
+                            + "entries of unknown volume");
+
+                    pendingChunks.acquireUninterruptibly();
+                    tasks.add(pool.submit(new RestoreTask(pendingChunks, sManList.get(volNo), data)));
+                    numChunks++;
+
+                } else if (type == RECORD_END) {
+
+                    if (data.readLong() != numChunks)
+                        throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "corrupt binary dump: "
+                            + "number of chunks does not match");
+                    break;
+
+                } else
+                    throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "corrupt binary dump: unknown record "
+                        + "type " + type);
+            }
+
+            for (Future<Long> task : tasks)
+                getResult(task);
+
+            // reload values from db
+            for (StorageManager sMan : sManList)
+                sMan.getVolumeInfo().reload();
+
+        } catch (EOFException exc) {
+            throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "corrupt binary dump: unexpected end of file");
+        } finally {
+            pool.shutdownNow();
+            in.close();
+        }
+    }
+
+    private static byte[] createVolumeRecord(int volNo, StorageManager sMan) throws IOException,
+        DatabaseException {
+
+        VolumeInfo vol = sMan.getVolumeInfo();
+        FileMetadata rootDir = sMan.getMetadata(1);
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(payload);
+        data.writeInt(volNo);
+        data.writeUTF(vol.getId());
+        data.writeUTF(vol.getName());
+        data.writeShort(vol.getAcPolicyId());
+        data.writeUTF(rootDir.getOwnerId());
+        data.writeUTF(rootDir.getOwningGroupId());
+        data.writeInt(rootDir.getPerms());
+        data.writeLong(vol.getVolumeQuota());
+        data.close();
+
+        return payload.toByteArray();
+    }
+
+    private static StorageManager restoreVolume(DataInputStream data, VolumeManager vMan, FileAccessManager faMan)
+        throws IOException, DatabaseException, UserException {
+
+        String volId = data.readUTF();
+        String volName = data.readUTF();
+        short acPolicy = data.readShort();
+        String owner = data.readUTF();
+        String owningGroup = data.readUTF();
+        int rights = data.readInt();
+        long quota = data.readLong();
+
+        vMan.createVolume(faMan, volId, volName, acPolicy, owner, owningGroup, null, rights, quota,
+            new LinkedList<KeyValuePair>());
+        StorageManager sMan = vMan.getStorageManager(volId);
+
+        // remove the entries that have been created together with the volume,
+        // so that the database will only contain the dumped entries
+        AtomicDBUpdate update = sMan.createAtomicDBUpdate(null, null);
+        for (int index : FILE_ID_INDICES)
+            addDeletes(sMan, index, update);
+        addDeletes(sMan, BabuDBStorageManager.VOLUME_INDEX, update);
+        update.execute();
+
+        return sMan;
+    }
+
+    private static void addDeletes(StorageManager sMan, int index, AtomicDBUpdate update)
+        throws DatabaseException {
+
+        DatabaseResultSet<byte[][]> it = sMan.getRawEntries(index, null, null);
+        try {
+            while (it.hasNext())
+                update.addUpdate(index, it.next()[0], null);
+        } finally {
+            it.destroy();
+        }
+    }
+
+    private static long getLastFileId(StorageManager sMan) throws DatabaseException {
+
+        byte[] from = BabuDBStorageManager.LAST_ID_KEY;
+        byte[] to = Arrays.copyOf(from, from.length + 1);
+
+        DatabaseResultSet<byte[][]> it = sMan.getRawEntries(BabuDBStorageManager.VOLUME_INDEX, from, to);
+        try {
+            return it.hasNext() ? ByteBuffer.wrap(it.next()[1]).getLong() : 0;
+        } finally {
+            it.destroy();
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, byte type, byte[] payload) throws IOException {
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        synchronized (out) {
+            out.writeByte(type);
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.writeLong(crc.getValue());
+        }
+    }
+
+    private static byte[] readRecord(DataInputStream in) throws IOException, UserException {
+
+        int length = in.readInt();
+        if (length < 0)
+            throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "corrupt binary dump: invalid record length");
+
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if (in.readLong() != crc.getValue())
+            throw new UserException(POSIXErrno.POSIX_ERROR_EINVAL, "corrupt binary dump: checksum mismatch");
+
+        return payload;
+    }
+
+    private static long getResult(Future<Long> task) throws IOException, DatabaseException {
+
+        try {
+            return task.get();
+
+        } catch (InterruptedException exc) {
+            throw new DatabaseException(exc);
+
+        } catch (ExecutionException exc) {
+            Throwable cause = exc.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof DatabaseException)
+                throw (DatabaseException) cause;
+            throw new DatabaseException(cause);
+        }
+    }
+
+    /**
+     * Dumps the entries of a key range of an index in chunks.
+     */
+    private static class DumpTask implements Callable<Long> {
+
+        private final DataOutputStream out;
+
+        private final int              volNo;
+
+        private final StorageManager   sMan;
+
+        private final int              index;
+
+        private final byte[]           from;
+
+        private final byte[]           to;
+
+        public DumpTask(DataOutputStream out, int volNo, StorageManager sMan, int index, byte[] from, byte[] to) {
+            this.out = out;
+            this.volNo = volNo;
+            this.sMan = sMan;
+            this.index = index;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Long call() throws Exception {
+
+            long numChunks = 0;
+
+            ByteArrayOutputStream chunk = new ByteArrayOutputStream(CHUNK_SIZE);
+            DataOutputStream entries = new DataOutputStream(chunk);
+            int count = 0;
+
+            DatabaseResultSet<byte[][]> it = sMan.getRawEntries(index, from, to);
+            try {
+                while (it.hasNext()) {
+
+                    byte[][] entry = it.next();
+                    entries.writeInt(entry[0].length);
+                    entries.write(entry[0]);
+                    entries.writeInt(entry[1].length);
+                    entries.write(entry[1]);
+                    count++;
+
+                    if (chunk.size() >= CHUNK_SIZE) {
+                        writeChunk(chunk, count);
+                        numChunks++;
+                        chunk.reset();
+                        count = 0;
+                    }
+                }
+            } finally {
+                it.destroy();
+            }
+
+            if (count > 0) {
+                writeChunk(chunk, count);
+                numChunks++;
+            }
+
+            return numChunks;
+        }
+
+        private void writeChunk(ByteArrayOutputStream chunk, int count) throws IOException {
+
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(chunk.size() + 9);
+            DataOutputStream data = new DataOutputStream(payload);
+            data.writeInt(volNo);
+            data.writeByte(index);
+            data.writeInt(count);
+            chunk.writeTo(data);
+            data.close();
+
+            writeRecord(out, RECORD_ENTRIES, payload.toByteArray());
+        }
+
+    }
+
+    /**
+     * Inserts the entries of a chunk into a volume database.
+     */
+    private static class RestoreTask implements Callable<Long> {
+
+        private final Semaphore      pendingChunks;
+
+        private final StorageManager sMan;
+
+        private final InputStream    data;
+
+        public RestoreTask(Semaphore pendingChunks, StorageManager sMan, InputStream data) {
+            this.pendingChunks = pendingChunks;
+            this.sMan = sMan;
+            this.data = data;
+        }
+
+        @Override
+        public Long call() throws Exception {
+
+            try {
+                DataInputStream entries = new DataInputStream(data);
+                int index = entries.readByte();
+                int count = entries.readInt();
+
+                AtomicDBUpdate update = sMan.createAtomicDBUpdate(null, null);
+                for (int i = 0; i < count; i++) {
+                    byte[] key = new byte[entries.readInt()];
+                    entries.readFully(key);
+                    byte[] value = new byte[entries.readInt()];
+                    entries.readFully(value);
+                    update.addUpdate(index, key, value);
+                }
+                update.execute();
+
+                return (long) count;
+
+            } finally {
+                pendingChunks.release();
+            }
+        }
+    }
+
+}
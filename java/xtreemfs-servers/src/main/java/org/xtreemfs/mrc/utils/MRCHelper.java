@@ -121,6 +121,7 @@ public class MRCHelper {
             used_space,
             num_files,
             num_dirs,
+            dir_stats,
             snapshots,
             snapshots_enabled,
             snapshot_time,
@@ -272,6 +273,67 @@ public class MRCHelper {
         return sMan.createXLoc(stripingPolicy, osds, replFlags);
     }
 
+    /**
+     * Creates the XLoc list of a file that has no replicas yet, according to the given default replication
+     * policy. If the policy is read-only replication on close, a single replica is created; replication is
+     * deferred until the file is closed.
+     * 
+     * @param defaultReplPolicy
+     *            the default replication policy, or <code>null</code> if none is set
+     * @param replicateOnClose
+     *            whether the file will be replicated when it is closed
+     * @param currentXLoc
+     *            the current (empty) XLoc list of the file, or <code>null</code>
+     * @return the new XLoc list
+     */
+    public static XLocList createXLocList(ReplicationPolicy defaultReplPolicy, boolean replicateOnClose,
+            StorageManager sMan, OSDStatusManager osdMan, VolumeInfo volume, long parentDirId, String path,
+            InetAddress clientAddress, VivaldiCoordinates clientCoordinates, XLocList currentXLoc)
+            throws DatabaseException, UserException, MRCException {
+
+        XLocList xLocList = currentXLoc;
+
+        // if the file is supposed to be read-only replicated, create a
+        // non-replicated file and defer the replication until the file is
+        // closed
+        boolean singleReplica = (defaultReplPolicy == null)
+                || ReplicaUpdatePolicies.isNONE(defaultReplPolicy.getName()) || replicateOnClose;
+
+        if (singleReplica) {
+
+            // create a replica with the default striping policy together
+            // with a set of feasible OSDs from the OSD status manager
+            XLoc replica = createReplica(null, sMan, osdMan, volume, parentDirId, path, clientAddress,
+                    clientCoordinates, xLocList, 0);
+
+            xLocList = sMan.createXLocList(new XLoc[] { replica }, ReplicaUpdatePolicies.REPL_UPDATE_PC_NONE, 0);
+        }
+
+        // otherwise, create the requested number of replicas
+        else {
+
+            // assign as many new replicas as needed
+            List<XLoc> repls = new ArrayList<XLoc>();
+            for (int i = 0; i < defaultReplPolicy.getFactor(); i++) {
+
+                // create a replica with the default striping policy together
+                // with a set of feasible OSDs from the OSD status manager
+                XLoc replica = createReplica(null, sMan, osdMan, volume, parentDirId, path, clientAddress,
+                        clientCoordinates, xLocList, defaultReplPolicy.getFlags());
+
+                repls.add(replica);
+
+                // update the XLoc list with the new replica; this is
+                // necessary to ensure that its OSDs will be included when
+                // adding further replias in the following loop iterations
+                xLocList = sMan.createXLocList(repls.toArray(new XLoc[repls.size()]), defaultReplPolicy.getName(),
+                        0);
+            }
+        }
+
+        return xLocList;
+    }
+
     /**
      * Restores the strategy flag if it is not set yet. <br>
      * If the defaultReplicationPolicy is present and contains strategy
@@ -487,6 +549,21 @@ public class MRCHelper {
                 return file.getId() == 1 ? String.valueOf(sMan.getVolumeInfo().getNumFiles()) : "";
             case num_dirs:
                 return file.getId() == 1 ? String.valueOf(sMan.getVolumeInfo().getNumDirs()) : "";
+            case dir_stats: {
+
+                if (!file.isDirectory())
+                    return "";
+
+                long[] stats = sMan.getDirStats(file.getId());
+                if (stats == null)
+                    return "";
+
+                Map<String, Long> values = new HashMap<String, Long>();
+                values.put("size", stats[0]);
+                values.put("num_files", stats[1]);
+                values.put("num_dirs", stats[2]);
+                return JSONParser.writeJSON(values);
+            }
 
             case snapshots: {
 
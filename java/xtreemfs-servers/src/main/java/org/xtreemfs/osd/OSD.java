@@ -94,6 +94,7 @@ public class OSD {
         config.checkConfig();
         
         Logging.start(config.getDebugLevel(), config.getDebugCategories());
+        Logging.startAsync(config.getDebugAsyncBufferSize());
         
         new OSD(config);
     }
@@ -29,6 +29,7 @@ public class OSDConfig extends ServiceConfig {
     private final Parameter[] osdParameter = {            
             Parameter.DEBUG_LEVEL,
             Parameter.DEBUG_CATEGORIES,
+            Parameter.DEBUG_ASYNC_BUFFER_SIZE,
             Parameter.PORT,
             Parameter.BIND_RETRIES,
             Parameter.HTTP_PORT,
@@ -61,6 +62,10 @@ public class OSDConfig extends ServiceConfig {
             Parameter.FLEASE_LEASE_TIMEOUT_MS,
             Parameter.FLEASE_MESSAGE_TO_MS,
             Parameter.FLEASE_RETRIES,
+            Parameter.FLEASE_MAX_BATCH_SIZE,
+            Parameter.FLEASE_NUM_PARTITIONS,
+            Parameter.RWR_DELTA_BLOCK_SIZE,
+            Parameter.REPLICATION_MAX_FETCH_SIZE,
             Parameter.POLICY_DIR,
             Parameter.CAPABILITY_SECRET,
             Parameter.SOCKET_SEND_BUFFER_SIZE,
@@ -80,6 +85,15 @@ public class OSDConfig extends ServiceConfig {
             Parameter.VIVALDI_MAX_REQUEST_TIMEOUT_IN_MS,
             Parameter.VIVALDI_TIMER_INTERVAL_IN_MS,
             Parameter.STORAGE_THREADS,
+            Parameter.MMAP_CACHE_SIZE,
+            Parameter.MMAP_CACHE_MIN_READS,
+            Parameter.OBJECT_CACHE_SIZE,
+            Parameter.DELETION_THREADS,
+            Parameter.REQUEST_TRACE_SAMPLING,
+            Parameter.REQUEST_TRACE_SLOW_THRESHOLD_MS,
+            Parameter.REQUEST_TRACE_SLOW_LOG_SIZE,
+            Parameter.QUEUE_TARGET_DELAY_MS,
+            Parameter.QUEUE_DELAY_INTERVAL_MS,
             Parameter.USE_RENEWAL_SIGNAL,
             Parameter.USE_MULTIHOMING,
             Parameter.HEALTH_CHECK
@@ -215,6 +229,22 @@ public class OSDConfig extends ServiceConfig {
         return (Integer) parameter.get(Parameter.FLEASE_RETRIES);
     }
 
+    public int getFleaseMaxBatchSize() {
+        return (Integer) parameter.get(Parameter.FLEASE_MAX_BATCH_SIZE);
+    }
+
+    public int getFleaseNumPartitions() {
+        return (Integer) parameter.get(Parameter.FLEASE_NUM_PARTITIONS);
+    }
+
+    public int getRWRDeltaBlockSize() {
+        return (Integer) parameter.get(Parameter.RWR_DELTA_BLOCK_SIZE);
+    }
+
+    public int getReplicationMaxFetchSize() {
+        return (Integer) parameter.get(Parameter.REPLICATION_MAX_FETCH_SIZE);
+    }
+
     /**
      * @param capabilitySecret
      *            the capabilitySecret to set
@@ -285,6 +315,42 @@ public class OSDConfig extends ServiceConfig {
         return (Integer) parameter.get(Parameter.STORAGE_THREADS);
     }
     
+    public long getMmapCacheSize() {
+        return (Long) parameter.get(Parameter.MMAP_CACHE_SIZE);
+    }
+
+    public int getMmapCacheMinReads() {
+        return (Integer) parameter.get(Parameter.MMAP_CACHE_MIN_READS);
+    }
+
+    public long getObjectCacheSize() {
+        return (Long) parameter.get(Parameter.OBJECT_CACHE_SIZE);
+    }
+
+    public int getDeletionThreads() {
+        return (Integer) parameter.get(Parameter.DELETION_THREADS);
+    }
+
+    public int getRequestTraceSampling() {
+        return (Integer) parameter.get(Parameter.REQUEST_TRACE_SAMPLING);
+    }
+
+    public int getRequestTraceSlowThresholdMs() {
+        return (Integer) parameter.get(Parameter.REQUEST_TRACE_SLOW_THRESHOLD_MS);
+    }
+
+    public int getRequestTraceSlowLogSize() {
+        return (Integer) parameter.get(Parameter.REQUEST_TRACE_SLOW_LOG_SIZE);
+    }
+
+    public int getQueueTargetDelayMs() {
+        return (Integer) parameter.get(Parameter.QUEUE_TARGET_DELAY_MS);
+    }
+
+    public int getQueueDelayIntervalMs() {
+        return (Integer) parameter.get(Parameter.QUEUE_DELAY_INTERVAL_MS);
+    }
+
     public String getHealthCheckScript() {
         return (String) parameter.get(Parameter.HEALTH_CHECK);
     }
@@ -22,6 +22,7 @@ import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.RPCHeader.ErrorResp
 import org.xtreemfs.foundation.pbrpc.server.RPCServerRequest;
 import org.xtreemfs.foundation.util.OutputUtils;
 import org.xtreemfs.osd.operations.OSDOperation;
+import org.xtreemfs.osd.stages.RequestPriority;
 import org.xtreemfs.osd.storage.CowPolicy;
 
 /**
@@ -50,6 +51,10 @@ public final class OSDRequest {
      * (i.e. no entry in OFT)
      */
     private boolean fileOpen;
+    /**
+     * trace of the stages passed, or null if the request is not sampled
+     */
+    private RequestTrace trace;
 
     public OSDRequest(RPCServerRequest request) {
         this.rpcRequest = request;
@@ -66,11 +71,13 @@ public final class OSDRequest {
         } catch (IOException ex) {
             Logging.logError(Logging.LEVEL_ERROR, this, ex);
         }
+        finishTrace();
     }
 
     public void sendInternalServerError(Throwable cause) {
         if (getRpcRequest() != null) {
             rpcRequest.sendError(ErrorType.INTERNAL_SERVER_ERROR, POSIXErrno.POSIX_ERROR_NONE, "internal server error:" + cause, OutputUtils.stackTraceToString(cause));
+            finishTrace();
         } else {
             Logging.logMessage(Logging.LEVEL_ERROR, this, "internal server error on internal request: %s",
                     cause.toString());
@@ -83,6 +90,7 @@ public final class OSDRequest {
             Logging.logMessage(Logging.LEVEL_DEBUG, Category.stage, this, "sending errno exception %s/%s/%s", type, errno, message);
         }
         rpcRequest.sendError(type, errno, message);
+        finishTrace();
     }
 
     public void sendError(ErrorType type, POSIXErrno errno, String message, String debugInfo) {
@@ -90,6 +98,38 @@ public final class OSDRequest {
             Logging.logMessage(Logging.LEVEL_DEBUG, Category.stage, this, "sending errno exception %s/%s/%s", type, errno, message);
         }
         rpcRequest.sendError(type, errno, message, debugInfo);
+        finishTrace();
+    }
+
+    public void sendRedirect(String targetUuid) {
+        rpcRequest.sendRedirect(targetUuid);
+        finishTrace();
+    }
+
+    /**
+     * Rejects the request because the OSD is overloaded. Clients retry the
+     * error after their configured retry delay. The suggested back-off is
+     * only part of the error message for logs and administrators; it is not
+     * a structured field of the error response and clients do not evaluate
+     * it.
+     * 
+     * @param reason
+     *            the cause of the overload
+     * @param retryAfterMs
+     *            the time after which the request should be retried
+     */
+    public void sendOverloaded(String reason, long retryAfterMs) {
+        sendError(ErrorType.INTERNAL_SERVER_ERROR, POSIXErrno.POSIX_ERROR_EAGAIN, reason
+            + ", request dropped, retry in " + retryAfterMs + " ms");
+    }
+
+    /**
+     * @return the priority class of the operation, or
+     *         {@link RequestPriority#FOREGROUND} if the request has not been
+     *         parsed yet
+     */
+    public RequestPriority getPriority() {
+        return operation == null ? RequestPriority.FOREGROUND : operation.getPriority();
     }
 
 
@@ -235,5 +275,23 @@ public final class OSDRequest {
 
     public void sendError(ErrorResponse error) {
         this.getRPCRequest().sendError(error);
+        finishTrace();
+    }
+
+    /**
+     * @return the trace of the request, or null if the request is not traced
+     */
+    public RequestTrace getTrace() {
+        return trace;
+    }
+
+    public void setTrace(RequestTrace trace) {
+        this.trace = trace;
+    }
+
+    private void finishTrace() {
+        if (trace != null) {
+            trace.finish();
+        }
     }
 }
@@ -30,6 +30,7 @@ import org.xtreemfs.common.config.PolicyContainer;
 import org.xtreemfs.common.config.RemoteConfigHelper;
 import org.xtreemfs.common.config.ServiceConfig;
 import org.xtreemfs.common.monitoring.StatusMonitor;
+import org.xtreemfs.common.statusserver.MetricsPage;
 import org.xtreemfs.common.statusserver.PrintStackTrace;
 import org.xtreemfs.common.statusserver.StatusServer;
 import org.xtreemfs.common.uuids.ServiceUUID;
@@ -44,10 +45,12 @@ import org.xtreemfs.foundation.SSLOptions;
 import org.xtreemfs.foundation.SSLOptions.TrustManager;
 import org.xtreemfs.foundation.TimeSync;
 import org.xtreemfs.foundation.VersionManagement;
+import org.xtreemfs.foundation.buffer.BufferPool;
 import org.xtreemfs.foundation.checksums.ChecksumFactory;
 import org.xtreemfs.foundation.checksums.provider.JavaChecksumProvider;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
+import org.xtreemfs.foundation.metrics.MetricsRegistry;
 import org.xtreemfs.foundation.pbrpc.Schemes;
 import org.xtreemfs.foundation.pbrpc.client.RPCNIOSocketClient;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.ErrorType;
@@ -82,6 +85,7 @@ import org.xtreemfs.osd.operations.InternalGetFileSizeOperation;
 import org.xtreemfs.osd.operations.InternalGetGmaxOperation;
 import org.xtreemfs.osd.operations.InternalRWRAuthStateInvalidatedOperation;
 import org.xtreemfs.osd.operations.InternalRWRAuthStateOperation;
+import org.xtreemfs.osd.operations.InternalRWRFetchDeltaOperation;
 import org.xtreemfs.osd.operations.InternalRWRFetchOperation;
 import org.xtreemfs.osd.operations.InternalRWRResetStatusOperation;
 import org.xtreemfs.osd.operations.InternalRWRStatusOperation;
@@ -90,6 +94,7 @@ import org.xtreemfs.osd.operations.InternalRWRUpdateOperation;
 import org.xtreemfs.osd.operations.InternalTruncateOperation;
 import org.xtreemfs.osd.operations.InvalidateXLocSetOperation;
 import org.xtreemfs.osd.operations.LocalReadOperation;
+import org.xtreemfs.osd.operations.LocalReadRangeOperation;
 import org.xtreemfs.osd.operations.LockAcquireOperation;
 import org.xtreemfs.osd.operations.LockCheckOperation;
 import org.xtreemfs.osd.operations.LockReleaseOperation;
@@ -178,6 +183,10 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
 
     protected final StatusServer                        statusServer;
 
+    protected final MetricsRegistry                     metrics;
+
+    protected final RequestTracer                       requestTracer;
+
     protected final long                                startupTime;
 
     protected final AtomicLong                          numBytesTX, numBytesRX, numObjsTX, numObjsRX, numReplBytesRX,
@@ -347,15 +356,18 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
         
         stStage = new StorageStage(this, metadataCache, storageLayout, config.getStorageThreads(), config.getMaxRequestsQueueLength());
         stStage.setLifeCycleListener(this);
+        stStage.setTargetQueueDelay(config.getQueueTargetDelayMs(), config.getQueueDelayIntervalMs());
         
         delStage = new DeletionStage(this, metadataCache, storageLayout, config.getMaxRequestsQueueLength());
         delStage.setLifeCycleListener(this);
         
         replStage = new ReplicationStage(this, config.getMaxRequestsQueueLength());
         replStage.setLifeCycleListener(this);
+        replStage.setTargetQueueDelay(config.getQueueTargetDelayMs(), config.getQueueDelayIntervalMs());
         
         rwrStage = new RWReplicationStage(this, serverSSLopts, config.getMaxRequestsQueueLength());
         rwrStage.setLifeCycleListener(this);
+        rwrStage.setTargetQueueDelay(config.getQueueTargetDelayMs(), config.getQueueDelayIntervalMs());
 
         tracingStage = new TracingStage(this, config.getMaxRequestsQueueLength());
         tracingStage.setLifeCycleListener(this);
@@ -499,6 +511,18 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
         };
         heartbeatThread = new HeartbeatThread("OSD HB Thr", dirClient, config.getUUID(), gen, config, true);
         
+        metrics = new MetricsRegistry();
+        rpcServer.registerMetrics(metrics);
+        preprocStage.registerMetrics(metrics);
+        stStage.registerMetrics(metrics);
+        delStage.registerMetrics(metrics);
+        replStage.registerMetrics(metrics);
+        rwrStage.registerMetrics(metrics);
+        tracingStage.registerMetrics(metrics);
+        BufferPool.registerMetrics(metrics);
+        requestTracer = new RequestTracer(metrics, config.getRequestTraceSampling(),
+            config.getRequestTraceSlowThresholdMs(), config.getRequestTraceSlowLogSize());
+        
         if (config.getHttpPort() == -1) {
             // Webinterface is explicitly disabled.
             statusServer = null;
@@ -508,6 +532,8 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
             statusServer.registerModule(new PrintStackTrace());
             statusServer.registerModule(new ReplicatedFileStatusPage());
             statusServer.registerModule(new ReplicatedFileStatusJSON());
+            statusServer.registerModule(new MetricsPage(metrics));
+            statusServer.registerModule(new SlowRequestsPage());
 
             if (config.getAdminPassword().length() > 0) {
                 statusServer.addAuthorizedUser("admin", config.getAdminPassword());
@@ -520,6 +546,7 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
         
         vStage = new VivaldiStage(this, config.getMaxRequestsQueueLength());
         vStage.setLifeCycleListener(this);
+        vStage.registerMetrics(metrics);
         
         cThread = new CleanupThread(this, storageLayout);
         cThread.setLifeCycleListener(this);
@@ -543,6 +570,14 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
                     .getConfig().getUUID().toString());
     }
 
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    public RequestTracer getRequestTracer() {
+        return requestTracer;
+    }
+
     public CleanupThread getCleanupThread() {
         return cThread;
     }
@@ -587,6 +622,8 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
             heartbeatThread.start();
             heartbeatThread.waitForStartup();
 
+            metrics.registerMBean("OSD", config.getUUID().toString());
+
             if (Logging.isInfo())
                 Logging.logMessage(Logging.LEVEL_INFO, Category.lifecycle, this,
                         "OSD RequestController and all services operational");
@@ -649,6 +686,8 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
                 statusServer.shutdown();
             }
 
+            metrics.unregisterMBean();
+
             if (Logging.isInfo())
                 Logging.logMessage(Logging.LEVEL_INFO, Category.lifecycle, this, "OSD and all stages terminated");
 
@@ -687,6 +726,8 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
 
             statusServer.shutdown();
 
+            metrics.unregisterMBean();
+
             if (Logging.isInfo())
                 Logging.logMessage(Logging.LEVEL_INFO, Category.lifecycle, this, "OSD and all stages terminated");
 
@@ -793,6 +834,7 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
 
         try {
             OSDRequest request = new OSDRequest(rq);
+            requestTracer.startTrace(request);
             if (Logging.isDebug())
                 Logging.logMessage(Logging.LEVEL_DEBUG, Category.stage, this, "received new request: %s", rq.toString());
             preprocStage.prepareRequest(request, new PreprocStage.ParseCompleteCallback() {
@@ -807,7 +849,7 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
                     if (error == null) {
                         result.getOperation().startRequest(result);
                     } else {
-                        result.getRPCRequest().sendError(error);
+                        result.sendError(error);
                     }
                 }
             });
@@ -867,6 +909,9 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
         op = new LocalReadOperation(this);
         operations.put(op.getProcedureId(), op);
 
+        op = new LocalReadRangeOperation(this);
+        operations.put(op.getProcedureId(), op);
+
         op = new CleanupStartOperation(this);
         operations.put(op.getProcedureId(), op);
 
@@ -915,6 +960,9 @@ public class OSDRequestDispatcher implements RPCServerRequestListener, LifeCycle
         op = new InternalRWRFetchOperation(this);
         operations.put(op.getProcedureId(), op);
 
+        op = new InternalRWRFetchDeltaOperation(this);
+        operations.put(op.getProcedureId(), op);
+
         op = new GetFileIDListOperation(this);
         operations.put(op.getProcedureId(), op);
 
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd;
+
+/**
+ * Timestamps of a sampled request at the boundaries of the stages it passes through. For each stage, the time the
+ * request was enqueued, the time its processing started and ended, and the time spent on disk I/O while it was
+ * processed are recorded. A stage whose processing has not ended when the response is sent, e.g. because the
+ * response is sent from within the stage, ends with the response.
+ * <p>
+ * All times are values of {@link System#nanoTime()}. A request is processed by one stage at a time, but may be
+ * handed over between threads, so the methods are synchronized.
+ */
+public final class RequestTrace {
+
+    /**
+     * maximum number of stages recorded per request, further stages are ignored
+     */
+    private static final int    MAX_SPANS = 16;
+
+    private final RequestTracer tracer;
+
+    private final long          receiveNanos;
+
+    private final String[]      stages;
+
+    private final long[]        enqueued;
+
+    private final long[]        started;
+
+    private final long[]        ended;
+
+    private final long[]        io;
+
+    private int                 numSpans;
+
+    private long                finishNanos;
+
+    private OSDRequest          request;
+
+    private String              operation;
+
+    private String              fileId;
+
+    private long                requestId;
+
+    RequestTrace(RequestTracer tracer, OSDRequest request) {
+        this.tracer = tracer;
+        this.request = request;
+        this.receiveNanos = request.getRpcRequest().getReceiveNanos();
+        this.stages = new String[MAX_SPANS];
+        this.enqueued = new long[MAX_SPANS];
+        this.started = new long[MAX_SPANS];
+        this.ended = new long[MAX_SPANS];
+        this.io = new long[MAX_SPANS];
+    }
+
+    /**
+     * Records the start of processing in a stage.
+     *
+     * @return the index to be passed to {@link #endSpan(int, long)}, or -1 if the span is not recorded
+     */
+    public synchronized int startSpan(String stage, long enqueueNanos, long startNanos) {
+        if (finishNanos != 0 || numSpans == MAX_SPANS) {
+            return -1;
+        }
+        stages[numSpans] = stage;
+        enqueued[numSpans] = enqueueNanos;
+        started[numSpans] = startNanos;
+        return numSpans++;
+    }
+
+    public synchronized void endSpan(int span, long endNanos) {
+        if (span >= 0 && finishNanos == 0) {
+            ended[span] = endNanos;
+        }
+    }
+
+    /**
+     * Adds disk I/O time to the stage that is currently processing the request.
+     */
+    public synchronized void addIOTime(long nanos) {
+        for (int i = numSpans - 1; i >= 0; i--) {
+            if (ended[i] == 0) {
+                io[i] += nanos;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Called when the response has been sent. Spans that have not ended yet end now.
+     */
+    void finish() {
+        synchronized (this) {
+            if (finishNanos != 0) {
+                return;
+            }
+            finishNanos = System.nanoTime();
+            for (int i = 0; i < numSpans; i++) {
+                if (ended[i] == 0) {
+                    ended[i] = finishNanos;
+                }
+            }
+            operation = request.getOperation() == null ? "unknown" : request.getOperation().getClass()
+                    .getSimpleName();
+            fileId = request.getFileId();
+            requestId = request.getRequestId();
+            // do not keep the request and its buffers alive in the slow request log
+            request = null;
+        }
+        tracer.finished(this);
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public long getLatencyNanos() {
+        return finishNanos - receiveNanos;
+    }
+
+    int getNumSpans() {
+        return numSpans;
+    }
+
+    String getStage(int span) {
+        return stages[span];
+    }
+
+    long getQueueWaitNanos(int span) {
+        return started[span] - enqueued[span];
+    }
+
+    long getProcessingNanos(int span) {
+        return ended[span] - started[span];
+    }
+
+    long getIONanos(int span) {
+        return io[span];
+    }
+
+    /**
+     * @return the request with the queue wait, processing and I/O time of each stage in milliseconds, and the
+     *         time each stage was entered relative to the receipt of the request
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("request %d %s file %s: %.3f ms\n", requestId, operation, fileId,
+            getLatencyNanos() / 1e6));
+        for (int i = 0; i < numSpans; i++) {
+            sb.append(String.format("  +%.3f ms %-16s wait %.3f ms, processing %.3f ms, I/O %.3f ms\n",
+                (enqueued[i] - receiveNanos) / 1e6, stages[i], getQueueWaitNanos(i) / 1e6,
+                getProcessingNanos(i) / 1e6, io[i] / 1e6));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xtreemfs.foundation.metrics.MetricsRegistry;
+
+/**
+ * Samples requests for a {@link RequestTrace} of the stages they pass through. The traces of completed requests
+ * are aggregated in histograms per operation and stage, and the traces of slow requests are kept in a ring buffer,
+ * which shows the stages that cause the tail latency.
+ */
+public class RequestTracer {
+
+    private final MetricsRegistry metrics;
+
+    /**
+     * one out of this many requests is traced, 0 if tracing is disabled
+     */
+    private final int             samplingInterval;
+
+    /**
+     * number of requests passed to {@link #startTrace(OSDRequest)}; the request ids are not used for sampling, as
+     * they are shared by all OSDs in the process and not incremented atomically
+     */
+    private final AtomicLong      numRequests;
+
+    private final long            slowThresholdNanos;
+
+    /**
+     * ring buffer of the traces of slow requests
+     */
+    private final RequestTrace[]  slowRequests;
+
+    private int                   nextSlowRequest;
+
+    public RequestTracer(MetricsRegistry metrics, int samplingInterval, int slowThresholdMs, int slowLogSize) {
+        this.metrics = metrics;
+        this.samplingInterval = samplingInterval;
+        this.numRequests = new AtomicLong();
+        this.slowThresholdNanos = slowThresholdMs * 1000000L;
+        this.slowRequests = new RequestTrace[Math.max(slowLogSize, 0)];
+    }
+
+    /**
+     * Attaches a trace to the request if it is sampled.
+     */
+    public void startTrace(OSDRequest rq) {
+        if (samplingInterval > 0 && numRequests.getAndIncrement() % samplingInterval == 0) {
+            rq.setTrace(new RequestTrace(this, rq));
+        }
+    }
+
+    void finished(RequestTrace trace) {
+        final String opLabel = MetricsRegistry.label("operation", trace.getOperation());
+        metrics.histogram("xtreemfs_osd_traced_request_us", opLabel).record(trace.getLatencyNanos() / 1000);
+
+        for (int i = 0; i < trace.getNumSpans(); i++) {
+            final String labels = opLabel + "," + MetricsRegistry.label("stage", trace.getStage(i));
+            metrics.histogram("xtreemfs_osd_traced_stage_us", labels + ",phase=\"queue\"").record(
+                trace.getQueueWaitNanos(i) / 1000);
+            metrics.histogram("xtreemfs_osd_traced_stage_us", labels + ",phase=\"processing\"").record(
+                trace.getProcessingNanos(i) / 1000);
+            if (trace.getIONanos(i) > 0) {
+                metrics.histogram("xtreemfs_osd_traced_stage_us", labels + ",phase=\"io\"").record(
+                    trace.getIONanos(i) / 1000);
+            }
+        }
+
+        if (slowRequests.length > 0 && trace.getLatencyNanos() >= slowThresholdNanos) {
+            synchronized (slowRequests) {
+                slowRequests[nextSlowRequest] = trace;
+                nextSlowRequest = (nextSlowRequest + 1) % slowRequests.length;
+            }
+        }
+    }
+
+    /**
+     * @return the traces of the most recent slow requests, newest first
+     */
+    public List<RequestTrace> getSlowRequests() {
+        List<RequestTrace> result = new ArrayList<RequestTrace>(slowRequests.length);
+        synchronized (slowRequests) {
+            for (int i = 1; i <= slowRequests.length; i++) {
+                RequestTrace trace = slowRequests[(nextSlowRequest - i + slowRequests.length) % slowRequests.length];
+                if (trace == null) {
+                    break;
+                }
+                result.add(trace);
+            }
+        }
+        return result;
+    }
+
+    public int getSamplingInterval() {
+        return samplingInterval;
+    }
+
+    public long getSlowThresholdMs() {
+        return slowThresholdNanos / 1000000L;
+    }
+}
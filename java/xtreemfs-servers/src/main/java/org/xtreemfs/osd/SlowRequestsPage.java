@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+package org.xtreemfs.osd;
+
+import java.io.IOException;
+
+import org.xtreemfs.common.statusserver.StatusServerModule;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceType;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Status page showing the stage timings of the most recent slow requests recorded by the {@link RequestTracer}.
+ */
+class SlowRequestsPage extends StatusServerModule {
+
+    private OSDRequestDispatcher myDispatcher;
+
+    @Override
+    public String getDisplayName() {
+        return "OSD Slow Requests";
+    }
+
+    @Override
+    public String getUriPath() {
+        return "/slowrequests";
+    }
+
+    @Override
+    public boolean isAvailableForService(ServiceType service) {
+        return service == ServiceType.SERVICE_TYPE_OSD;
+    }
+
+    @Override
+    public void initialize(ServiceType service, Object serviceRequestDispatcher) {
+        assert (service == ServiceType.SERVICE_TYPE_OSD);
+        myDispatcher = (OSDRequestDispatcher) serviceRequestDispatcher;
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public void handle(HttpExchange httpExchange) throws IOException {
+        final RequestTracer tracer = myDispatcher.getRequestTracer();
+        final StringBuffer sb = new StringBuffer();
+        sb.append("<HTML><HEAD><TITLE>Slow Requests</TITLE>");
+        sb.append("<STYLE type=\"text/css\">body,h1 ");
+        sb.append("{font-family:Arial,Helvetica,sans-serif;}</STYLE></HEAD><BODY>");
+        sb.append("<H1>Slow Requests</H1>");
+        if (tracer.getSamplingInterval() == 0) {
+            sb.append("<P>Request tracing is disabled.</P>");
+        } else {
+            sb.append("<P>One out of ").append(tracer.getSamplingInterval());
+            sb.append(" requests is traced. Traced requests slower than ").append(tracer.getSlowThresholdMs());
+            sb.append(" ms, newest first:</P><PRE>");
+            for (RequestTrace trace : tracer.getSlowRequests()) {
+                sb.append(trace.toString().replace("&", "&amp;").replace("<", "&lt;")).append("\n");
+            }
+            sb.append("</PRE>");
+        }
+        sb.append("</BODY></HTML>");
+        sendResponse(httpExchange, sb.toString());
+    }
+}
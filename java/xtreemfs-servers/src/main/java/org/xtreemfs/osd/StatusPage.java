@@ -50,6 +50,7 @@ class StatusPage extends StatusServerModule {
             AUTHQ("<!-- $AUTHQ -->"),
             STORAGEQ("<!-- $STORAGEQ -->"),
             DELETIONQ("<!-- $DELETIONQ -->"),
+            DELETIONBACKLOG("<!-- $DELETIONBACKLOG -->"),
             OPENFILES("<!-- $OPENFILES -->"),
             OBJWRITE("<!-- $OBJWRITE -->"),
             OBJREAD("<!-- $OBJREAD -->"),
@@ -164,6 +165,9 @@ class StatusPage extends StatusServerModule {
         values.put(
                 Vars.DELETIONQ,
                 Integer.toString(myDispatcher.getDeletionStage().getQueueLength()));
+        values.put(
+                Vars.DELETIONBACKLOG,
+                Long.toString(myDispatcher.getDeletionStage().getDeletionBacklog()));
         values.put(
                 Vars.OPENFILES,
                 Integer.toString(myDispatcher.getPreprocStage().getNumOpenFiles()));
@@ -25,6 +25,7 @@ import org.xtreemfs.foundation.pbrpc.utils.ErrorUtils;
 import org.xtreemfs.osd.InternalObjectData;
 import org.xtreemfs.osd.OSDRequest;
 import org.xtreemfs.osd.OSDRequestDispatcher;
+import org.xtreemfs.osd.stages.RequestPriority;
 import org.xtreemfs.osd.stages.StorageStage.ReadObjectCallback;
 import org.xtreemfs.osd.storage.ObjectInformation;
 import org.xtreemfs.osd.storage.StorageLayout;
@@ -189,6 +190,11 @@ public final class CheckObjectOperation extends OSDOperation {
         return true;
     }
 
+    @Override
+    public RequestPriority getPriority() {
+        return RequestPriority.BACKGROUND;
+    }
+
     @Override
     public void startInternalEvent(Object[] args) {
         throw new UnsupportedOperationException("Not supported yet.");
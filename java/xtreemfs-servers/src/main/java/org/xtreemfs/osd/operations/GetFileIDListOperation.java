@@ -20,6 +20,7 @@ import org.xtreemfs.foundation.pbrpc.utils.ErrorUtils;
 import org.xtreemfs.osd.OSDRequest;
 import org.xtreemfs.osd.OSDRequestDispatcher;
 import org.xtreemfs.osd.operations.OSDOperation;
+import org.xtreemfs.osd.stages.RequestPriority;
 import org.xtreemfs.osd.stages.StorageStage.GetFileIDListCallback;
 import org.xtreemfs.pbrpc.generatedinterfaces.OSDServiceConstants;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.KeyValuePair;
@@ -87,6 +88,11 @@ public class GetFileIDListOperation extends OSDOperation {
         return false;
     }
 
+    @Override
+    public RequestPriority getPriority() {
+        return RequestPriority.BACKGROUND;
+    }
+
     @Override
     public void startInternalEvent(Object[] args) {
         throw new UnsupportedOperationException("Not supported yet.");
@@ -22,6 +22,7 @@ import org.xtreemfs.foundation.pbrpc.utils.ErrorUtils;
 import org.xtreemfs.osd.OSDRequest;
 import org.xtreemfs.osd.OSDRequestDispatcher;
 import org.xtreemfs.osd.replication.ObjectSet;
+import org.xtreemfs.osd.stages.RequestPriority;
 import org.xtreemfs.osd.stages.StorageStage.GetObjectListCallback;
 import org.xtreemfs.pbrpc.generatedinterfaces.OSD.ObjectList;
 import org.xtreemfs.pbrpc.generatedinterfaces.OSD.xtreemfs_internal_get_object_setRequest;
@@ -104,6 +105,11 @@ public class GetObjectSetOperation extends OSDOperation {
         return true;
     }
 
+    @Override
+    public RequestPriority getPriority() {
+        return RequestPriority.REPLICATION;
+    }
+
     @Override
     public void startInternalEvent(Object[] args) {
         throw new UnsupportedOperationException("Not supported yet.");
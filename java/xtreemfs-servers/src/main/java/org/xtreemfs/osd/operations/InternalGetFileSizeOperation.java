@@ -166,7 +166,7 @@ public final class InternalGetFileSizeOperation extends OSDOperation {
 
                     @Override
                     public void redirect(String redirectTo) {
-                        rq.getRPCRequest().sendRedirect(redirectTo);
+                        rq.sendRedirect(redirectTo);
                     }
 
                     @Override
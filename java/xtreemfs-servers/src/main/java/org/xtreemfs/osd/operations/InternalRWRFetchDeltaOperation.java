@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd.operations;
+
+import java.util.List;
+
+import org.xtreemfs.common.Capability;
+import org.xtreemfs.common.uuids.ServiceUUID;
+import org.xtreemfs.common.xloc.InvalidXLocationsException;
+import org.xtreemfs.common.xloc.XLocations;
+import org.xtreemfs.foundation.buffer.BufferPool;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.ErrorType;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.POSIXErrno;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.RPCHeader.ErrorResponse;
+import org.xtreemfs.foundation.pbrpc.utils.ErrorUtils;
+import org.xtreemfs.osd.OSDRequest;
+import org.xtreemfs.osd.OSDRequestDispatcher;
+import org.xtreemfs.osd.rwre.ObjectDelta;
+import org.xtreemfs.osd.stages.RequestPriority;
+import org.xtreemfs.osd.stages.StorageStage.ReadObjectCallback;
+import org.xtreemfs.osd.storage.ObjectInformation;
+import org.xtreemfs.pbrpc.generatedinterfaces.OSD.xtreemfs_rwr_fetch_deltaRequest;
+import org.xtreemfs.pbrpc.generatedinterfaces.OSD.xtreemfs_rwr_fetch_deltaResponse;
+import org.xtreemfs.pbrpc.generatedinterfaces.OSDServiceConstants;
+
+public final class InternalRWRFetchDeltaOperation extends OSDOperation {
+
+    final String sharedSecret;
+    final ServiceUUID localUUID;
+
+    public InternalRWRFetchDeltaOperation(OSDRequestDispatcher master) {
+        super(master);
+        sharedSecret = master.getConfig().getCapabilitySecret();
+        localUUID = master.getConfig().getUUID();
+    }
+
+    @Override
+    public int getProcedureId() {
+        return OSDServiceConstants.PROC_ID_XTREEMFS_RWR_FETCH_DELTA;
+    }
+
+    @Override
+    public void startRequest(final OSDRequest rq) {
+        final xtreemfs_rwr_fetch_deltaRequest args = (xtreemfs_rwr_fetch_deltaRequest)rq.getRequestArgs();
+
+        if (Logging.isDebug()) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, this, "RWR fetch delta request for file %s-%d, %d blocks",
+                    args.getFileId(), args.getObjectNumber(), args.getBlockDigestsCount());
+        }
+
+        if (args.getBlockSize() <= 0) {
+            rq.sendError(ErrorType.ERRNO, POSIXErrno.POSIX_ERROR_EINVAL, "invalid block size: "
+                    + args.getBlockSize());
+            return;
+        }
+
+        fetchDelta(rq, args);
+
+    }
+
+    public void fetchDelta(final OSDRequest rq, final xtreemfs_rwr_fetch_deltaRequest args) {
+        master.getStorageStage().readObject(rq.getFileId(), args.getObjectNumber(),
+                rq.getLocationList().getLocalReplica().getStripingPolicy(), 0, -1, 0, rq, new ReadObjectCallback() {
+
+            @Override
+            public void readComplete(ObjectInformation result, ErrorResponse error) {
+                if (error != null)
+                    rq.sendError(error);
+                else
+                    sendDelta(rq, args, result.getData());
+            }
+        });
+    }
+
+    private void sendDelta(OSDRequest rq, xtreemfs_rwr_fetch_deltaRequest args, ReusableBuffer data) {
+
+        xtreemfs_rwr_fetch_deltaResponse.Builder response = xtreemfs_rwr_fetch_deltaResponse.newBuilder();
+        if (data == null || !data.hasRemaining()) {
+            BufferPool.free(data);
+            rq.sendSuccess(response.setObjectSize(0).build(), null);
+            return;
+        }
+
+        List<Integer> changedBlocks = ObjectDelta.findChangedBlocks(data, args.getBlockSize(),
+                args.getBlockDigestsList());
+        ReusableBuffer delta = ObjectDelta.extractBlocks(data, args.getBlockSize(), changedBlocks);
+
+        response.setObjectSize(data.remaining());
+        response.addAllChangedBlocks(changedBlocks);
+        BufferPool.free(data);
+
+        rq.sendSuccess(response.build(), delta);
+    }
+
+
+    @Override
+    public ErrorResponse parseRPCMessage(OSDRequest rq) {
+        try {
+            xtreemfs_rwr_fetch_deltaRequest rpcrq = (xtreemfs_rwr_fetch_deltaRequest)rq.getRequestArgs();
+            rq.setFileId(rpcrq.getFileId());
+            rq.setCapability(new Capability(rpcrq.getFileCredentials().getXcap(), sharedSecret));
+            rq.setLocationList(new XLocations(rpcrq.getFileCredentials().getXlocs(), localUUID));
+
+            return null;
+        } catch (InvalidXLocationsException ex) {
+            return ErrorUtils.getErrorResponse(ErrorType.ERRNO, POSIXErrno.POSIX_ERROR_EINVAL, ex.toString());
+        } catch (Throwable ex) {
+            return ErrorUtils.getInternalServerError(ex);
+        }
+    }
+
+    @Override
+    public boolean requiresCapability() {
+        return true;
+    }
+
+    @Override
+    public RequestPriority getPriority() {
+        return RequestPriority.REPLICATION;
+    }
+
+    @Override
+    public boolean bypassViewValidation() {
+        // This operation has to be used while the replicas are invalidated and a reset triggered
+        // by InternalRWRAuthStateInvalidatedOperation.
+        return true;
+    }
+
+    @Override
+    public void startInternalEvent(Object[] args) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+}
\ No newline at end of file
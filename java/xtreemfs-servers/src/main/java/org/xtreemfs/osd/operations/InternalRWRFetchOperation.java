@@ -20,6 +20,7 @@ import org.xtreemfs.foundation.pbrpc.utils.ErrorUtils;
 import org.xtreemfs.osd.InternalObjectData;
 import org.xtreemfs.osd.OSDRequest;
 import org.xtreemfs.osd.OSDRequestDispatcher;
+import org.xtreemfs.osd.stages.RequestPriority;
 import org.xtreemfs.osd.stages.StorageStage.ReadObjectCallback;
 import org.xtreemfs.osd.storage.ObjectInformation;
 import org.xtreemfs.pbrpc.generatedinterfaces.OSD.xtreemfs_rwr_fetchRequest;
@@ -101,6 +102,11 @@ public final class InternalRWRFetchOperation extends OSDOperation {
         return true;
     }
 
+    @Override
+    public RequestPriority getPriority() {
+        return RequestPriority.REPLICATION;
+    }
+
     @Override
     public boolean bypassViewValidation() {
         // This operation has to be used while the replicas are invalidated and a reset triggered
@@ -20,6 +20,7 @@ import org.xtreemfs.foundation.pbrpc.utils.ErrorUtils;
 import org.xtreemfs.osd.OSDRequest;
 import org.xtreemfs.osd.OSDRequestDispatcher;
 import org.xtreemfs.osd.rwre.RWReplicationStage;
+import org.xtreemfs.osd.stages.RequestPriority;
 import org.xtreemfs.osd.stages.StorageStage.TruncateCallback;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.OSDWriteResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.OSD.xtreemfs_rwr_truncateRequest;
@@ -83,7 +84,7 @@ public final class InternalRWRTruncateOperation extends OSDOperation {
 
             @Override
             public void redirect(String redirectTo) {
-                rq.getRPCRequest().sendRedirect(redirectTo);
+                rq.sendRedirect(redirectTo);
             }
 
             @Override
@@ -130,6 +131,11 @@ public final class InternalRWRTruncateOperation extends OSDOperation {
         return true;
     }
 
+    @Override
+    public RequestPriority getPriority() {
+        return RequestPriority.REPLICATION;
+    }
+
     @Override
     public void startInternalEvent(Object[] args) {
         throw new UnsupportedOperationException("Not supported yet.");
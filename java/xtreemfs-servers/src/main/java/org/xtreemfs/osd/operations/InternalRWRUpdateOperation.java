@@ -21,6 +21,7 @@ import org.xtreemfs.foundation.pbrpc.utils.ErrorUtils;
 import org.xtreemfs.osd.OSDRequest;
 import org.xtreemfs.osd.OSDRequestDispatcher;
 import org.xtreemfs.osd.rwre.RWReplicationStage;
+import org.xtreemfs.osd.stages.RequestPriority;
 import org.xtreemfs.osd.stages.StorageStage.WriteObjectCallback;
 import org.xtreemfs.osd.storage.CowPolicy;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.OSDWriteResponse;
@@ -81,7 +82,7 @@ public final class InternalRWRUpdateOperation extends OSDOperation {
 
             @Override
             public void redirect(String redirectTo) {
-                rq.getRPCRequest().sendRedirect(redirectTo);
+                rq.sendRedirect(redirectTo);
             }
 
             @Override
@@ -128,6 +129,11 @@ public final class InternalRWRUpdateOperation extends OSDOperation {
         return true;
     }
 
+    @Override
+    public RequestPriority getPriority() {
+        return RequestPriority.REPLICATION;
+    }
+
     @Override
     public void startInternalEvent(Object[] args) {
         throw new UnsupportedOperationException("Not supported yet.");
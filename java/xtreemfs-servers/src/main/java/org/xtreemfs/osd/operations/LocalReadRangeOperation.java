@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd.operations;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xtreemfs.common.Capability;
+import org.xtreemfs.common.uuids.ServiceUUID;
+import org.xtreemfs.common.xloc.InvalidXLocationsException;
+import org.xtreemfs.common.xloc.StripingPolicyImpl;
+import org.xtreemfs.common.xloc.XLocations;
+import org.xtreemfs.foundation.buffer.BufferPool;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.ErrorType;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.POSIXErrno;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.RPCHeader.ErrorResponse;
+import org.xtreemfs.foundation.pbrpc.utils.ErrorUtils;
+import org.xtreemfs.osd.InternalObjectData;
+import org.xtreemfs.osd.OSDRequest;
+import org.xtreemfs.osd.OSDRequestDispatcher;
+import org.xtreemfs.osd.replication.ObjectSet;
+import org.xtreemfs.osd.stages.RequestPriority;
+import org.xtreemfs.osd.stages.StorageStage.GetObjectListCallback;
+import org.xtreemfs.osd.stages.StorageStage.ReadObjectsCallback;
+import org.xtreemfs.osd.storage.ObjectInformation;
+import org.xtreemfs.osd.storage.ObjectInformation.ObjectStatus;
+import org.xtreemfs.pbrpc.generatedinterfaces.OSD.InternalReadLocalRangeResponse;
+import org.xtreemfs.pbrpc.generatedinterfaces.OSD.ObjectList;
+import org.xtreemfs.pbrpc.generatedinterfaces.OSD.xtreemfs_internal_read_local_rangeRequest;
+import org.xtreemfs.pbrpc.generatedinterfaces.OSDServiceConstants;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Reads a range of complete objects for the read-only replication. The range consists of the first object
+ * and the objects following it on this OSD, which are read with a single storage operation and returned with
+ * a single response.
+ */
+public final class LocalReadRangeOperation extends OSDOperation {
+
+    /**
+     * maximum number of objects that can be read with one request
+     */
+    public static final int MAX_OBJECT_COUNT = 256;
+
+    final String            sharedSecret;
+
+    final ServiceUUID       localUUID;
+
+    public LocalReadRangeOperation(OSDRequestDispatcher master) {
+        super(master);
+        sharedSecret = master.getConfig().getCapabilitySecret();
+        localUUID = master.getConfig().getUUID();
+    }
+
+    @Override
+    public int getProcedureId() {
+        return OSDServiceConstants.PROC_ID_XTREEMFS_INTERNAL_READ_LOCAL_RANGE;
+    }
+
+    @Override
+    public void startRequest(final OSDRequest rq) {
+        final xtreemfs_internal_read_local_rangeRequest args = (xtreemfs_internal_read_local_rangeRequest) rq
+                .getRequestArgs();
+
+        if (args.getFirstObjectNumber() < 0) {
+            rq.sendError(ErrorType.ERRNO, POSIXErrno.POSIX_ERROR_EINVAL, "object number must be >= 0");
+            return;
+        }
+
+        if (args.getObjectCount() < 1 || args.getObjectCount() > MAX_OBJECT_COUNT) {
+            rq.sendError(ErrorType.ERRNO, POSIXErrno.POSIX_ERROR_EINVAL, "object count must be between 1 and "
+                    + MAX_OBJECT_COUNT);
+            return;
+        }
+
+        final StripingPolicyImpl sp = rq.getLocationList().getLocalReplica().getStripingPolicy();
+        if (!sp.isLocalObject(args.getFirstObjectNumber(), sp.getRelativeOSDPosition())) {
+            rq.sendError(ErrorType.ERRNO, POSIXErrno.POSIX_ERROR_EINVAL, "object "
+                    + args.getFirstObjectNumber() + " is not stored on this OSD");
+            return;
+        }
+
+        // the objects of this OSD are spaced by the stripe width
+        final List<Long> objNos = new ArrayList<Long>(args.getObjectCount());
+        for (int i = 0; i < args.getObjectCount(); i++) {
+            objNos.add(args.getFirstObjectNumber() + (long) i * sp.getWidth());
+        }
+
+        master.getStorageStage().readObjects(args.getFileId(), objNos, sp, rq, new ReadObjectsCallback() {
+
+            @Override
+            public void readComplete(List<ObjectInformation> result, ErrorResponse error) {
+                postRead(rq, args, objNos, result, error);
+            }
+        });
+    }
+
+    public void postRead(final OSDRequest rq, final xtreemfs_internal_read_local_rangeRequest args,
+            final List<Long> objNos, final List<ObjectInformation> result, ErrorResponse error) {
+        if (error != null) {
+            rq.sendError(error);
+        } else {
+            if (args.getAttachObjectList()) { // object list is requested
+                master.getStorageStage().getObjectSet(args.getFileId(),
+                        rq.getLocationList().getLocalReplica().getStripingPolicy(), rq,
+                        new GetObjectListCallback() {
+                            @Override
+                            public void getObjectSetComplete(ObjectSet objectSet, ErrorResponse error) {
+                                postReadObjectSet(rq, objNos, result, objectSet, error);
+                            }
+                        });
+            } else
+                readFinish(rq, objNos, result, null);
+        }
+    }
+
+    public void postReadObjectSet(final OSDRequest rq, List<Long> objNos, List<ObjectInformation> objects,
+            ObjectSet result, ErrorResponse error) {
+        if (error != null) {
+            freeObjects(objects);
+            rq.sendError(error);
+        } else {
+            try {
+                // serialize objectSet
+                byte[] serialized = result.getSerializedBitSet();
+
+                ObjectList objList = ObjectList.newBuilder().setSet(ByteString.copyFrom(serialized))
+                        .setFirst(result.getFirstObjectNo()).setStripeWidth(result.getStripeWidth()).build();
+                readFinish(rq, objNos, objects, objList);
+            } catch (IOException e) {
+                freeObjects(objects);
+                rq.sendInternalServerError(e);
+            }
+        }
+    }
+
+    private void readFinish(OSDRequest rq, List<Long> objNos, List<ObjectInformation> objects,
+            ObjectList objectList) {
+
+        InternalReadLocalRangeResponse.Builder response = InternalReadLocalRangeResponse.newBuilder();
+        List<ReusableBuffer> buffers = new ArrayList<ReusableBuffer>(objects.size());
+        int totalLength = 0;
+
+        for (int i = 0; i < objects.size(); i++) {
+            ObjectInformation obj = objects.get(i);
+
+            // same as a complete read of a single object
+            InternalObjectData data;
+            if (obj.getStatus() == ObjectStatus.EXISTS) {
+                data = new InternalObjectData(0, obj.isChecksumInvalidOnOSD(), 0, obj.getData());
+            } else if (obj.getStatus() == ObjectStatus.PADDING_OBJECT) {
+                data = obj.getObjectData(false, 0, obj.getStripeSize());
+            } else {
+                data = new InternalObjectData(0, obj.isChecksumInvalidOnOSD(), 0, null);
+            }
+
+            final int length = data.getData() == null ? 0 : data.getData().remaining();
+            response.addObjectNumbers(objNos.get(i));
+            response.addData(data.getMetadata());
+            response.addDataLengths(length);
+            buffers.add(data.getData());
+            totalLength += length;
+
+            master.objectSent();
+        }
+
+        if (objectList != null)
+            response.addObjectSet(objectList);
+
+        // send the data of all objects in one data fragment
+        ReusableBuffer data = BufferPool.allocate(totalLength);
+        for (ReusableBuffer buf : buffers) {
+            if (buf != null) {
+                data.put(buf);
+                BufferPool.free(buf);
+            }
+        }
+        data.flip();
+        master.dataSent(totalLength);
+
+        rq.sendSuccess(response.build(), data);
+    }
+
+    private static void freeObjects(List<ObjectInformation> objects) {
+        for (ObjectInformation obj : objects)
+            BufferPool.free(obj.getData());
+    }
+
+    @Override
+    public ErrorResponse parseRPCMessage(OSDRequest rq) {
+        try {
+            xtreemfs_internal_read_local_rangeRequest rpcrq = (xtreemfs_internal_read_local_rangeRequest) rq
+                    .getRequestArgs();
+            rq.setFileId(rpcrq.getFileId());
+            rq.setCapability(new Capability(rpcrq.getFileCredentials().getXcap(), sharedSecret));
+            rq.setLocationList(new XLocations(rpcrq.getFileCredentials().getXlocs(), localUUID));
+
+            return null;
+        } catch (InvalidXLocationsException ex) {
+            return ErrorUtils.getErrorResponse(ErrorType.ERRNO, POSIXErrno.POSIX_ERROR_EINVAL, ex.toString());
+        } catch (Throwable ex) {
+            return ErrorUtils.getInternalServerError(ex);
+        }
+    }
+
+    @Override
+    public boolean requiresCapability() {
+        return true;
+    }
+
+    @Override
+    public RequestPriority getPriority() {
+        return RequestPriority.REPLICATION;
+    }
+
+    @Override
+    public void startInternalEvent(Object[] args) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+}
@@ -16,6 +16,7 @@ import org.xtreemfs.foundation.pbrpc.client.RPCResponseAvailableListener;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.RPCHeader.ErrorResponse;
 import org.xtreemfs.osd.OSDRequest;
 import org.xtreemfs.osd.OSDRequestDispatcher;
+import org.xtreemfs.osd.stages.RequestPriority;
 
 
 public abstract class OSDOperation {
@@ -58,6 +59,15 @@ public abstract class OSDOperation {
         return false;
     }
 
+    /**
+     * Requests are queued in the stages according to their priority class. By default, requests are client requests.
+     * 
+     * @return {@link RequestPriority#FOREGROUND} [default]
+     */
+    public RequestPriority getPriority() {
+        return RequestPriority.FOREGROUND;
+    }
+
     public void waitForResponses(final RPCResponse[] responses, final ResponsesListener listener) {
 
         assert(responses.length > 0);
@@ -129,7 +129,7 @@ public final class ReadOperation extends OSDOperation {
 
             @Override
             public void redirect(String redirectTo) {
-                rq.getRPCRequest().sendRedirect(redirectTo);
+                rq.sendRedirect(redirectTo);
             }
 
             @Override
@@ -319,7 +319,7 @@ public final class ReadOperation extends OSDOperation {
     }
 
     public void sendResponse(OSDRequest rq, InternalObjectData result) {
-        if (Logging.isDebug()) {
+        if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.net)) {
             Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this, result.toString());
         }
         rq.sendSuccess(result.getMetadata(),result.getData());
@@ -13,6 +13,7 @@ import org.xtreemfs.foundation.pbrpc.utils.ErrorUtils;
 import org.xtreemfs.osd.OSDRequest;
 import org.xtreemfs.osd.OSDRequestDispatcher;
 import org.xtreemfs.osd.stages.ReplicationStage.FetchObjectCallback;
+import org.xtreemfs.osd.stages.RequestPriority;
 import org.xtreemfs.osd.storage.ObjectInformation;
 import org.xtreemfs.pbrpc.generatedinterfaces.OSD.xtreemfs_repair_objectRequest;
 import org.xtreemfs.pbrpc.generatedinterfaces.OSDServiceConstants;
@@ -104,4 +105,9 @@ public class RepairObjectOperation extends OSDOperation {
     public boolean requiresCapability() {
         return true;
     }
+
+    @Override
+    public RequestPriority getPriority() {
+        return RequestPriority.BACKGROUND;
+    }
 }
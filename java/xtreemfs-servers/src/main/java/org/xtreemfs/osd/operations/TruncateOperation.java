@@ -118,7 +118,7 @@ public final class TruncateOperation extends OSDOperation {
 
             @Override
             public void redirect(String redirectTo) {
-                rq.getRPCRequest().sendRedirect(redirectTo);
+                rq.sendRedirect(redirectTo);
             }
 
             @Override
@@ -146,7 +146,7 @@ public final class TruncateOperation extends OSDOperation {
 
                     @Override
                     public void redirect(String redirectTo) {
-                        rq.getRPCRequest().sendRedirect(redirectTo);
+                        rq.sendRedirect(redirectTo);
                     }
 
                     @Override
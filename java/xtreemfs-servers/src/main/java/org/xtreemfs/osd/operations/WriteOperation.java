@@ -133,7 +133,7 @@ public final class WriteOperation extends OSDOperation {
 
             @Override
             public void redirect(String redirectTo) {
-                rq.getRPCRequest().sendRedirect(redirectTo);
+                rq.sendRedirect(redirectTo);
             }
 
             @Override
@@ -180,7 +180,7 @@ public final class WriteOperation extends OSDOperation {
 
             @Override
             public void redirect(String redirectTo) {
-                rq.getRPCRequest().sendRedirect(redirectTo);
+                rq.sendRedirect(redirectTo);
             }
 
             @Override
@@ -49,9 +49,11 @@ public class FileVoucherManager {
      * @throws VoucherErrorException
      */
     public void addVoucher(String clientId, long expireTime, long voucherSize) throws VoucherErrorException {
-        Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this,
-                "Add Voucher! [FileID: %s, ClientId %s, expireTime: %s, voucherSize: %s]", fileId, clientId,
-                expireTime, voucherSize);
+        if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.proc)) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this,
+                    "Add Voucher! [FileID: %s, ClientId %s, expireTime: %s, voucherSize: %s]", fileId, clientId,
+                    expireTime, voucherSize);
+        }
 
         if (!invalidClientExpireTimeSet.contains(expireTime + "." + clientId)) {
             if (!clientExpireTimeSet.contains(expireTime + "." + clientId)) {
@@ -62,13 +64,17 @@ public class FileVoucherManager {
                     voucherSizeMax = voucherSize;
                 }
 
-                Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this,
-                        "Register Voucher! [FileID: %s, ClientId %s, latestExpireTime: %d, voucherSizeMax: %d]",
-                        fileId, clientId, latestExpireTime, voucherSizeMax);
+                if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.proc)) {
+                    Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this,
+                            "Register Voucher! [FileID: %s, ClientId %s, latestExpireTime: %d, voucherSizeMax: %d]",
+                            fileId, clientId, latestExpireTime, voucherSizeMax);
+                }
             } else {
-                Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this,
-                        "Voucher already registered! [FileID: %s, ClientId %s, expireTime: %d, voucherSize: %d]",
-                        fileId, clientId, expireTime, voucherSize);
+                if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.proc)) {
+                    Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this,
+                            "Voucher already registered! [FileID: %s, ClientId %s, expireTime: %d, voucherSize: %d]",
+                            fileId, clientId, expireTime, voucherSize);
+                }
             }
         } else {
             throw new VoucherErrorException(String.format(
@@ -102,10 +108,12 @@ public class FileVoucherManager {
         if (clientExpireTimeSet.isEmpty() || newFileSize <= voucherSizeMax) {
             return true;
         } else {
-            Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this,
-                    "New file size is less than the maximum allowed: "
-                            + "[FileID: %s, ClientId %s, newFileSize: %s, maxFileSize: %s]", fileId, clientId,
-                    newFileSize, voucherSizeMax);
+            if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.proc)) {
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this,
+                        "New file size is less than the maximum allowed: "
+                                + "[FileID: %s, ClientId %s, newFileSize: %s, maxFileSize: %s]", fileId, clientId,
+                        newFileSize, voucherSizeMax);
+            }
 
             return false;
         }
@@ -10,6 +10,7 @@ package org.xtreemfs.osd.replication;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -190,12 +191,7 @@ public class ObjectDissemination {
             try {
                 file.replicate();
             } catch (TransferStrategyException e) {
-                if (e.getErrorCode() == TransferStrategyException.ErrorCode.NO_OSD_FOUND)
-                    file.reportError(ErrorUtils.getErrorResponse(ErrorType.ERRNO, POSIXErrno.POSIX_ERROR_EIO,
-                            "no OSD could be found for fetching an object", e));
-                else if (e.getErrorCode() == TransferStrategyException.ErrorCode.NO_OSD_REACHABLE)
-                    file.reportError(ErrorUtils.getErrorResponse(ErrorType.ERRNO, POSIXErrno.POSIX_ERROR_EIO,
-                            "no OSD is reachable for fetching an object", e));
+                reportTransferError(file, e);
             }
 
             if (!file.isReplicating())
@@ -203,6 +199,42 @@ public class ObjectDissemination {
         }
     }
 
+    private void reportTransferError(ReplicatingFile file, TransferStrategyException e) {
+        if (e.getErrorCode() == TransferStrategyException.ErrorCode.NO_OSD_FOUND)
+            file.reportError(ErrorUtils.getErrorResponse(ErrorType.ERRNO, POSIXErrno.POSIX_ERROR_EIO,
+                    "no OSD could be found for fetching an object", e));
+        else if (e.getErrorCode() == TransferStrategyException.ErrorCode.NO_OSD_REACHABLE)
+            file.reportError(ErrorUtils.getErrorResponse(ErrorType.ERRNO, POSIXErrno.POSIX_ERROR_EIO,
+                    "no OSD is reachable for fetching an object", e));
+    }
+
+    /**
+     * must be called for each response to a fetch request, before the fetched objects are processed
+     */
+    public void fetchCompleted(String fileID) {
+        ReplicatingFile file = filesInProgress.get(fileID);
+        if (file != null)
+            file.fetchCompleted();
+    }
+
+    /**
+     * fetches the objects of a rejected range request one by one, because the used OSD does not support
+     * ranges
+     */
+    public void objectRangeNotSupported(String fileID, final ServiceUUID usedOSD, List<Long> objectNos) {
+        ReplicatingFile file = filesInProgress.get(fileID);
+        assert (file != null);
+
+        try {
+            file.objectRangeNotSupported(usedOSD, objectNos);
+        } catch (TransferStrategyException e) {
+            reportTransferError(file, e);
+        }
+
+        if (!file.isReplicating())
+            fileCompleted(file.fileID);
+    }
+
     /**
      * process all necessary actions if object was fetched correctly, otherwise triggers new fetch-attempt
      *
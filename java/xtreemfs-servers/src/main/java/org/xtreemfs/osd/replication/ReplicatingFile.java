@@ -11,10 +11,13 @@ package org.xtreemfs.osd.replication;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import org.xtreemfs.common.Capability;
 import org.xtreemfs.common.ServiceAvailability;
@@ -60,6 +63,7 @@ import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceSet;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.FileCredentials;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.KeyValuePair;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.XCap;
+import org.xtreemfs.pbrpc.generatedinterfaces.OSD.InternalReadLocalRangeResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.OSD.InternalReadLocalResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.OSD.ObjectData;
 import org.xtreemfs.pbrpc.generatedinterfaces.OSD.ObjectList;
@@ -315,6 +319,22 @@ class ReplicatingFile {
      */
     private static int                       maxObjectsInProgress;
     
+    /**
+     * the maximum number of objects fetched with a single request
+     */
+    private final int                        maxObjectsPerFetch;
+    
+    /**
+     * number of fetch requests which have been sent and not yet been processed
+     */
+    private int                              fetchesInProgress;
+    
+    /**
+     * OSDs which do not support fetching a range of objects with a single
+     * request
+     */
+    private final Set<ServiceUUID>           osdsWithoutRangeReads;
+    
     public final String                      fileID;
     
     private final TransferStrategy           strategy;
@@ -374,11 +394,15 @@ class ReplicatingFile {
         this.viewOutdated = false;
         this.objectsInProgress = new HashMap<Long, ReplicatingObject>();
         this.waitingRequests = new HashMap<Long, ReplicatingObject>();
+        this.fetchesInProgress = 0;
+        this.osdsWithoutRangeReads = new HashSet<ServiceUUID>();
         
         // IMPORTANT: stripe size must be the same in all striping policies
         StripingPolicyImpl sp = xLoc.getLocalReplica().getStripingPolicy();
         assert (checkEqualStripeSizeOfReplicas(xLoc.getReplicas()));
         this.lastObject = sp.getObjectNoForOffset(xLoc.getXLocSet().getReadOnlyFileSize() - 1);
+        this.maxObjectsPerFetch = Math.max(1, master.getConfig().getReplicationMaxFetchSize()
+            / sp.getStripeSizeForObject(0));
         
         // create a new strategy
         if (ReplicationFlags.isRandomStrategy(xLoc.getLocalReplica().getTransferStrategyFlags()))
@@ -537,7 +561,7 @@ class ReplicatingFile {
      * @throws TransferStrategyException
      */
     public void replicate() throws TransferStrategyException {
-        while (objectsInProgress.size() < maxObjectsInProgress) {
+        while (fetchesInProgress < maxObjectsInProgress) {
             strategy.selectNext();
             NextRequest next = strategy.getNext();
             
@@ -545,6 +569,14 @@ class ReplicatingFile {
                 // object replication is in progress
                 processObject(next.objectNo);
                 
+                // fetch the following objects on the same OSD with the same request
+                List<Long> followingObjects = Collections.emptyList();
+                if (maxObjectsPerFetch > 1 && !osdsWithoutRangeReads.contains(next.osd)) {
+                    followingObjects = strategy.getFollowingObjects(next, maxObjectsPerFetch - 1);
+                    for (long objectNo : followingObjects)
+                        processObject(objectNo);
+                }
+                
                 if (Logging.isDebug())
                     if (next.attachObjectSet)
                         Logging.logMessage(Logging.LEVEL_DEBUG, Category.replication, this,
@@ -562,8 +594,18 @@ class ReplicatingFile {
                                            getNumberOfWaitingObjects());
                 
                 try {
-                    sendFetchObjectRequest(next.objectNo, next.osd, next.attachObjectSet);
+                    if (followingObjects.isEmpty()) {
+                        sendFetchObjectRequest(next.objectNo, next.osd, next.attachObjectSet);
+                    } else {
+                        List<Long> objectNos = new ArrayList<Long>(followingObjects.size() + 1);
+                        objectNos.add(next.objectNo);
+                        objectNos.addAll(followingObjects);
+                        sendFetchObjectRangeRequest(objectNos, next.osd, next.attachObjectSet);
+                    }
                 } catch (IOException e) {
+                    // the following objects will be chosen again later
+                    for (long objectNo : followingObjects)
+                        returnObject(objectNo, next.osd);
                     // try other OSD
                     objectsInProgress.get(next.objectNo).replicateObject();
                 }
@@ -723,6 +765,45 @@ class ReplicatingFile {
         cancelled = true;
     }
     
+    /**
+     * must be called for each response to a fetch request, before the
+     * fetched objects are processed
+     */
+    public void fetchCompleted() {
+        assert (fetchesInProgress > 0);
+        fetchesInProgress--;
+    }
+    
+    /**
+     * Handles a request for a range of objects that was rejected, because
+     * the OSD does not support it. The objects will be fetched one by one.
+     * 
+     * @throws TransferStrategyException
+     */
+    public void objectRangeNotSupported(ServiceUUID osd, List<Long> objectNos) throws TransferStrategyException {
+        if (Logging.isDebug())
+            Logging.logMessage(Logging.LEVEL_DEBUG, Category.replication, this,
+                "%s - OSD %s does not support fetching ranges of objects", fileID, osd);
+        
+        osdsWithoutRangeReads.add(osd);
+        for (long objectNo : objectNos)
+            returnObject(objectNo, osd);
+        replicate();
+    }
+    
+    /**
+     * removes an object, for which no request has been sent, from the
+     * objects in progress, so that it can be chosen again
+     */
+    private void returnObject(long objectNo, ServiceUUID osd) {
+        ReplicatingObject object = objectsInProgress.remove(objectNo);
+        if (object == null)
+            return;
+        if (object.hasWaitingRequests())
+            waitingRequests.put(objectNo, object);
+        strategy.returnObject(objectNo, osd, object.hasWaitingRequests());
+    }
+    
     /**
      * 
      */
@@ -747,7 +828,7 @@ class ReplicatingFile {
         }
         
         // check that the load-restriction works
-        assert (objectsInProgress.size() <= MAX_MAX_OBJECTS_IN_PROGRESS);
+        assert (objectsInProgress.size() <= MAX_MAX_OBJECTS_IN_PROGRESS * maxObjectsPerFetch);
         
         OSDServiceClient client = master.getOSDClientForReplication();
         // IMPORTANT: stripe size must be the same in all striping policies
@@ -756,6 +837,7 @@ class ReplicatingFile {
             fcred, fileID, objectNo, 0, 0, xLoc
                     .getLocalReplica().getStripingPolicy().getStripeSizeForObject(objectNo), attachObjectSet,
             new ArrayList(0));
+        fetchesInProgress++;
         
         response.registerListener(new RPCResponseAvailableListener<InternalReadLocalResponse>() {
             @Override
@@ -790,6 +872,102 @@ class ReplicatingFile {
         });
     }
     
+    /**
+     * Sends a RPC for reading a range of objects on another OSD. The objects
+     * must be stored one after the other on the OSD.
+     * 
+     * @param attachObjectSet
+     * @throws UnknownUUIDException
+     */
+    private void sendFetchObjectRangeRequest(final List<Long> objectNos, final ServiceUUID osd,
+        boolean attachObjectSet) throws UnknownUUIDException, IOException {
+        // check capability validity and update capability if necessary
+        try {
+            checkCap();
+        } catch (IOException e1) {
+            Logging.logMessage(Logging.LEVEL_ERROR, Category.misc, this,
+                "cannot update capability for file %s due to " + e1.getLocalizedMessage(), fileID);
+        }
+        
+        // check that the load-restriction works
+        assert (objectsInProgress.size() <= MAX_MAX_OBJECTS_IN_PROGRESS * maxObjectsPerFetch);
+        
+        OSDServiceClient client = master.getOSDClientForReplication();
+        FileCredentials fcred = FileCredentials.newBuilder().setXcap(cap.getXCap()).setXlocs(xLoc.getXLocSet()).build();
+        RPCResponse<InternalReadLocalRangeResponse> response = client.xtreemfs_internal_read_local_range(osd
+                .getAddress(), RPCAuthentication.authNone, RPCAuthentication.userService, fcred, fileID, objectNos
+                .get(0), objectNos.size(), attachObjectSet);
+        fetchesInProgress++;
+        
+        response.registerListener(new RPCResponseAvailableListener<InternalReadLocalRangeResponse>() {
+            @Override
+            public void responseAvailable(RPCResponse<InternalReadLocalRangeResponse> r) {
+                ReusableBuffer data = null;
+                try {
+                    InternalReadLocalRangeResponse rangeResponse = r.get();
+                    data = r.getData();
+                    List<InternalObjectData> objects = splitObjectRange(objectNos, rangeResponse, data);
+                    ObjectList objectList = null;
+                    if (rangeResponse.getObjectSetCount() == 1)
+                        objectList = rangeResponse.getObjectSet(0);
+                    master.getReplicationStage().internalObjectRangeFetched(fileID, objectNos, osd, objects,
+                        objectList, null);
+                } catch (PBRPCException e) {
+                    if (e.getErrorType() != ErrorType.INVALID_VIEW && e.getErrorType() != ErrorType.INVALID_PROC_ID) {
+                        osdAvailability.setServiceWasNotAvailable(osd);
+                    }
+                    master.getReplicationStage().internalObjectRangeFetched(fileID, objectNos, osd, null, null,
+                        e.getErrorResponse());
+                } catch (IOException e) {
+                    osdAvailability.setServiceWasNotAvailable(osd);
+                    master.getReplicationStage().internalObjectRangeFetched(fileID, objectNos, osd, null, null,
+                        ErrorUtils.getErrorResponse(ErrorType.ERRNO, POSIXErrno.POSIX_ERROR_EIO, e.toString()));
+                } catch (InterruptedException e) {
+                    // ignore
+                } finally {
+                    // the data of the objects are view buffers
+                    BufferPool.free(data);
+                    r.freeBuffers();
+                }
+            }
+        });
+    }
+    
+    /**
+     * splits the data of a response to a range request into the data of the
+     * single objects
+     */
+    private static List<InternalObjectData> splitObjectRange(List<Long> objectNos,
+        InternalReadLocalRangeResponse response, ReusableBuffer data) throws IOException {
+        
+        if (response.getObjectNumbersCount() != objectNos.size() || response.getDataCount() != objectNos.size()
+            || response.getDataLengthsCount() != objectNos.size())
+            throw new IOException("invalid response: expected " + objectNos.size() + " objects");
+        
+        int totalLength = 0;
+        for (int i = 0; i < objectNos.size(); i++) {
+            if (response.getObjectNumbers(i) != objectNos.get(i))
+                throw new IOException("invalid response: unexpected object " + response.getObjectNumbers(i));
+            totalLength += response.getDataLengths(i);
+        }
+        if (totalLength != (data == null ? 0 : data.remaining()))
+            throw new IOException("invalid response: data length does not match the objects");
+        
+        List<InternalObjectData> objects = new ArrayList<InternalObjectData>(objectNos.size());
+        int offset = 0;
+        for (int i = 0; i < objectNos.size(); i++) {
+            final int length = response.getDataLengths(i);
+            ReusableBuffer objectData = null;
+            if (length > 0) {
+                objectData = data.createViewBuffer();
+                objectData.range(offset, length);
+                offset += length;
+            }
+            objects.add(new InternalObjectData(response.getData(i), objectData));
+        }
+        return objects;
+    }
+    
     /**
      * sends an error to all belonging clients (for all objects of the file)
      */
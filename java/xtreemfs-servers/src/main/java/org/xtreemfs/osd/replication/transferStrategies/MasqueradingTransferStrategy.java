@@ -75,6 +75,31 @@ public abstract class MasqueradingTransferStrategy extends TransferStrategy {
         return next;
     }
 
+    @Override
+    public List<Long> getFollowingObjects(NextRequest next, int maxObjects) {
+        List<Long> objects = super.getFollowingObjects(next, maxObjects);
+        for (long objectNo : objects) {
+            // as in getNext(), the used OSD will not be used a second time for these objects
+            List<ServiceUUID> osds = availableOSDsForObject.get(objectNo);
+            if (osds != null)
+                osds.remove(next.osd);
+        }
+        return objects;
+    }
+
+    @Override
+    protected boolean canFetchFrom(long objectNo, ServiceUUID osd) {
+        return getAvailableOSDsForObject(objectNo).contains(osd) && super.canFetchFrom(objectNo, osd);
+    }
+
+    @Override
+    public void returnObject(long objectNo, ServiceUUID osd, boolean preferred) {
+        super.returnObject(objectNo, osd, preferred);
+        List<ServiceUUID> osds = availableOSDsForObject.get(objectNo);
+        if (osds != null && !osds.contains(osd))
+            osds.add(osd);
+    }
+
     @Override
     public boolean removeObject(long objectNo) {
         boolean contained = (null != availableOSDsForObject.remove(objectNo));
@@ -8,11 +8,14 @@
 
 package org.xtreemfs.osd.replication.transferStrategies;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.xtreemfs.common.ServiceAvailability;
 import org.xtreemfs.common.uuids.ServiceUUID;
+import org.xtreemfs.common.xloc.Replica;
 import org.xtreemfs.common.xloc.XLocations;
 import org.xtreemfs.osd.replication.ObjectSet;
 
@@ -169,6 +172,63 @@ public abstract class TransferStrategy {
         return next;
     }
 
+    /**
+     * Extends the request returned by getNext() by the objects following the chosen object on the chosen OSD,
+     * as long as they still have to be replicated and can be fetched from this OSD. The returned objects are
+     * removed from the lists, like the object returned by getNext().
+     * 
+     * @param next
+     *            the request returned by getNext()
+     * @param maxObjects
+     *            the maximum number of additional objects
+     * @return the additional objects in ascending order
+     */
+    public List<Long> getFollowingObjects(NextRequest next, int maxObjects) {
+        List<Long> objects = new ArrayList<Long>();
+
+        // the objects of an OSD are spaced by the stripe width of its replica
+        Replica replica = xLoc.getReplica(next.osd);
+        if (replica == null)
+            return objects;
+        int stripeWidth = replica.getStripingPolicy().getWidth();
+
+        for (long objectNo = next.objectNo + stripeWidth; objects.size() < maxObjects; objectNo += stripeWidth) {
+            if (!(preferredObjects.contains(objectNo) || requiredObjects.contains(objectNo))
+                || !canFetchFrom(objectNo, next.osd))
+                break;
+
+            removeObjectFromList(objectNo);
+            objects.add(objectNo);
+        }
+        return objects;
+    }
+
+    /**
+     * Checks if an object can be fetched from the given OSD without further selection.
+     * 
+     * @param objectNo
+     * @param osd
+     * @return true, if the OSD belongs to a complete replica or its object set contains the object
+     */
+    protected boolean canFetchFrom(long objectNo, ServiceUUID osd) {
+        if (xLoc.getReplica(osd).isComplete())
+            return true;
+        ObjectSetInfo objectSetInfo = objectsOnOSDs.get(osd);
+        return objectSetInfo != null && objectSetInfo.set != null && objectSetInfo.set.contains(objectNo);
+    }
+
+    /**
+     * Adds an object again, which was chosen for a request to the given OSD that could not be carried out, so
+     * that it may be fetched from the same OSD again.
+     * 
+     * @param objectNo
+     * @param osd
+     * @param preferred
+     */
+    public void returnObject(long objectNo, ServiceUUID osd, boolean preferred) {
+        addObject(objectNo, preferred);
+    }
+
     /**
      * add an object which must be replicated
      * 
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd.rwre;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xtreemfs.foundation.buffer.BufferPool;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Computes and applies block-wise differences between two copies of an object. Used to resynchronize
+ * replicas by transferring only those blocks of an object that differ between the replicas.
+ * <p>
+ * An object is divided into blocks of a fixed size, the last block may be shorter. Blocks are compared by
+ * their MD5 digests.
+ */
+public class ObjectDelta {
+
+    private static final String DIGEST_ALGORITHM = "MD5";
+
+    /**
+     * Computes the digests of all blocks of an object.
+     *
+     * @param data
+     *            the object data, or <code>null</code> if the object does not exist
+     * @param blockSize
+     *            the block size
+     * @return the digests, one for each block
+     */
+    public static List<ByteString> computeBlockDigests(ReusableBuffer data, int blockSize) {
+
+        List<ByteString> digests = new ArrayList<ByteString>();
+        if (data == null) {
+            return digests;
+        }
+
+        MessageDigest md = createDigest();
+        ByteBuffer buf = data.getBuffer().duplicate();
+        final int size = buf.remaining();
+        final int start = buf.position();
+        for (int offset = 0; offset < size; offset += blockSize) {
+            buf.limit(start + Math.min(offset + blockSize, size));
+            buf.position(start + offset);
+            md.update(buf);
+            digests.add(ByteString.copyFrom(md.digest()));
+        }
+
+        return digests;
+    }
+
+    /**
+     * Determines the blocks of an object whose digests differ from the given digests.
+     *
+     * @param data
+     *            the object data
+     * @param blockSize
+     *            the block size
+     * @param digests
+     *            the digests of the blocks of the other copy of the object
+     * @return the indices of all blocks that differ, including all blocks that do not exist in the other copy
+     */
+    public static List<Integer> findChangedBlocks(ReusableBuffer data, int blockSize, List<ByteString> digests) {
+
+        List<ByteString> localDigests = computeBlockDigests(data, blockSize);
+        List<Integer> changedBlocks = new ArrayList<Integer>();
+        for (int i = 0; i < localDigests.size(); i++) {
+            if (i >= digests.size() || !localDigests.get(i).equals(digests.get(i))) {
+                changedBlocks.add(i);
+            }
+        }
+
+        return changedBlocks;
+    }
+
+    /**
+     * Copies the given blocks of an object into a new buffer.
+     *
+     * @param data
+     *            the object data
+     * @param blockSize
+     *            the block size
+     * @param blocks
+     *            the indices of the blocks to copy, in ascending order
+     * @return a buffer containing the blocks in the given order
+     */
+    public static ReusableBuffer extractBlocks(ReusableBuffer data, int blockSize, List<Integer> blocks) {
+
+        ByteBuffer src = data.getBuffer().duplicate();
+        final int size = src.remaining();
+        final int start = src.position();
+
+        int length = 0;
+        for (int block : blocks) {
+            length += Math.min(blockSize, size - block * blockSize);
+        }
+
+        ReusableBuffer result = BufferPool.allocate(length);
+        for (int block : blocks) {
+            src.limit(start + Math.min((block + 1) * blockSize, size));
+            src.position(start + block * blockSize);
+            result.put(src);
+        }
+        result.flip();
+
+        return result;
+    }
+
+    /**
+     * Reconstructs an object from a local copy and the blocks that differ from it.
+     *
+     * @param localData
+     *            the data of the local copy, or <code>null</code> if the object does not exist locally
+     * @param blockSize
+     *            the block size
+     * @param objectSize
+     *            the size of the reconstructed object
+     * @param changedBlocks
+     *            the indices of the blocks contained in <code>delta</code>, in ascending order
+     * @param delta
+     *            the data of the changed blocks
+     * @return a buffer containing the reconstructed object
+     * @throws IllegalArgumentException
+     *             if the blocks that did not change are not contained in the local copy, or the size of the
+     *             delta does not match the changed blocks
+     */
+    public static ReusableBuffer applyDelta(ReusableBuffer localData, int blockSize, int objectSize,
+            List<Integer> changedBlocks, ReusableBuffer delta) {
+
+        ByteBuffer local = localData == null ? ByteBuffer.allocate(0) : localData.getBuffer().duplicate();
+        final int localStart = local.position();
+        final int localSize = local.remaining();
+        ByteBuffer changed = delta == null ? ByteBuffer.allocate(0) : delta.getBuffer().duplicate();
+
+        ReusableBuffer result = BufferPool.allocate(objectSize);
+        int nextChanged = 0;
+        for (int block = 0; block * blockSize < objectSize; block++) {
+
+            final int length = Math.min(blockSize, objectSize - block * blockSize);
+            if (nextChanged < changedBlocks.size() && changedBlocks.get(nextChanged) == block) {
+                nextChanged++;
+                if (changed.remaining() < length) {
+                    BufferPool.free(result);
+                    throw new IllegalArgumentException("delta does not contain block " + block);
+                }
+                ByteBuffer src = changed.duplicate();
+                src.limit(src.position() + length);
+                result.put(src);
+                changed.position(changed.position() + length);
+
+            } else {
+                if (block * blockSize + length > localSize) {
+                    BufferPool.free(result);
+                    throw new IllegalArgumentException("local object does not contain unchanged block " + block);
+                }
+                ByteBuffer src = local.duplicate();
+                src.position(localStart + block * blockSize);
+                src.limit(localStart + block * blockSize + length);
+                result.put(src);
+            }
+        }
+
+        if (nextChanged != changedBlocks.size() || changed.hasRemaining()) {
+            BufferPool.free(result);
+            throw new IllegalArgumentException("delta contains blocks beyond the end of the object");
+        }
+
+        result.flip();
+        return result;
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            // every Java platform has to support MD5
+            throw new RuntimeException(ex);
+        }
+    }
+
+}
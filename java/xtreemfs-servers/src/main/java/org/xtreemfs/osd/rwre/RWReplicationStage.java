@@ -27,8 +27,8 @@ import org.xtreemfs.foundation.buffer.ASCIIString;
 import org.xtreemfs.foundation.buffer.BufferPool;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.foundation.flease.Flease;
+import org.xtreemfs.foundation.flease.FleaseBatchMessageSenderInterface;
 import org.xtreemfs.foundation.flease.FleaseConfig;
-import org.xtreemfs.foundation.flease.FleaseMessageSenderInterface;
 import org.xtreemfs.foundation.flease.FleaseStage;
 import org.xtreemfs.foundation.flease.FleaseStatusListener;
 import org.xtreemfs.foundation.flease.FleaseViewChangeListenerInterface;
@@ -54,11 +54,14 @@ import org.xtreemfs.osd.operations.EventRWRStatus;
 import org.xtreemfs.osd.operations.OSDOperation;
 import org.xtreemfs.osd.rwre.ReplicatedFileState.ReplicaState;
 import org.xtreemfs.osd.stages.PreprocStage.InvalidateXLocSetCallback;
+import org.xtreemfs.osd.stages.RequestPriority;
 import org.xtreemfs.osd.stages.Stage;
 import org.xtreemfs.osd.stages.StorageStage.DeleteObjectsCallback;
 import org.xtreemfs.osd.stages.StorageStage.InternalGetMaxObjectNoCallback;
+import org.xtreemfs.osd.stages.StorageStage.ReadObjectCallback;
 import org.xtreemfs.osd.stages.StorageStage.WriteObjectCallback;
 import org.xtreemfs.osd.storage.CowPolicy;
+import org.xtreemfs.osd.storage.ObjectInformation;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.FileCredentials;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.LeaseState;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.OSDWriteResponse;
@@ -68,13 +71,16 @@ import org.xtreemfs.pbrpc.generatedinterfaces.OSD.ObjectVersion;
 import org.xtreemfs.pbrpc.generatedinterfaces.OSD.ObjectVersionMapping;
 import org.xtreemfs.pbrpc.generatedinterfaces.OSD.ReplicaStatus;
 import org.xtreemfs.pbrpc.generatedinterfaces.OSD.XLocSetVersionState;
+import org.xtreemfs.pbrpc.generatedinterfaces.OSD.xtreemfs_rwr_fetch_deltaResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.OSDServiceClient;
 
+import com.google.protobuf.ByteString;
+
 /**
  * 
  * @author bjko
  */
-public class RWReplicationStage extends Stage implements FleaseMessageSenderInterface {
+public class RWReplicationStage extends Stage implements FleaseBatchMessageSenderInterface {
 
     public static final int STAGEOP_REPLICATED_WRITE          = 1;
     public static final int STAGEOP_CLOSE                     = 2;
@@ -130,14 +136,24 @@ public class RWReplicationStage extends Stage implements FleaseMessageSenderInte
 
     private static final int                       MAX_PENDING_PER_FILE       = 10;
 
-    private static final int                       MAX_EXTERNAL_REQUESTS_IN_Q = 250;
-
     private final Queue<ReplicatedFileState>       filesInReset;
 
     private final FleaseMasterEpochThread          masterEpochThread;
 
     private final AtomicInteger                    externalRequestsInQueue;
 
+    /**
+     * maximum number of client and replication requests in the stage, including the pending requests of files
+     * that are being reset; a quarter of the queue capacity
+     */
+    private final int                              maxExternalRequestsInQueue;
+
+    /**
+     * block size for fetching only the differing blocks of objects during a reset, 0 if whole objects are
+     * fetched
+     */
+    private final int                              deltaBlockSize;
+
     public RWReplicationStage(OSDRequestDispatcher master, SSLOptions sslOpts, int maxRequestsQueueLength)
             throws IOException {
         super("RWReplSt", maxRequestsQueueLength);
@@ -151,15 +167,18 @@ public class RWReplicationStage extends Stage implements FleaseMessageSenderInte
         numObjsInFlight = 0;
         filesInReset = new LinkedList<ReplicatedFileState>();
         externalRequestsInQueue = new AtomicInteger(0);
+        maxExternalRequestsInQueue = Math.max(maxRequestsQueueLength / 4, 1);
 
         localID = new ASCIIString(master.getConfig().getUUID().toString());
+        deltaBlockSize = master.getConfig().getRWRDeltaBlockSize();
 
         masterEpochThread = new FleaseMasterEpochThread(master.getStorageStage().getStorageLayout(),
                 maxRequestsQueueLength);
 
         FleaseConfig fcfg = new FleaseConfig(master.getConfig().getFleaseLeaseToMS(), master.getConfig()
                 .getFleaseDmaxMS(), master.getConfig().getFleaseMsgToMS(), null, localID.toString(), master.getConfig()
-                .getFleaseRetries());
+                .getFleaseRetries(), true, 0, false, master.getConfig().getFleaseMaxBatchSize(), master.getConfig()
+                .getFleaseNumPartitions());
 
         fstage = new FleaseStage(fcfg, master.getConfig().getObjDir() + "/", this, false,
                 new FleaseViewChangeListenerInterface() {
@@ -544,6 +563,11 @@ public class RWReplicationStage extends Stage implements FleaseMessageSenderInte
     }
 
     private void fetchObject(final ReplicatedFileState state, final ObjectVersionMapping record) {
+        if (deltaBlockSize > 0) {
+            fetchObjectDelta(state, record);
+            return;
+        }
+
         final String fileId = state.getFileId();
         try {
             final ServiceUUID osd = new ServiceUUID(record.getOsdUuidsList().get(0));
@@ -592,6 +616,78 @@ public class RWReplicationStage extends Stage implements FleaseMessageSenderInte
 
     }
 
+    /**
+     * Fetches an object by transferring only those blocks that differ from the local copy of the object. The
+     * local copy is read first, and the digests of its blocks are sent to the OSD that holds the
+     * authoritative version.
+     */
+    private void fetchObjectDelta(final ReplicatedFileState state, final ObjectVersionMapping record) {
+        final String fileId = state.getFileId();
+        final FileCredentials credentials = state.getCredentials();
+        final long objNo = record.getObjectNumber();
+
+        master.getStorageStage().readObject(fileId, objNo, state.getsPolicy(), 0,
+                state.getsPolicy().getStripeSizeForObject(objNo), 0, null, new ReadObjectCallback() {
+
+                    @Override
+                    public void readComplete(ObjectInformation result, ErrorResponse error) {
+                        if (error != null)
+                            eventObjectFetched(fileId, record, null, error);
+                        else
+                            fetchObjectDelta(fileId, credentials, record, result.getData());
+                    }
+                });
+    }
+
+    private void fetchObjectDelta(final String fileId, FileCredentials credentials,
+            final ObjectVersionMapping record, final ReusableBuffer localData) {
+        try {
+            final ServiceUUID osd = new ServiceUUID(record.getOsdUuidsList().get(0));
+            final List<ByteString> digests = ObjectDelta.computeBlockDigests(localData, deltaBlockSize);
+            if (Logging.isDebug())
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.replication, this,
+                        "(R:%s) file %s, fetch delta of object %d (version %d, %d local blocks) from %s",
+                        localID, fileId, record.getObjectNumber(), record.getObjectVersion(), digests.size(), osd);
+
+            RPCResponse r = osdClient.xtreemfs_rwr_fetch_delta(osd.getAddress(), RPCAuthentication.authNone,
+                    RPCAuthentication.userService, credentials, fileId, record.getObjectNumber(),
+                    record.getObjectVersion(), deltaBlockSize, digests);
+            r.registerListener(new RPCResponseAvailableListener() {
+
+                @Override
+                public void responseAvailable(RPCResponse r) {
+                    try {
+                        xtreemfs_rwr_fetch_deltaResponse response = (xtreemfs_rwr_fetch_deltaResponse) r.get();
+                        ReusableBuffer data = null;
+                        if (response.getObjectSize() > 0) {
+                            data = ObjectDelta.applyDelta(localData, deltaBlockSize, response.getObjectSize(),
+                                    response.getChangedBlocksList(), r.getData());
+                        }
+                        if (Logging.isDebug())
+                            Logging.logMessage(Logging.LEVEL_DEBUG, Category.replication, this,
+                                    "(R:%s) file %s, fetched %d of %d bytes of object %d", localID, fileId,
+                                    r.getData() == null ? 0 : r.getData().remaining(), response.getObjectSize(),
+                                    record.getObjectNumber());
+                        eventObjectFetched(fileId, record, new InternalObjectData(0, false, 0, data), null);
+                    } catch (PBRPCException ex) {
+                        eventObjectFetched(fileId, record, null,
+                                ErrorUtils.getErrorResponse(ex.getErrorType(), ex.getPOSIXErrno(), ex.toString(), ex));
+                    } catch (Exception ex) {
+                        eventObjectFetched(fileId, record, null,
+                                ErrorUtils.getErrorResponse(ErrorType.IO_ERROR, POSIXErrno.POSIX_ERROR_NONE, ex.toString(), ex));
+                    } finally {
+                        r.freeBuffers();
+                        BufferPool.free(localData);
+                    }
+                }
+            });
+        } catch (IOException ex) {
+            BufferPool.free(localData);
+            eventObjectFetched(fileId, record, null,
+                    ErrorUtils.getErrorResponse(ErrorType.ERRNO, POSIXErrno.POSIX_ERROR_EIO, ex.toString(), ex));
+        }
+    }
+
     private void processObjectFetched(StageRequest method) {
         try {
             final String fileId = (String) method.getArgs()[0];
@@ -863,12 +959,11 @@ public class RWReplicationStage extends Stage implements FleaseMessageSenderInte
 
     protected void enqueueExternalOperation(int stageOp, Object[] arguments, OSDRequest request,
             ReusableBuffer createdViewBuffer, Object callback) {
-        if (externalRequestsInQueue.get() >= MAX_EXTERNAL_REQUESTS_IN_Q) {
+        if (externalRequestsInQueue.get() >= maxExternalRequestsInQueue) {
             Logging.logMessage(Logging.LEVEL_WARN, this,
                     "RW replication stage is overloaded, request %d for %s dropped", request.getRequestId(),
                     request.getFileId());
-            request.sendInternalServerError(new IllegalStateException(
-                    "RW replication stage is overloaded, request dropped"));
+            request.sendOverloaded("RW replication stage is overloaded", getRetryDelayMs(request.getPriority()));
 
             // Make sure that the data buffer is returned to the pool if
             // necessary, as some operations create view buffers on the
@@ -881,7 +976,10 @@ public class RWReplicationStage extends Stage implements FleaseMessageSenderInte
 
         } else {
             externalRequestsInQueue.incrementAndGet();
-            this.enqueueOperation(stageOp, arguments, request, createdViewBuffer, callback);
+            if (!this.enqueueOperation(stageOp, arguments, request, createdViewBuffer, callback,
+                    RequestPriority.FOREGROUND)) {
+                externalRequestsInQueue.decrementAndGet();
+            }
         }
     }
 
@@ -911,10 +1009,16 @@ public class RWReplicationStage extends Stage implements FleaseMessageSenderInte
     public void receiveFleaseMessage(ReusableBuffer message, InetSocketAddress sender) {
         // this.enqueueOperation(STAGEOP_PROCESS_FLEASE_MSG, new Object[]{message,sender}, null, null);
         try {
-            FleaseMessage msg = new FleaseMessage(message);
+            List<FleaseMessage> msgs = FleaseMessage.deserializeAll(message);
             BufferPool.free(message);
-            msg.setSender(sender);
-            fstage.receiveMessage(msg);
+            for (FleaseMessage msg : msgs) {
+                msg.setSender(sender);
+            }
+            if (msgs.size() == 1) {
+                fstage.receiveMessage(msgs.get(0));
+            } else {
+                fstage.receiveMessages(msgs);
+            }
         } catch (Exception ex) {
             Logging.logError(Logging.LEVEL_ERROR, this, ex);
         }
@@ -933,6 +1037,18 @@ public class RWReplicationStage extends Stage implements FleaseMessageSenderInte
         ReusableBuffer data = BufferPool.allocate(message.getSize());
         message.serialize(data);
         data.flip();
+        sendFleaseMessageData(data, recipient);
+    }
+
+    @Override
+    public void sendMessages(List<FleaseMessage> messages, InetSocketAddress recipient) {
+        ReusableBuffer data = BufferPool.allocate(FleaseMessage.getBatchSize(messages));
+        FleaseMessage.serializeBatch(messages, data);
+        data.flip();
+        sendFleaseMessageData(data, recipient);
+    }
+
+    private void sendFleaseMessageData(ReusableBuffer data, InetSocketAddress recipient) {
         try {
             RPCResponse r = fleaseOsdClient.xtreemfs_rwr_flease_msg(recipient, RPCAuthentication.authNone,
                     RPCAuthentication.userService, master.getHostName(), master.getConfig().getPort(), data);
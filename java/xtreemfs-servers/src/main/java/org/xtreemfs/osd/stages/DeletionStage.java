@@ -9,8 +9,11 @@
 package org.xtreemfs.osd.stages;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.logging.Logging.Category;
@@ -19,6 +22,7 @@ import org.xtreemfs.osd.OSDRequest;
 import org.xtreemfs.osd.OSDRequestDispatcher;
 import org.xtreemfs.osd.storage.FileMetadata;
 import org.xtreemfs.osd.storage.MetadataCache;
+import org.xtreemfs.osd.storage.ObjectDataCache;
 import org.xtreemfs.osd.storage.StorageLayout;
 
 public class DeletionStage extends Stage {
@@ -31,9 +35,21 @@ public class DeletionStage extends Stage {
     
     private OSDRequestDispatcher master;
     
-    private DeleteThread         deletor;
+    private final DeleteThread[]                deletors;
     
-    private long                 numFilesDeleted;
+    private final DirectoryCleanupThread        dirCleanup;
+    
+    /**
+     * files waiting to be deleted by one of the deletors
+     */
+    private final LinkedBlockingQueue<Object[]> files;
+    
+    /**
+     * number of files that are waiting to be deleted or are currently being deleted
+     */
+    private final AtomicInteger                 backlog;
+    
+    private long                                numFilesDeleted;
     
     public DeletionStage(OSDRequestDispatcher master, MetadataCache cache, StorageLayout layout, int maxRequestsQueueLength) {
         
@@ -43,18 +59,31 @@ public class DeletionStage extends Stage {
         this.cache = cache;
         this.layout = layout;
         
-        deletor = new DeleteThread(layout);
+        files = new LinkedBlockingQueue<Object[]>();
+        backlog = new AtomicInteger();
+        dirCleanup = new DirectoryCleanupThread(layout, backlog);
+        
+        int numThreads = master.getConfig().getDeletionThreads();
+        deletors = new DeleteThread[numThreads > 0 ? numThreads : 1];
+        for (int i = 0; i < deletors.length; i++)
+            deletors[i] = new DeleteThread(i, layout, files, backlog, dirCleanup);
     }
     
     public void start() {
         super.start();
-        deletor.start();
-        deletor.setPriority(MIN_PRIORITY);
+        for (DeleteThread deletor : deletors) {
+            deletor.start();
+            deletor.setPriority(MIN_PRIORITY);
+        }
+        dirCleanup.start();
+        dirCleanup.setPriority(MIN_PRIORITY);
     }
     
     public void shutdown() {
         super.shutdown();
-        deletor.shutdown();
+        for (DeleteThread deletor : deletors)
+            deletor.shutdown();
+        dirCleanup.shutdown();
     }
     
     public void deleteObjects(String fileId, FileMetadata fi, boolean isCow, OSDRequest request,
@@ -70,6 +99,13 @@ public class DeletionStage extends Stage {
         return numFilesDeleted;
     }
     
+    /**
+     * @return the number of files whose objects are waiting to be deleted or are currently being deleted
+     */
+    public int getDeletionBacklog() {
+        return backlog.get();
+    }
+    
     public static interface DeleteObjectsCallback {
         
         public void deleteComplete(ErrorResponse error);
@@ -110,15 +146,25 @@ public class DeletionStage extends Stage {
         if (fi == null)
             fi = cache.getFileInfo(fileId);
         
-        // remove the file info from the storage cache
+        // remove the file info and cached data from the storage caches
         cache.removeFileInfo(fileId);
+        ObjectDataCache objectCache = master.getStorageStage().getObjectCache();
+        if (objectCache != null)
+            objectCache.invalidate(fileId);
         
         // remove all local objects
-        if (layout.fileExists(fileId))
-            deletor.enqueueFileForDeletion(fileId, cow, fi, deleteMetadata);
+        if (layout.fileExists(fileId)) {
+            backlog.incrementAndGet();
+            files.add(new Object[] { fileId, cow, fi, deleteMetadata });
+        }
         cback.deleteComplete(null);
     }
     
+    /**
+     * Deletes the objects of files. Several deletors take files from a common queue, so that the objects of
+     * different files are deleted concurrently. Directories that have become empty are not removed right
+     * away, but are handed over to the {@link DirectoryCleanupThread}.
+     */
     private final static class DeleteThread extends Thread {
         
         private transient boolean                   quit;
@@ -127,10 +173,18 @@ public class DeletionStage extends Stage {
         
         private final LinkedBlockingQueue<Object[]> files;
         
-        public DeleteThread(StorageLayout layout) {
+        private final AtomicInteger                 backlog;
+        
+        private final DirectoryCleanupThread        dirCleanup;
+        
+        public DeleteThread(int id, StorageLayout layout, LinkedBlockingQueue<Object[]> files,
+            AtomicInteger backlog, DirectoryCleanupThread dirCleanup) {
+            super("OSD DelThr " + id);
             quit = false;
             this.layout = layout;
-            files = new LinkedBlockingQueue<Object[]>();
+            this.files = files;
+            this.backlog = backlog;
+            this.dirCleanup = dirCleanup;
         }
         
         public void shutdown() {
@@ -138,19 +192,13 @@ public class DeletionStage extends Stage {
             this.interrupt();
         }
         
-        public void enqueueFileForDeletion(String fileID, boolean cow, FileMetadata fi, boolean deleteMetadata) {
-            assert (this.isAlive());
-            assert (fileID != null);
-            files.add(new Object[] { fileID, cow, fi, deleteMetadata });
-        }
-        
         public void run() {
             try {
+                if (Logging.isDebug())
+                    Logging.logMessage(Logging.LEVEL_DEBUG, Category.lifecycle, this,
+                        "DeleteThread started");
+                
                 do {
-                    if (Logging.isDebug())
-                        Logging.logMessage(Logging.LEVEL_DEBUG, Category.lifecycle, this,
-                            "DeleteThread started");
-                    
                     final Object[] file = files.take();
                     final String fileId = (String) file[0];
                     final boolean cow = (Boolean) file[1];
@@ -177,7 +225,7 @@ public class DeletionStage extends Stage {
                             // if no previous versions exist, delete the file
                             // including all its metadata if requested
                             if (fi.getVersionTable().getVersionCount() == 0)
-                                layout.deleteFile(fileId, deleteMetadata);
+                                deleteFile(fileId, deleteMetadata);
                             
                             // if other versions exist, only delete those
                             // objects that make up the latest version of the
@@ -198,12 +246,12 @@ public class DeletionStage extends Stage {
 
                         // otherwise ...
                         else
-                            layout.deleteFile(fileId, deleteMetadata);
-                        
-                        yield();
+                            deleteFile(fileId, deleteMetadata);
                         
                     } catch (IOException ex) {
                         Logging.logError(Logging.LEVEL_ERROR, this, ex);
+                    } finally {
+                        backlog.decrementAndGet();
                     }
                 } while (!quit);
             } catch (InterruptedException ex) {
@@ -214,6 +262,85 @@ public class DeletionStage extends Stage {
                 Logging.logMessage(Logging.LEVEL_DEBUG, Category.lifecycle, this, "DeleteThread finished");
         }
         
+        private void deleteFile(String fileId, boolean deleteMetadata) throws IOException {
+            layout.deleteFileDeferred(fileId, deleteMetadata);
+            // metadata files that are kept prevent the directory from being removed
+            if (deleteMetadata)
+                dirCleanup.enqueueDirectoryForRemoval(fileId);
+        }
+        
+    }
+    
+    /**
+     * Removes the directories of deleted files and empty parent directories in a background pass. The pass
+     * is deferred until no more files are being deleted, so that it does not compete with the deletion of
+     * objects, unless too many directories have accumulated. Removing the directories of many files at once
+     * allows the storage layout to check each shared parent directory only once.
+     */
+    private final static class DirectoryCleanupThread extends Thread {
+        
+        /**
+         * maximum number of deleted files whose directories are kept until the next pass
+         */
+        private static final int                  MAX_PENDING_DIRECTORIES = 10000;
+        
+        /**
+         * interval in ms in which the deletion backlog is checked while a pass is deferred
+         */
+        private static final long                 POLL_INTERVAL           = 1000;
+        
+        private transient boolean                 quit;
+        
+        private final StorageLayout               layout;
+        
+        private final AtomicInteger               backlog;
+        
+        private final LinkedBlockingQueue<String> fileIds;
+        
+        public DirectoryCleanupThread(StorageLayout layout, AtomicInteger backlog) {
+            super("OSD DirCleanup");
+            quit = false;
+            this.layout = layout;
+            this.backlog = backlog;
+            this.fileIds = new LinkedBlockingQueue<String>();
+        }
+        
+        public void shutdown() {
+            this.quit = true;
+            this.interrupt();
+        }
+        
+        public void enqueueDirectoryForRemoval(String fileId) {
+            fileIds.add(fileId);
+        }
+        
+        public void run() {
+            try {
+                do {
+                    List<String> batch = new ArrayList<String>();
+                    batch.add(fileIds.take());
+                    
+                    while (backlog.get() > 0 && fileIds.size() < MAX_PENDING_DIRECTORIES)
+                        Thread.sleep(POLL_INTERVAL);
+                    
+                    fileIds.drainTo(batch);
+                    
+                    if (Logging.isDebug())
+                        Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this,
+                            "removing empty directories of %d deleted files", batch.size());
+                    
+                    layout.removeEmptyDirectories(batch);
+                    
+                } while (!quit);
+            } catch (InterruptedException ex) {
+                // idontcare
+            }
+            
+            if (Logging.isDebug())
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.lifecycle, this,
+                    "DirectoryCleanupThread finished");
+        }
+        
     }
     
 }
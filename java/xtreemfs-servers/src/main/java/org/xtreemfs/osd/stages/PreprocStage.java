@@ -148,7 +148,7 @@ public class PreprocStage extends Stage {
         
         if (request.getOperation().requiresCapability()) {
             
-            if (Logging.isDebug())
+            if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.stage))
                 Logging.logMessage(Logging.LEVEL_DEBUG, Category.stage, this, "STAGEOP AUTH");
             ErrorResponse err = processAuthenticate(request);
             if (err != null) {
@@ -163,7 +163,7 @@ public class PreprocStage extends Stage {
         
         // Check if the request is from the same view (same XLocationSet version) and install newer one.
         if (!request.getOperation().bypassViewValidation() && request.getLocationList() != null) {
-            if (Logging.isDebug())
+            if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.stage))
                 Logging.logMessage(Logging.LEVEL_DEBUG, Category.stage, this, "STAGEOP VIEW");
             ErrorResponse error = processValidateView(request);
             if (error != null) {
@@ -179,7 +179,7 @@ public class PreprocStage extends Stage {
         String fileId = request.getFileId();
         if (fileId != null) {
             
-            if (Logging.isDebug())
+            if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.stage))
                 Logging.logMessage(Logging.LEVEL_DEBUG, Category.stage, this, "STAGEOP OPEN");
             
             boolean writeAccess = request.getCapability() != null
@@ -428,7 +428,7 @@ public class PreprocStage extends Stage {
                     continue;
                 }
                 
-                processMethod(op);
+                processRequest(op);
                 
             } catch (InterruptedException ex) {
                 break;
@@ -583,13 +583,13 @@ public class PreprocStage extends Stage {
             } else {
                 if (rq.getRPCRequest().getMessage() != null) {
                     rq.setRequestArgs(rqPrototype.newBuilderForType().mergeFrom(new ReusableBufferInputStream(rq.getRPCRequest().getMessage())).build());
-                    if (Logging.isDebug()) {
+                    if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.net)) {
                         Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this, "received request of type %s (request %s)",
                             rq.getRequestArgs().getClass().getName(), rq.getRPCRequest().getHeader().getCallId());
                     }
                 } else {
                     rq.setRequestArgs(rqPrototype.getDefaultInstanceForType());
-                    if (Logging.isDebug()) {
+                    if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.net)) {
                         Logging.logMessage(Logging.LEVEL_DEBUG, Category.net, this, "received request of type %s (empty message)",
                             rq.getRequestArgs().getClass().getName());
                     }
@@ -597,7 +597,7 @@ public class PreprocStage extends Stage {
             }
             ErrorResponse err = op.parseRPCMessage(rq);
             if (err != null) {
-                rq.getRpcRequest().sendError(err);
+                rq.sendError(err);
                 return false;
             }
             
@@ -605,10 +605,10 @@ public class PreprocStage extends Stage {
             if (Logging.isDebug())
                 Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this, OutputUtils
                         .stackTraceToString(ex));
-            rq.getRpcRequest().sendError(ErrorUtils.getInternalServerError(ex));
+            rq.sendError(ErrorUtils.getInternalServerError(ex));
             return false;
         }
-        if (Logging.isDebug()) {
+        if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.stage)) {
             Logging.logMessage(Logging.LEVEL_DEBUG, Category.stage, this, "request parsed (request id: %d)",
                                rq.getRequestId());
             Logging.logMessage(Logging.LEVEL_DEBUG, Category.stage, this, "request parsed (request rpc call id: %d)",
@@ -9,6 +9,7 @@
 package org.xtreemfs.osd.stages;
 
 import java.io.IOException;
+import java.util.List;
 
 import org.xtreemfs.common.Capability;
 import org.xtreemfs.common.uuids.ServiceUUID;
@@ -45,6 +46,8 @@ public class ReplicationStage extends Stage {
 
     public static final int STAGEOP_START_NEW_REPLICATION_FOR_FILE = 4;
 
+    public static final int STAGEOP_INTERNAL_OBJECT_RANGE_FETCHED = 5;
+
     private OSDRequestDispatcher master;
 
     private ObjectDissemination disseminationLayer;
@@ -91,6 +94,16 @@ public class ReplicationStage extends Stage {
                 data, objectList, error }, null, null);
     }
 
+    /**
+     * Checks the response from a requested replica for a range of objects.
+     * Only for internal use.
+     */
+    public void internalObjectRangeFetched(String fileId, List<Long> objectNos, ServiceUUID usedOSD,
+            List<InternalObjectData> data, ObjectList objectList, ErrorResponse error) {
+        this.enqueueOperation(STAGEOP_INTERNAL_OBJECT_RANGE_FETCHED, new Object[] { fileId, objectNos, usedOSD,
+                data, objectList, error }, null, null);
+    }
+
     /**
      * Stops replication for file.
      * Only for internal use. 
@@ -121,6 +134,10 @@ public class ReplicationStage extends Stage {
                 processInternalObjectFetched(rq);
                 break;
             }
+            case STAGEOP_INTERNAL_OBJECT_RANGE_FETCHED: {
+                processInternalObjectRangeFetched(rq);
+                break;
+            }
             case STAGEOP_CANCEL_REPLICATION_FOR_FILE: {
                 processInternalCancelFile(rq);
                 break;
@@ -164,6 +181,38 @@ public class ReplicationStage extends Stage {
         ObjectList objectList = (ObjectList) rq.getArgs()[4];
         final ErrorResponse error = (ErrorResponse) rq.getArgs()[5];
 
+        disseminationLayer.fetchCompleted(fileId);
+
+        if (error == null)
+            objectSetFetched(fileId, usedOSD, objectList);
+        objectFetched(fileId, objectNo, usedOSD, data, error);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void processInternalObjectRangeFetched(StageRequest rq) {
+        String fileId = (String) rq.getArgs()[0];
+        List<Long> objectNos = (List<Long>) rq.getArgs()[1];
+        final ServiceUUID usedOSD = (ServiceUUID) rq.getArgs()[2];
+        List<InternalObjectData> data = (List<InternalObjectData>) rq.getArgs()[3];
+        ObjectList objectList = (ObjectList) rq.getArgs()[4];
+        final ErrorResponse error = (ErrorResponse) rq.getArgs()[5];
+
+        disseminationLayer.fetchCompleted(fileId);
+
+        if (error != null && error.getErrorType() == ErrorType.INVALID_PROC_ID) {
+            // the OSD does not support ranges => fetch the objects one by one
+            disseminationLayer.objectRangeNotSupported(fileId, usedOSD, objectNos);
+            return;
+        }
+
+        if (error == null)
+            objectSetFetched(fileId, usedOSD, objectList);
+        for (int i = 0; i < objectNos.size(); i++)
+            objectFetched(fileId, objectNos.get(i), usedOSD, data == null ? null : data.get(i), error);
+    }
+
+    private void objectFetched(String fileId, long objectNo, ServiceUUID usedOSD, InternalObjectData data,
+            ErrorResponse error) {
         if (error != null) {
             if (error.getErrorType() == ErrorType.INVALID_VIEW) {
                 // it could happen the request is rejected, because the XLoc is outdated caused by removing
@@ -175,20 +224,6 @@ public class ReplicationStage extends Stage {
             if (data != null && data.getData() != null)
                 BufferPool.free(data.getData());
         } else {
-            // decode object list, if attached
-            if (objectList != null) {
-                try {
-                    ObjectSet objectSet = new ObjectSet(objectList.getStripeWidth(), objectList
-                            .getFirst(), objectList.getSet().toByteArray());
-                    disseminationLayer.objectSetFetched(fileId, usedOSD, objectSet, objectList.getSet()
-                            .size());
-                } catch (IOException e) {
-                    Logging.logError(Logging.LEVEL_ERROR, this, e);
-                } catch (ClassNotFoundException e) {
-                    Logging.logError(Logging.LEVEL_ERROR, this, e);
-                }
-            }
-
             if (data != null && data.getData() != null && data.getData().limit() != 0)
                 disseminationLayer.objectFetched(fileId, objectNo, usedOSD, data);
             else {
@@ -201,6 +236,21 @@ public class ReplicationStage extends Stage {
         }
     }
 
+    private void objectSetFetched(String fileId, ServiceUUID usedOSD, ObjectList objectList) {
+        // decode object list, if attached
+        if (objectList != null) {
+            try {
+                ObjectSet objectSet = new ObjectSet(objectList.getStripeWidth(), objectList.getFirst(), objectList
+                        .getSet().toByteArray());
+                disseminationLayer.objectSetFetched(fileId, usedOSD, objectSet, objectList.getSet().size());
+            } catch (IOException e) {
+                Logging.logError(Logging.LEVEL_ERROR, this, e);
+            } catch (ClassNotFoundException e) {
+                Logging.logError(Logging.LEVEL_ERROR, this, e);
+            }
+        }
+    }
+
     private void processInternalCancelFile(StageRequest rq) {
         String fileId = (String) rq.getArgs()[0];
         disseminationLayer.cancelFile(fileId);
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd.stages;
+
+/**
+ * Priority classes of the requests in a {@link StageQueue}. Stages with priority classes dequeue requests in
+ * weighted round robin order, i.e. of every 13 requests taken from busy queues, 8 are client requests, 4 are
+ * replication requests and 1 is a background maintenance request.
+ */
+public enum RequestPriority {
+
+    /**
+     * requests of clients and internal events
+     */
+    FOREGROUND(8),
+
+    /**
+     * requests of other OSDs to replicate data
+     */
+    REPLICATION(4),
+
+    /**
+     * maintenance requests such as scrubbing and cleanup
+     */
+    BACKGROUND(1);
+
+    private final int weight;
+
+    private RequestPriority(int weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * @return the number of requests dequeued in a row before the next priority class is served
+     */
+    public int getWeight() {
+        return weight;
+    }
+}
@@ -8,26 +8,31 @@
 
 package org.xtreemfs.osd.stages;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
-
 import org.xtreemfs.foundation.LifeCycleThread;
 import org.xtreemfs.foundation.buffer.BufferPool;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.foundation.logging.Logging;
-import org.xtreemfs.foundation.logging.Logging.Category;
+import org.xtreemfs.foundation.metrics.Counter;
+import org.xtreemfs.foundation.metrics.Gauge;
+import org.xtreemfs.foundation.metrics.Histogram;
+import org.xtreemfs.foundation.metrics.MetricsRegistry;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.RPCHeader.ErrorResponse;
 import org.xtreemfs.foundation.util.OutputUtils;
 import org.xtreemfs.osd.OSDRequest;
+import org.xtreemfs.osd.RequestTrace;
 
 public abstract class Stage extends LifeCycleThread {
     
+    /**
+     * the time clients are asked to wait before retrying a request that was
+     * rejected due to overload, unless the queue delay is longer
+     */
+    private static final long             MIN_RETRY_DELAY_MS = 100;
+    
     /**
      * queue containing all requests
      */
-    protected BlockingQueue<StageRequest> q;
+    protected final StageQueue            q;
     
     private final int queueCapacity;
 
@@ -36,21 +41,40 @@ public abstract class Stage extends LifeCycleThread {
      */
     protected volatile boolean            quit;
     
-    public AtomicInteger                  _numRq, _maxRqTime, _minRqTime;
+    /**
+     * time from enqueueing a request until it is dequeued, in microseconds
+     */
+    private final Histogram               queueWait;
     
-    public AtomicLong                     _sumRqTime;
+    /**
+     * time spent in processMethod, in microseconds
+     */
+    private final Histogram               processing;
+    
+    /**
+     * requests dropped because the queue was full or overloaded
+     */
+    private final Counter                 dropped;
     
     public Stage(String stageName, int queueCapacity) {
+        this(stageName, queueCapacity, false);
+    }
+    
+    /**
+     * @param prioritized
+     *            true, if requests are dequeued according to their
+     *            {@link RequestPriority}, false if they are processed in FIFO
+     *            order
+     */
+    protected Stage(String stageName, int queueCapacity, boolean prioritized) {
         
         super(stageName);
-        q = new LinkedBlockingQueue<StageRequest>();
+        q = new StageQueue(prioritized);
         this.queueCapacity = queueCapacity;
         this.quit = false;
-        
-        _numRq = new AtomicInteger(0);
-        _maxRqTime = new AtomicInteger(0);
-        _minRqTime = new AtomicInteger(Integer.MAX_VALUE);
-        _sumRqTime = new AtomicLong(0);
+        this.queueWait = new Histogram();
+        this.processing = new Histogram();
+        this.dropped = new Counter();
     }
     
     /**
@@ -83,39 +107,112 @@ public abstract class Stage extends LifeCycleThread {
      */
     protected void enqueueOperation(int stageOp, Object[] args, OSDRequest request, ReusableBuffer createdViewBuffer,
             Object callback) {
-        // rq.setEnqueueNanos(System.nanoTime());
+        enqueueOperation(stageOp, args, request, createdViewBuffer, callback, RequestPriority.FOREGROUND);
+    }
+    
+    /**
+     * 
+     * send an request for a stage operation
+     * 
+     * @param stageOp
+     *            stage op number
+     * @param args
+     *            arguments
+     * @param request
+     *            request
+     * @param createdViewBuffer
+     *            an optional additional view buffer to the data, which will be
+     *            freed if the request needs to be dropped due to overload
+     * @param callback
+     *            callback
+     * @param internalPriority
+     *            the priority of an internal request, i.e. if request is null;
+     *            otherwise, the priority of the request is used
+     * @return false, if the request was rejected due to overload
+     */
+    protected boolean enqueueOperation(int stageOp, Object[] args, OSDRequest request, ReusableBuffer createdViewBuffer,
+            Object callback, RequestPriority internalPriority) {
+        return enqueueOperation(stageOp, args, request, createdViewBuffer, callback, internalPriority, null);
+    }
+    
+    /**
+     * 
+     * send an request for a stage operation
+     * 
+     * @param stageOp
+     *            stage op number
+     * @param args
+     *            arguments
+     * @param request
+     *            request
+     * @param createdViewBuffer
+     *            an optional additional view buffer to the data, which will be
+     *            freed if the request needs to be dropped due to overload
+     * @param callback
+     *            callback
+     * @param internalPriority
+     *            the priority of an internal request, i.e. if request is null;
+     *            otherwise, the priority of the request is used
+     * @param fileId
+     *            the file the operation refers to, or null; a prioritized
+     *            queue processes the operations of a file in FIFO order
+     * @return false, if the request was rejected due to overload
+     */
+    protected boolean enqueueOperation(int stageOp, Object[] args, OSDRequest request, ReusableBuffer createdViewBuffer,
+            Object callback, RequestPriority internalPriority, String fileId) {
         
         if (request == null) {
-            try {
-                q.put(new StageRequest(stageOp, args, request, callback));
-            } catch (InterruptedException e) {
-                Logging.logMessage(Logging.LEVEL_DEBUG, Category.stage, this,
-                        "Failed to queue internal request due to InterruptedException:");
-                Logging.logError(Logging.LEVEL_DEBUG, this, e);
-            }
+            // internal requests are never rejected
+            q.put(new StageRequest(stageOp, args, request, callback, internalPriority, fileId));
+            return true;
+        }
+        
+        final RequestPriority priority = request.getPriority();
+        final String reason;
+        if (q.size() >= queueCapacity) {
+            reason = "stage is overloaded";
+        } else if (q.isOverloaded(priority, fileId)) {
+            reason = "queue delay of stage is too high";
         } else {
-            if (q.size() < queueCapacity) {
-                try {
-                    q.put(new StageRequest(stageOp, args, request, callback));
-                } catch (InterruptedException e) {
-                    Logging.logMessage(Logging.LEVEL_DEBUG, Category.stage, this,
-                            "Failed to queue external request due to InterruptedException:");
-                    Logging.logError(Logging.LEVEL_DEBUG, this, e);
-                }
-            } else {
-                // Make sure that the data buffer is returned to the pool if
-                // necessary, as some operations create view buffers on the
-                // data. Otherwise, a 'finalized but not freed before' warning
-                // may occur.
-                if (createdViewBuffer != null) {
-                    assert (createdViewBuffer.getRefCount() >= 2);
-                    BufferPool.free(createdViewBuffer);
-                }
-                Logging.logMessage(Logging.LEVEL_WARN, this, "stage is overloaded, request %d for %s dropped",
-                        request.getRequestId(), request.getFileId());
-                request.sendInternalServerError(new IllegalStateException("server overloaded, request dropped"));
-            }
+            q.put(new StageRequest(stageOp, args, request, callback, priority, fileId));
+            return true;
         }
+        
+        // Make sure that the data buffer is returned to the pool if
+        // necessary, as some operations create view buffers on the
+        // data. Otherwise, a 'finalized but not freed before' warning
+        // may occur.
+        if (createdViewBuffer != null) {
+            assert (createdViewBuffer.getRefCount() >= 2);
+            BufferPool.free(createdViewBuffer);
+        }
+        dropped.increment();
+        Logging.logMessage(Logging.LEVEL_WARN, this, "%s, %s request %d for %s dropped", reason, priority,
+                request.getRequestId(), request.getFileId());
+        request.sendOverloaded("server overloaded", getRetryDelayMs(priority));
+        return false;
+    }
+    
+    /**
+     * Enables the rejection of requests whose priority class has been queued
+     * longer than the target delay for a whole interval.
+     * 
+     * @param targetDelayMs
+     *            the acceptable queue delay, 0 disables the rejection
+     * @param intervalMs
+     *            the time the queue delay may stay above the target
+     */
+    public void setTargetQueueDelay(int targetDelayMs, int intervalMs) {
+        q.setTargetDelay(targetDelayMs, intervalMs);
+    }
+    
+    /**
+     * @return the time after which a client should retry a request of the
+     *         given priority that was rejected due to overload, in
+     *         milliseconds
+     */
+    protected long getRetryDelayMs(RequestPriority priority) {
+        return Math.max(q.getQueueDelayMs(priority), MIN_RETRY_DELAY_MS);
     }
     
     /**
@@ -135,6 +232,32 @@ public abstract class Stage extends LifeCycleThread {
         return q.size();
     }
     
+    /**
+     * Registers the queue wait and processing times, the number of dropped requests, the queue length and whether
+     * the queue of each priority class is overloaded, labeled with the name of the stage.
+     */
+    public void registerMetrics(MetricsRegistry registry) {
+        final String labels = MetricsRegistry.label("stage", getName());
+        registry.register("xtreemfs_stage_queue_wait_us", labels, queueWait);
+        registry.register("xtreemfs_stage_processing_us", labels, processing);
+        registry.register("xtreemfs_stage_dropped_requests_total", labels, dropped);
+        registry.register("xtreemfs_stage_queue_length", labels, new Gauge() {
+            @Override
+            public long getValue() {
+                return getQueueLength();
+            }
+        });
+        for (final RequestPriority priority : RequestPriority.values()) {
+            registry.register("xtreemfs_stage_overloaded",
+                labels + "," + MetricsRegistry.label("priority", priority.name().toLowerCase()), new Gauge() {
+                    @Override
+                    public long getValue() {
+                        return q.isOverloaded(priority) ? 1 : 0;
+                    }
+                });
+        }
+    }
+    
     @Override
     public void run() {
         
@@ -144,7 +267,7 @@ public abstract class Stage extends LifeCycleThread {
             try {
                 final StageRequest op = q.take();
                 
-                processMethod(op);
+                processRequest(op);
                 
             } catch (InterruptedException ex) {
                 break;
@@ -157,13 +280,28 @@ public abstract class Stage extends LifeCycleThread {
         notifyStopped();
     }
     
-    protected void calcRequestDuration(OSDRequest rq) {
-        /*
-         * long d = (System.nanoTime()-rq.getEnqueueNanos())/100000l;
-         * _numRq.incrementAndGet(); if (_minRqTime.get() > d)
-         * _minRqTime.set((int)d); if (_maxRqTime.get() < d)
-         * _maxRqTime.set((int)d); _sumRqTime.addAndGet(d);
-         */
+    /**
+     * Executes a request taken from the queue and records its queue wait and
+     * processing time, also in the trace of the request if it is traced. To be
+     * used by stages that implement their own run loop.
+     * 
+     * @param op
+     *            the dequeued request
+     */
+    protected void processRequest(StageRequest op) {
+        final long start = System.nanoTime();
+        queueWait.record((start - op.getEnqueueNanos()) / 1000);
+        
+        final RequestTrace trace = op.getRequest() == null ? null : op.getRequest().getTrace();
+        final int span = trace == null ? -1 : trace.startSpan(getName(), op.getEnqueueNanos(), start);
+        
+        processMethod(op);
+        
+        final long end = System.nanoTime();
+        processing.record((end - start) / 1000);
+        if (trace != null) {
+            trace.endSpan(span, end);
+        }
     }
     
     /**
@@ -189,11 +327,30 @@ public abstract class Stage extends LifeCycleThread {
         
         private final OSDRequest request;
         
+        private final long       enqueueNanos;
+        
+        private final RequestPriority priority;
+        
+        private final String     fileId;
+        
         public StageRequest(int stageMethod, Object[] args, OSDRequest request, Object callback) {
+            this(stageMethod, args, request, callback, RequestPriority.FOREGROUND);
+        }
+        
+        public StageRequest(int stageMethod, Object[] args, OSDRequest request, Object callback,
+                RequestPriority priority) {
+            this(stageMethod, args, request, callback, priority, null);
+        }
+        
+        public StageRequest(int stageMethod, Object[] args, OSDRequest request, Object callback,
+                RequestPriority priority, String fileId) {
             this.args = args;
             this.stageMethod = stageMethod;
             this.callback = callback;
             this.request = request;
+            this.priority = priority;
+            this.fileId = fileId;
+            this.enqueueNanos = System.nanoTime();
         }
         
         public int getStageMethod() {
@@ -212,6 +369,21 @@ public abstract class Stage extends LifeCycleThread {
             return request;
         }
         
+        public long getEnqueueNanos() {
+            return enqueueNanos;
+        }
+        
+        public RequestPriority getPriority() {
+            return priority;
+        }
+        
+        /**
+         * @return the file the operation refers to, or null if unknown
+         */
+        public String getFileId() {
+            return fileId;
+        }
+        
         public void sendInternalServerError(Throwable cause) {
             if (request != null) {
                 request.sendInternalServerError(cause);
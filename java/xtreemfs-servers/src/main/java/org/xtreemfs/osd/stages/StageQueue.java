@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd.stages;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.xtreemfs.osd.stages.Stage.StageRequest;
+
+/**
+ * Request queue of a {@link Stage}. A prioritized queue keeps a FIFO queue per {@link RequestPriority} and dequeues
+ * them in weighted round robin order, so that background traffic cannot starve client requests and vice versa.
+ * Otherwise, all requests are kept in a single FIFO queue regardless of their priority.
+ * <p>
+ * Priorities only apply between files: as long as requests of a file are queued, they are kept in a single queue, so
+ * that the requests of each file are processed in FIFO order, e.g. a client write cannot overtake a preceding
+ * replication write of the same object. The queue of a file is the one of the highest priority class among its queued
+ * requests, i.e. if a request of a higher class is added, the queued requests of the file are moved to its queue, so
+ * that a background request cannot hold back the client requests of the same file.
+ * <p>
+ * The queue delay of each queue is monitored similar to CoDel: if the delay of the dequeued requests has stayed
+ * above a target delay for a whole interval, the queue is overloaded until a request is dequeued with a delay below
+ * the target or the queue runs empty. While a queue is overloaded, the stage rejects new requests for it instead of
+ * building up a long standing queue.
+ */
+public class StageQueue {
+
+    private static final RequestPriority[] PRIORITIES = RequestPriority.values();
+
+    private final ArrayDeque<StageRequest>[] queues;
+
+    /**
+     * number of requests that may still be taken from each queue before the next one is served
+     */
+    private final int[]                      credits;
+
+    private int                              current;
+
+    private int                              size;
+
+    /**
+     * 0 if the queue delay is not monitored
+     */
+    private long                             targetDelayNanos;
+
+    private long                             intervalNanos;
+
+    /**
+     * per queue, the time when the delay will have stayed above the target for a whole interval, 0 if the delay of
+     * the last dequeued request was below the target
+     */
+    private final long[]                     firstAboveNanos;
+
+    private final boolean[]                  overloaded;
+
+    private final long[]                     lastDelayNanos;
+
+    /**
+     * per file with queued requests, the index of the queue its requests are added to and the number of its queued
+     * requests
+     */
+    private final Map<String, int[]>         queuedFiles;
+
+    /**
+     * @param prioritized
+     *            true, if a queue per {@link RequestPriority} is used, false if requests are processed in FIFO order
+     */
+    @SuppressWarnings("unchecked")
+    public StageQueue(boolean prioritized) {
+        final int numQueues = prioritized ? PRIORITIES.length : 1;
+        this.queues = new ArrayDeque[numQueues];
+        this.credits = new int[numQueues];
+        for (int i = 0; i < numQueues; i++) {
+            queues[i] = new ArrayDeque<StageRequest>();
+            credits[i] = PRIORITIES[i].getWeight();
+        }
+        this.firstAboveNanos = new long[numQueues];
+        this.overloaded = new boolean[numQueues];
+        this.lastDelayNanos = new long[numQueues];
+        this.queuedFiles = new HashMap<String, int[]>();
+    }
+
+    /**
+     * Enables the monitoring of the queue delay.
+     *
+     * @param targetDelayMs
+     *            the acceptable queue delay, 0 disables the monitoring
+     * @param intervalMs
+     *            the time the queue delay may stay above the target before the queue is overloaded
+     */
+    public synchronized void setTargetDelay(int targetDelayMs, int intervalMs) {
+        this.targetDelayNanos = targetDelayMs * 1000000L;
+        this.intervalNanos = intervalMs * 1000000L;
+        for (int i = 0; i < queues.length; i++) {
+            firstAboveNanos[i] = 0;
+            overloaded[i] = false;
+        }
+    }
+
+    public synchronized void put(StageRequest rq) {
+        int index = getIndex(rq.getPriority());
+        if (queues.length > 1 && rq.getFileId() != null) {
+            int[] file = queuedFiles.get(rq.getFileId());
+            if (file == null) {
+                queuedFiles.put(rq.getFileId(), new int[] { index, 1 });
+            } else {
+                if (PRIORITIES[index].getWeight() > PRIORITIES[file[0]].getWeight()) {
+                    moveRequests(rq.getFileId(), file[0], index);
+                    file[0] = index;
+                } else {
+                    index = file[0];
+                }
+                file[1]++;
+            }
+        }
+        queues[index].add(rq);
+        size++;
+        notify();
+    }
+
+    /**
+     * The queue is unbounded, so the request is always added.
+     *
+     * @return true
+     */
+    public boolean offer(StageRequest rq) {
+        put(rq);
+        return true;
+    }
+
+    public synchronized StageRequest take() throws InterruptedException {
+        while (size == 0) {
+            wait();
+        }
+        return dequeue();
+    }
+
+    public synchronized StageRequest poll() {
+        return size == 0 ? null : dequeue();
+    }
+
+    public synchronized StageRequest poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long remainingNanos = unit.toNanos(timeout);
+        final long deadline = System.nanoTime() + remainingNanos;
+        while (size == 0) {
+            if (remainingNanos <= 0) {
+                return null;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+            remainingNanos = deadline - System.nanoTime();
+        }
+        return dequeue();
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return true, if new requests of the given priority should be rejected as the queue delay has been too high
+     */
+    public synchronized boolean isOverloaded(RequestPriority priority) {
+        return overloaded[getIndex(priority)];
+    }
+
+    /**
+     * @return true, if a new request of the given priority and file should be rejected as the queue delay of the queue
+     *         it would be added to has been too high
+     */
+    public synchronized boolean isOverloaded(RequestPriority priority, String fileId) {
+        int index = getIndex(priority);
+        if (queues.length > 1 && fileId != null) {
+            int[] file = queuedFiles.get(fileId);
+            if (file != null && PRIORITIES[file[0]].getWeight() > PRIORITIES[index].getWeight()) {
+                index = file[0];
+            }
+        }
+        return overloaded[index];
+    }
+
+    /**
+     * @return the queue delay of the request of the given priority dequeued last, in milliseconds
+     */
+    public synchronized long getQueueDelayMs(RequestPriority priority) {
+        return lastDelayNanos[getIndex(priority)] / 1000000L;
+    }
+
+    private int getIndex(RequestPriority priority) {
+        return queues.length == 1 ? 0 : priority.ordinal();
+    }
+
+    /**
+     * Moves the queued requests of the given file to the end of another queue, preserving their order.
+     */
+    private void moveRequests(String fileId, int from, int to) {
+        Iterator<StageRequest> it = queues[from].iterator();
+        while (it.hasNext()) {
+            StageRequest rq = it.next();
+            if (fileId.equals(rq.getFileId())) {
+                it.remove();
+                queues[to].add(rq);
+            }
+        }
+    }
+
+    /**
+     * Takes the next request in weighted round robin order. Must only be called if the queue is not empty.
+     */
+    private StageRequest dequeue() {
+        int i = current;
+        while (credits[i] == 0 || queues[i].isEmpty()) {
+            credits[i] = PRIORITIES[i].getWeight();
+            i = (i + 1) % queues.length;
+        }
+        current = i;
+        credits[i]--;
+
+        final StageRequest rq = queues[i].poll();
+        size--;
+        if (queues.length > 1 && rq.getFileId() != null) {
+            int[] file = queuedFiles.get(rq.getFileId());
+            if (--file[1] == 0) {
+                queuedFiles.remove(rq.getFileId());
+            }
+        }
+
+        final long now = System.nanoTime();
+        final long delay = now - rq.getEnqueueNanos();
+        lastDelayNanos[i] = delay;
+        if (targetDelayNanos > 0) {
+            if (delay < targetDelayNanos || queues[i].isEmpty()) {
+                firstAboveNanos[i] = 0;
+                overloaded[i] = false;
+            } else if (firstAboveNanos[i] == 0) {
+                firstAboveNanos[i] = now + intervalNanos;
+            } else if (now >= firstAboveNanos[i]) {
+                overloaded[i] = true;
+            }
+        }
+        return rq;
+    }
+}
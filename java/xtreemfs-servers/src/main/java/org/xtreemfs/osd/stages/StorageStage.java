@@ -10,6 +10,7 @@ package org.xtreemfs.osd.stages;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -17,6 +18,7 @@ import org.xtreemfs.common.xloc.Replica;
 import org.xtreemfs.common.xloc.StripingPolicyImpl;
 import org.xtreemfs.common.xloc.XLocations;
 import org.xtreemfs.foundation.buffer.ReusableBuffer;
+import org.xtreemfs.foundation.metrics.MetricsRegistry;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.RPCHeader.ErrorResponse;
 import org.xtreemfs.osd.OSDRequest;
 import org.xtreemfs.osd.OSDRequestDispatcher;
@@ -24,6 +26,7 @@ import org.xtreemfs.osd.replication.ObjectSet;
 import org.xtreemfs.osd.storage.CowPolicy;
 import org.xtreemfs.osd.storage.FileMetadata;
 import org.xtreemfs.osd.storage.MetadataCache;
+import org.xtreemfs.osd.storage.ObjectDataCache;
 import org.xtreemfs.osd.storage.ObjectInformation;
 import org.xtreemfs.osd.storage.StorageLayout;
 import org.xtreemfs.osd.storage.StorageThread;
@@ -37,6 +40,10 @@ public class StorageStage extends Stage {
     private final StorageThread[] storageThreads;
     private final StorageLayout layout;
     
+    private final ObjectDataCache objectCache;
+    
+    private final boolean checksumsEnabled;
+    
     /** Creates a new instance of MultithreadedStorageStage */
     public StorageStage(OSDRequestDispatcher master, MetadataCache cache, StorageLayout layout,
         int numOfThreads, int maxRequestsQueueLength) throws IOException {
@@ -44,6 +51,10 @@ public class StorageStage extends Stage {
         super("OSD Storage Stage", maxRequestsQueueLength);
 
         this.layout = layout;
+        this.checksumsEnabled = master.getConfig().isUseChecksums();
+
+        final long objectCacheSize = master.getConfig().getObjectCacheSize();
+        this.objectCache = objectCacheSize > 0 ? new ObjectDataCache(objectCacheSize) : null;
 
         int numberOfThreads = 5;
         if (numOfThreads > 0)
@@ -52,7 +63,8 @@ public class StorageStage extends Stage {
         storageThreads = new StorageThread[numberOfThreads];
         for (int i = 0; i < numberOfThreads; i++) {
             // Each storage thread gets the max. queue length as it is possible that one thread gets the whole load
-            storageThreads[i] = new StorageThread(i, master, cache, layout, maxRequestsQueueLength);
+            storageThreads[i] = new StorageThread(i, master, cache, layout, objectCache,
+                maxRequestsQueueLength);
             storageThreads[i].setLifeCycleListener(master);
         }
     }
@@ -61,9 +73,27 @@ public class StorageStage extends Stage {
         return layout;
     }
 
+    /**
+     * @return the object data cache, or <code>null</code> if it is disabled
+     */
+    public ObjectDataCache getObjectCache() {
+        return objectCache;
+    }
     
     public void readObject(String fileId, long objNo, StripingPolicyImpl sp, int offset, int length,
         long versionTimestamp, OSDRequest request, ReadObjectCallback listener) {
+        
+        // reads of the latest version are answered from the object cache if possible, without being
+        // enqueued; full object reads with checksums enabled have to verify the checksum on disk
+        if (objectCache != null && versionTimestamp == 0
+            && !(checksumsEnabled && length == StorageLayout.FULL_OBJECT_LENGTH)) {
+            ObjectInformation cached = objectCache.read(fileId, objNo, offset, length);
+            if (cached != null) {
+                listener.readComplete(cached, null);
+                return;
+            }
+        }
+        
         this.enqueueOperation(fileId, StorageThread.STAGEOP_READ_OBJECT, new Object[] { fileId, objNo, sp,
             offset, length, versionTimestamp }, request, listener);
     }
@@ -73,6 +103,21 @@ public class StorageStage extends Stage {
         public void readComplete(ObjectInformation result, ErrorResponse error);
     }
     
+    /**
+     * Reads the latest versions of several complete objects of a file with a single storage thread operation.
+     * The object cache is bypassed.
+     */
+    public void readObjects(String fileId, List<Long> objNos, StripingPolicyImpl sp, OSDRequest request,
+        ReadObjectsCallback listener) {
+        this.enqueueOperation(fileId, StorageThread.STAGEOP_READ_OBJECTS, new Object[] { fileId, objNos, sp },
+            request, listener);
+    }
+    
+    public static interface ReadObjectsCallback {
+        
+        public void readComplete(List<ObjectInformation> result, ErrorResponse error);
+    }
+    
     public void getFilesize(String fileId, StripingPolicyImpl sp, long versionTimestamp, OSDRequest request,
         GetFileSizeCallback listener) {
         this.enqueueOperation(fileId, StorageThread.STAGEOP_GET_FILE_SIZE, new Object[] { fileId, sp, versionTimestamp },
@@ -94,7 +139,7 @@ public class StorageStage extends Stage {
     public void insertPaddingObject(String fileId, long objNo, StripingPolicyImpl sp, int size,
         OSDRequest request, WriteObjectCallback listener) {
         this.enqueueOperation(fileId, StorageThread.STAGEOP_INSERT_PADDING_OBJECT, new Object[] { fileId,
-            objNo, sp, size }, request, listener);
+            objNo, sp, size }, request, null, listener, RequestPriority.REPLICATION);
     }
     
     /*
@@ -104,7 +149,7 @@ public class StorageStage extends Stage {
         ReusableBuffer data, CowPolicy cow, XLocations xloc, boolean sync, Long newVersion,
         OSDRequest request, WriteObjectCallback listener) {
         this.enqueueOperation(fileId, StorageThread.STAGEOP_WRITE_OBJECT, new Object[] { fileId, objNo, sp,
-            offset, data, cow, xloc, true, sync, newVersion }, request, listener);
+            offset, data, cow, xloc, true, sync, newVersion }, request, null, listener, RequestPriority.REPLICATION);
     }
     
     public static interface WriteObjectCallback {
@@ -232,8 +277,11 @@ public class StorageStage extends Stage {
     
     public void enqueueOperation(String fileId, int stageOp, Object[] args, OSDRequest request,
             ReusableBuffer createdViewBuffer, Object callback) {
-            
-            // rq.setEnqueueNanos(System.nanoTime());
+        enqueueOperation(fileId, stageOp, args, request, createdViewBuffer, callback, RequestPriority.FOREGROUND);
+    }
+    
+    public void enqueueOperation(String fileId, int stageOp, Object[] args, OSDRequest request,
+            ReusableBuffer createdViewBuffer, Object callback, RequestPriority internalPriority) {
             
             // choose the thread the new request has to be
             // assigned to, for its execution
@@ -243,7 +291,8 @@ public class StorageStage extends Stage {
             // in order to start/schedule its execution
             // concurrently with other threads assigned to other
             // storageTasks
-            storageThreads[taskId].enqueueOperation(stageOp, args, request, createdViewBuffer, callback);
+            storageThreads[taskId].enqueueOperation(stageOp, args, request, createdViewBuffer, callback,
+                internalPriority, fileId);
         }
     
     @Override
@@ -253,6 +302,26 @@ public class StorageStage extends Stage {
             th.start();
     }
     
+    /**
+     * Registers the metrics of each storage thread, as requests are queued and
+     * processed by the storage threads.
+     */
+    @Override
+    public void registerMetrics(MetricsRegistry registry) {
+        for (StorageThread th : storageThreads)
+            th.registerMetrics(registry);
+    }
+    
+    /**
+     * Sets the target queue delay of each storage thread, as requests are
+     * queued by the storage threads.
+     */
+    @Override
+    public void setTargetQueueDelay(int targetDelayMs, int intervalMs) {
+        for (StorageThread th : storageThreads)
+            th.setTargetQueueDelay(targetDelayMs, intervalMs);
+    }
+    
     @Override
     public void shutdown() {
         for (StorageThread th : storageThreads)
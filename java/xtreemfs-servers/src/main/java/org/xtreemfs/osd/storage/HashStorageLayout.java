@@ -22,8 +22,11 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.EmptyStackException;
 import java.util.HashMap;
 import java.util.Map;
@@ -85,6 +88,11 @@ public class HashStorageLayout extends StorageLayout {
      */
     public static final String             QUOTA_INVALID_EXPIRE_TIMES_FILENAME = ".invalid_expire_times";
 
+    /**
+     * temporary file used to replace memory-mapped object files before they are modified in place
+     */
+    private static final String            MMAP_DETACH_FILENAME          = ".mmap_detach";
+
     public static final int                SL_TAG                        = 0x00000002;
 
     /** 32bit algorithm */
@@ -135,6 +143,11 @@ public class HashStorageLayout extends StorageLayout {
 
     private final LRUCache<String, XLocSetVersionState> xLocSetVSCache;
 
+    /**
+     * cache of memory-mapped hot object files; <code>null</code> if the mapped read path is disabled
+     */
+    private final MappedObjectCache        mappedObjects;
+
     /** Creates a new instance of HashStorageLayout */
     public HashStorageLayout(OSDConfig config, MetadataCache cache) throws IOException {
         this(config, cache, DEFAULT_HASH, DEFAULT_SUBDIRS, DEFAULT_MAX_DIR_DEPTH);
@@ -198,6 +211,12 @@ public class HashStorageLayout extends StorageLayout {
         hashedPathCache = new LRUCache<String, String>(2048);
 
         xLocSetVSCache = new LRUCache<String, XLocSetVersionState>(2048);
+
+        if (config.getMmapCacheSize() > 0) {
+            mappedObjects = new MappedObjectCache(config.getMmapCacheSize(), config.getMmapCacheMinReads());
+        } else {
+            mappedObjects = null;
+        }
     }
 
     @Override
@@ -213,6 +232,10 @@ public class HashStorageLayout extends StorageLayout {
         ReusableBuffer bbuf = null;
         boolean checkChecksum = false;
 
+        // Only ranges explicitly requested by clients or replicas may be served from a mapping. Full object
+        // reads are also used to copy objects on write, which requires a private, writable buffer.
+        final boolean useMapping = mappedObjects != null && length != FULL_OBJECT_LENGTH;
+
         if (length == -1) {
             assert (offset == 0) : "if length is -1 offset must be 0 but is " + offset;
             length = stripeSize;
@@ -240,6 +263,13 @@ public class HashStorageLayout extends StorageLayout {
                     fileName);
         }
 
+        if (useMapping) {
+            bbuf = mappedObjects.read(fileName, offset, length);
+            if (bbuf != null) {
+                return new ObjectInformation(ObjectInformation.ObjectStatus.EXISTS, bbuf, stripeSize);
+            }
+        }
+
         File file = new File(fileName);
 
         if (file.exists()) {
@@ -276,6 +306,11 @@ public class HashStorageLayout extends StorageLayout {
                     int lastoffset = offset + length;
                     assert (lastoffset <= stripeSize);
 
+                    if (useMapping && mappedObjects.recordRead(fileName, flength)) {
+                        bbuf = mappedObjects.map(fileName, f.getChannel(), flength, offset, length);
+                        return new ObjectInformation(ObjectInformation.ObjectStatus.EXISTS, bbuf, stripeSize);
+                    }
+
                     if (lastoffset > flength) {
                         assert (flength - offset > 0);
                         bbuf = BufferPool.allocate(flength - offset);
@@ -430,6 +465,7 @@ public class HashStorageLayout extends StorageLayout {
         if (Logging.isDebug()) {
             Logging.logMessage(Logging.LEVEL_DEBUG, this, "writing to file (COW): %s", newFilename);
         }
+        unmapObject(newFilename, false);
         File file = new File(newFilename);
         String mode = sync ? "rwd" : "rw";
         RandomAccessFile f = null;
@@ -453,6 +489,7 @@ public class HashStorageLayout extends StorageLayout {
         if (deleteOldVersion) {
             String oldFilename = generateAbsoluteObjectPathFromRelPath(relativePath, objNo, oldVersion,
                     oldChecksum);
+            unmapObject(oldFilename, false);
             File oldFile = new File(oldFilename);
             oldFile.delete();
         }
@@ -471,6 +508,7 @@ public class HashStorageLayout extends StorageLayout {
         if (Logging.isDebug()) {
             Logging.logMessage(Logging.LEVEL_DEBUG, this, "writing to file: %s", filename);
         }
+        unmapObject(filename, true);
         File file = new File(filename);
         String mode = sync ? "rwd" : "rw";
         RandomAccessFile f = null;
@@ -520,6 +558,7 @@ public class HashStorageLayout extends StorageLayout {
         if (Logging.isDebug()) {
             Logging.logMessage(Logging.LEVEL_DEBUG, this, "writing to file: %s", newFilename);
         }
+        unmapObject(newFilename, false);
         File file = new File(newFilename);
         String mode = sync ? "rwd" : "rw";
         RandomAccessFile f = null;
@@ -538,6 +577,7 @@ public class HashStorageLayout extends StorageLayout {
         if (((oldVersion != newVersion) || (newChecksum != oldChecksum)) && (deleteOldVersion)) {
             String oldFilename = generateAbsoluteObjectPathFromRelPath(relativePath, objNo, oldVersion,
                     oldChecksum);
+            unmapObject(oldFilename, false);
             File oldFile = new File(oldFilename);
             oldFile.delete();
         }
@@ -626,6 +666,7 @@ public class HashStorageLayout extends StorageLayout {
             }
 
             if (!cow) {
+                unmapObject(oldFileName, false);
                 oldFile.delete();
                 if (Logging.isDebug()) {
                     Logging.logMessage(Logging.LEVEL_DEBUG, Category.storage, this,
@@ -634,6 +675,7 @@ public class HashStorageLayout extends StorageLayout {
             }
 
             String newFilename = generateAbsoluteObjectPathFromFileId(fileId, objNo, newVersion, newChecksum);
+            unmapObject(newFilename, false);
             RandomAccessFile raf = null;
             try {
                 raf = new RandomAccessFile(newFilename, mode);
@@ -656,6 +698,7 @@ public class HashStorageLayout extends StorageLayout {
 
         } else {
             // just make the object shorter
+            unmapObject(oldFileName, true);
             RandomAccessFile raf = null;
             try {
                 raf = new RandomAccessFile(oldFile, mode);
@@ -697,6 +740,7 @@ public class HashStorageLayout extends StorageLayout {
 
         // write file
         String filename = generateAbsoluteObjectPathFromRelPath(relPath, objNo, version, checksum);
+        unmapObject(filename, true);
         RandomAccessFile raf = null;
         try {
             raf = new RandomAccessFile(filename, "rw");
@@ -715,6 +759,55 @@ public class HashStorageLayout extends StorageLayout {
 
     @Override
     public void deleteFile(String fileId, final boolean deleteMetadata) throws IOException {
+        File fileDir = deleteFileObjects(fileId, deleteMetadata);
+
+        // Try to delete the data directory if it is empty.
+        if (fileDir != null && deleteMetadata) {
+            del(fileDir);
+        }
+    }
+
+    @Override
+    public void deleteFileDeferred(String fileId, boolean deleteMetadata) throws IOException {
+        deleteFileObjects(fileId, deleteMetadata);
+    }
+
+    @Override
+    public void removeEmptyDirectories(Collection<String> fileIds) {
+
+        // Process longer paths first. Since a directory's path is longer than its parent's, each parent
+        // directory is only checked once, after all of its children have been processed.
+        TreeSet<File> dirs = new TreeSet<File>(new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                int len1 = f1.getPath().length();
+                int len2 = f2.getPath().length();
+                return len1 != len2 ? len2 - len1 : f1.compareTo(f2);
+            }
+        });
+        for (String fileId : fileIds) {
+            dirs.add(new File(generateAbsoluteFilePath(fileId)));
+        }
+
+        File storageDirFile = new File(this.storageDir);
+        File dir;
+        while ((dir = dirs.pollFirst()) != null) {
+            // deleting a directory fails unless it is empty
+            if (dir.delete()) {
+                File parent = dir.getParentFile();
+                if (parent != null && !parent.equals(storageDirFile)) {
+                    dirs.add(parent);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes all object files of a file and, if requested, its metadata files.
+     * 
+     * @return the file's directory, or <code>null</code> if it does not exist
+     */
+    private File deleteFileObjects(String fileId, final boolean deleteMetadata) throws IOException {
         File fileDir = new File(generateAbsoluteFilePath(fileId));
 
         // Filter metadata from the fileList, if deleteMetadata is not set.
@@ -732,7 +825,11 @@ public class HashStorageLayout extends StorageLayout {
 
         // Stop the execution if the directory does not exist.
         if (fileList == null) {
-            return;
+            return null;
+        }
+
+        if (mappedObjects != null) {
+            mappedObjects.invalidateAll(generateAbsoluteFilePath(fileId));
         }
 
         // Delete the filtered files.
@@ -740,9 +837,56 @@ public class HashStorageLayout extends StorageLayout {
             file.delete();
         }
 
-        // Try to delete the data directory if it is empty.
-        if (deleteMetadata) {
-            del(fileDir);
+        return fileDir;
+    }
+
+    /**
+     * Removes an object file from the cache of memory-mapped objects. Views on the mapping may still be in
+     * use, e.g. by responses that have not been sent yet. Since changing the length of a mapped file would
+     * make accesses to such views fail, a mapped file that is about to be modified in place is first replaced
+     * by a copy of itself. The mapping then keeps referring to the original, unlinked file.
+     * 
+     * @param fileName
+     *            the absolute path of the object file
+     * @param modifyInPlace
+     *            if <code>true</code>, the caller is about to modify the existing file
+     * @throws IOException
+     */
+    private void unmapObject(String fileName, boolean modifyInPlace) throws IOException {
+
+        if (mappedObjects == null || !mappedObjects.invalidate(fileName)) {
+            return;
+        }
+
+        File file = new File(fileName);
+        if (!file.exists()) {
+            return;
+        }
+
+        if (!modifyInPlace) {
+            // the file is replaced or deleted by the caller
+            file.delete();
+            return;
+        }
+
+        File tmp = new File(file.getParentFile(), MMAP_DETACH_FILENAME);
+        FileInputStream in = new FileInputStream(file);
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            FileChannel src = in.getChannel();
+            FileChannel dst = out.getChannel();
+            long size = src.size();
+            for (long pos = 0; pos < size;) {
+                pos += src.transferTo(pos, size - pos, dst);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("unable to replace memory-mapped object file " + fileName);
         }
     }
 
@@ -775,6 +919,7 @@ public class HashStorageLayout extends StorageLayout {
             }
         });
         for (File obj : objs) {
+            unmapObject(generateAbsoluteFilePath(fileId) + obj.getName(), false);
             obj.delete();
         }
     }
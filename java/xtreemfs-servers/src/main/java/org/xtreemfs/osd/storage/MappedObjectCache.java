@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+import org.xtreemfs.foundation.LRUCache;
+import org.xtreemfs.foundation.buffer.BufferPool;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.foundation.logging.Logging.Category;
+
+/**
+ * Caches read-only memory mappings of frequently read object files. Since the name of an object file encodes
+ * the object number, version and checksum, an entry refers to one particular object version. Reads on a
+ * cached object are answered with a view buffer on the mapping, without allocating and copying data.
+ * <p>
+ * An object file is only mapped after it has been read <code>minReads</code> times. The total size of all
+ * mapped files is bounded by <code>maxMappedBytes</code>; the least recently read mappings are evicted first.
+ * <p>
+ * Evicted or invalidated mappings are released by the garbage collector once the last view buffer on them
+ * has been freed. Callers have to invalidate an entry before the underlying object file is modified or
+ * deleted.
+ */
+public class MappedObjectCache {
+
+    /**
+     * maximum number of object files for which read counts are recorded
+     */
+    private static final int                              MAX_TRACKED_OBJECTS = 16384;
+
+    private final long                                    maxMappedBytes;
+
+    private final int                                     minReads;
+
+    private final LinkedHashMap<String, MappedByteBuffer> mappings;
+
+    private final LRUCache<String, Integer>               readCounts;
+
+    private long                                          mappedBytes;
+
+    private long                                          hits;
+
+    private long                                          misses;
+
+    private long                                          evictions;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxMappedBytes
+     *            the maximum total size of all mapped object files
+     * @param minReads
+     *            the number of reads on an object file before it is mapped
+     */
+    public MappedObjectCache(long maxMappedBytes, int minReads) {
+        this.maxMappedBytes = maxMappedBytes;
+        this.minReads = minReads;
+        this.mappings = new LinkedHashMap<String, MappedByteBuffer>(64, 0.75f, true);
+        this.readCounts = new LRUCache<String, Integer>(MAX_TRACKED_OBJECTS);
+    }
+
+    /**
+     * Reads a range from a cached object file.
+     *
+     * @param fileName
+     *            the absolute path of the object file
+     * @param offset
+     *            the offset within the object
+     * @param length
+     *            the number of bytes to read
+     * @return a read-only view buffer containing the requested range (which may be shorter than
+     *         <code>length</code> if the object is shorter), or <code>null</code> if the object file is not
+     *         mapped
+     */
+    public synchronized ReusableBuffer read(String fileName, int offset, int length) {
+
+        MappedByteBuffer mapping = mappings.get(fileName);
+        if (mapping == null) {
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return createView(mapping, offset, length);
+    }
+
+    /**
+     * Records a read on an object file that is not mapped and decides whether the file should be mapped.
+     *
+     * @param fileName
+     *            the absolute path of the object file
+     * @param fileLength
+     *            the length of the object file
+     * @return <code>true</code>, if the object file has been read frequently enough to be mapped
+     */
+    public synchronized boolean recordRead(String fileName, long fileLength) {
+
+        if (fileLength == 0 || fileLength > maxMappedBytes) {
+            return false;
+        }
+
+        Integer count = readCounts.get(fileName);
+        count = count == null ? 1 : count + 1;
+        if (count < minReads) {
+            readCounts.put(fileName, count);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Maps an object file and reads a range from it.
+     *
+     * @param fileName
+     *            the absolute path of the object file
+     * @param channel
+     *            an open channel to the object file
+     * @param fileLength
+     *            the length of the object file
+     * @param offset
+     *            the offset within the object
+     * @param length
+     *            the number of bytes to read
+     * @return a read-only view buffer containing the requested range
+     * @throws IOException
+     *             if the file could not be mapped
+     */
+    public synchronized ReusableBuffer map(String fileName, FileChannel channel, int fileLength, int offset,
+            int length) throws IOException {
+
+        MappedByteBuffer mapping = mappings.get(fileName);
+        if (mapping == null) {
+
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileLength);
+            mappings.put(fileName, mapping);
+            readCounts.remove(fileName);
+            mappedBytes += fileLength;
+
+            if (Logging.isDebug()) {
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.storage, this,
+                        "mapped object file %s (%d bytes, %d bytes mapped in total)", fileName, fileLength,
+                        mappedBytes);
+            }
+
+            evict();
+        }
+
+        return createView(mapping, offset, length);
+    }
+
+    /**
+     * Removes the mapping of an object file from the cache.
+     *
+     * @param fileName
+     *            the absolute path of the object file
+     * @return <code>true</code>, if the object file was mapped
+     */
+    public synchronized boolean invalidate(String fileName) {
+
+        readCounts.remove(fileName);
+
+        MappedByteBuffer mapping = mappings.remove(fileName);
+        if (mapping == null) {
+            return false;
+        }
+
+        mappedBytes -= mapping.capacity();
+        return true;
+    }
+
+    /**
+     * Removes the mappings of all object files in the given directory from the cache.
+     *
+     * @param fileDir
+     *            the absolute path of the file directory, including a trailing "/"
+     */
+    public synchronized void invalidateAll(String fileDir) {
+
+        Iterator<Entry<String, MappedByteBuffer>> it = mappings.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry<String, MappedByteBuffer> entry = it.next();
+            if (entry.getKey().startsWith(fileDir)) {
+                mappedBytes -= entry.getValue().capacity();
+                it.remove();
+            }
+        }
+
+        Iterator<String> keys = readCounts.keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next().startsWith(fileDir)) {
+                keys.remove();
+            }
+        }
+    }
+
+    public synchronized long getMappedBytes() {
+        return mappedBytes;
+    }
+
+    public synchronized int getNumMappedObjects() {
+        return mappings.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    private void evict() {
+
+        Iterator<MappedByteBuffer> it = mappings.values().iterator();
+        while (mappedBytes > maxMappedBytes && it.hasNext()) {
+            mappedBytes -= it.next().capacity();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    private static ReusableBuffer createView(MappedByteBuffer mapping, int offset, int length) {
+
+        if (offset >= mapping.capacity()) {
+            return BufferPool.allocate(0);
+        }
+
+        ByteBuffer view = mapping.duplicate();
+        view.position(offset);
+        view.limit(Math.min(offset + length, mapping.capacity()));
+        return new ReusableBuffer(view.slice());
+    }
+
+}
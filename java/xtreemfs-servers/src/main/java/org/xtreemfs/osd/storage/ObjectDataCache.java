@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd.storage;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.xtreemfs.foundation.buffer.BufferPool;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.foundation.logging.Logging.Category;
+import org.xtreemfs.osd.storage.ObjectInformation.ObjectStatus;
+
+/**
+ * An off-heap cache for the data of the latest versions of objects. Entries are keyed by file ID, object
+ * number and object version; for each file, the cache additionally records the latest cached version of
+ * each object and the last object numbers that were valid when the objects were read, so that a read can
+ * be answered without consulting the file's metadata.
+ * <p>
+ * Eviction follows a segmented LRU policy: new entries are added to a probationary segment, and are moved
+ * to a protected segment when they are read again. If the protected segment exceeds its share of the
+ * capacity, its least recently used entries are moved back to the probationary segment, whose least
+ * recently used entries are evicted first. Objects that are read only once, e.g. by a sequential scan,
+ * thus cannot displace frequently read objects.
+ * <p>
+ * Entries are only added and invalidated by the storage thread that is responsible for the file, whereas
+ * reads may happen from any thread. Any operation that changes the content or size of a file has to
+ * invalidate the file before it is executed.
+ */
+public class ObjectDataCache {
+
+    /**
+     * percentage of the capacity reserved for the protected segment
+     */
+    private static final int                             PROTECTED_SHARE   = 80;
+
+    /**
+     * number of bytes accounted for each entry in addition to its data
+     */
+    private static final int                             ENTRY_OVERHEAD    = 128;
+
+    private final long                                   maxBytes;
+
+    private final long                                   maxProtectedBytes;
+
+    private final LinkedHashMap<ObjectKey, CachedObject> probationSegment;
+
+    private final LinkedHashMap<ObjectKey, CachedObject> protectedSegment;
+
+    private final Map<String, CachedFile>                files;
+
+    private long                                         probationBytes;
+
+    private long                                         protectedBytes;
+
+    private long                                         hits;
+
+    private long                                         misses;
+
+    private long                                         evictions;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxBytes
+     *            the maximum number of bytes occupied by cached objects
+     */
+    public ObjectDataCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.maxProtectedBytes = maxBytes / 100 * PROTECTED_SHARE;
+        this.probationSegment = new LinkedHashMap<ObjectKey, CachedObject>(64, 0.75f, true);
+        this.protectedSegment = new LinkedHashMap<ObjectKey, CachedObject>(64, 0.75f, true);
+        this.files = new HashMap<String, CachedFile>();
+    }
+
+    /**
+     * Reads a range from the latest version of a cached object.
+     *
+     * @param fileId
+     *            the file ID
+     * @param objNo
+     *            the object number
+     * @param offset
+     *            the offset within the object
+     * @param length
+     *            the number of bytes to read, or {@link StorageLayout#FULL_OBJECT_LENGTH}
+     * @return the object information as it would be returned by the storage layout, including the last
+     *         object numbers of the file, or <code>null</code> if the object is not cached
+     */
+    public synchronized ObjectInformation read(String fileId, long objNo, int offset, int length) {
+
+        CachedFile file = files.get(fileId);
+        Long version = file == null ? null : file.versions.get(objNo);
+        if (version == null) {
+            misses++;
+            return null;
+        }
+
+        ObjectKey key = new ObjectKey(fileId, objNo, version);
+        CachedObject obj = protectedSegment.get(key);
+        if (obj == null) {
+
+            // a second access promotes an object to the protected segment
+            obj = probationSegment.remove(key);
+            assert (obj != null) : "version table of " + fileId + " refers to an object that is not cached";
+            probationBytes -= obj.size;
+            protectedSegment.put(key, obj);
+            protectedBytes += obj.size;
+            demote();
+        }
+
+        hits++;
+
+        ObjectInformation result = obj.createObjectInformation(offset, length);
+        result.setLastLocalObjectNo(file.lastLocalObjectNo);
+        result.setGlobalLastObjectNo(file.globalLastObjectNo);
+        return result;
+    }
+
+    /**
+     * Adds an object to the cache. Only existing objects and padding objects are cached; the data is copied,
+     * so that the given object remains owned by the caller.
+     *
+     * @param fileId
+     *            the file ID
+     * @param objNo
+     *            the object number
+     * @param version
+     *            the version of the object, which has to be the latest version
+     * @param object
+     *            the complete object, as returned by the storage layout for a read from offset 0 with the
+     *            stripe size as length
+     * @param lastLocalObjectNo
+     *            the current local last object number of the file
+     * @param globalLastObjectNo
+     *            the current global last object number of the file
+     */
+    public synchronized void insert(String fileId, long objNo, long version, ObjectInformation object,
+            long lastLocalObjectNo, long globalLastObjectNo) {
+
+        if (object.getStatus() == ObjectStatus.DOES_NOT_EXIST || object.isChecksumInvalidOnOSD()) {
+            return;
+        }
+
+        ByteBuffer data = null;
+        if (object.getData() != null) {
+            ByteBuffer src = object.getData().getBuffer().duplicate();
+            data = ByteBuffer.allocateDirect(src.remaining());
+            data.put(src);
+            data.flip();
+        }
+
+        CachedObject obj = new CachedObject(object.getStatus(), data == null ? null : data.asReadOnlyBuffer(),
+                object.getStripeSize());
+        if (obj.size > maxBytes) {
+            return;
+        }
+
+        CachedFile file = files.get(fileId);
+        if (file == null) {
+            file = new CachedFile();
+            files.put(fileId, file);
+        }
+        file.lastLocalObjectNo = lastLocalObjectNo;
+        file.globalLastObjectNo = globalLastObjectNo;
+
+        Long oldVersion = file.versions.put(objNo, version);
+        if (oldVersion != null) {
+            remove(new ObjectKey(fileId, objNo, oldVersion));
+        }
+
+        probationSegment.put(new ObjectKey(fileId, objNo, version), obj);
+        probationBytes += obj.size;
+        evict();
+    }
+
+    /**
+     * Removes all objects of a file from the cache. Has to be invoked before the content or size of the file
+     * is changed, or the metadata of the file is released.
+     *
+     * @param fileId
+     *            the file ID
+     */
+    public synchronized void invalidate(String fileId) {
+
+        CachedFile file = files.remove(fileId);
+        if (file == null) {
+            return;
+        }
+
+        for (Entry<Long, Long> entry : file.versions.entrySet()) {
+            remove(new ObjectKey(fileId, entry.getKey(), entry.getValue()));
+        }
+
+        if (Logging.isDebug()) {
+            Logging.logMessage(Logging.LEVEL_DEBUG, Category.storage, this,
+                    "invalidated %d cached objects of file %s", file.versions.size(), fileId);
+        }
+    }
+
+    public synchronized long getCachedBytes() {
+        return probationBytes + protectedBytes;
+    }
+
+    public synchronized int getNumCachedObjects() {
+        return probationSegment.size() + protectedSegment.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Restricts the data of an object to the range that was requested, in the same way as the storage layout
+     * does for ranged reads.
+     *
+     * @param object
+     *            a complete object
+     * @param offset
+     *            the offset within the object
+     * @param length
+     *            the number of bytes requested, or {@link StorageLayout#FULL_OBJECT_LENGTH}
+     */
+    static void restrictToRange(ObjectInformation object, int offset, int length) {
+
+        ReusableBuffer data = object.getData();
+        if (data == null || (offset == 0 && length == StorageLayout.FULL_OBJECT_LENGTH)) {
+            return;
+        }
+
+        if (offset >= data.remaining()) {
+            BufferPool.free(data);
+            object.setData(BufferPool.allocate(0));
+        } else {
+            data.range(offset, Math.min(length, data.remaining() - offset));
+        }
+    }
+
+    private void remove(ObjectKey key) {
+
+        CachedObject obj = probationSegment.remove(key);
+        if (obj != null) {
+            probationBytes -= obj.size;
+            return;
+        }
+
+        obj = protectedSegment.remove(key);
+        if (obj != null) {
+            protectedBytes -= obj.size;
+        }
+    }
+
+    private void demote() {
+
+        Iterator<Entry<ObjectKey, CachedObject>> it = protectedSegment.entrySet().iterator();
+        while (protectedBytes > maxProtectedBytes && it.hasNext()) {
+            Entry<ObjectKey, CachedObject> entry = it.next();
+            it.remove();
+            protectedBytes -= entry.getValue().size;
+            probationSegment.put(entry.getKey(), entry.getValue());
+            probationBytes += entry.getValue().size;
+        }
+
+        evict();
+    }
+
+    private void evict() {
+
+        while (probationBytes + protectedBytes > maxBytes) {
+
+            LinkedHashMap<ObjectKey, CachedObject> segment = probationSegment.isEmpty() ? protectedSegment
+                    : probationSegment;
+            Iterator<Entry<ObjectKey, CachedObject>> it = segment.entrySet().iterator();
+            Entry<ObjectKey, CachedObject> entry = it.next();
+            it.remove();
+
+            if (segment == probationSegment) {
+                probationBytes -= entry.getValue().size;
+            } else {
+                protectedBytes -= entry.getValue().size;
+            }
+
+            ObjectKey key = entry.getKey();
+            CachedFile file = files.get(key.fileId);
+            file.versions.remove(key.objNo);
+            if (file.versions.isEmpty()) {
+                files.remove(key.fileId);
+            }
+
+            evictions++;
+        }
+    }
+
+    private static final class ObjectKey {
+
+        final String fileId;
+
+        final long   objNo;
+
+        final long   version;
+
+        ObjectKey(String fileId, long objNo, long version) {
+            this.fileId = fileId;
+            this.objNo = objNo;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ObjectKey)) {
+                return false;
+            }
+            ObjectKey other = (ObjectKey) obj;
+            return objNo == other.objNo && version == other.version && fileId.equals(other.fileId);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = fileId.hashCode();
+            hash = 31 * hash + (int) (objNo ^ (objNo >>> 32));
+            hash = 31 * hash + (int) (version ^ (version >>> 32));
+            return hash;
+        }
+    }
+
+    private static final class CachedObject {
+
+        final ObjectStatus status;
+
+        final ByteBuffer   data;
+
+        final int          stripeSize;
+
+        final long         size;
+
+        CachedObject(ObjectStatus status, ByteBuffer data, int stripeSize) {
+            this.status = status;
+            this.data = data;
+            this.stripeSize = stripeSize;
+            this.size = (data == null ? 0 : data.capacity()) + ENTRY_OVERHEAD;
+        }
+
+        ObjectInformation createObjectInformation(int offset, int length) {
+
+            if (data == null) {
+                return new ObjectInformation(status, null, stripeSize);
+            }
+
+            if (offset >= data.capacity()) {
+                return new ObjectInformation(status, BufferPool.allocate(0), stripeSize);
+            }
+
+            int end = length == StorageLayout.FULL_OBJECT_LENGTH ? data.capacity() : Math.min(offset + length,
+                    data.capacity());
+            ByteBuffer view = data.duplicate();
+            view.position(offset);
+            view.limit(end);
+            return new ObjectInformation(status, new ReusableBuffer(view.slice()), stripeSize);
+        }
+    }
+
+    private static final class CachedFile {
+
+        final Map<Long, Long> versions = new HashMap<Long, Long>();
+
+        long                  lastLocalObjectNo;
+
+        long                  globalLastObjectNo;
+    }
+
+}
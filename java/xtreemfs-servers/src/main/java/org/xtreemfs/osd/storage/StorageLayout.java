@@ -13,6 +13,7 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -247,6 +248,33 @@ public abstract class StorageLayout {
      */
     public abstract void deleteFile(String fileId, boolean deleteMetadata) throws IOException;
     
+    /**
+     * Deletes all versions of all objects of a file like {@link #deleteFile(String, boolean)}, but leaves the
+     * removal of the file's directory and of empty parent directories to a later call of
+     * {@link #removeEmptyDirectories(Collection)}. Layouts without a directory hierarchy delete the file
+     * immediately.
+     * 
+     * @param fileId
+     *            the ID of the file
+     * @param deleteMetadata
+     *            delete metadata
+     * @throws IOException
+     *             if an error occurred while deleting the objects
+     */
+    public void deleteFileDeferred(String fileId, boolean deleteMetadata) throws IOException {
+        deleteFile(fileId, deleteMetadata);
+    }
+    
+    /**
+     * Removes the directories of files that were deleted with {@link #deleteFileDeferred(String, boolean)},
+     * as well as all parent directories that have become empty.
+     * 
+     * @param fileIds
+     *            the IDs of the deleted files
+     */
+    public void removeEmptyDirectories(Collection<String> fileIds) {
+    }
+    
     /**
      * Deletes a single version of a single object of a file.
      * 
@@ -34,6 +34,7 @@ import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.RPCHeader;
 import org.xtreemfs.foundation.pbrpc.utils.ErrorUtils;
 import org.xtreemfs.foundation.util.OutputUtils;
 import org.xtreemfs.osd.OSDRequestDispatcher;
+import org.xtreemfs.osd.RequestTrace;
 import org.xtreemfs.osd.quota.OSDVoucherManager;
 import org.xtreemfs.osd.quota.VoucherErrorException;
 import org.xtreemfs.osd.replication.ObjectSet;
@@ -49,6 +50,7 @@ import org.xtreemfs.osd.stages.StorageStage.InternalGetGmaxCallback;
 import org.xtreemfs.osd.stages.StorageStage.InternalGetMaxObjectNoCallback;
 import org.xtreemfs.osd.stages.StorageStage.InternalGetReplicaStateCallback;
 import org.xtreemfs.osd.stages.StorageStage.ReadObjectCallback;
+import org.xtreemfs.osd.stages.StorageStage.ReadObjectsCallback;
 import org.xtreemfs.osd.stages.StorageStage.TruncateCallback;
 import org.xtreemfs.osd.stages.StorageStage.WriteObjectCallback;
 import org.xtreemfs.osd.storage.VersionTable.Version;
@@ -94,21 +96,26 @@ public class StorageThread extends Stage {
 
     public static final int            STAGEOP_FINALIZE_VOUCHERS     = 15;
 
+    public static final int      STAGEOP_READ_OBJECTS          = 16;
+
     private final MetadataCache        cache;
 
     private final StorageLayout        layout;
     
+    private final ObjectDataCache      objectCache;
+    
     private final OSDRequestDispatcher master;
     
     private final boolean        checksumsEnabled;
     
     public StorageThread(int id, OSDRequestDispatcher dispatcher, MetadataCache cache, StorageLayout layout,
-        int maxQueueLength) {
+        ObjectDataCache objectCache, int maxQueueLength) {
         
-        super("OSD StThr " + id, maxQueueLength);
+        super("OSD StThr " + id, maxQueueLength, true);
         
         this.cache = cache;
         this.layout = layout;
+        this.objectCache = objectCache;
         this.master = dispatcher;
         this.checksumsEnabled = master.getConfig().isUseChecksums();
     }
@@ -123,15 +130,19 @@ public class StorageThread extends Stage {
                 processRead(method);
                 break;
             case STAGEOP_WRITE_OBJECT:
+                invalidateObjectCache(method);
                 processWrite(method);
                 break;
             case STAGEOP_TRUNCATE:
+                invalidateObjectCache(method);
                 processTruncate(method);
                 break;
             case STAGEOP_FLUSH_CACHES:
+                invalidateObjectCache(method);
                 processFlushCaches(method);
                 break;
             case STAGEOP_GMAX_RECEIVED:
+                invalidateObjectCache(method);
                 processGmax(method);
                 break;
             case STAGEOP_GET_GMAX:
@@ -144,6 +155,7 @@ public class StorageThread extends Stage {
                 processGetObjectSet(method);
                 break;
             case STAGEOP_INSERT_PADDING_OBJECT:
+                invalidateObjectCache(method);
                 processInsertPaddingObject(method);
                 break;
             case STAGEOP_GET_MAX_OBJNO:
@@ -159,11 +171,15 @@ public class StorageThread extends Stage {
                 processGetFileIDList(method);
                 break;
             case STAGEOP_DELETE_OBJECTS:
+                invalidateObjectCache(method);
                 processDeleteObjects(method);
                 break;
             case STAGEOP_FINALIZE_VOUCHERS:
                 processFinalizeVouchers(method);
                 break;
+            case STAGEOP_READ_OBJECTS:
+                processReadObjects(method);
+                break;
             }
             
         } catch (Exception ex) {
@@ -172,6 +188,16 @@ public class StorageThread extends Stage {
         }
     }
 
+    /**
+     * Removes all cached objects of the file an operation refers to. Since cached reads bypass the storage
+     * threads, this has to happen before any operation that changes the file's objects, versions, truncate
+     * epoch or last object numbers is executed, and before the file's metadata is released.
+     */
+    private void invalidateObjectCache(StageRequest rq) {
+        if (objectCache != null)
+            objectCache.invalidate((String) rq.getArgs()[0]);
+    }
+    
     private void processGetMaxObjNo(StageRequest rq) {
         final InternalGetMaxObjectNoCallback cback = (InternalGetMaxObjectNoCallback) rq.getCallback();
         try {
@@ -377,7 +403,7 @@ public class StorageThread extends Stage {
             // final boolean rangeRequested = (offset > 0) || (length <
             // stripeSize);
             
-            if (Logging.isDebug()) {
+            if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.proc)) {
                 Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this,
                     "READ: %s-%d offset=%d, length=%d", fileId, objNo, offset, length);
             }
@@ -386,16 +412,30 @@ public class StorageThread extends Stage {
             // object version; otherwise, read the latest object version
             long objVer = versionTimestamp != 0 ? fi.getVersionTable().getLatestVersionBefore(
                 versionTimestamp).getObjVersion(objNo) : fi.getLatestObjectVersion(objNo);
-            if (Logging.isDebug()) {
+            if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.proc)) {
                 Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this, "getting objVer %d", objVer);
             }
             
             long objChksm = fi.getObjectChecksum(objNo, objVer);
-            if (Logging.isDebug()) {
+            if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.proc)) {
                 Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this, "checksum is %d", objChksm);
             }
             
-            ObjectInformation obj = layout.readObject(fileId, fi, objNo, offset, length, objVer);
+            ObjectInformation obj;
+            final long ioStart = System.nanoTime();
+            if (objectCache != null && versionTimestamp == 0 && objVer != 0
+                && !(checksumsEnabled && length == StorageLayout.FULL_OBJECT_LENGTH)) {
+                
+                // read the complete object in order to cache it, and return the requested range
+                obj = layout.readObject(fileId, fi, objNo, 0, sp.getStripeSizeForObject(objNo), objVer);
+                objectCache.insert(fileId, objNo, objVer, obj, fi.getLastObjectNumber(), fi
+                        .getGlobalLastObjectNumber());
+                ObjectDataCache.restrictToRange(obj, offset, length);
+                
+            } else {
+                obj = layout.readObject(fileId, fi, objNo, offset, length, objVer);
+            }
+            traceIO(rq, ioStart);
             
             if (versionTimestamp != 0) {
                 int lastObj = fi.getVersionTable().getLatestVersionBefore(versionTimestamp).getObjCount() - 1;
@@ -414,6 +454,47 @@ public class StorageThread extends Stage {
         
     }
     
+    /**
+     * Reads the latest versions of several complete objects from disk.
+     * 
+     * @param rq
+     */
+    private void processReadObjects(StageRequest rq) {
+        final ReadObjectsCallback cback = (ReadObjectsCallback) rq.getCallback();
+        final List<ObjectInformation> objects = new ArrayList<ObjectInformation>();
+        try {
+            final String fileId = (String) rq.getArgs()[0];
+            @SuppressWarnings("unchecked")
+            final List<Long> objNos = (List<Long>) rq.getArgs()[1];
+            final StripingPolicyImpl sp = (StripingPolicyImpl) rq.getArgs()[2];
+            
+            final FileMetadata fi = layout.getFileMetadata(sp, fileId);
+            
+            if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.proc)) {
+                Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this, "READ OBJECTS: %s-%s", fileId,
+                    objNos);
+            }
+            
+            final long ioStart = System.nanoTime();
+            for (long objNo : objNos) {
+                final long objVer = fi.getLatestObjectVersion(objNo);
+                ObjectInformation obj = layout.readObject(fileId, fi, objNo, 0, sp.getStripeSizeForObject(objNo),
+                    objVer);
+                obj.setLastLocalObjectNo(fi.getLastObjectNumber());
+                obj.setGlobalLastObjectNo(fi.getGlobalLastObjectNumber());
+                objects.add(obj);
+            }
+            traceIO(rq, ioStart);
+            
+            cback.readComplete(objects, null);
+        } catch (IOException ex) {
+            for (ObjectInformation obj : objects)
+                BufferPool.free(obj.getData());
+            cback.readComplete(null, ErrorUtils.getErrorResponse(ErrorType.ERRNO, POSIXErrno.POSIX_ERROR_EIO,
+                ex.toString()));
+        }
+    }
+    
     /**
      * returns the OSDs view of a files size
      * 
@@ -446,6 +527,17 @@ public class StorageThread extends Stage {
         
     }
     
+    /**
+     * Adds the time since ioStart to the disk I/O time of the request if it is
+     * traced.
+     */
+    private static void traceIO(StageRequest rq, long ioStart) {
+        final RequestTrace trace = rq.getRequest() == null ? null : rq.getRequest().getTrace();
+        if (trace != null) {
+            trace.addIOTime(System.nanoTime() - ioStart);
+        }
+    }
+    
     private void processInsertPaddingObject(StageRequest rq) {
         final WriteObjectCallback cback = (WriteObjectCallback) rq.getCallback();
         try {
@@ -489,7 +581,7 @@ public class StorageThread extends Stage {
             final int stripeSize = sp.getStripeSizeForObject(objNo);
             final FileMetadata fi = layout.getFileMetadata(sp, fileId);
             
-            if (Logging.isDebug()) {
+            if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.proc)) {
                 Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this,
                     "WRITE: %s-%d. last objNo=%d dataSize=%d at offset=%d", fileId, objNo, fi
                             .getLastObjectNumber(), dataLength, offset);
@@ -509,9 +601,11 @@ public class StorageThread extends Stage {
                     rq.getRequest().getCapability().getClientIdentity(), rq.getRequest().getCapability().getExpireMs(),
                     sp.getObjectStartOffset(objNo) + offset + dataCapacity)) {
                 BufferPool.free(data);
-                Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this,
-                        "Stop WRITE due to an insufficient voucher!", fileId, objNo, fi.getLastObjectNumber(),
-                        dataLength, offset);
+                if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.proc)) {
+                    Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this,
+                        "Stop WRITE due to an insufficient voucher: %s-%d. last objNo=%d dataSize=%d at offset=%d",
+                        fileId, objNo, fi.getLastObjectNumber(), dataLength, offset);
+                }
                 cback.writeComplete(null, master.getOsdVoucherManager().getInsufficientVoucherErrorResponse());
                 return;
             }
@@ -538,7 +632,9 @@ public class StorageThread extends Stage {
                 fi.setLastObjectNumber(objNo);
             }
             
+            final long ioStart = System.nanoTime();
             layout.writeObject(fileId, fi, data, objNo, offset, newVersion, syncWrite, isCow);
+            traceIO(rq, ioStart);
             
             // if a new version was created, update the "latest versions" file
             if (cow.cowEnabled() && (isCow || largestV == 0))
@@ -573,13 +669,13 @@ public class StorageThread extends Stage {
                     && objNo >= fi.getGlobalLastObjectNumber()) {
                     // Metadata meta = info.getMetadata();
                     // meta.putKnownSize(newFS);
-                    if (Logging.isDebug())
+                    if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.proc))
                         Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this, "new filesize: %d",
                             newFS);
                     response.setSizeInBytes(newFS);
                     response.setTruncateEpoch((int) fi.getTruncateEpoch());
                 } else {
-                    if (Logging.isDebug())
+                    if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.proc))
                         Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this,
                             "no new filesize: %d/%d, %d/%d", newFS, fi.getFilesize(), fi
                                     .getLastObjectNumber(), objNo);
@@ -617,7 +713,7 @@ public class StorageThread extends Stage {
                     }
                 }
             }
-            if (Logging.isDebug())
+            if (Logging.isEnabled(Logging.LEVEL_DEBUG, Category.proc))
                 Logging.logMessage(Logging.LEVEL_DEBUG, Category.proc, this, "new last object=%d gmax=%d", fi
                         .getLastObjectNumber(), fi.getGlobalLastObjectNumber());
             // BufferPool.free(data);
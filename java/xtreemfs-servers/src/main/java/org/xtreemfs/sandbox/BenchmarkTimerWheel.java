@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.sandbox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.xtreemfs.foundation.util.TimerWheel;
+
+/**
+ * Compares the {@link TimerWheel} with a {@link PriorityQueue} for large numbers of pending timers, as used for
+ * Flease timers and RPC timeouts. Reports the average time per schedule, cancel and expire operation.
+ * <p>
+ * Usage: BenchmarkTimerWheel [numTimers[,numTimers...] [rounds]]
+ */
+public class BenchmarkTimerWheel {
+
+    private static final int  TICK       = 50;
+
+    /**
+     * timers are scheduled within this range, e.g. lease and request timeouts
+     */
+    private static final int  RANGE      = 60 * 1000;
+
+    /**
+     * number of cancel operations measured for the priority queue, which takes linear time per cancel
+     */
+    private static final int  PQ_CANCELS = 1000;
+
+    private static final long START      = 1000000;
+
+    private static class Timer implements Comparable<Timer> {
+
+        final long time;
+
+        Timer(long time) {
+            this.time = time;
+        }
+
+        public int compareTo(Timer o) {
+            return time < o.time ? -1 : (time == o.time ? 0 : 1);
+        }
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        final String[] sizes = args.length > 0 ? args[0].split(",") : new String[] { "100000", "1000000" };
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        for (String size : sizes) {
+            final int n = Integer.parseInt(size);
+            // the first rounds warm up the JIT compiler
+            for (int i = 0; i < rounds; i++) {
+                final boolean report = i == rounds - 1;
+                benchmarkWheel(n, report);
+                benchmarkPriorityQueue(n, report);
+            }
+        }
+    }
+
+    private static void benchmarkWheel(int n, boolean report) {
+        final Random rnd = new Random(n);
+        final TimerWheel<Timer> wheel = new TimerWheel<Timer>(TICK, START);
+        final List<TimerWheel.Entry<Timer>> entries = new ArrayList<TimerWheel.Entry<Timer>>(n);
+        final List<Timer> expired = new ArrayList<Timer>();
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            final long time = START + rnd.nextInt(RANGE);
+            entries.add(wheel.schedule(new Timer(time), time));
+        }
+        final long schedule = System.nanoTime() - t0;
+
+        t0 = System.nanoTime();
+        for (int i = 0; i < n; i += 2) {
+            wheel.cancel(entries.get(i));
+        }
+        final long cancel = System.nanoTime() - t0;
+        final int remaining = wheel.size();
+
+        t0 = System.nanoTime();
+        for (long now = START; now <= START + RANGE; now += TICK) {
+            wheel.expire(now, expired);
+            expired.clear();
+        }
+        final long expire = System.nanoTime() - t0;
+
+        if (report) {
+            print("TimerWheel", n, schedule, n, cancel, n / 2, expire, remaining);
+        }
+    }
+
+    private static void benchmarkPriorityQueue(int n, boolean report) {
+        final Random rnd = new Random(n);
+        final PriorityQueue<Timer> queue = new PriorityQueue<Timer>();
+        final List<Timer> timers = new ArrayList<Timer>(n);
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            final Timer timer = new Timer(START + rnd.nextInt(RANGE));
+            timers.add(timer);
+            queue.add(timer);
+        }
+        final long schedule = System.nanoTime() - t0;
+
+        t0 = System.nanoTime();
+        final int cancels = Math.min(PQ_CANCELS, n / 2);
+        for (int i = 0; i < cancels; i++) {
+            queue.remove(timers.get(i * 2));
+        }
+        final long cancel = System.nanoTime() - t0;
+        final int remaining = queue.size();
+
+        t0 = System.nanoTime();
+        for (long now = START; now <= START + RANGE; now += TICK) {
+            while (!queue.isEmpty() && queue.peek().time <= now) {
+                queue.poll();
+            }
+        }
+        final long expire = System.nanoTime() - t0;
+
+        if (report) {
+            print("PriorityQueue", n, schedule, n, cancel, cancels, expire, remaining);
+        }
+    }
+
+    private static void print(String name, int n, long schedule, int numSchedules, long cancel, int numCancels,
+            long expire, int numExpired) {
+        System.out.println(String.format("%-14s %8d timers: schedule %7.1f ns/op, cancel %10.1f ns/op, "
+            + "expire %7.1f ns/op", name, n, (double) schedule / numSchedules, (double) cancel / numCancels,
+                (double) expire / numExpired));
+    }
+}
@@ -52,6 +52,8 @@ public class xtfs_mrcdbtool {
         oMrc.urlDefaultPort = PORTS.MRC_PBRPC_PORT_DEFAULT.getNumber();
         oMrc.urlDefaultProtocol = Schemes.SCHEME_PBRPC;
         options.put("mrc", oMrc);
+        options.put("binary", new CliOption(CliOption.OPTIONTYPE.SWITCH,
+            "create a binary dump, which can only be restored by an MRC with the same database version", ""));
         
         try {
             CLIParser.parseCLI(args, options, arguments);
@@ -88,6 +90,7 @@ public class xtfs_mrcdbtool {
         }
         
         String dumpFile = arguments.get(1);
+        boolean binary = options.get("binary").switchValue;
         
         CliOption c = options.get(utils.OPTION_USER_CREDS_FILE);
         String cp = options.get(utils.OPTION_USER_CREDS_PASS).stringValue;
@@ -147,7 +150,7 @@ public class xtfs_mrcdbtool {
                 RPCResponse<?> r = null;
                 try {
                     r = client.xtreemfs_dump_database(null, passwdAuth, RPCAuthentication.userService,
-                        dumpFile);
+                        dumpFile, binary);
                     r.get();
                 } finally {
                     if (r != null)
@@ -157,7 +160,7 @@ public class xtfs_mrcdbtool {
                 RPCResponse<?> r = null;
                 try {
                     r = client.xtreemfs_restore_database(null, passwdAuth, RPCAuthentication.userService,
-                        dumpFile);
+                        dumpFile, false);
                     r.get();
                 } finally {
                     if (r != null)
@@ -14,6 +14,8 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TestRule;
 import org.xtreemfs.common.libxtreemfs.exceptions.PosixErrorException;
+import org.xtreemfs.foundation.buffer.BufferPool;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.pbrpc.client.RPCAuthentication;
 import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.Auth;
@@ -386,6 +388,61 @@ public class FileHandleTest {
         client.shutdown();
     }
 
+    @Test
+    public void testWriteReusableBuffer() throws Exception {
+        final String volumeName = "testWriteReusableBuffer";
+
+        Options options = new Options();
+        options.setPeriodicFileSizeUpdatesIntervalS(10);
+        options.setMetadataCacheSize(0);
+        options.setEnableAsyncWrites(true);
+
+        String dirAddress = testEnv.getDIRAddress().getHostName() + ":" + testEnv.getDIRAddress().getPort();
+        String mrcAddress = testEnv.getMRCAddress().getHostName() + ":" + testEnv.getMRCAddress().getPort();
+
+        Client client = ClientFactory.createClient(dirAddress, userCredentials, null, options);
+        client.start();
+
+        client.createVolume(mrcAddress, auth, userCredentials, volumeName);
+        Volume volume = client.openVolume(volumeName, null, options);
+
+        FileHandle fileHandle = volume.openFile(userCredentials, "/bla.tzt",
+                SYSTEM_V_FCNTL.SYSTEM_V_FCNTL_H_O_CREAT.getNumber()
+                        | SYSTEM_V_FCNTL.SYSTEM_V_FCNTL_H_O_TRUNC.getNumber()
+                        | SYSTEM_V_FCNTL.SYSTEM_V_FCNTL_H_O_RDWR.getNumber());
+
+        // Write two and a half stripes with buffers which span stripe boundaries.
+        final int stripeSize = defaultStripingPolicy.getStripeSize() * 1024;
+        final int length = stripeSize * 5 / 2;
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) i;
+        }
+
+        final int firstLength = stripeSize + 1000;
+        ReusableBuffer buffer = BufferPool.allocate(firstLength);
+        buffer.put(data, 0, firstLength);
+        assertEquals(firstLength, fileHandle.write(userCredentials, buffer, firstLength, 0));
+        buffer = BufferPool.allocate(length - firstLength);
+        buffer.put(data, firstLength, length - firstLength);
+        assertEquals(length - firstLength, fileHandle.write(userCredentials, buffer, length - firstLength,
+                firstLength));
+        fileHandle.flush();
+
+        Stat stat = volume.getAttr(userCredentials, "/bla.tzt");
+        assertEquals(length, stat.getSize());
+
+        byte[] readData = new byte[length];
+        assertEquals(length, fileHandle.read(userCredentials, readData, length, 0));
+        for (int i = 0; i < length; i++) {
+            assertEquals(data[i], readData[i]);
+        }
+
+        fileHandle.close();
+        volume.close();
+        client.shutdown();
+    }
+
     @Test
     public void testReadBytePerByte() throws Exception {
         final String volumeName = "testReadBytePerByte";
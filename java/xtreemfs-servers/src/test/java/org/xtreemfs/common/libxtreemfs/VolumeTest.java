@@ -44,6 +44,7 @@ import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.AccessControlPolicyType;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.KeyValuePair;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.Replica;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.Replicas;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.SYSTEM_V_FCNTL;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.StripingPolicy;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.StripingPolicyType;
@@ -602,6 +603,36 @@ public class VolumeTest {
         assertEquals(2, volume.listReplicas(userCredentials, fileName).getReplicasCount());
     }
 
+    @Test
+    public void testListReplicasBatched() throws Exception {
+        VOLUME_NAME = "testListReplicasBatched";
+        client.createVolume(mrcAddress, auth, userCredentials, VOLUME_NAME);
+        Volume volume = client.openVolume(VOLUME_NAME, null, options);
+
+        FileHandle fileHandle = volume.openFile(userCredentials, "file",
+                SYSTEM_V_FCNTL.SYSTEM_V_FCNTL_H_O_CREAT.getNumber(), 0777);
+        fileHandle.close();
+        volume.createDirectory(userCredentials, "dir", 0777);
+
+        // files that do not exist are returned as null
+        List<String> paths = new ArrayList<String>();
+        paths.add("file");
+        paths.add("missing");
+        List<Replicas> replicas = volume.listReplicas(userCredentials, paths);
+        assertEquals(2, replicas.size());
+        assertEquals(1, replicas.get(0).getReplicasCount());
+        assertNull(replicas.get(1));
+
+        // other errors are not hidden
+        paths.add("dir");
+        try {
+            volume.listReplicas(userCredentials, paths);
+            fail("listing the replicas of a directory must fail");
+        } catch (PosixErrorException e) {
+            assertEquals(POSIXErrno.POSIX_ERROR_EISDIR, e.getPosixError());
+        }
+    }
+
     @Test
     public void testSetGetListXattr() throws Exception {
         VOLUME_NAME = "testSetGetListXattr";
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.dir;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.xtreemfs.TestHelper;
+import org.xtreemfs.common.KeyValuePairs;
+import org.xtreemfs.dir.data.ServiceRecord;
+import org.xtreemfs.dir.data.ServiceRegistry;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIR.Service;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceDataMap;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIR.ServiceType;
+import org.xtreemfs.pbrpc.generatedinterfaces.DIR.serviceGetUpdatesResponse;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.KeyValuePair;
+
+public class ServiceRegistryTest {
+    @Rule
+    public final TestRule testLog = TestHelper.testLog;
+
+    @Test
+    public void testLookups() throws Exception {
+
+        ServiceRegistry registry = new ServiceRegistry();
+        registry.update(createRecord("osd2", "OSD", ServiceType.SERVICE_TYPE_OSD, 100));
+        registry.update(createRecord("osd1", "OSD", ServiceType.SERVICE_TYPE_OSD, 100));
+        registry.update(createRecord("mrc1", "MRC", ServiceType.SERVICE_TYPE_MRC, 100));
+
+        List<Service> osds = registry.getByType(ServiceType.SERVICE_TYPE_OSD, 150);
+        assertEquals(2, osds.size());
+        assertEquals("osd1", osds.get(0).getUuid());
+        assertEquals("osd2", osds.get(1).getUuid());
+        assertEquals("50", KeyValuePairs.getValue(osds.get(0).getData().getDataList(),
+                ServiceRegistry.SECONDS_SINCE_LAST_UPDATE));
+
+        assertEquals(3, registry.getByType(ServiceType.SERVICE_TYPE_MIXED, 150).size());
+        assertEquals(0, registry.getByType(ServiceType.SERVICE_TYPE_VOLUME, 150).size());
+        assertEquals(2, registry.getByName("OSD").size());
+        assertEquals("mrc1", registry.getByUuid("mrc1").getUuid());
+
+        // a service may change its name
+        registry.update(createRecord("osd1", "renamed OSD", ServiceType.SERVICE_TYPE_OSD, 100));
+        assertEquals(1, registry.getByName("OSD").size());
+        assertEquals(1, registry.getByName("renamed OSD").size());
+
+        registry.remove("osd1");
+        assertNull(registry.getByUuid("osd1"));
+        assertEquals(0, registry.getByName("renamed OSD").size());
+        assertEquals(1, registry.getByType(ServiceType.SERVICE_TYPE_OSD, 150).size());
+        assertEquals(2, registry.getNumServices());
+    }
+
+    @Test
+    public void testUpdates() throws Exception {
+
+        ServiceRegistry registry = new ServiceRegistry();
+        registry.update(createRecord("osd1", "OSD", ServiceType.SERVICE_TYPE_OSD, 100));
+        registry.update(createRecord("osd2", "OSD", ServiceType.SERVICE_TYPE_OSD, 100));
+
+        // an unknown generation results in the complete list
+        serviceGetUpdatesResponse updates = registry.getUpdates(ServiceType.SERVICE_TYPE_OSD, 0, 100);
+        assertTrue(updates.getFull());
+        assertEquals(2, updates.getServicesCount());
+        long generation = updates.getGeneration();
+        assertFalse(registry.hasUpdates(ServiceType.SERVICE_TYPE_OSD, generation));
+
+        // changes of other service types are not reported
+        registry.update(createRecord("mrc1", "MRC", ServiceType.SERVICE_TYPE_MRC, 100));
+        assertFalse(registry.hasUpdates(ServiceType.SERVICE_TYPE_OSD, generation));
+        updates = registry.getUpdates(ServiceType.SERVICE_TYPE_OSD, generation, 100);
+        assertFalse(updates.getFull());
+        assertEquals(0, updates.getServicesCount());
+        assertEquals(0, updates.getDeregisteredUuidsCount());
+        generation = updates.getGeneration();
+
+        // only changed services and deregistrations are reported
+        registry.update(createRecord("osd2", "OSD", ServiceType.SERVICE_TYPE_OSD, 200));
+        registry.remove("osd1");
+        assertTrue(registry.hasUpdates(ServiceType.SERVICE_TYPE_OSD, generation));
+        updates = registry.getUpdates(ServiceType.SERVICE_TYPE_OSD, generation, 200);
+        assertFalse(updates.getFull());
+        assertEquals(1, updates.getServicesCount());
+        assertEquals("osd2", updates.getServices(0).getUuid());
+        assertEquals(1, updates.getDeregisteredUuidsCount());
+        assertEquals("osd1", updates.getDeregisteredUuids(0));
+
+        // a re-registration cancels the deregistration
+        registry.update(createRecord("osd1", "OSD", ServiceType.SERVICE_TYPE_OSD, 200));
+        updates = registry.getUpdates(ServiceType.SERVICE_TYPE_OSD, generation, 200);
+        assertEquals(2, updates.getServicesCount());
+        assertEquals(0, updates.getDeregisteredUuidsCount());
+
+        // a generation from the future was assigned by another DIR instance
+        updates = registry.getUpdates(ServiceType.SERVICE_TYPE_OSD, updates.getGeneration() + 1, 200);
+        assertTrue(updates.getFull());
+    }
+
+    @Test
+    public void testComputedAttributesAreNotStored() throws Exception {
+
+        ServiceRegistry registry = new ServiceRegistry();
+        Service service = createRecord("osd1", "OSD", ServiceType.SERVICE_TYPE_OSD, 100).getService();
+        service = service
+                .toBuilder()
+                .setData(
+                        service.getData()
+                                .toBuilder()
+                                .addData(
+                                        KeyValuePair.newBuilder()
+                                                .setKey(ServiceRegistry.SECONDS_SINCE_LAST_UPDATE)
+                                                .setValue("1000"))).build();
+        registry.update(new ServiceRecord(service));
+
+        assertNull(KeyValuePairs.getValue(registry.getByUuid("osd1").getData().getDataList(),
+                ServiceRegistry.SECONDS_SINCE_LAST_UPDATE));
+        List<Service> osds = registry.getByType(ServiceType.SERVICE_TYPE_OSD, 110);
+        assertEquals(2, osds.get(0).getData().getDataCount());
+        assertEquals("10", KeyValuePairs.getValue(osds.get(0).getData().getDataList(),
+                ServiceRegistry.SECONDS_SINCE_LAST_UPDATE));
+    }
+
+    private static ServiceRecord createRecord(String uuid, String name, ServiceType type, long lastUpdated) {
+        return new ServiceRecord(Service
+                .newBuilder()
+                .setType(type)
+                .setUuid(uuid)
+                .setName(name)
+                .setVersion(1)
+                .setLastUpdatedS(lastUpdated)
+                .setData(
+                        ServiceDataMap.newBuilder().addData(
+                                KeyValuePair.newBuilder().setKey("free").setValue("1000"))).build());
+    }
+
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.mrc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.xtreemfs.SetupUtils;
+import org.xtreemfs.TestEnvironment;
+import org.xtreemfs.TestEnvironment.Services;
+import org.xtreemfs.TestHelper;
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.foundation.pbrpc.client.PBRPCException;
+import org.xtreemfs.foundation.pbrpc.client.RPCAuthentication;
+import org.xtreemfs.foundation.pbrpc.client.RPCResponse;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.POSIXErrno;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.UserCredentials;
+import org.xtreemfs.mrc.ac.FileAccessManager;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.AccessControlPolicyType;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.KeyValuePair;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.StripingPolicy;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.StripingPolicyType;
+import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.VivaldiCoordinates;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.DirectoryEntries;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.DirectoryEntry;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.Stat;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.Volumes;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.XAttr;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRCServiceClient;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+
+/**
+ * Tests creating and restoring binary dumps of the MRC database.
+ */
+public class BinaryDBDumpTest {
+    @Rule
+    public final TestRule           testLog     = TestHelper.testLog;
+
+    private static final Services[] SERVICES    = { Services.DIR_CLIENT, Services.TIME_SYNC,
+        Services.UUID_RESOLVER, Services.MRC_CLIENT, Services.DIR_SERVICE, Services.MRC, Services.OSD };
+
+    private static final String     VOLUME_NAME = "testVolume";
+
+    /**
+     * the size of the dump header (magic bytes, format version, database
+     * version)
+     */
+    private static final int        HEADER_SIZE = 8 + 4 + 8;
+
+    private final UserCredentials   uc          = UserCredentials.newBuilder().setUsername("userXY")
+                                                      .addGroups("groupZ").build();
+
+    private MRCServiceClient        client;
+
+    private InetSocketAddress       mrcAddress;
+
+    private TestEnvironment         testEnv;
+
+    private File                    dumpFile;
+
+    public BinaryDBDumpTest() {
+        Logging.start(SetupUtils.DEBUG_LEVEL);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+
+        mrcAddress = SetupUtils.getMRC1Addr();
+
+        // the dump file must reside outside of the test directory, which is
+        // cleared whenever the test environment is started
+        dumpFile = File.createTempFile("xtreemfs-binary-dump", ".bin");
+        dumpFile.delete();
+
+        startEnvironment();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        testEnv.shutdown();
+        dumpFile.delete();
+        new File(dumpFile + ".inprogress").delete();
+    }
+
+    @Test
+    public void testDumpRestore() throws Exception {
+
+        invokeSync(client.xtreemfs_mkvol(mrcAddress, RPCAuthentication.authNone, uc,
+            AccessControlPolicyType.ACCESS_CONTROL_POLICY_POSIX, getDefaultStripingPolicy(), "", 0775,
+            VOLUME_NAME, "", "", getKVList("volKey", "volValue"), 0));
+
+        // create some directories and files
+        invokeSync(client.mkdir(mrcAddress, RPCAuthentication.authNone, uc, VOLUME_NAME, "dir", 0775));
+        invokeSync(client.mkdir(mrcAddress, RPCAuthentication.authNone, uc, VOLUME_NAME, "dir/subDir", 0700));
+        for (int i = 0; i < 10; i++)
+            invokeSync(client.open(mrcAddress, RPCAuthentication.authNone, uc, VOLUME_NAME, "dir/file" + i,
+                FileAccessManager.O_CREAT, 0644, 0, getDefaultCoordinates()));
+        invokeSync(client.open(mrcAddress, RPCAuthentication.authNone, uc, VOLUME_NAME, "dir/subDir/file",
+            FileAccessManager.O_CREAT, 0600, 0, getDefaultCoordinates()));
+        invokeSync(client.symlink(mrcAddress, RPCAuthentication.authNone, uc, VOLUME_NAME, "dir/file0",
+            "link"));
+
+        // add some user attributes and ACL entries
+        invokeSync(client.setxattr(mrcAddress, RPCAuthentication.authNone, uc, VOLUME_NAME, "dir/file1", "key1",
+            "value1", ByteString.copyFrom("value1".getBytes()), 0));
+        invokeSync(client.setxattr(mrcAddress, RPCAuthentication.authNone, uc, VOLUME_NAME, "dir/file1", "key2",
+            "value2", ByteString.copyFrom("value2".getBytes()), 0));
+        invokeSync(client.setxattr(mrcAddress, RPCAuthentication.authNone, uc, VOLUME_NAME, "dir", "dirKey",
+            "dirValue", ByteString.copyFrom("dirValue".getBytes()), 0));
+        invokeSync(client.setxattr(mrcAddress, RPCAuthentication.authNone, uc, VOLUME_NAME, "dir/file2",
+            "xtreemfs.acl", "m u:someone:rwx", ByteString.copyFrom("m u:someone:rwx".getBytes()), 0));
+        invokeSync(client.setxattr(mrcAddress, RPCAuthentication.authNone, uc, VOLUME_NAME, "dir/subDir",
+            "xtreemfs.acl", "m g:someGroup:rx", ByteString.copyFrom("m g:someGroup:rx".getBytes()), 0));
+
+        Map<String, String> contents = getContents("");
+        assertEquals(14, contents.size());
+
+        // dump the database and restore it on an MRC with an empty database
+        dump();
+        startEnvironment();
+
+        Volumes vols = invokeSync(client.xtreemfs_lsvol(mrcAddress, RPCAuthentication.authNone, uc));
+        assertEquals(0, vols.getVolumesCount());
+
+        restore();
+
+        vols = invokeSync(client.xtreemfs_lsvol(mrcAddress, RPCAuthentication.authNone, uc));
+        assertEquals(1, vols.getVolumesCount());
+        assertEquals(VOLUME_NAME, vols.getVolumes(0).getName());
+
+        // the restored file system tree has to be identical to the dumped one
+        assertEquals(contents, getContents(""));
+
+        // new files must not reuse the IDs of restored files
+        invokeSync(client.open(mrcAddress, RPCAuthentication.authNone, uc, VOLUME_NAME, "newFile",
+            FileAccessManager.O_CREAT, 0644, 0, getDefaultCoordinates()));
+        long newId = invokeSync(client.getattr(mrcAddress, RPCAuthentication.authNone, uc, VOLUME_NAME,
+            "newFile", -1)).getStbuf().getIno();
+        for (String path : contents.keySet()) {
+            long id = invokeSync(client.getattr(mrcAddress, RPCAuthentication.authNone, uc, VOLUME_NAME, path,
+                -1)).getStbuf().getIno();
+            assertTrue(newId > id);
+        }
+    }
+
+    @Test
+    public void testCorruptChecksum() throws Exception {
+
+        createVolumeAndDump();
+
+        // modify the first byte of the first record's payload
+        RandomAccessFile raf = new RandomAccessFile(dumpFile, "rw");
+        try {
+            int offset = HEADER_SIZE + 1 + 4;
+            raf.seek(offset);
+            int b = raf.read();
+            raf.seek(offset);
+            raf.write(b ^ 0xFF);
+        } finally {
+            raf.close();
+        }
+
+        assertRestoreFails("checksum mismatch");
+    }
+
+    @Test
+    public void testTruncatedDump() throws Exception {
+
+        createVolumeAndDump();
+
+        // cut off the checksum of the last record
+        RandomAccessFile raf = new RandomAccessFile(dumpFile, "rw");
+        try {
+            raf.setLength(raf.length() - 4);
+        } finally {
+            raf.close();
+        }
+
+        assertRestoreFails("unexpected end of file");
+    }
+
+    private void createVolumeAndDump() throws Exception {
+
+        invokeSync(client.xtreemfs_mkvol(mrcAddress, RPCAuthentication.authNone, uc,
+            AccessControlPolicyType.ACCESS_CONTROL_POLICY_POSIX, getDefaultStripingPolicy(), "", 0775,
+            VOLUME_NAME, "", "", getKVList(), 0));
+        invokeSync(client.open(mrcAddress, RPCAuthentication.authNone, uc, VOLUME_NAME, "file",
+            FileAccessManager.O_CREAT, 0644, 0, getDefaultCoordinates()));
+
+        dump();
+        startEnvironment();
+    }
+
+    private void assertRestoreFails(String message) throws Exception {
+
+        try {
+            restore();
+            fail("corrupt dump has been restored");
+        } catch (PBRPCException exc) {
+            assertEquals(POSIXErrno.POSIX_ERROR_EINVAL, exc.getPOSIXErrno());
+            assertTrue(exc.getErrorMessage(), exc.getErrorMessage().contains(message));
+        }
+    }
+
+    /**
+     * (Re)starts the test environment with an empty MRC database.
+     */
+    private void startEnvironment() throws Exception {
+
+        if (testEnv != null)
+            testEnv.shutdown();
+
+        testEnv = new TestEnvironment(SERVICES);
+        testEnv.start();
+
+        client = testEnv.getMrcClient();
+    }
+
+    private void dump() throws Exception {
+
+        invokeSync(client.xtreemfs_dump_database(mrcAddress, RPCAuthentication.authNone,
+            RPCAuthentication.userService, dumpFile.getAbsolutePath(), true));
+
+        // dumps are written asynchronously
+        for (int i = 0; i < 600 && !dumpFile.exists(); i++)
+            Thread.sleep(100);
+        assertTrue(dumpFile.exists());
+    }
+
+    private void restore() throws Exception {
+        invokeSync(client.xtreemfs_restore_database(mrcAddress, RPCAuthentication.authNone,
+            RPCAuthentication.userService, dumpFile.getAbsolutePath(), true));
+    }
+
+    /**
+     * Returns a textual description of the metadata, user attributes and ACLs
+     * of all files in the given directory and its subdirectories. Access and
+     * change times are omitted, as they may be updated when reading the
+     * metadata.
+     */
+    private Map<String, String> getContents(String dir) throws Exception {
+
+        Map<String, String> contents = new TreeMap<String, String>();
+
+        DirectoryEntries entries = invokeSync(client.readdir(mrcAddress, RPCAuthentication.authNone, uc,
+            VOLUME_NAME, dir, -1, 1000, false, 0, ""));
+        for (DirectoryEntry entry : entries.getEntriesList()) {
+
+            if (entry.getName().equals(".") || entry.getName().equals(".."))
+                continue;
+
+            String path = dir.length() == 0 ? entry.getName() : dir + "/" + entry.getName();
+            Stat stat = entry.getStbuf();
+
+            StringBuilder sb = new StringBuilder();
+            sb.append("ino=").append(stat.getIno()).append(" mode=").append(stat.getMode()).append(" nlink=")
+                    .append(stat.getNlink()).append(" owner=").append(stat.getUserId()).append(":")
+                    .append(stat.getGroupId()).append(" size=").append(stat.getSize()).append(" mtime=")
+                    .append(stat.getMtimeNs()).append(" epoch=").append(stat.getTruncateEpoch());
+
+            Map<String, String> attrs = new TreeMap<String, String>();
+            for (XAttr attr : invokeSync(
+                client.listxattr(mrcAddress, RPCAuthentication.authNone, uc, VOLUME_NAME, path, false))
+                    .getXattrsList())
+                if (!attr.getName().startsWith("xtreemfs."))
+                    attrs.put(attr.getName(), attr.getValue());
+            sb.append(" xattrs=").append(attrs);
+
+            if ((stat.getMode() & 0170000) != 0120000)
+                sb.append(" acl=").append(
+                    invokeSync(
+                        client.getxattr(mrcAddress, RPCAuthentication.authNone, uc, VOLUME_NAME, path,
+                            "xtreemfs.acl")).getValue());
+
+            contents.put(path, sb.toString());
+
+            if ((stat.getMode() & 0170000) == 0040000)
+                contents.putAll(getContents(path));
+        }
+
+        return contents;
+    }
+
+    private static <T extends Message> T invokeSync(RPCResponse<T> response) throws PBRPCException,
+        IOException, InterruptedException {
+
+        try {
+            return response.get();
+        } finally {
+            response.freeBuffers();
+        }
+    }
+
+    private static StripingPolicy getDefaultStripingPolicy() {
+        return StripingPolicy.newBuilder().setType(StripingPolicyType.STRIPING_POLICY_RAID0).setStripeSize(
+            1000).setWidth(1).build();
+    }
+
+    private static VivaldiCoordinates getDefaultCoordinates() {
+        return VivaldiCoordinates.newBuilder().setXCoordinate(0).setYCoordinate(0).setLocalError(0).build();
+    }
+
+    private static List<KeyValuePair> getKVList(String... kvPairs) {
+
+        List<KeyValuePair> kvList = new LinkedList<KeyValuePair>();
+        for (int i = 0; i < kvPairs.length; i += 2)
+            kvList.add(KeyValuePair.newBuilder().setKey(kvPairs[i]).setValue(kvPairs[i + 1]).build());
+
+        return kvList;
+    }
+}
@@ -9,6 +9,7 @@
 package org.xtreemfs.mrc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -16,9 +17,11 @@ import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.junit.After;
@@ -29,6 +32,8 @@ import org.junit.rules.TestRule;
 import org.xtreemfs.common.ReplicaUpdatePolicies;
 import org.xtreemfs.common.xloc.ReplicationFlags;
 import org.xtreemfs.foundation.buffer.BufferPool;
+import org.xtreemfs.foundation.json.JSONParser;
+import org.xtreemfs.foundation.json.JSONString;
 import org.xtreemfs.foundation.logging.Logging;
 import org.xtreemfs.foundation.pbrpc.client.PBRPCException;
 import org.xtreemfs.foundation.pbrpc.client.RPCAuthentication;
@@ -51,12 +56,16 @@ import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.XCap;
 import org.xtreemfs.pbrpc.generatedinterfaces.GlobalTypes.XLocSet;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.ACCESS_FLAGS;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.DirectoryEntries;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.DirectoryEntry;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.Setattrs;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.Stat;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.Volumes;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.XAttr;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.listxattrResponse;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_create_filesResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_get_suitable_osdsResponse;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_get_xlocsetsResponse;
+import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_getattrsResponse;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_set_replica_update_policyRequest;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_update_file_sizeRequest;
 import org.xtreemfs.pbrpc.generatedinterfaces.MRC.xtreemfs_replica_addRequest;
@@ -275,11 +284,11 @@ public class MRCTest {
         // test 'readDir' and 'stat'
         
         DirectoryEntries entrySet = invokeSync(client.readdir(mrcAddress, RPCAuthentication.authNone, uc,
-            volumeName, "", -1, 1000, false, 0));
+            volumeName, "", -1, 1000, false, 0, ""));
         assertEquals(4, entrySet.getEntriesCount());
         
         entrySet = invokeSync(client.readdir(mrcAddress, RPCAuthentication.authNone, uc, volumeName, "myDir",
-            -1, 1000, false, 0));
+            -1, 1000, false, 0, ""));
         assertEquals(12, entrySet.getEntriesCount());
         
         Stat stat = invokeSync(
@@ -300,7 +309,7 @@ public class MRCTest {
         invokeSync(client.unlink(mrcAddress, RPCAuthentication.authNone, uc, volumeName, "myDir/test3.txt"));
         
         entrySet = invokeSync(client.readdir(mrcAddress, RPCAuthentication.authNone, uc, volumeName, "myDir",
-            -1, 1000, false, 0));
+            -1, 1000, false, 0, ""));
         assertEquals(11, entrySet.getEntriesCount());
         
         invokeSync(client.rmdir(mrcAddress, RPCAuthentication.authNone, uc, volumeName, "anotherDir"));
@@ -318,7 +327,102 @@ public class MRCTest {
             AccessControlPolicyType.ACCESS_CONTROL_POLICY_NULL, getDefaultStripingPolicy(), "", 0,
             volumeName, "", "", getKVList(), 0));
         invokeSync(client.readdir(mrcAddress, RPCAuthentication.authNone, uc, volumeName, "/", -1, 1000,
-            false, 0));
+            false, 0, ""));
+        
+        // list a directory in chunks by means of continuation keys
+        invokeSync(client.mkdir(mrcAddress, RPCAuthentication.authNone, uc, volumeName, "myDir", 0775));
+        for (int i = 0; i < 25; i++)
+            invokeSync(client.open(mrcAddress, RPCAuthentication.authNone, uc, volumeName, "myDir/test" + i
+                + ".txt", FileAccessManager.O_CREAT, 0775, 0, getDefaultCoordinates()));
+        
+        Set<String> names = new HashSet<String>();
+        String continuationKey = "";
+        int seen = 0;
+        for (;;) {
+            DirectoryEntries entrySet = invokeSync(client.readdir(mrcAddress, RPCAuthentication.authNone, uc,
+                volumeName, "myDir", -1, 10, true, seen, continuationKey));
+            for (DirectoryEntry entry : entrySet.getEntriesList())
+                assertTrue(entry.getName() + " returned twice", names.add(entry.getName()));
+            seen += entrySet.getEntriesCount();
+            
+            if (entrySet.getEntriesCount() < 10)
+                break;
+            
+            assertTrue(entrySet.hasContinuationKey());
+            continuationKey = entrySet.getContinuationKey();
+            
+            // the listing has to continue even if the last entry is deleted
+            invokeSync(client.unlink(mrcAddress, RPCAuthentication.authNone, uc, volumeName, "myDir/"
+                + continuationKey));
+        }
+        assertEquals(27, names.size());
+        assertTrue(names.contains("."));
+        assertTrue(names.contains(".."));
+    }
+    
+    @Test
+    public void testBatchedOperations() throws Exception {
+        
+        final String uid = "userXY";
+        final List<String> gids = createGIDs("groupZ");
+        final String volumeName = "testVolume";
+        final UserCredentials uc = createUserCredentials(uid, gids);
+        
+        invokeSync(client.xtreemfs_mkvol(mrcAddress, RPCAuthentication.authNone, uc,
+            AccessControlPolicyType.ACCESS_CONTROL_POLICY_NULL, getDefaultStripingPolicy(), "", 0,
+            volumeName, "", "", getKVList(), 0));
+        invokeSync(client.mkdir(mrcAddress, RPCAuthentication.authNone, uc, volumeName, "myDir", 0775));
+        
+        // create multiple files at once; existing files, duplicates and
+        // files in missing directories are reported per entry
+        List<String> paths = new ArrayList<String>();
+        for (int i = 0; i < 10; i++)
+            paths.add("myDir/test" + i + ".txt");
+        paths.add("myDir/test0.txt");
+        paths.add("myDir");
+        paths.add("noDir/test.txt");
+        
+        xtreemfs_create_filesResponse createResp = invokeSync(client.xtreemfs_create_files(mrcAddress,
+            RPCAuthentication.authNone, uc, volumeName, paths, 0775, 0, getDefaultCoordinates()));
+        assertEquals(paths.size(), createResp.getResultsCount());
+        for (int i = 0; i < 10; i++)
+            assertEquals(POSIXErrno.POSIX_ERROR_NONE.getNumber(), createResp.getResults(i).getPosixErrno());
+        assertEquals(POSIXErrno.POSIX_ERROR_EEXIST.getNumber(), createResp.getResults(10).getPosixErrno());
+        assertEquals(POSIXErrno.POSIX_ERROR_EEXIST.getNumber(), createResp.getResults(11).getPosixErrno());
+        assertEquals(POSIXErrno.POSIX_ERROR_ENOENT.getNumber(), createResp.getResults(12).getPosixErrno());
+        
+        // all new files have distinct IDs and are counted
+        xtreemfs_getattrsResponse statResp = invokeSync(client.xtreemfs_getattrs(mrcAddress,
+            RPCAuthentication.authNone, uc, volumeName, paths));
+        assertEquals(paths.size(), statResp.getResultsCount());
+        Set<Long> fileIds = new HashSet<Long>();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(statResp.getResults(i).hasStbuf());
+            assertTrue(fileIds.add(statResp.getResults(i).getStbuf().getIno()));
+        }
+        assertTrue(statResp.getResults(11).hasStbuf());
+        assertFalse(statResp.getResults(12).hasStbuf());
+        assertEquals(POSIXErrno.POSIX_ERROR_ENOENT.getNumber(), statResp.getResults(12).getPosixErrno());
+        
+        assertEquals("10", invokeSync(
+            client.getxattr(mrcAddress, RPCAuthentication.authNone, uc, volumeName, "", "xtreemfs.num_files"))
+                .getValue());
+        
+        // the xLocSets of all files can be retrieved at once
+        xtreemfs_get_xlocsetsResponse xLocResp = invokeSync(client.xtreemfs_get_xlocsets(mrcAddress,
+            RPCAuthentication.authNone, uc, volumeName, paths, getDefaultCoordinates()));
+        assertEquals(paths.size(), xLocResp.getResultsCount());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(POSIXErrno.POSIX_ERROR_NONE.getNumber(), xLocResp.getResults(i).getPosixErrno());
+            assertTrue(xLocResp.getResults(i).hasXlocset());
+        }
+        assertEquals(POSIXErrno.POSIX_ERROR_EISDIR.getNumber(), xLocResp.getResults(11).getPosixErrno());
+        assertEquals(POSIXErrno.POSIX_ERROR_ENOENT.getNumber(), xLocResp.getResults(12).getPosixErrno());
+        
+        // the files can be opened and deleted like any other file
+        invokeSync(client.open(mrcAddress, RPCAuthentication.authNone, uc, volumeName, "myDir/test5.txt",
+            FileAccessManager.O_RDWR, 0, 0, getDefaultCoordinates()));
+        invokeSync(client.unlink(mrcAddress, RPCAuthentication.authNone, uc, volumeName, "myDir/test5.txt"));
     }
     
     @Test
@@ -861,7 +965,7 @@ public class MRCTest {
         
         final UserCredentials ucS = createUserCredentials("someone", createGIDs("somegroup"));
         assertNotNull(invokeSync(client.readdir(mrcAddress, RPCAuthentication.authNone, ucS, noACVolumeName,
-            "newDir/newFile", -1, 1000, false, 0)));
+            "newDir/newFile", -1, 1000, false, 0, "")));
         
         // VOLUME policy
         
@@ -898,7 +1002,7 @@ public class MRCTest {
         
         // check permissions by opening the file
         assertNotNull(invokeSync(client.readdir(mrcAddress, RPCAuthentication.authNone, uc1, posixVolName,
-            "newDir", -1, 1000, false, 0)));
+            "newDir", -1, 1000, false, 0, "")));
         
         try {
             invokeSync(client.mkdir(mrcAddress, RPCAuthentication.authNone, uc2, posixVolName, "newDir2",
@@ -958,14 +1062,14 @@ public class MRCTest {
         // readdir on "/newDir"; should fail for any user now
         try {
             invokeSync(client.readdir(mrcAddress, RPCAuthentication.authNone, uc1, posixVolName, "newDir",
-                -1, 1000, false, 0));
+                -1, 1000, false, 0, ""));
             fail("access should have been denied");
         } catch (PBRPCException exc) {
         }
         
         try {
             invokeSync(client.readdir(mrcAddress, RPCAuthentication.authNone, uc2, posixVolName, "newDir",
-                -1, 1000, false, 0));
+                -1, 1000, false, 0, ""));
             fail("access should have been denied");
         } catch (PBRPCException exc) {
         }
@@ -976,14 +1080,14 @@ public class MRCTest {
         
         try {
             invokeSync(client.readdir(mrcAddress, RPCAuthentication.authNone, uc1, posixVolName, "newDir",
-                -1, 1000, false, 0));
+                -1, 1000, false, 0, ""));
             fail("access should have been denied due to insufficient permissions");
         } catch (PBRPCException exc) {
         }
         
         try {
             invokeSync(client.readdir(mrcAddress, RPCAuthentication.authNone, uc3, posixVolName, "newDir",
-                -1, 1000, false, 0));
+                -1, 1000, false, 0, ""));
             fail("access should have been denied due to insufficient search permissions");
         } catch (PBRPCException exc) {
         }
@@ -994,11 +1098,11 @@ public class MRCTest {
         
         // access should be granted to others now
         invokeSync(client.readdir(mrcAddress, RPCAuthentication.authNone, uc3, posixVolName, "newDir", -1,
-            1000, false, 0));
+            1000, false, 0, ""));
         
         // check permissions
         assertNotNull(invokeSync(client.readdir(mrcAddress, RPCAuthentication.authNone, uc2, posixVolName,
-            "newDir", -1, 1000, false, 0)));
+            "newDir", -1, 1000, false, 0, "")));
         
         // check permissions
         assertNotNull(invokeSync(client.getattr(mrcAddress, RPCAuthentication.authNone, uc3, posixVolName,
@@ -1011,7 +1115,7 @@ public class MRCTest {
         // owner of 'newDir' should still not have access rights
         try {
             invokeSync(client.readdir(mrcAddress, RPCAuthentication.authNone, uc1, posixVolName, "newDir",
-                -1, 1000, false, 0));
+                -1, 1000, false, 0, ""));
             fail("access should have been denied due to insufficient permissions");
         } catch (PBRPCException exc) {
         }
@@ -1183,6 +1287,49 @@ public class MRCTest {
         assertEquals(32L, stat.getSize());
     }
     
+    @Test
+    public void testDirStats() throws Exception {
+        
+        final String uid = "userXY";
+        final List<String> gids = createGIDs("groupZ");
+        final String volumeName = "testVolume";
+        final UserCredentials uc = createUserCredentials(uid, gids);
+        
+        invokeSync(client.xtreemfs_mkvol(mrcAddress, RPCAuthentication.authNone, uc,
+            AccessControlPolicyType.ACCESS_CONTROL_POLICY_NULL, getDefaultStripingPolicy(), "", 0,
+            volumeName, "", "", getKVList(), 0));
+        
+        // create a small directory tree
+        invokeSync(client.mkdir(mrcAddress, RPCAuthentication.authNone, uc, volumeName, "a", 0775));
+        invokeSync(client.mkdir(mrcAddress, RPCAuthentication.authNone, uc, volumeName, "a/b", 0775));
+        invokeSync(client.mkdir(mrcAddress, RPCAuthentication.authNone, uc, volumeName, "c", 0775));
+        for (String path : new String[] { "a/f1", "a/b/f2", "a/b/f3" })
+            invokeSync(client.open(mrcAddress, RPCAuthentication.authNone, uc, volumeName, path,
+                FileAccessManager.O_CREAT, 0775, 0, getDefaultCoordinates()));
+        
+        assertDirStats(uc, volumeName, "", 0, 3, 3);
+        assertDirStats(uc, volumeName, "a", 0, 3, 1);
+        assertDirStats(uc, volumeName, "a/b", 0, 2, 0);
+        assertEquals("", invokeSync(
+            client.getxattr(mrcAddress, RPCAuthentication.authNone, uc, volumeName, "a/f1", "xtreemfs.dir_stats"))
+                .getValue());
+        
+        // move a subtree and a file
+        invokeSync(client.rename(mrcAddress, RPCAuthentication.authNone, uc, volumeName, "a/b", "c/b"));
+        invokeSync(client.rename(mrcAddress, RPCAuthentication.authNone, uc, volumeName, "a/f1", "c/b/f1"));
+        
+        assertDirStats(uc, volumeName, "a", 0, 0, 0);
+        assertDirStats(uc, volumeName, "c", 0, 3, 1);
+        assertDirStats(uc, volumeName, "", 0, 3, 3);
+        
+        // delete a moved file and a directory
+        invokeSync(client.unlink(mrcAddress, RPCAuthentication.authNone, uc, volumeName, "c/b/f1"));
+        invokeSync(client.rmdir(mrcAddress, RPCAuthentication.authNone, uc, volumeName, "a"));
+        
+        assertDirStats(uc, volumeName, "c/b", 0, 2, 0);
+        assertDirStats(uc, volumeName, "", 0, 2, 2);
+    }
+    
     @Test
     public void testDefaultStripingPolicies() throws Exception {
         
@@ -1574,7 +1721,7 @@ public class MRCTest {
             // if the path points to a directory, check whether the number of
             // subdirectories is correct
             DirectoryEntries dir = invokeSync(client.readdir(mrcAddress, RPCAuthentication.authNone, uc,
-                volumeName, path, -1, 1000, false, 0));
+                volumeName, path, -1, 1000, false, 0, ""));
             int size = dir.getEntriesCount();
             
             int count = 0;
@@ -1601,6 +1748,20 @@ public class MRCTest {
         }
     }
     
+    @SuppressWarnings("unchecked")
+    private void assertDirStats(UserCredentials uc, String volumeName, String path, long size, long numFiles,
+        long numDirs) throws Exception {
+        
+        String value = invokeSync(
+            client.getxattr(mrcAddress, RPCAuthentication.authNone, uc, volumeName, path, "xtreemfs.dir_stats"))
+                .getValue();
+        Map<String, Object> stats = (Map<String, Object>) JSONParser.parseJSON(new JSONString(value));
+        
+        assertEquals(size, stats.get("size"));
+        assertEquals(numFiles, stats.get("num_files"));
+        assertEquals(numDirs, stats.get("num_dirs"));
+    }
+    
     private static List<String> createGIDs(String gid) {
         List<String> list = new LinkedList<String>();
         list.add(gid);
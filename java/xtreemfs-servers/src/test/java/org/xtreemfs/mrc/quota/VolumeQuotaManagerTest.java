@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+package org.xtreemfs.mrc.quota;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.xtreemfs.SetupUtils;
+import org.xtreemfs.TestHelper;
+import org.xtreemfs.common.quota.QuotaConstants;
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.mrc.database.DatabaseResultSet;
+import org.xtreemfs.mrc.database.StorageManager;
+import org.xtreemfs.mrc.database.babudb.BabuDBStorageHelper;
+import org.xtreemfs.mrc.metadata.BufferBackedFileVoucherClientInfo;
+import org.xtreemfs.mrc.metadata.BufferBackedFileVoucherInfo;
+import org.xtreemfs.mrc.metadata.BufferBackedIndexMetadata;
+import org.xtreemfs.mrc.metadata.FileVoucherClientInfo;
+import org.xtreemfs.mrc.quota.Voucher.VoucherType;
+
+/**
+ * Tests the space accounting of the quota managers against an in-memory volume database.
+ */
+public class VolumeQuotaManagerTest {
+    @Rule
+    public final TestRule       testLog      = TestHelper.testLog;
+
+    private static final String VOLUME_ID    = "volumeId";
+
+    private static final long   VOUCHER_SIZE = 10;
+
+    private QuotaManager        quotaManager;
+
+    private VolumeQuotaManager  volumeQuotaManager;
+
+    private VoucherManager      voucherManager;
+
+    private InMemoryDatabase    database;
+
+    public VolumeQuotaManagerTest() {
+        Logging.start(SetupUtils.DEBUG_LEVEL);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        database = new InMemoryDatabase();
+        quotaManager = new QuotaManager();
+        volumeQuotaManager = new VolumeQuotaManager(quotaManager, database.createStorageManager(), VOLUME_ID);
+        volumeQuotaManager.init();
+        volumeQuotaManager.setVolumeVoucherSize(VOUCHER_SIZE);
+        voucherManager = new VoucherManager(quotaManager);
+    }
+
+    /**
+     * Concurrently issued vouchers must never exceed the volume or user quota, but have to use up all available space.
+     */
+    @Test
+    public void testConcurrentReservations() throws Exception {
+
+        final long volumeQuota = 1000;
+        final long userQuota = 600;
+        volumeQuotaManager.setVolumeQuota(volumeQuota);
+        database.values.put("userQuota.limited", userQuota);
+
+        final AtomicLong limitedUserSpace = new AtomicLong();
+        final AtomicLong otherUserSpace = new AtomicLong();
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            final String owner = i % 2 == 0 ? "limited" : "other";
+            final AtomicLong space = i % 2 == 0 ? limitedUserSpace : otherUserSpace;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 100; j++) {
+                            quotaManager.beginOperation();
+                            Voucher voucher = volumeQuotaManager.getVoucher(createFileInformation(j, owner), null);
+                            quotaManager.endOperation(false);
+
+                            if (voucher.getVoucherType() == VoucherType.LIMITED)
+                                space.addAndGet(voucher.getVoucherSize());
+                        }
+                    } catch (Throwable th) {
+                        errors.add(th);
+                    }
+                }
+            };
+        }
+
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertTrue(limitedUserSpace.get() <= userQuota);
+        assertEquals(volumeQuota, limitedUserSpace.get() + otherUserSpace.get());
+
+        assertEquals(VoucherType.NONE, volumeQuotaManager.checkVoucherAvailability(createFileInformation(0, "other"))
+                .getVoucherType());
+    }
+
+    /**
+     * Space that has been blocked by an operation whose database update won't be executed has to be released.
+     */
+    @Test
+    public void testRevertFailedOperation() throws Exception {
+
+        volumeQuotaManager.setVolumeQuota(3 * VOUCHER_SIZE);
+
+        quotaManager.beginOperation();
+        assertEquals(VOUCHER_SIZE, volumeQuotaManager.getVoucher(createFileInformation(1, "owner"), null)
+                .getVoucherSize());
+        quotaManager.endOperation(true);
+
+        assertEquals(3, countVouchers());
+    }
+
+    /**
+     * Changes that have been added to an executed database update must not be reverted if the operation fails
+     * afterwards.
+     */
+    @Test
+    public void testKeepCommittedChanges() throws Exception {
+
+        volumeQuotaManager.setVolumeQuota(3 * VOUCHER_SIZE);
+
+        quotaManager.beginOperation();
+        volumeQuotaManager.getVoucher(createFileInformation(1, "owner"), null);
+        QuotaManager.commitChanges();
+        volumeQuotaManager.getVoucher(createFileInformation(2, "owner"), null);
+        quotaManager.endOperation(true);
+
+        assertEquals(2, countVouchers());
+    }
+
+    /**
+     * Vouchers of several clients are blocked as long as one of the clients has an open voucher, and converted to used
+     * space when the last client clears its vouchers.
+     */
+    @Test
+    public void testClearVouchers() throws Exception {
+
+        volumeQuotaManager.setVolumeQuota(100);
+        QuotaFileInformation file = createFileInformation(1, "owner");
+
+        // vouchers whose expire times have passed are considered obsolete
+        long expireTime = System.currentTimeMillis() + 60 * 60 * 1000;
+
+        assertEquals(VOUCHER_SIZE, voucherManager.getVoucher(file, "client1", expireTime, null));
+        assertEquals(2 * VOUCHER_SIZE, voucherManager.getVoucher(file, "client2", expireTime + 1, null));
+        assertEquals(3 * VOUCHER_SIZE, voucherManager.checkAndRenewVoucher(file, "client1", VOUCHER_SIZE,
+                expireTime, expireTime + 2, null));
+        assertSpace(0, 3 * VOUCHER_SIZE);
+
+        // the space remains blocked while client1 still has open vouchers
+        voucherManager.clearVouchers(file, "client2", Collections.singleton(expireTime + 1), 5, null);
+        assertSpace(0, 3 * VOUCHER_SIZE);
+
+        Set<Long> expireTimes = new HashSet<Long>();
+        expireTimes.add(expireTime);
+        expireTimes.add(expireTime + 2);
+        voucherManager.clearVouchers(file, "client1", expireTimes, 25, null);
+        assertSpace(25, 0);
+
+        assertNull(database.createStorageManager().getFileVoucherInfo(file.getFileId()));
+
+        // the released space can be used by new vouchers
+        assertEquals(25 + VOUCHER_SIZE, voucherManager.getVoucher(createFileInformation(1, "owner", 25), "client1",
+                expireTime + 3, null));
+        assertSpace(25, VOUCHER_SIZE);
+    }
+
+    private int countVouchers() throws Exception {
+
+        int count = 0;
+        for (int i = 0;; i++) {
+            quotaManager.beginOperation();
+            Voucher voucher = volumeQuotaManager.getVoucher(createFileInformation(100 + i, "owner"), null);
+            quotaManager.endOperation(false);
+
+            if (voucher.getVoucherType() == VoucherType.NONE)
+                return count;
+
+            assertEquals(VOUCHER_SIZE, voucher.getVoucherSize());
+            count++;
+        }
+    }
+
+    private void assertSpace(long usedSpace, long blockedSpace) {
+        assertEquals(usedSpace, database.get("volumeUsedSpace", 0));
+        assertEquals(blockedSpace, database.get("volumeBlockedSpace", 0));
+        assertEquals(usedSpace, database.get("userUsedSpace.owner", 0));
+        assertEquals(usedSpace, database.get("groupUsedSpace.group", 0));
+    }
+
+    private static QuotaFileInformation createFileInformation(long fileId, String owner) {
+        return createFileInformation(fileId, owner, 0);
+    }
+
+    private static QuotaFileInformation createFileInformation(long fileId, String owner, long fileSize) {
+        return new QuotaFileInformation(VOLUME_ID, fileId, owner, "group", fileSize, 1);
+    }
+
+    /**
+     * Keeps the quota values and voucher information of a volume in memory. Updates are applied immediately.
+     */
+    private static class InMemoryDatabase implements InvocationHandler {
+
+        private final Map<String, Long>   values  = new ConcurrentHashMap<String, Long>();
+
+        private final Map<String, byte[]> entries = new ConcurrentHashMap<String, byte[]>();
+
+        StorageManager createStorageManager() {
+            return (StorageManager) Proxy.newProxyInstance(StorageManager.class.getClassLoader(),
+                    new Class<?>[] { StorageManager.class }, this);
+        }
+
+        long get(String key, long defaultValue) {
+            Long value = values.get(key);
+            return value == null ? defaultValue : value;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+            String name = method.getName();
+
+            if (name.equals("addVolumeChangeListener"))
+                return null;
+
+            if (name.equals("getVolumeQuota") || name.equals("getVoucherSize"))
+                return 0L;
+
+            if (name.equals("getDefaultUserQuota") || name.equals("getDefaultGroupQuota"))
+                return QuotaConstants.UNLIMITED_QUOTA;
+
+            if (name.equals("getUserQuota") || name.equals("getGroupQuota"))
+                return get(getKey(name, args), QuotaConstants.NO_QUOTA);
+
+            if (name.matches("get(Volume|User|Group)(Used|Blocked)Space"))
+                return get(getKey(name, args), 0);
+
+            if (name.matches("set(Volume|User|Group)(Used|Blocked)Space|set(User|Group)Quota")) {
+                values.put(getKey(name, args), (Long) args[args.length - 2]);
+                return null;
+            }
+
+            if (name.equals("getFileVoucherInfo")) {
+                byte[] key = BabuDBStorageHelper.createFileVoucherInfoKey((Long) args[0]);
+                byte[] val = entries.get(new String(key));
+                return val == null ? null : new BufferBackedFileVoucherInfo(key, val);
+            }
+
+            if (name.equals("getFileVoucherClientInfo")) {
+                byte[] key = BabuDBStorageHelper.createFileVoucherClientInfoKey((Long) args[0], (String) args[1]);
+                byte[] val = entries.get(new String(key));
+                return val == null ? null : new BufferBackedFileVoucherClientInfo(key, val);
+            }
+
+            if (name.equals("getAllFileVoucherClientInfo")) {
+                String prefix = new String(BabuDBStorageHelper.createFileVoucherClientInfoKey((Long) args[0], ""));
+                List<FileVoucherClientInfo> result = new ArrayList<FileVoucherClientInfo>();
+                for (Map.Entry<String, byte[]> entry : entries.entrySet())
+                    if (entry.getKey().startsWith(prefix))
+                        result.add(new BufferBackedFileVoucherClientInfo(entry.getKey().getBytes(), entry.getValue()));
+                return new ListResultSet<FileVoucherClientInfo>(result);
+            }
+
+            if (name.equals("setFileVoucherInfo") || name.equals("setFileVoucherClientInfo")) {
+                // entries without a value are deleted
+                BufferBackedIndexMetadata entry = (BufferBackedIndexMetadata) args[0];
+                byte[] val = entry.getValBuf();
+                if (val == null)
+                    entries.remove(new String(entry.getKeyBuf()));
+                else
+                    entries.put(new String(entry.getKeyBuf()), val.clone());
+                return null;
+            }
+
+            throw new UnsupportedOperationException(name);
+        }
+
+        /**
+         * Returns the key of the value that is read or written by the given getter or setter, e.g.
+         * "userUsedSpace.&lt;userId&gt;".
+         */
+        private static String getKey(String methodName, Object[] args) {
+            String key = methodName.substring(3, 4).toLowerCase() + methodName.substring(4);
+            return args != null && args[0] instanceof String ? key + "." + args[0] : key;
+        }
+    }
+
+    private static class ListResultSet<T> implements DatabaseResultSet<T> {
+
+        private final Iterator<T> iterator;
+
+        ListResultSet(List<T> list) {
+            this.iterator = list.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public T next() {
+            return iterator.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+}
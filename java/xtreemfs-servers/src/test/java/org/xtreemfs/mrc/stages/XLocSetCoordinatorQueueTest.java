@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.mrc.stages;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.xtreemfs.SetupUtils;
+import org.xtreemfs.TestHelper;
+import org.xtreemfs.foundation.TimeSync;
+import org.xtreemfs.foundation.logging.Logging;
+import org.xtreemfs.mrc.stages.XLocSetCoordinator.RequestMethod;
+
+/**
+ * Tests how the {@link XLocSetCoordinator} schedules the changes of different files on its threads. The changes
+ * themselves are replaced by a test stub that blocks until it is released.
+ */
+public class XLocSetCoordinatorQueueTest {
+    @Rule
+    public final TestRule testLog = TestHelper.testLog;
+
+    private BlockingCoordinator coordinator;
+
+    public XLocSetCoordinatorQueueTest() {
+        Logging.start(SetupUtils.DEBUG_LEVEL);
+    }
+
+    @BeforeClass
+    public static void initializeTest() throws Exception {
+        TimeSync.initializeLocal(50).waitForStartup();
+    }
+
+    @AfterClass
+    public static void tearDownTest() throws Exception {
+        TimeSync.getInstance().shutdown();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (coordinator != null) {
+            coordinator.release.countDown();
+            coordinator.shutdown();
+            coordinator.waitForShutdown();
+        }
+    }
+
+    /**
+     * Processes the requests by blocking until the release latch is counted down, and records the order and overlap
+     * of the requests.
+     */
+    private static class BlockingCoordinator extends XLocSetCoordinator {
+
+        final CountDownLatch      release = new CountDownLatch(1);
+
+        final List<RequestMethod> started = new ArrayList<RequestMethod>();
+
+        final Set<String>         runningFiles = new HashSet<String>();
+
+        int                       numRunning;
+
+        int                       maxRunning;
+
+        boolean                   overlapped;
+
+        BlockingCoordinator(int numThreads) {
+            super(null, 0, numThreads);
+        }
+
+        @Override
+        void processRequest(RequestMethod m) throws InterruptedException {
+            synchronized (this) {
+                started.add(m);
+                overlapped |= !runningFiles.add(m.getFileId());
+                maxRunning = Math.max(maxRunning, ++numRunning);
+                notifyAll();
+            }
+            release.await();
+            synchronized (this) {
+                runningFiles.remove(m.getFileId());
+                numRunning--;
+            }
+        }
+
+        synchronized void waitForStarted(int count) throws InterruptedException {
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (started.size() < count && System.currentTimeMillis() < deadline) {
+                wait(deadline - System.currentTimeMillis());
+            }
+            assertTrue("only " + started.size() + " of " + count + " changes started", started.size() >= count);
+        }
+
+        void waitForCompletion() throws InterruptedException {
+            final long deadline = System.currentTimeMillis() + 5000;
+            while ((getNumActiveChanges() > 0 || getQueueLength() > 0) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, getNumActiveChanges());
+            assertEquals(0, getQueueLength());
+        }
+    }
+
+    private static RequestMethod createRequest(String fileId) {
+        return new RequestMethod(null, fileId, null, null, null, null, null, null);
+    }
+
+    @Test
+    public void testDifferentFilesInParallel() throws Exception {
+        coordinator = new BlockingCoordinator(2);
+        coordinator.start();
+        coordinator.waitForStartup();
+
+        coordinator.enqueue(createRequest("file1"));
+        coordinator.enqueue(createRequest("file2"));
+
+        // both changes are in progress at the same time
+        coordinator.waitForStarted(2);
+        assertEquals(2, coordinator.getNumActiveChanges());
+
+        coordinator.release.countDown();
+        coordinator.waitForCompletion();
+        assertEquals(2, coordinator.maxRunning);
+        assertTrue(coordinator.getStatistics().contains("2 completed (0 failed)"));
+    }
+
+    @Test
+    public void testSameFileSerialized() throws Exception {
+        coordinator = new BlockingCoordinator(2);
+        coordinator.start();
+        coordinator.waitForStartup();
+
+        RequestMethod first = createRequest("file1");
+        RequestMethod second = createRequest("file1");
+        RequestMethod other = createRequest("file2");
+        coordinator.enqueue(first);
+        coordinator.waitForStarted(1);
+        coordinator.enqueue(second);
+        coordinator.enqueue(other);
+
+        // the second change of file1 is deferred, so the other thread is free for the change of file2
+        coordinator.waitForStarted(2);
+        synchronized (coordinator) {
+            assertTrue(coordinator.started.contains(first));
+            assertTrue(coordinator.started.contains(other));
+            assertFalse(coordinator.started.contains(second));
+        }
+        assertEquals(1, coordinator.getQueueLength());
+        assertEquals(2, coordinator.getNumActiveChanges());
+
+        coordinator.release.countDown();
+        coordinator.waitForCompletion();
+        synchronized (coordinator) {
+            assertEquals(3, coordinator.started.size());
+            assertTrue(coordinator.started.indexOf(first) < coordinator.started.indexOf(second));
+            assertFalse(coordinator.overlapped);
+        }
+    }
+}
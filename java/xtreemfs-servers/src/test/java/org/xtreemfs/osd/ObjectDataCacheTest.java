@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.xtreemfs.TestHelper;
+import org.xtreemfs.foundation.buffer.BufferPool;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
+import org.xtreemfs.osd.storage.ObjectDataCache;
+import org.xtreemfs.osd.storage.ObjectInformation;
+import org.xtreemfs.osd.storage.ObjectInformation.ObjectStatus;
+import org.xtreemfs.osd.storage.StorageLayout;
+
+public class ObjectDataCacheTest {
+    @Rule
+    public final TestRule    testLog     = TestHelper.testLog;
+
+    private static final int STRIPE_SIZE = 1024;
+
+    @Test
+    public void testReadRanges() throws Exception {
+
+        ObjectDataCache cache = new ObjectDataCache(1024 * 1024);
+        assertNull(cache.read("file", 0, 0, STRIPE_SIZE));
+
+        insert(cache, "file", 0, 1, 100, 'a');
+        insert(cache, "file", 1, 1, 0, 'b');
+
+        ObjectInformation obj = cache.read("file", 0, 0, StorageLayout.FULL_OBJECT_LENGTH);
+        assertNotNull(obj);
+        assertEquals(ObjectStatus.EXISTS, obj.getStatus());
+        assertEquals(100, obj.getData().remaining());
+        assertEquals(1, obj.getLastLocalObjectNo());
+        assertEquals(2, obj.getGlobalLastObjectNo());
+        BufferPool.free(obj.getData());
+
+        obj = cache.read("file", 0, 90, 20);
+        assertEquals(10, obj.getData().remaining());
+        assertEquals('a', obj.getData().get());
+        BufferPool.free(obj.getData());
+
+        obj = cache.read("file", 0, 200, 20);
+        assertEquals(0, obj.getData().remaining());
+        BufferPool.free(obj.getData());
+
+        obj = cache.read("file", 1, 0, STRIPE_SIZE);
+        assertEquals(ObjectStatus.PADDING_OBJECT, obj.getStatus());
+        assertNull(obj.getData());
+
+        assertNull(cache.read("file", 2, 0, STRIPE_SIZE));
+        assertNull(cache.read("otherFile", 0, 0, STRIPE_SIZE));
+
+        assertEquals(4, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+
+        ObjectDataCache cache = new ObjectDataCache(1024 * 1024);
+        insert(cache, "file", 0, 1, STRIPE_SIZE, 'a');
+        insert(cache, "file", 1, 1, STRIPE_SIZE, 'b');
+        insert(cache, "otherFile", 0, 1, STRIPE_SIZE, 'c');
+
+        // a newer version of an object replaces the cached one
+        insert(cache, "file", 0, 2, STRIPE_SIZE, 'd');
+        assertEquals(3, cache.getNumCachedObjects());
+        ObjectInformation obj = cache.read("file", 0, 0, STRIPE_SIZE);
+        assertEquals('d', obj.getData().get());
+        BufferPool.free(obj.getData());
+
+        cache.invalidate("file");
+        assertNull(cache.read("file", 0, 0, STRIPE_SIZE));
+        assertNull(cache.read("file", 1, 0, STRIPE_SIZE));
+        assertNotNull(cache.read("otherFile", 0, 0, STRIPE_SIZE));
+        assertEquals(1, cache.getNumCachedObjects());
+    }
+
+    @Test
+    public void testSegmentedEviction() throws Exception {
+
+        // room for about ten objects
+        ObjectDataCache cache = new ObjectDataCache(10 * (STRIPE_SIZE + 256));
+
+        // read the "hot" objects twice, so that they are protected
+        for (int i = 0; i < 4; i++) {
+            insert(cache, "hot", i, 1, STRIPE_SIZE, 'h');
+            assertNotNull(cache.read("hot", i, 0, STRIPE_SIZE));
+        }
+
+        // a scan over many objects must not evict them
+        for (int i = 0; i < 100; i++) {
+            insert(cache, "scan", i, 1, STRIPE_SIZE, 's');
+        }
+
+        for (int i = 0; i < 4; i++) {
+            assertNotNull(cache.read("hot", i, 0, STRIPE_SIZE));
+        }
+        assertNull(cache.read("scan", 0, 0, STRIPE_SIZE));
+        assertNotNull(cache.read("scan", 99, 0, STRIPE_SIZE));
+        assertTrue(cache.getCachedBytes() <= 10 * (STRIPE_SIZE + 256));
+        assertTrue(cache.getEvictions() > 0);
+    }
+
+    private static void insert(ObjectDataCache cache, String fileId, long objNo, long version, int size,
+        char content) {
+
+        ReusableBuffer data = null;
+        if (size > 0) {
+            data = BufferPool.allocate(size);
+            while (data.hasRemaining())
+                data.put((byte) content);
+            data.flip();
+        }
+
+        ObjectInformation obj = new ObjectInformation(size > 0 ? ObjectStatus.EXISTS
+            : ObjectStatus.PADDING_OBJECT, data, STRIPE_SIZE);
+        cache.insert(fileId, objNo, version, obj, 1, 2);
+
+        if (data != null)
+            BufferPool.free(data);
+    }
+
+}
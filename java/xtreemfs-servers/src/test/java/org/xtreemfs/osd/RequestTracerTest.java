@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.xtreemfs.TestHelper;
+import org.xtreemfs.foundation.metrics.Histogram;
+import org.xtreemfs.foundation.metrics.MetricsRegistry;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.MessageType;
+import org.xtreemfs.foundation.pbrpc.generatedinterfaces.RPC.RPCHeader;
+import org.xtreemfs.foundation.pbrpc.server.RPCServerRequest;
+
+public class RequestTracerTest {
+    @Rule
+    public final TestRule testLog = TestHelper.testLog;
+
+    private static OSDRequest createRequest() {
+        RPCHeader header = RPCHeader.newBuilder().setCallId(1).setMessageType(MessageType.RPC_REQUEST).build();
+        return new OSDRequest(new RPCServerRequest(null, header, null));
+    }
+
+    @Test
+    public void testSpans() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry();
+        RequestTracer tracer = new RequestTracer(metrics, 1, 0, 2);
+
+        OSDRequest rq = createRequest();
+        tracer.startTrace(rq);
+        RequestTrace trace = rq.getTrace();
+        assertNotNull(trace);
+
+        final long t0 = System.nanoTime();
+        int span = trace.startSpan("stage1", t0, t0 + 1000);
+        trace.endSpan(span, t0 + 3000);
+        // the response is sent while the second stage is processing the request
+        span = trace.startSpan("stage2", t0 + 3000, t0 + 5000);
+        trace.addIOTime(2000);
+        trace.finish();
+        trace.endSpan(span, Long.MAX_VALUE);
+
+        assertEquals(2, trace.getNumSpans());
+        assertEquals(1000, trace.getQueueWaitNanos(0));
+        assertEquals(2000, trace.getProcessingNanos(0));
+        assertEquals(0, trace.getIONanos(0));
+        assertEquals(2000, trace.getQueueWaitNanos(1));
+        assertEquals(2000, trace.getIONanos(1));
+        assertTrue(trace.getProcessingNanos(1) < 1000000000L);
+        assertEquals("unknown", trace.getOperation());
+
+        Histogram h = metrics.histogram("xtreemfs_osd_traced_stage_us", MetricsRegistry.label("operation",
+            "unknown") + "," + MetricsRegistry.label("stage", "stage2") + ",phase=\"io\"");
+        assertEquals(1, h.getCount());
+        assertEquals(1, metrics.histogram("xtreemfs_osd_traced_request_us",
+            MetricsRegistry.label("operation", "unknown")).getCount());
+    }
+
+    @Test
+    public void testSlowRequestLog() throws Exception {
+        RequestTracer tracer = new RequestTracer(new MetricsRegistry(), 1, 0, 2);
+        RequestTrace[] traces = new RequestTrace[3];
+        for (int i = 0; i < traces.length; i++) {
+            OSDRequest rq = createRequest();
+            tracer.startTrace(rq);
+            traces[i] = rq.getTrace();
+            traces[i].finish();
+        }
+
+        // the ring buffer keeps the two most recent requests
+        List<RequestTrace> slow = tracer.getSlowRequests();
+        assertEquals(2, slow.size());
+        assertEquals(traces[2], slow.get(0));
+        assertEquals(traces[1], slow.get(1));
+    }
+
+    @Test
+    public void testSampling() throws Exception {
+        RequestTracer tracer = new RequestTracer(new MetricsRegistry(), 0, 0, 2);
+        OSDRequest rq = createRequest();
+        tracer.startTrace(rq);
+        assertNull(rq.getTrace());
+
+        // every fourth request passed to the tracer is sampled, regardless of the request ids
+        tracer = new RequestTracer(new MetricsRegistry(), 4, 0, 2);
+        for (int i = 0; i < 8; i++) {
+            rq = createRequest();
+            tracer.startTrace(rq);
+            assertEquals(i % 4 == 0, rq.getTrace() != null);
+            createRequest();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+
+package org.xtreemfs.osd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.xtreemfs.TestHelper;
+import org.xtreemfs.osd.stages.RequestPriority;
+import org.xtreemfs.osd.stages.Stage.StageRequest;
+import org.xtreemfs.osd.stages.StageQueue;
+
+public class StageQueueTest {
+    @Rule
+    public final TestRule testLog = TestHelper.testLog;
+
+    private static StageRequest createRequest(int method, RequestPriority priority) {
+        return new StageRequest(method, null, null, null, priority);
+    }
+
+    @Test
+    public void testWeightedRoundRobin() throws Exception {
+        StageQueue q = new StageQueue(true);
+        for (int i = 0; i < 20; i++) {
+            q.put(createRequest(i, RequestPriority.BACKGROUND));
+            q.put(createRequest(i, RequestPriority.REPLICATION));
+            q.put(createRequest(i, RequestPriority.FOREGROUND));
+        }
+        assertEquals(60, q.size());
+
+        // each priority class is served according to its weight, in FIFO order within the class
+        int[] next = new int[RequestPriority.values().length];
+        for (int round = 0; round < 2; round++) {
+            for (RequestPriority priority : RequestPriority.values()) {
+                for (int i = 0; i < priority.getWeight(); i++) {
+                    StageRequest rq = q.take();
+                    assertEquals(priority, rq.getPriority());
+                    assertEquals(next[priority.ordinal()]++, rq.getStageMethod());
+                }
+            }
+        }
+
+        // the remaining requests of the other classes are served once the foreground queue is empty
+        int foreground = 0;
+        while (q.size() > 0) {
+            if (q.poll().getPriority() == RequestPriority.FOREGROUND) {
+                foreground++;
+            }
+        }
+        assertEquals(20 - 16, foreground);
+    }
+
+    @Test
+    public void testFileOrder() throws Exception {
+        StageQueue q = new StageQueue(true);
+        q.put(new StageRequest(0, null, null, null, RequestPriority.REPLICATION, "file"));
+        q.put(new StageRequest(1, null, null, null, RequestPriority.FOREGROUND, "other"));
+        q.put(new StageRequest(2, null, null, null, RequestPriority.FOREGROUND, "file"));
+        q.put(new StageRequest(3, null, null, null, RequestPriority.FOREGROUND, "other"));
+
+        // the foreground request of the file must not overtake its replication request, which is moved to the
+        // foreground queue
+        assertEquals(1, q.take().getStageMethod());
+        assertEquals(0, q.take().getStageMethod());
+        assertEquals(2, q.take().getStageMethod());
+        assertEquals(3, q.take().getStageMethod());
+
+        // once the requests of the file have been taken, new requests are queued by their priority
+        q.put(new StageRequest(4, null, null, null, RequestPriority.REPLICATION, "file"));
+        q.put(new StageRequest(5, null, null, null, RequestPriority.FOREGROUND, "other"));
+        assertEquals(5, q.take().getStageMethod());
+        assertEquals(4, q.take().getStageMethod());
+    }
+
+    @Test
+    public void testFilePromotion() throws Exception {
+        StageQueue q = new StageQueue(true);
+        q.put(new StageRequest(0, null, null, null, RequestPriority.BACKGROUND, "file"));
+        for (int i = 1; i <= 10; i++) {
+            q.put(new StageRequest(i, null, null, null, RequestPriority.REPLICATION, "other"));
+        }
+        q.put(new StageRequest(11, null, null, null, RequestPriority.FOREGROUND, "file"));
+
+        // the background request must not hold back the foreground request of the same file
+        assertEquals(0, q.take().getStageMethod());
+        assertEquals(11, q.take().getStageMethod());
+        assertEquals(1, q.take().getStageMethod());
+
+        // requests of a lower class are added to the queue of the file
+        q = new StageQueue(true);
+        q.setTargetDelay(1, 0);
+        for (int i = 0; i < 3; i++) {
+            q.put(new StageRequest(i, null, null, null, RequestPriority.FOREGROUND, "file2"));
+        }
+        Thread.sleep(10);
+        assertEquals(0, q.take().getStageMethod());
+        assertEquals(1, q.take().getStageMethod());
+        assertTrue(q.isOverloaded(RequestPriority.FOREGROUND));
+
+        // admission is checked against the queue the request would be added to
+        assertTrue(q.isOverloaded(RequestPriority.BACKGROUND, "file2"));
+        assertFalse(q.isOverloaded(RequestPriority.BACKGROUND, "file3"));
+        assertFalse(q.isOverloaded(RequestPriority.BACKGROUND, null));
+        q.put(new StageRequest(3, null, null, null, RequestPriority.BACKGROUND, "file2"));
+        assertEquals(2, q.take().getStageMethod());
+        assertEquals(3, q.take().getStageMethod());
+    }
+
+    @Test
+    public void testFIFO() throws Exception {
+        StageQueue q = new StageQueue(false);
+        q.put(createRequest(0, RequestPriority.BACKGROUND));
+        q.put(createRequest(1, RequestPriority.FOREGROUND));
+        q.put(createRequest(2, RequestPriority.REPLICATION));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, q.take().getStageMethod());
+        }
+        assertNull(q.poll());
+        assertNull(q.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testOverload() throws Exception {
+        StageQueue q = new StageQueue(true);
+        q.setTargetDelay(1, 0);
+        for (int i = 0; i < 3; i++) {
+            q.put(createRequest(i, RequestPriority.REPLICATION));
+        }
+        Thread.sleep(10);
+
+        // the first request above the target starts the interval, the second one ends it
+        q.take();
+        assertFalse(q.isOverloaded(RequestPriority.REPLICATION));
+        q.take();
+        assertTrue(q.isOverloaded(RequestPriority.REPLICATION));
+        assertTrue(q.getQueueDelayMs(RequestPriority.REPLICATION) >= 10);
+        assertFalse(q.isOverloaded(RequestPriority.FOREGROUND));
+
+        // the overload ends when the queue runs empty
+        q.take();
+        assertFalse(q.isOverloaded(RequestPriority.REPLICATION));
+
+        // the overload ends when the queue delay drops below the target
+        q.setTargetDelay(5, 0);
+        for (int i = 0; i < 3; i++) {
+            q.put(createRequest(i, RequestPriority.FOREGROUND));
+        }
+        Thread.sleep(20);
+        q.take();
+        q.take();
+        assertTrue(q.isOverloaded(RequestPriority.FOREGROUND));
+        q.put(createRequest(3, RequestPriority.FOREGROUND));
+        assertEquals(2, q.take().getStageMethod());
+        assertTrue(q.isOverloaded(RequestPriority.FOREGROUND));
+        q.put(createRequest(4, RequestPriority.FOREGROUND));
+        assertEquals(3, q.take().getStageMethod());
+        assertFalse(q.isOverloaded(RequestPriority.FOREGROUND));
+    }
+}
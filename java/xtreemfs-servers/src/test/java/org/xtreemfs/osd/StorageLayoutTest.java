@@ -16,6 +16,7 @@ import static org.junit.Assert.assertTrue;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 import org.junit.After;
 import org.junit.Before;
@@ -86,6 +87,116 @@ public class StorageLayoutTest {
         basicTests(layout);
     }
 
+    @Test
+    public void testHashStorageLayoutWithMappedReadsBasics() throws Exception {
+
+        HashStorageLayout layout = new HashStorageLayout(createMappedReadsConfig(), new MetadataCache());
+        basicTests(layout);
+    }
+
+    @Test
+    public void testHashStorageLayoutMappedReadInvalidation() throws Exception {
+
+        HashStorageLayout layout = new HashStorageLayout(createMappedReadsConfig(), new MetadataCache());
+        final String fileId = "ABCDEFG:0002";
+
+        Replica r = Replica.newBuilder().setStripingPolicy(SetupUtils.getStripingPolicy(1, 64)).setReplicationFlags(0)
+                .build();
+        StripingPolicyImpl sp = StripingPolicyImpl.getPolicy(r, 0);
+        FileMetadata md = layout.getFileMetadata(sp, fileId);
+
+        ReusableBuffer data = BufferPool.allocate(64);
+        for (int i = 0; i < 64; i++) {
+            data.put((byte) 'a');
+        }
+        data.flip();
+        layout.writeObject(fileId, md, data, 0l, 0, 1l, false, false);
+
+        // the second read maps the object file, the view remains valid after the object was overwritten
+        BufferPool.free(layout.readObject(fileId, md, 0l, 0, 64, 1l).getData());
+        ObjectInformation mapped = layout.readObject(fileId, md, 0l, 0, 64, 1l);
+        assertEquals(64, mapped.getData().capacity());
+
+        data = BufferPool.allocate(16);
+        for (int i = 0; i < 16; i++) {
+            data.put((byte) 'b');
+        }
+        data.flip();
+        layout.writeObject(fileId, md, data, 0l, 8, 1l, false, false);
+        layout.truncateObject(fileId, md, 0l, 32, 1l, false);
+
+        for (int i = 0; i < 64; i++) {
+            assertEquals((byte) 'a', mapped.getData().get());
+        }
+        BufferPool.free(mapped.getData());
+
+        ObjectInformation oinfo = layout.readObject(fileId, md, 0l, 0, 64, 1l);
+        assertEquals(32, oinfo.getData().capacity());
+        for (int i = 0; i < 32; i++) {
+            assertEquals((i >= 8 && i < 24) ? (byte) 'b' : (byte) 'a', oinfo.getData().get());
+        }
+        BufferPool.free(oinfo.getData());
+
+        // deleted objects must not be served from the mapping anymore
+        layout.deleteFile(fileId, true);
+        oinfo = layout.readObject(fileId, md, 0l, 0, 64, 1l);
+        assertEquals(ObjectInformation.ObjectStatus.DOES_NOT_EXIST, oinfo.getStatus());
+    }
+
+    private static OSDConfig createMappedReadsConfig() throws IOException {
+        HashMap<String, String> props = config.toHashMap();
+        props.put("storage.mmap_cache_size", "1048576");
+        props.put("storage.mmap_cache_min_reads", "2");
+        OSDConfig mappedConfig = new OSDConfig(props);
+        mappedConfig.setDefaults();
+        return mappedConfig;
+    }
+
+    @Test
+    public void testHashStorageLayoutDeferredDirectoryRemoval() throws Exception {
+
+        HashStorageLayout layout = new HashStorageLayout(config, new MetadataCache());
+        final String[] fileIds = { "ABCDEFG:0003", "ABCDEFG:0004", "HIJKLMN:0001" };
+
+        Replica r = Replica.newBuilder().setStripingPolicy(SetupUtils.getStripingPolicy(1, 64)).setReplicationFlags(0)
+                .build();
+        StripingPolicyImpl sp = StripingPolicyImpl.getPolicy(r, 0);
+
+        for (String fileId : fileIds) {
+            FileMetadata md = layout.getFileMetadata(sp, fileId);
+            ReusableBuffer data = BufferPool.allocate(64);
+            data.put(new byte[64]);
+            data.flip();
+            layout.writeObject(fileId, md, data, 0l, 0, 1l, false, false);
+            layout.writeObject(fileId, md, BufferPool.allocate(0), 1l, 0, 1l, false, false);
+        }
+
+        // objects are deleted right away, while the directories remain until they are removed explicitly
+        for (String fileId : fileIds) {
+            layout.deleteFileDeferred(fileId, true);
+            assertTrue(layout.fileExists(fileId));
+            assertEquals(0, new File(layout.generateAbsoluteFilePath(fileId)).list().length);
+        }
+
+        ArrayList<String> deleted = new ArrayList<String>();
+        deleted.add(fileIds[0]);
+        deleted.add(fileIds[1]);
+        layout.removeEmptyDirectories(deleted);
+        assertFalse(layout.fileExists(fileIds[0]));
+        assertFalse(layout.fileExists(fileIds[1]));
+        assertTrue(layout.fileExists(fileIds[2]));
+
+        deleted.clear();
+        deleted.add(fileIds[2]);
+        layout.removeEmptyDirectories(deleted);
+        assertFalse(layout.fileExists(fileIds[2]));
+
+        // only the storage directory itself and the files in it are left
+        for (File f : new File(config.getObjDir()).listFiles()) {
+            assertFalse(f.getName(), f.isDirectory());
+        }
+    }
+
     @Test
     public void testSingleFileLayout() throws Exception {
         SingleFileStorageLayout layout = new SingleFileStorageLayout(config, new MetadataCache());
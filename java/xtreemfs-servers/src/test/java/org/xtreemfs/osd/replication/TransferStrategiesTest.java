@@ -262,6 +262,57 @@ public class TransferStrategiesTest {
         }
     }
 
+    /**
+     * Test method for
+     * {@link org.xtreemfs.osd.replication.transferStrategies.TransferStrategy#getFollowingObjects(NextRequest, int)}
+     * and {@link org.xtreemfs.osd.replication.transferStrategies.TransferStrategy#returnObject(long, ServiceUUID, boolean)}.
+     */
+    @Test
+    public void testGetFollowingObjectsForSequentialTransfer() {
+        this.strategy = new SequentialStrategy(fileID, xLoc, new ServiceAvailability());
+        // objects of the first stripe column, object 12 is missing
+        this.strategy.addObject(0, false);
+        this.strategy.addObject(3, false);
+        this.strategy.addObject(6, true);
+        this.strategy.addObject(9, false);
+        this.strategy.addObject(15, false);
+
+        try {
+            this.strategy.selectNext();
+            NextRequest next = this.strategy.getNext();
+            assertEquals(6, next.objectNo);
+            assertEquals(xLoc.getReplica(1).getOSDForObject(next.objectNo), next.osd);
+
+            // the run ends at the missing object
+            List<Long> following = this.strategy.getFollowingObjects(next, 10);
+            assertEquals(1, following.size());
+            assertEquals(Long.valueOf(9), following.get(0));
+            assertEquals(3, strategy.getObjectsCount());
+
+            this.strategy.selectNext();
+            next = this.strategy.getNext();
+            assertEquals(0, next.objectNo);
+            following = this.strategy.getFollowingObjects(next, 1);
+            assertEquals(1, following.size());
+            assertEquals(Long.valueOf(3), following.get(0));
+            assertEquals(1, strategy.getObjectsCount());
+
+            // a returned object can be fetched from the same OSD again
+            this.strategy.returnObject(3, next.osd, false);
+            this.strategy.selectNext();
+            NextRequest retry = this.strategy.getNext();
+            assertEquals(3, retry.objectNo);
+            assertEquals(next.osd, retry.osd);
+
+            this.strategy.selectNext();
+            next = this.strategy.getNext();
+            assertEquals(15, next.objectNo);
+            assertTrue(this.strategy.getFollowingObjects(next, 10).isEmpty());
+        } catch (TransferStrategyException e) {
+            fail(e.getLocalizedMessage());
+        }
+    }
+
     /**
      * Test method for {@link org.xtreemfs.osd.replication.transferStrategies.RandomStrategy#selectNext()}.
      */
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2016 by Zuse Institute Berlin
+ *
+ * Licensed under the BSD License, see LICENSE file for details.
+ *
+ */
+package org.xtreemfs.osd.rwre;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.xtreemfs.TestHelper;
+import org.xtreemfs.foundation.buffer.BufferPool;
+import org.xtreemfs.foundation.buffer.ReusableBuffer;
+
+import com.google.protobuf.ByteString;
+
+public class ObjectDeltaTest {
+    @Rule
+    public final TestRule    testLog    = TestHelper.testLog;
+
+    private static final int BLOCK_SIZE = 16;
+
+    @Test
+    public void testIdenticalObjects() throws Exception {
+
+        ReusableBuffer local = createObject(100, 0);
+        ReusableBuffer remote = createObject(100, 0);
+
+        List<ByteString> digests = ObjectDelta.computeBlockDigests(local, BLOCK_SIZE);
+        assertEquals(7, digests.size());
+
+        List<Integer> changed = ObjectDelta.findChangedBlocks(remote, BLOCK_SIZE, digests);
+        assertEquals(0, changed.size());
+
+        ReusableBuffer delta = ObjectDelta.extractBlocks(remote, BLOCK_SIZE, changed);
+        assertEquals(0, delta.remaining());
+
+        ReusableBuffer result = ObjectDelta.applyDelta(local, BLOCK_SIZE, 100, changed, delta);
+        assertEquals(remote.getBuffer(), result.getBuffer());
+
+        BufferPool.free(local);
+        BufferPool.free(remote);
+        BufferPool.free(delta);
+        BufferPool.free(result);
+    }
+
+    @Test
+    public void testChangedBlocks() throws Exception {
+
+        ReusableBuffer local = createObject(100, 0);
+        ReusableBuffer remote = createObject(100, 0);
+        remote.getBuffer().put(20, (byte) 1);
+        remote.getBuffer().put(99, (byte) 1);
+
+        List<Integer> changed = ObjectDelta.findChangedBlocks(remote, BLOCK_SIZE,
+                ObjectDelta.computeBlockDigests(local, BLOCK_SIZE));
+        assertEquals(Arrays.asList(1, 6), changed);
+
+        // only the changed blocks are transferred; the last block is shorter
+        ReusableBuffer delta = ObjectDelta.extractBlocks(remote, BLOCK_SIZE, changed);
+        assertEquals(BLOCK_SIZE + 4, delta.remaining());
+
+        ReusableBuffer result = ObjectDelta.applyDelta(local, BLOCK_SIZE, 100, changed, delta);
+        assertEquals(remote.getBuffer(), result.getBuffer());
+
+        BufferPool.free(local);
+        BufferPool.free(remote);
+        BufferPool.free(delta);
+        BufferPool.free(result);
+    }
+
+    @Test
+    public void testDifferentSizes() throws Exception {
+
+        // the remote object is longer
+        ReusableBuffer local = createObject(40, 0);
+        ReusableBuffer remote = createObject(70, 0);
+        assertDeltaReconstructs(local, remote, Arrays.asList(2, 3, 4));
+        BufferPool.free(local);
+        BufferPool.free(remote);
+
+        // the remote object is shorter
+        local = createObject(70, 0);
+        remote = createObject(40, 0);
+        assertDeltaReconstructs(local, remote, Arrays.asList(2));
+        BufferPool.free(local);
+        BufferPool.free(remote);
+
+        // the object does not exist locally
+        remote = createObject(40, 0);
+        assertDeltaReconstructs(null, remote, Arrays.asList(0, 1, 2));
+        BufferPool.free(remote);
+    }
+
+    @Test
+    public void testInvalidDelta() throws Exception {
+
+        ReusableBuffer local = createObject(32, 0);
+        ReusableBuffer delta = createObject(BLOCK_SIZE, 1);
+
+        // the unchanged block 2 is not available locally
+        try {
+            ObjectDelta.applyDelta(local, BLOCK_SIZE, 48, Arrays.asList(0), delta);
+            fail();
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+
+        // the delta lacks data for block 1
+        try {
+            ObjectDelta.applyDelta(local, BLOCK_SIZE, 32, Arrays.asList(0, 1), delta);
+            fail();
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+
+        BufferPool.free(local);
+        BufferPool.free(delta);
+    }
+
+    private static void assertDeltaReconstructs(ReusableBuffer local, ReusableBuffer remote,
+            List<Integer> expectedChanges) {
+
+        List<Integer> changed = ObjectDelta.findChangedBlocks(remote, BLOCK_SIZE,
+                ObjectDelta.computeBlockDigests(local, BLOCK_SIZE));
+        assertEquals(expectedChanges, changed);
+
+        ReusableBuffer delta = ObjectDelta.extractBlocks(remote, BLOCK_SIZE, changed);
+        ReusableBuffer result = ObjectDelta.applyDelta(local, BLOCK_SIZE, remote.remaining(), changed, delta);
+        assertEquals(remote.getBuffer(), result.getBuffer());
+
+        BufferPool.free(delta);
+        BufferPool.free(result);
+    }
+
+    private static ReusableBuffer createObject(int size, int seed) {
+        ReusableBuffer buf = BufferPool.allocate(size);
+        for (int i = 0; i < size; i++) {
+            buf.put((byte) (i + seed));
+        }
+        buf.flip();
+        return buf;
+    }
+
+}
@@ -21,4 +21,19 @@ sleep 5
 # check the dump
 cat $TEST_DIR/dump.xml |grep "<filesystem "
 
-rm $TEST_DIR/dump.xml
\ No newline at end of file
+rm $TEST_DIR/dump.xml
+
+# test binary dump
+COMMAND="$1/bin/xtfs_mrcdbtool -mrc $3 $CREDS -binary dump $TEST_DIR/dump.bin"
+echo "Running ${COMMAND}..."
+$COMMAND
+RESULT=$?
+if [ "$RESULT" -ne "0" ]; then echo "$COMMAND failed"; exit $RESULT; fi
+
+# wait for the dump to be created (asynchronously)
+sleep 5
+
+# check the dump
+head -c 8 $TEST_DIR/dump.bin |grep "XTFSMRCD"
+
+rm $TEST_DIR/dump.bin
\ No newline at end of file